@@ -35,6 +35,10 @@
 /**
  * Implementation for Block operations. All blocks should extend this class. Supports the notion of generic parameters
  * which can be added to a block (see {@link #getParameter(String)} for more details.
+ * <p>
+ * Since a parsed document is mostly made of leaf blocks (words, spaces, symbols), blocks are kept as small as possible:
+ * the children and parameters are only allocated for the blocks which have some, and the siblings are not stored but
+ * deduced from the children of the parent (using the remembered position of the block in its parent).
  *
  * @version $Id$
  * @since 1.5M2
@@ -42,14 +46,31 @@
 public abstract class AbstractBlock implements Block
 {
     /**
-     * Store parameters, see {@link #getParameter(String)} for more explanations on what parameters are.
+     * The children and parameters of the block, only allocated when needed.
      */
-    private Map<String, String> parameters;
+    private static final class BlockContent
+    {
+        /**
+         * Store parameters, see {@link #getParameter(String)} for more explanations on what parameters are.
+         */
+        private Map<String, String> parameters;
+
+        /**
+         * The Blocks this Block contains.
+         */
+        private List<Block> childrenBlocks;
+
+        /**
+         * The number of children (starting from the first one) for which {@link AbstractBlock#positionHint} is known
+         * to be right. The positions of the following children are lazily recalculated when needed.
+         */
+        private int validPositions;
+    }
 
     /**
-     * The Blocks this Block contains.
+     * The children and parameters of the block or {@code null} if the block has none.
      */
-    private List<Block> childrenBlocks;
+    private BlockContent content;
 
     /**
      * The Block containing this Block.
@@ -57,14 +78,10 @@ public abstract class AbstractBlock implements Block
     private Block parentBlock;
 
     /**
-     * The next Sibling Block or null if no next sibling exists.
+     * The last known position of this Block in the children of its parent. It's only a hint which is always verified
+     * before being used.
      */
-    private Block nextSiblingBlock;
-
-    /**
-     * The previous Sibling Block or null if no previous sibling exists.
-     */
-    private Block previousSiblingBlock;
+    private int positionHint;
 
     /**
      * Empty constructor to construct an empty block.
@@ -134,6 +151,25 @@ public AbstractBlock(List<? extends Block> childrenBlocks, Map<String, String> p
         addChildren(childrenBlocks);
     }
 
+    private BlockContent getContent()
+    {
+        if (this.content == null) {
+            this.content = new BlockContent();
+        }
+
+        return this.content;
+    }
+
+    private List<Block> getModifiableChildren(int capacity)
+    {
+        BlockContent blockContent = getContent();
+        if (blockContent.childrenBlocks == null) {
+            blockContent.childrenBlocks = new ArrayList<Block>(capacity);
+        }
+
+        return blockContent.childrenBlocks;
+    }
+
     @Override
     public void addChild(Block blockToAdd)
     {
@@ -144,10 +180,8 @@ public void addChild(Block blockToAdd)
     public void addChildren(List<? extends Block> blocksToAdd)
     {
         if (!blocksToAdd.isEmpty()) {
-            if (this.childrenBlocks == null) {
-                // Create the list with just the exact required size
-                this.childrenBlocks = new ArrayList<Block>(blocksToAdd.size());
-            }
+            // Create the list with just the exact required size
+            getModifiableChildren(blocksToAdd.size());
 
             for (Block blockToAdd : blocksToAdd) {
                 addChild(blockToAdd);
@@ -158,29 +192,40 @@ public void addChildren(List<? extends Block> blocksToAdd)
     @Override
     public void setChildren(List<? extends Block> children)
     {
-        if (children.isEmpty()) {
-            if (this.childrenBlocks != null) {
-                this.childrenBlocks.clear();
-            }
-        } else {
-            if (this.childrenBlocks != null) {
-                this.childrenBlocks.clear();
-            }
+        if (this.content != null && this.content.childrenBlocks != null && !this.content.childrenBlocks.isEmpty()) {
+            this.content.childrenBlocks.clear();
+            this.content.validPositions = 0;
+
+            structureModified();
+        }
 
+        if (!children.isEmpty()) {
             addChildren(children);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The siblings of an {@link AbstractBlock} are deduced from the children of its parent so this method does
+     * nothing.
+     */
     @Override
     public void setNextSiblingBlock(Block nextSiblingBlock)
     {
-        this.nextSiblingBlock = nextSiblingBlock;
+        // The siblings are deduced from the parent
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The siblings of an {@link AbstractBlock} are deduced from the children of its parent so this method does
+     * nothing.
+     */
     @Override
     public void setPreviousSiblingBlock(Block previousSiblingBlock)
     {
-        this.previousSiblingBlock = previousSiblingBlock;
+        // The siblings are deduced from the parent
     }
 
     @Override
@@ -188,39 +233,14 @@ public void insertChildBefore(Block blockToInsert, Block nextBlock)
     {
         blockToInsert.setParent(this);
 
-        if (nextBlock == null) {
-            // Last block becomes last but one
-            if (this.childrenBlocks != null && !this.childrenBlocks.isEmpty()) {
-                Block lastBlock = this.childrenBlocks.get(this.childrenBlocks.size() - 1);
-                blockToInsert.setPreviousSiblingBlock(lastBlock);
-                lastBlock.setNextSiblingBlock(blockToInsert);
-            } else {
-                blockToInsert.setPreviousSiblingBlock(null);
-
-                if (this.childrenBlocks == null) {
-                    this.childrenBlocks = new ArrayList<Block>(1);
-                }
-            }
-            blockToInsert.setNextSiblingBlock(null);
-            this.childrenBlocks.add(blockToInsert);
-        } else {
-            // If there's a previous block to nextBlock then get it to set its next sibling
-            Block previousBlock = nextBlock.getPreviousSibling();
-            if (previousBlock != null) {
-                previousBlock.setNextSiblingBlock(blockToInsert);
-                blockToInsert.setPreviousSiblingBlock(previousBlock);
-            } else {
-                blockToInsert.setPreviousSiblingBlock(null);
-            }
-            blockToInsert.setNextSiblingBlock(nextBlock);
-            nextBlock.setPreviousSiblingBlock(blockToInsert);
-            if (this.childrenBlocks == null || this.childrenBlocks.isEmpty()) {
-                this.childrenBlocks = new ArrayList<Block>(1);
-                this.childrenBlocks.add(blockToInsert);
-            } else {
-                this.childrenBlocks.add(indexOfChild(nextBlock), blockToInsert);
-            }
-        }
+        List<Block> children = getModifiableChildren(1);
+        int position = nextBlock == null || children.isEmpty() ? children.size() : indexOfChild(nextBlock);
+        children.add(position, blockToInsert);
+
+        updatePosition(blockToInsert, position);
+        updateSiblings(position, position);
+
+        structureModified();
     }
 
     @Override
@@ -229,20 +249,16 @@ public void insertChildAfter(Block blockToInsert, Block previousBlock)
         if (previousBlock == null) {
             insertChildBefore(blockToInsert, null);
         } else {
-            // If there's a next block to previousBlock then get it to set its previous sibling
-            Block nextBlock = previousBlock.getNextSibling();
-            if (nextBlock != null) {
-                nextBlock.setPreviousSiblingBlock(blockToInsert);
-                blockToInsert.setNextSiblingBlock(nextBlock);
-            } else {
-                blockToInsert.setNextSiblingBlock(null);
-            }
-            blockToInsert.setPreviousSiblingBlock(previousBlock);
-            previousBlock.setNextSiblingBlock(blockToInsert);
-            if (this.childrenBlocks == null) {
-                this.childrenBlocks = new ArrayList<Block>(1);
-            }
-            this.childrenBlocks.add(indexOfChild(previousBlock) + 1, blockToInsert);
+            blockToInsert.setParent(this);
+
+            List<Block> children = getModifiableChildren(1);
+            int position = indexOfChild(previousBlock) + 1;
+            children.add(position, blockToInsert);
+
+            updatePosition(blockToInsert, position);
+            updateSiblings(position, position);
+
+            structureModified();
         }
     }
 
@@ -266,34 +282,33 @@ public void replaceChild(List<Block> newBlocks, Block oldBlock)
         // Remove old child
         blocks.remove(position);
         oldBlock.setParent(null);
+        oldBlock.setNextSiblingBlock(null);
+        oldBlock.setPreviousSiblingBlock(null);
 
         // Insert new children
-        Block previousBlock = oldBlock.getPreviousSibling();
-        if (newBlocks.isEmpty()) {
-            previousBlock.setNextSiblingBlock(oldBlock.getNextSibling());
-        }
-        Block lastBlock = null;
         for (Block block : newBlocks) {
             block.setParent(this);
-            block.setPreviousSiblingBlock(previousBlock);
-            if (previousBlock != null) {
-                previousBlock.setNextSiblingBlock(block);
-            }
-            previousBlock = block;
-            lastBlock = block;
-        }
-        Block nextBlock = oldBlock.getNextSibling();
-        if (nextBlock != null) {
-            nextBlock.setPreviousSiblingBlock(lastBlock);
         }
-        if (lastBlock != null) {
-            lastBlock.setNextSiblingBlock(nextBlock);
+        blocks.addAll(position, newBlocks);
+
+        invalidatePositions(position);
+        for (int i = 0; i < newBlocks.size(); ++i) {
+            updatePosition(newBlocks.get(i), position + i);
         }
+        updateSiblings(position, position + newBlocks.size() - 1);
 
-        blocks.addAll(position, newBlocks);
+        structureModified();
+    }
 
-        oldBlock.setNextSiblingBlock(null);
-        oldBlock.setPreviousSiblingBlock(null);
+    /**
+     * Let the {@link XDOM} containing this block (if any) know that its tree of blocks has been modified.
+     */
+    private void structureModified()
+    {
+        Block root = getRoot();
+        if (root instanceof XDOM) {
+            ((XDOM) root).incrementModificationCount();
+        }
     }
 
     /**
@@ -302,13 +317,48 @@ public void replaceChild(List<Block> newBlocks, Block oldBlock)
      * Can't use {@link List#indexOf(Object)} since it's using {@link Object#equals(Object)} internally which is not
      * what we want since two WordBlock with the same text or two spaces are equals for example but we want to be able
      * to target one specific Block.
+     * <p>
+     * The position hint of the block is used when it's known to be right, otherwise the positions of the children are
+     * recalculated up to the passed block. Since the blocks are usually modified in document order this means that
+     * each child is visited only once for a whole set of modifications.
      *
      * @param block the block
      * @return the position of the block, -1 if the block can't be found
      */
     private int indexOfChild(Block block)
     {
-        return indexOfBlock(block, getChildren());
+        List<Block> children = getChildren();
+
+        if (!(block instanceof AbstractBlock)) {
+            return indexOfBlock(block, children);
+        }
+
+        int validPositions = this.content != null ? this.content.validPositions : 0;
+        int hint = ((AbstractBlock) block).positionHint;
+        if (hint < validPositions && hint < children.size() && children.get(hint) == block) {
+            return hint;
+        }
+
+        // Recalculate the positions which are not known yet
+        for (int position = validPositions; position < children.size(); ++position) {
+            Block child = children.get(position);
+            if (child instanceof AbstractBlock) {
+                ((AbstractBlock) child).positionHint = position;
+            }
+            this.content.validPositions = position + 1;
+
+            if (child == block) {
+                return position;
+            }
+        }
+
+        // The children list might have been modified directly so make sure the block is really not there
+        int position = indexOfBlock(block, children);
+        if (position != -1) {
+            this.content.validPositions = 0;
+        }
+
+        return position;
     }
 
     /**
@@ -336,10 +386,64 @@ private int indexOfBlock(Block block, List<Block> blocks)
         return -1;
     }
 
+    /**
+     * Indicate that the positions of the children starting from the passed position might have changed.
+     *
+     * @param position the position of the first modified child
+     */
+    private void invalidatePositions(int position)
+    {
+        if (this.content != null && position < this.content.validPositions) {
+            this.content.validPositions = position;
+        }
+    }
+
+    /**
+     * Remember the position of a child which has just been inserted.
+     *
+     * @param child the inserted child
+     * @param position the position of the child
+     */
+    private void updatePosition(Block child, int position)
+    {
+        invalidatePositions(position);
+
+        if (position == this.content.validPositions && child instanceof AbstractBlock) {
+            ((AbstractBlock) child).positionHint = position;
+            ++this.content.validPositions;
+        }
+    }
+
+    /**
+     * Update the sibling links of children which are not {@link AbstractBlock}s (the siblings of
+     * {@link AbstractBlock}s are deduced from their parent).
+     *
+     * @param first the position of the first modified child
+     * @param last the position of the last modified child, lower than the first one when the children were removed
+     */
+    private void updateSiblings(int first, int last)
+    {
+        List<Block> children = getChildren();
+
+        Block previousBlock = first > 0 ? children.get(first - 1) : null;
+        for (int position = first; position <= last + 1 && position < children.size(); ++position) {
+            Block block = children.get(position);
+            block.setPreviousSiblingBlock(previousBlock);
+            if (previousBlock != null) {
+                previousBlock.setNextSiblingBlock(block);
+            }
+            previousBlock = block;
+        }
+        if (previousBlock != null && last + 1 >= children.size()) {
+            previousBlock.setNextSiblingBlock(null);
+        }
+    }
+
     @Override
     public List<Block> getChildren()
     {
-        return this.childrenBlocks == null ? Collections.<Block>emptyList() : this.childrenBlocks;
+        return this.content == null || this.content.childrenBlocks == null ? Collections.<Block>emptyList()
+            : this.content.childrenBlocks;
     }
 
     @Override
@@ -351,34 +455,38 @@ public Block getParent()
     @Override
     public Map<String, String> getParameters()
     {
-        return this.parameters == null ? Collections.<String, String>emptyMap() : Collections
-            .unmodifiableMap(this.parameters);
+        return this.content == null || this.content.parameters == null ? Collections.<String, String>emptyMap()
+            : Collections.unmodifiableMap(this.content.parameters);
     }
 
     @Override
     public String getParameter(String name)
     {
-        return this.parameters == null ? null : this.parameters.get(name);
+        return this.content == null || this.content.parameters == null ? null : this.content.parameters.get(name);
     }
 
     @Override
     public void setParameter(String name, String value)
     {
-        if (this.parameters == null) {
-            this.parameters = new LinkedHashMap<>(1);
+        BlockContent blockContent = getContent();
+        if (blockContent.parameters == null) {
+            blockContent.parameters = new LinkedHashMap<>(1);
         }
 
-        this.parameters.put(name, value);
+        blockContent.parameters.put(name, value);
     }
 
     @Override
     public void setParameters(Map<String, String> parameters)
     {
-        if (this.parameters == null) {
-            this.parameters = new LinkedHashMap<>(parameters);
+        if (this.content == null || this.content.parameters == null) {
+            // Don't allocate anything for blocks without parameters
+            if (!parameters.isEmpty()) {
+                getContent().parameters = new LinkedHashMap<>(parameters);
+            }
         } else {
-            this.parameters.clear();
-            this.parameters.putAll(parameters);
+            this.content.parameters.clear();
+            this.content.parameters.putAll(parameters);
         }
     }
 
@@ -403,39 +511,60 @@ public Block getRoot()
     @Override
     public Block getNextSibling()
     {
-        return this.nextSiblingBlock;
+        return getSibling(1);
     }
 
     @Override
     public Block getPreviousSibling()
     {
-        return this.previousSiblingBlock;
+        return getSibling(-1);
+    }
+
+    private Block getSibling(int offset)
+    {
+        Block parent = getParent();
+        if (parent == null) {
+            return null;
+        }
+
+        int position;
+        List<Block> siblings = parent.getChildren();
+        if (parent instanceof AbstractBlock) {
+            position = ((AbstractBlock) parent).indexOfChild(this);
+        } else if (this.positionHint < siblings.size() && siblings.get(this.positionHint) == this) {
+            position = this.positionHint;
+        } else {
+            position = indexOfBlock(this, siblings);
+            if (position != -1) {
+                this.positionHint = position;
+            }
+        }
+
+        int siblingPosition = position + offset;
+
+        return position != -1 && siblingPosition >= 0 && siblingPosition < siblings.size()
+            ? siblings.get(siblingPosition) : null;
     }
 
     @Override
     public void removeBlock(Block childBlockToRemove)
     {
         // Remove block
-        List<Block> children = getChildren();
-        int position = indexOfBlock(childBlockToRemove, children);
+        int position = indexOfChild(childBlockToRemove);
         if (position == -1) {
             throw new InvalidParameterException("Provided Block to remove is not a child");
         }
         getChildren().remove(position);
+        invalidatePositions(position);
 
         // Re-calculate internal links between blocks
         if (childBlockToRemove != null) {
-            Block previousBlock = childBlockToRemove.getPreviousSibling();
-            if (previousBlock != null) {
-                previousBlock.setNextSiblingBlock(childBlockToRemove.getNextSibling());
-            }
-            Block nextBlock = childBlockToRemove.getNextSibling();
-            if (nextBlock != null) {
-                nextBlock.setPreviousSiblingBlock(previousBlock);
-            }
+            updateSiblings(position, position - 1);
             childBlockToRemove.setNextSiblingBlock(null);
             childBlockToRemove.setPreviousSiblingBlock(null);
         }
+
+        structureModified();
     }
 
     @Override
@@ -462,8 +591,8 @@ public int hashCode()
     {
         HashCodeBuilder builder = new HashCodeBuilder();
 
-        builder.append(this.childrenBlocks);
-        builder.append(this.parameters);
+        builder.append(getChildren());
+        builder.append(getParameters());
 
         return builder.toHashCode();
     }
@@ -490,13 +619,16 @@ public Block clone(BlockFilter blockFilter)
             throw new RuntimeException("Failed to clone object", e);
         }
 
-        if (this.parameters != null) {
-            ((AbstractBlock) block).parameters = new LinkedHashMap<>(this.parameters);
+        AbstractBlock abstractBlock = (AbstractBlock) block;
+        abstractBlock.content = null;
+
+        if (this.content != null && this.content.parameters != null) {
+            abstractBlock.getContent().parameters = new LinkedHashMap<>(this.content.parameters);
         }
 
-        if (this.childrenBlocks != null) {
-            ((AbstractBlock) block).childrenBlocks = new ArrayList<Block>(this.childrenBlocks.size());
-            for (Block childBlock : this.childrenBlocks) {
+        if (this.content != null && this.content.childrenBlocks != null) {
+            abstractBlock.getContent().childrenBlocks = new ArrayList<Block>(this.content.childrenBlocks.size());
+            for (Block childBlock : this.content.childrenBlocks) {
                 if (blockFilter != null) {
                     Block clonedChildBlocks = childBlock.clone(blockFilter);
 
@@ -25,6 +25,7 @@
 import org.xwiki.rendering.listener.Listener;
 import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.stability.Unstable;
 
 /**
  * Contains the full tree of {@link Block} that represent a XWiki Document's content.
@@ -47,6 +48,11 @@ public class XDOM extends MetaDataBlock
      */
     private transient IdGenerator idGenerator;
 
+    /**
+     * The number of modifications of the tree of blocks, see {@link #getModificationCount()}.
+     */
+    private transient long modificationCount;
+
     /**
      * @param childBlocks the list of children blocks of the block to construct
      * @see AbstractBlock#AbstractBlock(List)
@@ -104,6 +110,28 @@ public void setIdGenerator(IdGenerator idGenerator)
         this.idGenerator = idGenerator;
     }
 
+    /**
+     * The modification count is incremented each time a block is added, removed or replaced anywhere in the document
+     * through the {@link AbstractBlock} API, which makes it a cheap way to know if the document changed without
+     * walking it. Modifications made directly on the lists returned by {@link Block#getChildren()} are not counted.
+     *
+     * @return the number of modifications of the tree of blocks of the document
+     * @since 10.9RC1
+     */
+    @Unstable
+    public long getModificationCount()
+    {
+        return this.modificationCount;
+    }
+
+    /**
+     * Called when a block is added, removed or replaced in the document.
+     */
+    void incrementModificationCount()
+    {
+        ++this.modificationCount;
+    }
+
     @Override
     public void before(Listener listener)
     {
@@ -0,0 +1,283 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.rendering.internal.parser.XDOMGeneratorListener;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.util.IdGenerator;
+import org.xwiki.stability.Unstable;
+
+/**
+ * An immutable and compact representation of a {@link XDOM}, meant to be kept in memory (in a cache for example)
+ * instead of the {@link Block} tree.
+ * <p>
+ * The snapshot stores the events produced by {@link XDOM#traverse(org.xwiki.rendering.listener.Listener)} in
+ * parallel arrays: the type of each event, the position of its parameters in a shared parameters table (in which
+ * equal strings and parameters maps are stored only once) and, for each begin event, the position of the matching end
+ * event. The events located between a begin event and its end are the content of the corresponding block, the first
+ * child of a begin event at position {@code i} is thus at position {@code i + 1} and its next sibling at position
+ * {@code getEnd(i) + 1}.
+ * <p>
+ * Replaying the snapshot is a linear walk of these arrays and a new mutable {@link XDOM} can be produced with
+ * {@link #toXDOM()} when the content needs to be modified (by transformations for example).
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public final class XDOMSnapshot
+{
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    private static final String BEGIN_PREFIX = "BEGIN_";
+
+    private static final String END_PREFIX = "END_";
+
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
+    /**
+     * The {@link EventType#ordinal()} of each event.
+     */
+    private final byte[] types;
+
+    /**
+     * The position in {@link #parameters} of the first parameter of each event, with an extra element to indicate the
+     * end of the parameters of the last event.
+     */
+    private final int[] parameterIndexes;
+
+    /**
+     * The position of the matching end event for the begin events and the position of the event itself for the others.
+     */
+    private final int[] ends;
+
+    /**
+     * The parameters of all the events.
+     */
+    private final Object[] parameters;
+
+    private final IdGenerator idGenerator;
+
+    /**
+     * @param xdom the {@link XDOM} to take a snapshot of
+     */
+    public XDOMSnapshot(XDOM xdom)
+    {
+        QueueListener queue = new QueueListener();
+        xdom.traverse(queue);
+
+        int size = queue.size();
+        this.types = new byte[size];
+        this.parameterIndexes = new int[size + 1];
+        this.ends = new int[size];
+
+        List<Object> packedParameters = new ArrayList<>();
+        Map<Object, Object> internedValues = new HashMap<>();
+        Deque<Integer> beginEvents = new ArrayDeque<>();
+
+        int index = 0;
+        for (QueueListener.Event event : queue) {
+            this.types[index] = (byte) event.eventType.ordinal();
+            this.parameterIndexes[index] = packedParameters.size();
+            for (Object parameter : event.eventParameters) {
+                packedParameters.add(freeze(parameter, internedValues));
+            }
+
+            this.ends[index] = index;
+            String name = event.eventType.name();
+            if (name.startsWith(BEGIN_PREFIX)) {
+                beginEvents.push(index);
+            } else if (name.startsWith(END_PREFIX)) {
+                this.ends[beginEvents.pop()] = index;
+            }
+
+            ++index;
+        }
+        this.parameterIndexes[size] = packedParameters.size();
+
+        this.parameters = packedParameters.toArray();
+        this.idGenerator = xdom.getIdGenerator() != null ? new IdGenerator(xdom.getIdGenerator()) : null;
+    }
+
+    /**
+     * @return the number of events in the snapshot
+     */
+    public int size()
+    {
+        return this.types.length;
+    }
+
+    /**
+     * @param index the position of the event
+     * @return the type of the event
+     */
+    public EventType getEventType(int index)
+    {
+        return EVENT_TYPES[this.types[index]];
+    }
+
+    /**
+     * @param index the position of the event
+     * @return the parameters of the event
+     */
+    public Object[] getEventParameters(int index)
+    {
+        return getEventParameters(index, false);
+    }
+
+    /**
+     * @param index the position of the event
+     * @return the position of the end event matching the passed begin event, the passed position for other events
+     */
+    public int getEnd(int index)
+    {
+        return this.ends[index];
+    }
+
+    /**
+     * Send the events of the snapshot to the passed listener, the same way {@link XDOM#traverse(Listener)} would.
+     * <p>
+     * The parameters passed to the listener are shared by all the traversals and should not be modified.
+     *
+     * @param listener the listener to send the events to
+     */
+    public void traverse(Listener listener)
+    {
+        traverse(0, size(), listener, false);
+    }
+
+    /**
+     * Send the events of the block starting at the passed position (that is the event, its matching end event and all
+     * the events in between) to the passed listener.
+     *
+     * @param index the position of the first event of the block
+     * @param listener the listener to send the events to
+     */
+    public void traverse(int index, Listener listener)
+    {
+        traverse(index, this.ends[index] + 1, listener, false);
+    }
+
+    /**
+     * @return a new mutable {@link XDOM} equivalent to the one the snapshot was taken of
+     */
+    public XDOM toXDOM()
+    {
+        XDOMGeneratorListener generator = new XDOMGeneratorListener();
+        traverse(0, size(), generator, true);
+
+        XDOM xdom = generator.getXDOM();
+        if (this.idGenerator != null) {
+            xdom.setIdGenerator(new IdGenerator(this.idGenerator));
+        }
+
+        return xdom;
+    }
+
+    private void traverse(int start, int end, Listener listener, boolean copy)
+    {
+        for (int index = start; index < end; ++index) {
+            EVENT_TYPES[this.types[index]].fireEvent(listener, getEventParameters(index, copy));
+        }
+    }
+
+    private Object[] getEventParameters(int index, boolean copy)
+    {
+        int start = this.parameterIndexes[index];
+        int end = this.parameterIndexes[index + 1];
+
+        if (start == end) {
+            return NO_PARAMETERS;
+        }
+
+        Object[] eventParameters = Arrays.copyOfRange(this.parameters, start, end);
+        if (copy) {
+            // Don't let the created blocks modify the snapshot
+            for (int i = 0; i < eventParameters.length; ++i) {
+                eventParameters[i] = copy(eventParameters[i]);
+            }
+        }
+
+        return eventParameters;
+    }
+
+    private static Object copy(Object value)
+    {
+        if (value instanceof MetaData) {
+            return new MetaData(((MetaData) value).getMetaData());
+        } else if (value instanceof ResourceReference) {
+            return ((ResourceReference) value).clone();
+        }
+
+        return value;
+    }
+
+    private static Object freeze(Object value, Map<Object, Object> internedValues)
+    {
+        if (value instanceof String) {
+            return intern(value, value, internedValues);
+        } else if (value instanceof Map) {
+            return freeze((Map<?, ?>) value, internedValues);
+        }
+
+        return copy(value);
+    }
+
+    private static Object freeze(Map<?, ?> map, Map<Object, Object> internedValues)
+    {
+        if (map.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<Object, Object> frozenMap = new LinkedHashMap<>(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            frozenMap.put(freeze(entry.getKey(), internedValues), freeze(entry.getValue(), internedValues));
+        }
+
+        // Unlike the map itself, the list of entries takes the order into account
+        return intern(new ArrayList<>(frozenMap.entrySet()), Collections.unmodifiableMap(frozenMap), internedValues);
+    }
+
+    private static Object intern(Object key, Object value, Map<Object, Object> internedValues)
+    {
+        Object internedValue = internedValues.get(key);
+
+        if (internedValue == null) {
+            internedValue = value;
+            internedValues.put(key, internedValue);
+        }
+
+        return internedValue;
+    }
+}
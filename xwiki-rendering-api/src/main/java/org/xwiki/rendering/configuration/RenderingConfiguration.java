@@ -23,6 +23,7 @@
 import java.util.Properties;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Configuration properties for the Rendering module.
@@ -70,4 +71,26 @@
      * @since 3.3M1
      */
     List<String> getTransformationNames();
+
+    /**
+     * @return the number of threads used by {@link org.xwiki.rendering.converter.BatchConverter} to convert documents
+     *         in parallel when no executor is provided, by default the number of available processors
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getBatchConversionThreads()
+    {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the time (in ms) above which the execution of a transformation is logged as a warning, 0 or less to
+     *         never log it
+     * @since 10.9RC1
+     */
+    @Unstable
+    default long getSlowTransformationThreshold()
+    {
+        return 10000L;
+    }
 }
@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import java.util.Iterator;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * The results of a conversion started with {@link BatchConverter}.
+ * <p>
+ * Documents are only read from the inputs when needed to keep the configured number of conversions running, so that
+ * iterating over the results drives the whole conversion. {@link #next()} blocks until the next result is available.
+ * The results are meant to be consumed by a single thread.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public interface BatchConversion extends Iterator<ConversionResult>, AutoCloseable
+{
+    /**
+     * @return the number of documents successfully converted so far
+     */
+    long getSucceeded();
+
+    /**
+     * @return the number of documents which failed to be converted so far
+     */
+    long getFailed();
+
+    /**
+     * @return the time elapsed since the beginning of the conversion, in milliseconds
+     */
+    long getElapsedTime();
+
+    /**
+     * @return the total time spent converting documents so far by all the threads, in milliseconds
+     */
+    long getConversionTime();
+
+    /**
+     * @return the number of documents converted (successfully or not) per second since the beginning of the
+     *         conversion
+     */
+    double getThroughput();
+
+    /**
+     * Cancel the conversions which have not been consumed yet and stop reading the inputs.
+     */
+    @Override
+    void close();
+}
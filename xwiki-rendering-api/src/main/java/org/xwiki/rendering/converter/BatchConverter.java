@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Convert many documents from a Syntax to another in parallel.
+ * <p>
+ * Each document is converted with {@link Converter} (and thus executes all registered Transformations) in its own
+ * execution context, so that each conversion has its own rendering context. The failure of a conversion does not stop
+ * the other ones: it's reported in the {@link ConversionResult} of the document.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Role
+@Unstable
+public interface BatchConverter
+{
+    /**
+     * Converts the documents using a thread pool sized with
+     * {@link org.xwiki.rendering.configuration.RenderingConfiguration#getBatchConversionThreads()}.
+     *
+     * @param inputs the documents to convert, only read when needed
+     * @param sourceSyntax the Syntax in which the documents are represented
+     * @param targetSyntax the Syntax to which to convert to
+     * @param ordered true if the results should be returned in the same order as the inputs, false to return them as
+     *            soon as they are available
+     * @return the results of the conversions
+     */
+    BatchConversion convert(Iterator<ConversionInput> inputs, Syntax sourceSyntax, Syntax targetSyntax,
+        boolean ordered);
+
+    /**
+     * Converts the documents using the passed executor (a {@link java.util.concurrent.ForkJoinPool}, an executor
+     * creating a thread per task, etc.).
+     *
+     * @param inputs the documents to convert, only read when needed
+     * @param sourceSyntax the Syntax in which the documents are represented
+     * @param targetSyntax the Syntax to which to convert to
+     * @param ordered true if the results should be returned in the same order as the inputs, false to return them as
+     *            soon as they are available
+     * @param executor the executor running the conversions, not shut down by the conversion
+     * @param maxPendingConversions the maximum number of documents being converted or waiting to be consumed at the
+     *            same time, which bounds the memory used by the conversion
+     * @return the results of the conversions
+     */
+    BatchConversion convert(Iterator<ConversionInput> inputs, Syntax sourceSyntax, Syntax targetSyntax,
+        boolean ordered, ExecutorService executor, int maxPendingConversions);
+}
@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import java.io.Reader;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * A document to convert with a {@link BatchConverter}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public class ConversionInput
+{
+    private final String id;
+
+    private final Reader source;
+
+    /**
+     * @param id the identifier of the document, used to match the {@link ConversionResult}
+     * @param source the content to convert, closed once converted
+     */
+    public ConversionInput(String id, Reader source)
+    {
+        this.id = id;
+        this.source = source;
+    }
+
+    /**
+     * @return the identifier of the document
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the content to convert
+     */
+    public Reader getSource()
+    {
+        return this.source;
+    }
+}
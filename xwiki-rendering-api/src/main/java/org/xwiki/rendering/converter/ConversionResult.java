@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * The result of the conversion of a document by a {@link BatchConverter}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public class ConversionResult
+{
+    private final String id;
+
+    private final String content;
+
+    private final ConversionException error;
+
+    /**
+     * @param id the identifier of the converted document
+     * @param content the converted content
+     */
+    public ConversionResult(String id, String content)
+    {
+        this(id, content, null);
+    }
+
+    /**
+     * @param id the identifier of the document which failed to be converted
+     * @param error the reason of the failure
+     */
+    public ConversionResult(String id, ConversionException error)
+    {
+        this(id, null, error);
+    }
+
+    private ConversionResult(String id, String content, ConversionException error)
+    {
+        this.id = id;
+        this.content = content;
+        this.error = error;
+    }
+
+    /**
+     * @return the identifier of the document, as provided by {@link ConversionInput#getId()}
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the converted content, {@code null} if the conversion failed
+     */
+    public String getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return the reason of the failure, {@code null} if the conversion succeeded
+     */
+    public ConversionException getError()
+    {
+        return this.error;
+    }
+
+    /**
+     * @return true if the document has been converted
+     */
+    public boolean isSuccessful()
+    {
+        return this.error == null;
+    }
+}
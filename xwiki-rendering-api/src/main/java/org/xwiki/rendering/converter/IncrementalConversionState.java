@@ -0,0 +1,44 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * What {@link IncrementalConverter} remembers from the previous conversion of a document to be able to reuse the
+ * sections which did not change. A state is meant to be used for a single document (and kept with it, in a cache for
+ * example) and is not thread safe.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public interface IncrementalConversionState
+{
+    /**
+     * @return the number of top level sections of the document during the last conversion
+     */
+    int getSectionCount();
+
+    /**
+     * @return the number of top level sections which have been reused as is during the last conversion
+     */
+    int getReusedSectionCount();
+}
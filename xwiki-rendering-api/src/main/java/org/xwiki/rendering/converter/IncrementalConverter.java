@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.converter;
+
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Convert again a document which has already been converted, only transforming and rendering the top level sections
+ * which changed since the previous conversion.
+ * <p>
+ * The new content is always parsed entirely, then its top level sections (and the blocks located before the first
+ * section) are compared with the ones of the previous conversion. The result of the transformation and the rendering of
+ * the sections which are identical are reused, the other ones are transformed and rendered. Sections containing
+ * macros whose result depends on the whole document (see {@link #DOCUMENT_MACROS}) are always transformed and
+ * rendered again, after the other sections.
+ * <p>
+ * The result of a macro can depend on more than its parameters and content (a macro including another document,
+ * executing a script, or a macro component replaced since the previous conversion for example) so a section is reused
+ * only if all the macros it contains, including the ones generated by the execution of other macros, are listed in the
+ * reusable macros (see {@link #REUSABLE_MACROS}). Other sections are always transformed and rendered again, even when
+ * their content did not change.
+ * <p>
+ * Each section is rendered on its own so the target syntax must be one in which the rendering of consecutive blocks
+ * is the concatenation of their renderings, like XHTML.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Role
+@Unstable
+public interface IncrementalConverter
+{
+    /**
+     * The identifiers of the macros whose result depends on the whole document by default.
+     */
+    Set<String> DOCUMENT_MACROS =
+        Collections.unmodifiableSet(new HashSet<>(Arrays.asList("toc", "footnote", "putFootnotes")));
+
+    /**
+     * The identifiers of the macros whose result only depends on their parameters and content by default.
+     */
+    Set<String> REUSABLE_MACROS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("comment", "id", "box",
+        "info", "warning", "error", "success", "figure", "figureCaption", "quote")));
+
+    /**
+     * @return a new state, for the first conversion of a document, considering the macros listed in
+     *         {@link #DOCUMENT_MACROS} as depending on the whole document and the ones listed in
+     *         {@link #REUSABLE_MACROS} as reusable
+     */
+    IncrementalConversionState createState();
+
+    /**
+     * @param documentMacros the identifiers of the macros whose result depends on the whole document
+     * @return a new state, for the first conversion of a document, considering the macros listed in
+     *         {@link #REUSABLE_MACROS} as reusable
+     */
+    IncrementalConversionState createState(Collection<String> documentMacros);
+
+    /**
+     * @param documentMacros the identifiers of the macros whose result depends on the whole document
+     * @param reusableMacros the identifiers of the macros whose result only depends on their parameters and content,
+     *            a section containing any other macro is never reused
+     * @return a new state, for the first conversion of a document
+     */
+    IncrementalConversionState createState(Collection<String> documentMacros, Collection<String> reusableMacros);
+
+    /**
+     * Converts content from a Syntax to another and execute all registered Transformations on the sections of the
+     * parsed content which changed since the previous conversion.
+     *
+     * @param source the content to be converted
+     * @param sourceSyntax the Syntax in which the content is represented
+     * @param targetSyntax the Syntax to which to convert to
+     * @param state the state of the previous conversion of the same document, updated with this conversion
+     * @param printer the printer that will receive the result of the conversion
+     * @throws ConversionException in case of a conversion error (invalid Syntax, etc)
+     */
+    void convert(Reader source, Syntax sourceSyntax, Syntax targetSyntax, IncrementalConversionState state,
+        WikiPrinter printer) throws ConversionException;
+}
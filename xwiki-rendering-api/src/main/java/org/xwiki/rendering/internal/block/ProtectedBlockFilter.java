@@ -100,8 +100,9 @@ public <T extends Block> List<T> getChildrenByType(Block block, Class<T> blockCl
     /**
      * @param block the block to test
      * @return true if the passed block is a protected block or false otherwise
+     * @since 10.9RC1
      */
-    private boolean isProtectedBlock(Block block)
+    public boolean isProtectedBlock(Block block)
     {
         return (block instanceof MacroMarkerBlock)
             && "code".equals(((MacroMarkerBlock) block).getId());
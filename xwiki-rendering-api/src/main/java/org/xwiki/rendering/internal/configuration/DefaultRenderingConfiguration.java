@@ -74,6 +74,16 @@ public class DefaultRenderingConfiguration implements RenderingConfiguration, In
      */
     private Properties interWikiDefinitions = new Properties();
 
+    /**
+     * @see #getBatchConversionThreads()
+     */
+    private int batchConversionThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @see #getSlowTransformationThreshold()
+     */
+    private Long slowTransformationThreshold;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -131,4 +141,36 @@ public List<String> getTransformationNames()
     {
         return this.transformationNames;
     }
+
+    @Override
+    public int getBatchConversionThreads()
+    {
+        return this.batchConversionThreads;
+    }
+
+    /**
+     * @param batchConversionThreads the number of threads used to convert documents in parallel
+     * @since 10.9RC1
+     */
+    public void setBatchConversionThreads(int batchConversionThreads)
+    {
+        this.batchConversionThreads = batchConversionThreads;
+    }
+
+    @Override
+    public long getSlowTransformationThreshold()
+    {
+        return this.slowTransformationThreshold != null ? this.slowTransformationThreshold
+            : RenderingConfiguration.super.getSlowTransformationThreshold();
+    }
+
+    /**
+     * @param slowTransformationThreshold the time (in ms) above which the execution of a transformation is logged as
+     *            a warning, 0 or less to never log it
+     * @since 10.9RC1
+     */
+    public void setSlowTransformationThreshold(long slowTransformationThreshold)
+    {
+        this.slowTransformationThreshold = slowTransformationThreshold;
+    }
 }
@@ -0,0 +1,210 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.rendering.converter.BatchConversion;
+import org.xwiki.rendering.converter.ConversionInput;
+import org.xwiki.rendering.converter.ConversionResult;
+
+/**
+ * Submit the conversion of the inputs to an executor, keeping at most a fixed number of pending conversions.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public abstract class AbstractBatchConversion implements BatchConversion
+{
+    private final Iterator<ConversionInput> inputs;
+
+    private final boolean ordered;
+
+    private final ExecutorService executor;
+
+    private final CompletionService<ConversionResult> completionService;
+
+    private final int maxPendingConversions;
+
+    /**
+     * The conversions submitted and not yet consumed, in submission order.
+     */
+    private final Set<Future<ConversionResult>> pending = new LinkedHashSet<>();
+
+    private final long startTime = System.nanoTime();
+
+    private final AtomicLong succeeded = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong conversionTime = new AtomicLong();
+
+    private boolean closed;
+
+    /**
+     * @param inputs the documents to convert
+     * @param ordered true if the results should be returned in the same order as the inputs
+     * @param executor the executor running the conversions
+     * @param maxPendingConversions the maximum number of conversions submitted and not yet consumed
+     */
+    public AbstractBatchConversion(Iterator<ConversionInput> inputs, boolean ordered, ExecutorService executor,
+        int maxPendingConversions)
+    {
+        if (maxPendingConversions <= 0) {
+            throw new IllegalArgumentException("The maximum number of pending conversions must be positive");
+        }
+
+        this.inputs = inputs;
+        this.ordered = ordered;
+        this.executor = executor;
+        this.completionService = ordered ? null : new ExecutorCompletionService<ConversionResult>(executor);
+        this.maxPendingConversions = maxPendingConversions;
+    }
+
+    /**
+     * Convert a document. Called from the threads of the executor.
+     *
+     * @param input the document to convert
+     * @return the result of the conversion, failures included (this method is not expected to throw any exception)
+     */
+    protected abstract ConversionResult convert(ConversionInput input);
+
+    @Override
+    public boolean hasNext()
+    {
+        submit();
+
+        return !this.pending.isEmpty();
+    }
+
+    @Override
+    public ConversionResult next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Future<ConversionResult> future;
+        ConversionResult result;
+        try {
+            future = this.ordered ? this.pending.iterator().next() : this.completionService.take();
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a conversion", e);
+        } catch (ExecutionException e) {
+            // Should never happen since conversions report their failures in the result
+            throw new IllegalStateException("Unexpected conversion failure", e.getCause());
+        }
+        this.pending.remove(future);
+
+        // Keep the executor busy while the result is being consumed
+        submit();
+
+        return result;
+    }
+
+    private void submit()
+    {
+        while (!this.closed && this.pending.size() < this.maxPendingConversions && this.inputs.hasNext()) {
+            final ConversionInput input = this.inputs.next();
+            Callable<ConversionResult> task = new Callable<ConversionResult>()
+            {
+                @Override
+                public ConversionResult call()
+                {
+                    return measure(input);
+                }
+            };
+
+            this.pending.add(this.ordered ? this.executor.submit(task) : this.completionService.submit(task));
+        }
+    }
+
+    private ConversionResult measure(ConversionInput input)
+    {
+        long start = System.nanoTime();
+
+        ConversionResult result = convert(input);
+
+        this.conversionTime.addAndGet(System.nanoTime() - start);
+        if (result.isSuccessful()) {
+            this.succeeded.incrementAndGet();
+        } else {
+            this.failed.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    @Override
+    public long getSucceeded()
+    {
+        return this.succeeded.get();
+    }
+
+    @Override
+    public long getFailed()
+    {
+        return this.failed.get();
+    }
+
+    @Override
+    public long getElapsedTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startTime);
+    }
+
+    @Override
+    public long getConversionTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.conversionTime.get());
+    }
+
+    @Override
+    public double getThroughput()
+    {
+        long elapsed = System.nanoTime() - this.startTime;
+
+        return elapsed > 0 ? (getSucceeded() + getFailed()) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+    }
+
+    @Override
+    public void close()
+    {
+        this.closed = true;
+
+        for (Future<ConversionResult> future : this.pending) {
+            future.cancel(true);
+        }
+        this.pending.clear();
+    }
+}
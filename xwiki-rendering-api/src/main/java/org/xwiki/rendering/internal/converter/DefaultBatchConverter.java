@@ -0,0 +1,179 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.rendering.configuration.RenderingConfiguration;
+import org.xwiki.rendering.converter.BatchConversion;
+import org.xwiki.rendering.converter.BatchConverter;
+import org.xwiki.rendering.converter.ConversionException;
+import org.xwiki.rendering.converter.ConversionInput;
+import org.xwiki.rendering.converter.ConversionResult;
+import org.xwiki.rendering.converter.Converter;
+import org.xwiki.rendering.renderer.printer.ChunkedWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Default implementation for {@link BatchConverter}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Component
+@Singleton
+public class DefaultBatchConverter implements BatchConverter, Disposable
+{
+    /**
+     * Used to convert each document.
+     */
+    @Inject
+    private Converter converter;
+
+    /**
+     * Used to give each conversion its own execution context.
+     */
+    @Inject
+    private Execution execution;
+
+    /**
+     * Used to initialize the execution context of each conversion.
+     */
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    /**
+     * Used to get the size of the thread pool.
+     */
+    @Inject
+    private RenderingConfiguration configuration;
+
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
+    private volatile ExecutorService executor;
+
+    private int threads;
+
+    @Override
+    public BatchConversion convert(Iterator<ConversionInput> inputs, Syntax sourceSyntax, Syntax targetSyntax,
+        boolean ordered)
+    {
+        ExecutorService executorService = getExecutor();
+
+        // Have a result ready for each thread while the previous ones are consumed
+        return convert(inputs, sourceSyntax, targetSyntax, ordered, executorService, this.threads * 2);
+    }
+
+    @Override
+    public BatchConversion convert(Iterator<ConversionInput> inputs, final Syntax sourceSyntax,
+        final Syntax targetSyntax, boolean ordered, ExecutorService executorService, int maxPendingConversions)
+    {
+        final ExecutionContext parentExecutionContext = this.execution.getContext();
+
+        return new AbstractBatchConversion(inputs, ordered, executorService, maxPendingConversions)
+        {
+            @Override
+            protected ConversionResult convert(ConversionInput input)
+            {
+                return DefaultBatchConverter.this.convert(input, sourceSyntax, targetSyntax, parentExecutionContext);
+            }
+        };
+    }
+
+    private ConversionResult convert(ConversionInput input, Syntax sourceSyntax, Syntax targetSyntax,
+        ExecutionContext parentExecutionContext)
+    {
+        // Each document is converted with its own rendering context. The context is pushed on top of the one the
+        // thread might already have (when using an executor shared with other tasks) so that it can be restored.
+        ExecutionContext executionContext = new ExecutionContext();
+        if (parentExecutionContext != null) {
+            executionContext.inheritFrom(parentExecutionContext);
+        }
+        this.execution.pushContext(executionContext);
+
+        try {
+            this.executionContextManager.initialize(executionContext);
+
+            ChunkedWikiPrinter printer = new ChunkedWikiPrinter();
+            this.converter.convert(input.getSource(), sourceSyntax, targetSyntax, printer);
+
+            return new ConversionResult(input.getId(), printer.toString());
+        } catch (ConversionException e) {
+            return new ConversionResult(input.getId(), e);
+        } catch (Exception e) {
+            return new ConversionResult(input.getId(),
+                new ConversionException(String.format("Failed to convert document [%s]", input.getId()), e));
+        } finally {
+            closeSource(input);
+            this.execution.popContext();
+        }
+    }
+
+    private void closeSource(ConversionInput input)
+    {
+        try {
+            input.getSource().close();
+        } catch (IOException e) {
+            this.logger.warn("Failed to close the source of document [{}]", input.getId(), e);
+        }
+    }
+
+    private ExecutorService getExecutor()
+    {
+        if (this.executor == null) {
+            synchronized (this) {
+                if (this.executor == null) {
+                    this.threads = Math.max(1, this.configuration.getBatchConversionThreads());
+                    BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                        .namingPattern("XWiki Rendering Batch Conversion Thread %d").daemon(true).build();
+                    this.executor = Executors.newFixedThreadPool(this.threads, threadFactory);
+                }
+            }
+        }
+
+        return this.executor;
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+}
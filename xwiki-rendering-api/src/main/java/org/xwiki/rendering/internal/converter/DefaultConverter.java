@@ -19,22 +19,32 @@
  */
 package org.xwiki.rendering.internal.converter;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.configuration.RenderingConfiguration;
 import org.xwiki.rendering.converter.ConversionException;
 import org.xwiki.rendering.converter.Converter;
 import org.xwiki.rendering.parser.ParseException;
 import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.StreamParser;
 import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
 import org.xwiki.rendering.renderer.printer.WikiPrinter;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.transformation.TransformationContext;
@@ -43,6 +53,13 @@
 
 /**
  * Default implementation for {@link Converter}.
+ * <p>
+ * When no transformation is configured there is no need to build a XDOM: the source is then parsed with the
+ * {@link StreamParser} of the source syntax directly into the {@link PrintRenderer} of the target syntax, so that the
+ * memory used does not depend on the size of the content. When the only configured transformation is the macro
+ * transformation (the default configuration) the decision is taken for each document: the source is streamed into a
+ * buffer and the conversion switches to the XDOM path at the first macro. Otherwise (or when the syntaxes don't provide
+ * a stream parser or a print renderer) the content is parsed into a XDOM, transformed and then rendered.
  *
  * @version $Id$
  */
@@ -50,6 +67,16 @@
 @Singleton
 public class DefaultConverter implements Converter
 {
+    /**
+     * The name of the transformation executing the macros, which has nothing to do when the content has no macro.
+     */
+    private static final String MACRO_TRANSFORMATION = "macro";
+
+    /**
+     * The size of the buffer used to read the source.
+     */
+    private static final int READ_BUFFER_SIZE = 4096;
+
     /**
      * Used to lookup parser and renderer.
      */
@@ -63,9 +90,157 @@ public class DefaultConverter implements Converter
     @Inject
     private TransformationManager transformationManager;
 
+    /**
+     * Used to know if some transformations need to be executed.
+     */
+    @Inject
+    private RenderingConfiguration configuration;
+
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
     @Override
     public void convert(Reader source, Syntax sourceSyntax, Syntax targetSyntax, WikiPrinter printer)
         throws ConversionException
+    {
+        List<String> transformationNames = this.configuration.getTransformationNames();
+
+        if (!isMacroTransformationOnly(transformationNames) || !canStream(sourceSyntax, targetSyntax)) {
+            convertXDOM(source, sourceSyntax, targetSyntax, printer);
+        } else if (transformationNames.isEmpty()) {
+            convertStream(source, sourceSyntax, targetSyntax, printer);
+        } else {
+            convertStreamWithoutMacro(source, sourceSyntax, targetSyntax, printer);
+        }
+    }
+
+    private boolean isMacroTransformationOnly(List<String> transformationNames)
+    {
+        // Other transformations work on a XDOM
+        for (String transformationName : transformationNames) {
+            if (!MACRO_TRANSFORMATION.equals(transformationName)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean canStream(Syntax sourceSyntax, Syntax targetSyntax)
+    {
+        ComponentManager componentManager = this.componentManagerProvider.get();
+
+        return componentManager.hasComponent(StreamParser.class, sourceSyntax.toIdString())
+            && componentManager.hasComponent(PrintRendererFactory.class, targetSyntax.toIdString());
+    }
+
+    private void convertStream(Reader source, Syntax sourceSyntax, Syntax targetSyntax, WikiPrinter printer)
+        throws ConversionException
+    {
+        // Step 1: Find the parser
+        StreamParser parser = getStreamParser(sourceSyntax);
+
+        // Step 2: Locate the Renderer
+        PrintRenderer renderer = createPrintRenderer(targetSyntax, printer);
+
+        // Step 3: Parse the content directly in the renderer
+        try {
+            parser.parse(source, renderer);
+        } catch (ParseException e) {
+            throw new ConversionException("Failed to parse input source", e);
+        }
+
+        flush(renderer);
+    }
+
+    private void convertStreamWithoutMacro(Reader source, Syntax sourceSyntax, Syntax targetSyntax,
+        WikiPrinter printer) throws ConversionException
+    {
+        // Keep the source in case a macro is found and the content has to be parsed again in a XDOM
+        String content = read(source);
+
+        // Step 1: Find the parser
+        StreamParser parser = getStreamParser(sourceSyntax);
+
+        // Step 2: Locate the Renderer, the result is kept until we know the content has no macro
+        DefaultWikiPrinter buffer = new DefaultWikiPrinter();
+        PrintRenderer renderer = createPrintRenderer(targetSyntax, buffer);
+
+        // Step 3: Parse the content directly in the renderer, until the first macro
+        MacroDetectorListener listener = new MacroDetectorListener(renderer);
+        try {
+            parser.parse(new StringReader(content), listener);
+        } catch (ParseException e) {
+            if (!listener.isMacroFound()) {
+                throw new ConversionException("Failed to parse input source", e);
+            }
+        } catch (RuntimeException e) {
+            // The exception thrown at the first macro might have been wrapped by the parser
+            if (!listener.isMacroFound()) {
+                throw e;
+            }
+        }
+
+        if (listener.isMacroFound()) {
+            // The macros need a XDOM to be executed
+            convertXDOM(new StringReader(content), sourceSyntax, targetSyntax, printer);
+        } else {
+            flush(renderer);
+            printer.print(buffer.toString());
+        }
+    }
+
+    private String read(Reader source) throws ConversionException
+    {
+        StringBuilder content = new StringBuilder();
+        char[] chars = new char[READ_BUFFER_SIZE];
+        try {
+            for (int length = source.read(chars); length != -1; length = source.read(chars)) {
+                content.append(chars, 0, length);
+            }
+        } catch (IOException e) {
+            throw new ConversionException("Failed to read input source", e);
+        }
+
+        return content.toString();
+    }
+
+    private StreamParser getStreamParser(Syntax sourceSyntax) throws ConversionException
+    {
+        try {
+            return this.componentManagerProvider.get().getInstance(StreamParser.class, sourceSyntax.toIdString());
+        } catch (ComponentLookupException e) {
+            throw new ConversionException("Failed to locate Parser for syntax [" + sourceSyntax + "]", e);
+        }
+    }
+
+    private PrintRenderer createPrintRenderer(Syntax targetSyntax, WikiPrinter printer) throws ConversionException
+    {
+        try {
+            PrintRendererFactory factory = this.componentManagerProvider.get().getInstance(PrintRendererFactory.class,
+                targetSyntax.toIdString());
+            return factory.createRenderer(printer);
+        } catch (ComponentLookupException e) {
+            throw new ConversionException("Failed to locate Renderer for syntax [" + targetSyntax + "]", e);
+        }
+    }
+
+    private void flush(PrintRenderer renderer)
+    {
+        if (renderer instanceof Flushable) {
+            try {
+                ((Flushable) renderer).flush();
+            } catch (IOException e) {
+                this.logger.error("Failed to flush renderer [{}]", renderer, e);
+            }
+        }
+    }
+
+    private void convertXDOM(Reader source, Syntax sourceSyntax, Syntax targetSyntax, WikiPrinter printer)
+        throws ConversionException
     {
         // Step 1: Find the parser and generate a XDOM
         XDOM xdom;
@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.rendering.converter.IncrementalConversionState;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * The state kept by {@link DefaultIncrementalConverter} between two conversions of a document.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class DefaultIncrementalConversionState implements IncrementalConversionState
+{
+    private final Set<String> documentMacros;
+
+    private final Set<String> reusableMacros;
+
+    private Syntax sourceSyntax;
+
+    private Syntax targetSyntax;
+
+    private List<IncrementalSection> sections = Collections.emptyList();
+
+    private int reusedSectionCount;
+
+    /**
+     * @param documentMacros the identifiers of the macros whose result depends on the whole document
+     * @param reusableMacros the identifiers of the macros whose result only depends on their parameters and content
+     */
+    public DefaultIncrementalConversionState(Collection<String> documentMacros, Collection<String> reusableMacros)
+    {
+        this.documentMacros = new HashSet<>(documentMacros);
+        this.reusableMacros = new HashSet<>(reusableMacros);
+    }
+
+    /**
+     * @return the identifiers of the macros whose result depends on the whole document
+     */
+    public Set<String> getDocumentMacros()
+    {
+        return this.documentMacros;
+    }
+
+    /**
+     * @return the identifiers of the macros whose result only depends on their parameters and content
+     */
+    public Set<String> getReusableMacros()
+    {
+        return this.reusableMacros;
+    }
+
+    /**
+     * @param newSourceSyntax the source syntax of the new conversion
+     * @param newTargetSyntax the target syntax of the new conversion
+     * @return the sections of the previous conversion indexed by hash, empty if the syntaxes changed
+     */
+    public Map<Integer, List<IncrementalSection>> getReusableSections(Syntax newSourceSyntax, Syntax newTargetSyntax)
+    {
+        Map<Integer, List<IncrementalSection>> index = new HashMap<>();
+
+        if (newSourceSyntax.equals(this.sourceSyntax) && newTargetSyntax.equals(this.targetSyntax)) {
+            for (IncrementalSection section : this.sections) {
+                List<IncrementalSection> sameHash = index.get(section.getEventsHash());
+                if (sameHash == null) {
+                    sameHash = new ArrayList<>(1);
+                    index.put(section.getEventsHash(), sameHash);
+                }
+                sameHash.add(section);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Remember a new conversion.
+     *
+     * @param newSourceSyntax the source syntax of the conversion
+     * @param newTargetSyntax the target syntax of the conversion
+     * @param newSections the sections of the conversion
+     * @param reused the number of sections reused from the previous conversion
+     */
+    public void update(Syntax newSourceSyntax, Syntax newTargetSyntax, List<IncrementalSection> newSections,
+        int reused)
+    {
+        this.sourceSyntax = newSourceSyntax;
+        this.targetSyntax = newTargetSyntax;
+        this.sections = newSections;
+        this.reusedSectionCount = reused;
+    }
+
+    @Override
+    public int getSectionCount()
+    {
+        return this.sections.size();
+    }
+
+    @Override
+    public int getReusedSectionCount()
+    {
+        return this.reusedSectionCount;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.MacroMarkerBlock;
+import org.xwiki.rendering.block.SectionBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.converter.ConversionException;
+import org.xwiki.rendering.converter.IncrementalConversionState;
+import org.xwiki.rendering.converter.IncrementalConverter;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationException;
+import org.xwiki.rendering.transformation.TransformationManager;
+
+/**
+ * Default implementation for {@link IncrementalConverter}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Component
+@Singleton
+public class DefaultIncrementalConverter implements IncrementalConverter
+{
+    /**
+     * Used to lookup parser and renderer.
+     */
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    /**
+     * Used to execute transformations.
+     */
+    @Inject
+    private TransformationManager transformationManager;
+
+    @Override
+    public IncrementalConversionState createState()
+    {
+        return createState(DOCUMENT_MACROS);
+    }
+
+    @Override
+    public IncrementalConversionState createState(Collection<String> documentMacros)
+    {
+        return createState(documentMacros, REUSABLE_MACROS);
+    }
+
+    @Override
+    public IncrementalConversionState createState(Collection<String> documentMacros,
+        Collection<String> reusableMacros)
+    {
+        return new DefaultIncrementalConversionState(documentMacros, reusableMacros);
+    }
+
+    @Override
+    public void convert(Reader source, Syntax sourceSyntax, Syntax targetSyntax, IncrementalConversionState state,
+        WikiPrinter printer) throws ConversionException
+    {
+        DefaultIncrementalConversionState incrementalState = (DefaultIncrementalConversionState) state;
+
+        // Step 1: Find the parser and generate a XDOM
+        XDOM parsedXDOM;
+        try {
+            Parser parser = this.componentManagerProvider.get().getInstance(Parser.class, sourceSyntax.toIdString());
+            parsedXDOM = parser.parse(source);
+        } catch (ComponentLookupException e) {
+            throw new ConversionException("Failed to locate Parser for syntax [" + sourceSyntax + "]", e);
+        } catch (ParseException e) {
+            throw new ConversionException("Failed to parse input source", e);
+        }
+
+        BlockRenderer renderer;
+        try {
+            renderer = this.componentManagerProvider.get().getInstance(BlockRenderer.class, targetSyntax.toIdString());
+        } catch (ComponentLookupException e) {
+            throw new ConversionException("Failed to locate Renderer for syntax [" + targetSyntax + "]", e);
+        }
+
+        // Step 2: Replace the sections which did not change by the ones of the previous conversion
+        List<IncrementalSection> sections = split(parsedXDOM);
+        List<IncrementalSection> documentSections = new ArrayList<>();
+        int reused = reuse(sections, documentSections, incrementalState, sourceSyntax, targetSyntax);
+        List<Block> containers = new ArrayList<>(sections.size());
+        for (IncrementalSection section : sections) {
+            containers.add(section.getContainer());
+        }
+        XDOM xdom = new XDOM(containers, parsedXDOM.getIdGenerator(), parsedXDOM.getMetaData());
+
+        // Make sure the transformations of the new sections don't generate ids already used in the reused sections
+        for (IncrementalSection section : sections) {
+            if (section.getFragment() != null && !documentSections.contains(section)) {
+                for (String id : section.getIds()) {
+                    xdom.getIdGenerator().addId(id);
+                }
+            }
+        }
+
+        // Step 3: Run transformations on the new sections, the ones depending on the whole document being last
+        try {
+            transform(xdom, sections, documentSections, sourceSyntax, targetSyntax);
+        } catch (TransformationException e) {
+            throw new ConversionException("Failed to execute some transformations", e);
+        }
+
+        // Step 4: Render the new sections and print the previous rendering of the other ones
+        render(xdom, sections, documentSections, renderer, printer);
+
+        incrementalState.update(sourceSyntax, targetSyntax, sections, reused);
+    }
+
+    /**
+     * @param sections the sections of the new content, the ones which did not change are replaced by the ones of the
+     *            previous conversion
+     * @param documentSections filled with the sections containing macros depending on the whole document
+     * @return the number of reused sections
+     */
+    private int reuse(List<IncrementalSection> sections, List<IncrementalSection> documentSections,
+        DefaultIncrementalConversionState state, Syntax sourceSyntax, Syntax targetSyntax)
+    {
+        Map<Integer, List<IncrementalSection>> previousSections = state.getReusableSections(sourceSyntax, targetSyntax);
+        BlockMatcher documentMacroMatcher = new DocumentMacroMatcher(state.getDocumentMacros());
+        BlockMatcher unreusableMacroMatcher = new UnreusableMacroMatcher(state.getReusableMacros());
+
+        int reused = 0;
+        for (int i = 0; i < sections.size(); ++i) {
+            IncrementalSection section = sections.get(i);
+            if (containsMacro(section, documentMacroMatcher)) {
+                documentSections.add(section);
+            } else if (!containsMacro(section, unreusableMacroMatcher)) {
+                IncrementalSection previousSection =
+                    removeSameSection(previousSections, section, unreusableMacroMatcher);
+                if (previousSection != null) {
+                    sections.set(i, previousSection);
+                    ++reused;
+                }
+            }
+        }
+
+        return reused;
+    }
+
+    private void transform(XDOM xdom, List<IncrementalSection> sections, List<IncrementalSection> documentSections,
+        Syntax sourceSyntax, Syntax targetSyntax) throws TransformationException
+    {
+        TransformationContext context = new TransformationContext(xdom, sourceSyntax);
+        context.setTargetSyntax(targetSyntax);
+
+        for (IncrementalSection section : sections) {
+            if (section.getFragment() == null && !documentSections.contains(section)) {
+                this.transformationManager.performTransformations(section.getContainer(), context);
+            }
+        }
+        for (IncrementalSection section : documentSections) {
+            this.transformationManager.performTransformations(section.getContainer(), context);
+        }
+
+        // Transformations can add blocks at the end of the document (e.g. the footnotes)
+        Set<Block> containers = Collections.newSetFromMap(new IdentityHashMap<Block, Boolean>());
+        for (IncrementalSection section : sections) {
+            containers.add(section.getContainer());
+        }
+        for (Block block : new ArrayList<>(xdom.getChildren())) {
+            if (!containers.contains(block)) {
+                this.transformationManager.performTransformations(block, context);
+            }
+        }
+    }
+
+    private void render(XDOM xdom, List<IncrementalSection> sections, List<IncrementalSection> documentSections,
+        BlockRenderer renderer, WikiPrinter printer)
+    {
+        Map<Block, IncrementalSection> sectionsByContainer = new IdentityHashMap<>();
+        for (IncrementalSection section : sections) {
+            sectionsByContainer.put(section.getContainer(), section);
+        }
+
+        for (Block block : xdom.getChildren()) {
+            IncrementalSection section = sectionsByContainer.get(block);
+            if (section == null) {
+                renderer.render(block, printer);
+            } else {
+                if (section.getFragment() == null || documentSections.contains(section)) {
+                    DefaultWikiPrinter fragmentPrinter = new DefaultWikiPrinter();
+                    renderer.render(section.getBlocks(), fragmentPrinter);
+                    section.setFragment(fragmentPrinter.toString());
+                }
+                printer.print(section.getFragment());
+            }
+        }
+    }
+
+    /**
+     * @param xdom the parsed content
+     * @return the top level sections of the content, preceded by the blocks located before the first one
+     */
+    private List<IncrementalSection> split(XDOM xdom)
+    {
+        List<IncrementalSection> sections = new ArrayList<>();
+
+        List<Block> group = new ArrayList<>();
+        for (Block block : new ArrayList<>(xdom.getChildren())) {
+            if (block instanceof SectionBlock) {
+                if (!group.isEmpty()) {
+                    sections.add(new IncrementalSection(group, true));
+                    group = new ArrayList<>();
+                }
+                List<Block> blocks = new ArrayList<>(1);
+                blocks.add(block);
+                sections.add(new IncrementalSection(blocks, false));
+            } else {
+                group.add(block);
+            }
+        }
+        if (!group.isEmpty()) {
+            sections.add(new IncrementalSection(group, true));
+        }
+
+        return sections;
+    }
+
+    private IncrementalSection removeSameSection(Map<Integer, List<IncrementalSection>> index,
+        IncrementalSection section, BlockMatcher unreusableMacroMatcher)
+    {
+        List<IncrementalSection> sameHash = index.get(section.getEventsHash());
+        if (sameHash != null) {
+            for (Iterator<IncrementalSection> it = sameHash.iterator(); it.hasNext();) {
+                IncrementalSection previousSection = it.next();
+                // The transformed section also contains the macros generated by the execution of other macros
+                if (previousSection.hasSameContent(section)
+                    && !containsMacro(previousSection, unreusableMacroMatcher)) {
+                    it.remove();
+                    return previousSection;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private boolean containsMacro(IncrementalSection section, BlockMatcher macroMatcher)
+    {
+        return section.getContainer().getFirstBlock(macroMatcher, Block.Axes.DESCENDANT_OR_SELF) != null;
+    }
+
+    /**
+     * Match the macros whose result depends on the whole document.
+     */
+    private static final class DocumentMacroMatcher implements BlockMatcher
+    {
+        private final Set<String> macros;
+
+        DocumentMacroMatcher(Set<String> macros)
+        {
+            this.macros = macros;
+        }
+
+        @Override
+        public boolean match(Block block)
+        {
+            return block instanceof MacroBlock && this.macros.contains(((MacroBlock) block).getId());
+        }
+    }
+
+    /**
+     * Match the macros, executed or not, whose result might depend on more than their parameters and content.
+     */
+    private static final class UnreusableMacroMatcher implements BlockMatcher
+    {
+        private final Set<String> reusableMacros;
+
+        UnreusableMacroMatcher(Set<String> reusableMacros)
+        {
+            this.reusableMacros = reusableMacros;
+        }
+
+        @Override
+        public boolean match(Block block)
+        {
+            if (block instanceof MacroBlock) {
+                return !this.reusableMacros.contains(((MacroBlock) block).getId());
+            } else if (block instanceof MacroMarkerBlock) {
+                return !this.reusableMacros.contains(((MacroMarkerBlock) block).getId());
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.MetaDataBlock;
+import org.xwiki.rendering.block.match.AnyBlockMatcher;
+import org.xwiki.rendering.listener.QueueListener;
+
+/**
+ * A top level section of a document converted by {@link DefaultIncrementalConverter}, or the blocks located before the
+ * first section, with what's needed to know if it changed and to reuse its conversion.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class IncrementalSection
+{
+    /**
+     * The events of the parsed content of the section, used to compare it with the previous conversion.
+     */
+    private final QueueListener events = new QueueListener();
+
+    private final int eventsHash;
+
+    /**
+     * The top level block of the section in the XDOM: a section block or a meta data block grouping the blocks located
+     * before the first section.
+     */
+    private final Block container;
+
+    private final boolean group;
+
+    private String fragment;
+
+    private List<String> ids;
+
+    /**
+     * @param blocks the parsed blocks of the section, either a single section block or the blocks located before the
+     *            first section
+     * @param group true if the blocks are located before the first section
+     */
+    public IncrementalSection(List<Block> blocks, boolean group)
+    {
+        this.group = group;
+        this.container = group ? new MetaDataBlock(blocks) : blocks.get(0);
+        this.container.traverse(this.events);
+
+        int hash = 1;
+        for (QueueListener.Event event : this.events) {
+            hash = 31 * hash + event.eventType.hashCode();
+            hash = 31 * hash + Arrays.deepHashCode(event.eventParameters);
+        }
+        this.eventsHash = hash;
+    }
+
+    /**
+     * @return the top level block of the section in the XDOM
+     */
+    public Block getContainer()
+    {
+        return this.container;
+    }
+
+    /**
+     * @return the blocks to render
+     */
+    public List<Block> getBlocks()
+    {
+        return this.group ? this.container.getChildren() : Arrays.asList(this.container);
+    }
+
+    /**
+     * @return a hash of the parsed content of the section
+     */
+    public int getEventsHash()
+    {
+        return this.eventsHash;
+    }
+
+    /**
+     * @param section another section
+     * @return true if the parsed content of both sections is the same
+     */
+    public boolean hasSameContent(IncrementalSection section)
+    {
+        if (this.eventsHash != section.eventsHash || this.events.size() != section.events.size()) {
+            return false;
+        }
+
+        Iterator<QueueListener.Event> it = section.events.iterator();
+        for (QueueListener.Event event : this.events) {
+            QueueListener.Event otherEvent = it.next();
+            if (event.eventType != otherEvent.eventType
+                || !Arrays.deepEquals(event.eventParameters, otherEvent.eventParameters)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the ids (of headers or specified with an {@code id} parameter) found in the section, as they were when
+     *         the ids were first asked for, which is expected to be after the section was transformed
+     */
+    public List<String> getIds()
+    {
+        if (this.ids == null) {
+            List<String> sectionIds = new ArrayList<>();
+            for (Block block : this.container.getBlocks(AnyBlockMatcher.ANYBLOCKMATCHER,
+                Block.Axes.DESCENDANT_OR_SELF)) {
+                if (block instanceof HeaderBlock && ((HeaderBlock) block).getId() != null) {
+                    sectionIds.add(((HeaderBlock) block).getId());
+                }
+                String id = block.getParameter("id");
+                if (id != null) {
+                    sectionIds.add(id);
+                }
+            }
+            this.ids = sectionIds;
+        }
+
+        return this.ids;
+    }
+
+    /**
+     * @return the rendered section, {@code null} if it has not been rendered yet
+     */
+    public String getFragment()
+    {
+        return this.fragment;
+    }
+
+    /**
+     * @param fragment the rendered section
+     */
+    public void setFragment(String fragment)
+    {
+        this.fragment = fragment;
+    }
+}
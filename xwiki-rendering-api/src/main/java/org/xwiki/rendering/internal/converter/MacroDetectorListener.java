@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.util.Map;
+
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.WrappingListener;
+
+/**
+ * Forward the events to another listener until the first macro, at which point the parsing is stopped by throwing an
+ * exception.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+final class MacroDetectorListener extends WrappingListener
+{
+    /**
+     * Thrown to stop the parsing at the first macro.
+     */
+    private static final class MacroFoundException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        MacroFoundException()
+        {
+            // No need for a stack trace, the exception is only used to stop the parser
+            super(null, null, false, false);
+        }
+    }
+
+    private boolean macroFound;
+
+    /**
+     * @param listener the listener to forward the events to until the first macro
+     */
+    MacroDetectorListener(Listener listener)
+    {
+        setWrappedListener(listener);
+    }
+
+    /**
+     * @return true if a macro has been found
+     */
+    boolean isMacroFound()
+    {
+        return this.macroFound;
+    }
+
+    @Override
+    public void onMacro(String id, Map<String, String> parameters, String content, boolean inline)
+    {
+        this.macroFound = true;
+
+        // Make sure nothing else reaches the wrapped listener if the parser goes on
+        setWrappedListener(null);
+
+        throw new MacroFoundException();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.internal.block.ProtectedBlockFilter;
+import org.xwiki.rendering.transformation.AbstractTransformation;
+import org.xwiki.rendering.transformation.BlockTransformation;
+import org.xwiki.rendering.transformation.Transformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationException;
+
+/**
+ * Executes several {@link BlockTransformation}s in a single traversal of the tree. Each block is passed to the
+ * transformations interested in its type by priority order, and if a transformation replaces the block, the next
+ * transformations get the new block. The blocks created by a transformation (the replacing block and its descendants)
+ * are only passed to the transformations following it, as if the transformations were executed one after the other.
+ * <p>
+ * When a rendering context is provided, {@link org.xwiki.rendering.transformation.RenderingContext#getTransformation()}
+ * returns the transformation to which the current block is passed instead of this composite transformation.
+ * <p>
+ * A transformation which fails is not executed anymore on the rest of the tree but the other ones continue.
+ * <p>
+ * When a logger is provided and its debug level is enabled, the time spent in each transformation is logged after each
+ * traversal.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class CompositeBlockTransformation extends AbstractTransformation
+{
+    /**
+     * Used to find the protected blocks (code macro marker block, etc).
+     */
+    private static final ProtectedBlockFilter PROTECTED_BLOCK_FILTER = new ProtectedBlockFilter();
+
+    private final List<BlockTransformation> transformations;
+
+    private final Logger logger;
+
+    private final MutableRenderingContext renderingContext;
+
+    /**
+     * @param transformations the transformations to execute, sorted by priority
+     */
+    public CompositeBlockTransformation(List<BlockTransformation> transformations)
+    {
+        this(transformations, null);
+    }
+
+    /**
+     * @param transformations the transformations to execute, sorted by priority
+     * @param logger the logger used to report the time spent in each transformation, can be null
+     */
+    public CompositeBlockTransformation(List<BlockTransformation> transformations, Logger logger)
+    {
+        this(transformations, logger, null);
+    }
+
+    /**
+     * @param transformations the transformations to execute, sorted by priority
+     * @param logger the logger used to report the time spent in each transformation, can be null
+     * @param renderingContext the rendering context to update with the transformation being executed, can be null
+     */
+    public CompositeBlockTransformation(List<BlockTransformation> transformations, Logger logger,
+        MutableRenderingContext renderingContext)
+    {
+        this.transformations = transformations;
+        this.logger = logger;
+        this.renderingContext = renderingContext;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return this.transformations.isEmpty() ? super.getPriority() : this.transformations.get(0).getPriority();
+    }
+
+    /**
+     * @return the transformations executed by this transformation
+     */
+    public List<BlockTransformation> getTransformations()
+    {
+        return this.transformations;
+    }
+
+    @Override
+    public void transform(Block block, TransformationContext context) throws TransformationException
+    {
+        boolean timed = this.logger != null && this.logger.isDebugEnabled();
+
+        Walk walk = new Walk(context, timed);
+        try {
+            walk.walkChildren(block, false, 0);
+        } finally {
+            walk.setTransformation(this);
+        }
+
+        if (timed) {
+            for (int i = 0; i < this.transformations.size(); i++) {
+                this.logger.debug("Block transformation [{}] executed in [{}] ms",
+                    this.transformations.get(i).getClass().getName(), TimeUnit.NANOSECONDS.toMillis(walk.durations[i]));
+            }
+        }
+
+        if (walk.failures.size() == 1 && walk.failures.get(0) instanceof TransformationException) {
+            throw (TransformationException) walk.failures.get(0);
+        } else if (!walk.failures.isEmpty()) {
+            TransformationException exception =
+                new TransformationException("Failed to execute transformations", walk.failures.get(0));
+            for (int i = 1; i < walk.failures.size(); i++) {
+                exception.addSuppressed(walk.failures.get(i));
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * The state of one traversal.
+     */
+    private final class Walk
+    {
+        private final TransformationContext context;
+
+        /**
+         * For each block class, whether each transformation is interested in it.
+         */
+        private final Map<Class<?>, boolean[]> interests = new HashMap<>();
+
+        private final boolean[] failed = new boolean[transformations.size()];
+
+        private final List<Exception> failures = new ArrayList<>();
+
+        /**
+         * The time spent in each transformation, null when not measured.
+         */
+        private final long[] durations;
+
+        /**
+         * The transformation currently exposed in the rendering context.
+         */
+        private Transformation currentTransformation = CompositeBlockTransformation.this;
+
+        /**
+         * The index of the last transformation which replaced the block passed to
+         * {@link #transformBlock(Block, boolean, int)}, -1 if none did.
+         */
+        private int creator;
+
+        Walk(TransformationContext context, boolean timed)
+        {
+            this.context = context;
+            this.durations = timed ? new long[transformations.size()] : null;
+        }
+
+        /**
+         * @param parent the block whose descendants should be transformed
+         * @param inProtectedBlock whether the parent is located in a protected block
+         * @param first the index of the first transformation to execute on the descendants, the previous ones did not
+         *            see them since they were created by a transformation
+         */
+        void walkChildren(Block parent, boolean inProtectedBlock, int first)
+        {
+            Block child = parent.getChildren().isEmpty() ? null : parent.getChildren().get(0);
+            while (child != null) {
+                boolean isProtected = inProtectedBlock || PROTECTED_BLOCK_FILTER.isProtectedBlock(child);
+                Block current = transformBlock(child, isProtected, first);
+                // The descendants of a block created by a transformation are only passed to the next transformations
+                walkChildren(current, isProtected, this.creator >= 0 ? this.creator + 1 : first);
+                child = current.getNextSibling();
+            }
+        }
+
+        private Block transformBlock(Block block, boolean isProtected, int first)
+        {
+            Block current = block;
+            this.creator = -1;
+
+            for (int i = first; i < transformations.size(); i++) {
+                BlockTransformation transformation = transformations.get(i);
+                if (!this.failed[i] && getInterests(current.getClass())[i]
+                    && !(isProtected && transformation.isProtectedBlocksSkipped()))
+                {
+                    setTransformation(transformation);
+                    long start = this.durations != null ? System.nanoTime() : 0;
+                    try {
+                        Block result = transformation.transformBlock(current, this.context);
+                        if (result != null && result != current) {
+                            current = result;
+                            this.creator = i;
+                        }
+                    } catch (Exception e) {
+                        this.failed[i] = true;
+                        this.failures.add(e);
+                    }
+                    if (this.durations != null) {
+                        this.durations[i] += System.nanoTime() - start;
+                    }
+                }
+            }
+
+            return current;
+        }
+
+        void setTransformation(Transformation transformation)
+        {
+            if (renderingContext != null && transformation != this.currentTransformation) {
+                renderingContext.setTransformation(transformation);
+                this.currentTransformation = transformation;
+            }
+        }
+
+        private boolean[] getInterests(Class<?> blockClass)
+        {
+            boolean[] blockInterests = this.interests.get(blockClass);
+
+            if (blockInterests == null) {
+                blockInterests = new boolean[transformations.size()];
+                for (int i = 0; i < blockInterests.length; i++) {
+                    for (Class<? extends Block> blockType : transformations.get(i).getBlockTypes()) {
+                        if (blockType.isAssignableFrom(blockClass)) {
+                            blockInterests[i] = true;
+                            break;
+                        }
+                    }
+                }
+                this.interests.put(blockClass, blockInterests);
+            }
+
+            return blockInterests;
+        }
+    }
+}
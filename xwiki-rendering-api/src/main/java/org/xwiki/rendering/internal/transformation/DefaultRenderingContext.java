@@ -38,6 +38,11 @@
 
 /**
  * The complete context of the transformation process.
+ * <p>
+ * The stack of rendering contexts is stored in the execution context, unless a stack has been explicitly bound to the
+ * current thread with {@link #bind(RenderingContextStack)}. The stack stored in the execution context is bound to the
+ * current thread during {@link #transformInContext(Transformation, TransformationContext, Block)} so that it's
+ * resolved only once per transformation.
  *
  * @version $Id$
  * @since 6.0
@@ -62,6 +67,11 @@ public class DefaultRenderingContext implements MutableRenderingContext
     @Inject
     private Execution execution;
 
+    /**
+     * The stacks explicitly bound to threads, which take precedence over the one stored in the execution context.
+     */
+    private final ThreadLocal<RenderingContextStack> boundStack = new ThreadLocal<>();
+
     protected static final class Context implements Cloneable
     {
         /**
@@ -88,7 +98,7 @@ protected static final class Context implements Cloneable
         /**
          * The current Transformation instance being executed.
          */
-        private final Transformation transformation;
+        private Transformation transformation;
 
         /**
          * An id representing the transformation being evaluated.
@@ -178,16 +188,67 @@ public void pop()
     public void transformInContext(Transformation transformation, TransformationContext context, Block block)
         throws TransformationException
     {
+        // Resolve the stack stored in the execution context once for all the accesses made during the transformation
+        boolean bound = false;
+        if (this.boundStack.get() == null) {
+            Deque<Context> stack = getExecutionContextStack(true);
+            if (stack != null) {
+                this.boundStack.set(new RenderingContextStack(stack));
+                bound = true;
+            }
+        }
+
         try {
             push(transformation, context);
             transformation.transform(block, context);
         } finally {
             pop();
+
+            if (bound) {
+                this.boundStack.remove();
+            }
         }
     }
 
-    @SuppressWarnings("unchecked")
+    @Override
+    public RenderingContextStack fork()
+    {
+        RenderingContextStack stack = new RenderingContextStack();
+
+        Context context = peek();
+        if (context != NULL_CONTEXT) {
+            stack.getContexts().push(context.clone());
+        }
+
+        return stack;
+    }
+
+    @Override
+    public RenderingContextStack bind(RenderingContextStack stack)
+    {
+        RenderingContextStack previousStack = this.boundStack.get();
+
+        if (stack != null) {
+            this.boundStack.set(stack);
+        } else {
+            this.boundStack.remove();
+        }
+
+        return previousStack;
+    }
+
     private Deque<Context> getContextStack(boolean create)
+    {
+        RenderingContextStack bound = this.boundStack.get();
+        if (bound != null) {
+            return bound.getContexts();
+        }
+
+        return getExecutionContextStack(create);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Deque<Context> getExecutionContextStack(boolean create)
     {
         ExecutionContext context = this.execution.getContext();
 
@@ -250,6 +311,15 @@ public Transformation getTransformation()
         return peek().transformation;
     }
 
+    @Override
+    public void setTransformation(Transformation transformation)
+    {
+        Context context = peek();
+        if (context != null && context != NULL_CONTEXT) {
+            context.transformation = transformation;
+        }
+    }
+
     @Override
     public String getTransformationId()
     {
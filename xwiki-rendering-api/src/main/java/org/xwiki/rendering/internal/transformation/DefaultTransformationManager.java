@@ -22,6 +22,7 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,12 +32,15 @@
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.configuration.RenderingConfiguration;
 import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.BlockTransformation;
 import org.xwiki.rendering.transformation.RenderingContext;
 import org.xwiki.rendering.transformation.Transformation;
 import org.xwiki.rendering.transformation.TransformationContext;
@@ -45,7 +49,11 @@
 
 /**
  * Calls all existing transformations (executed by priority) on an existing XDOM object to generate a new transformed
- * XDOM.
+ * XDOM. Consecutive {@link BlockTransformation}s are executed together in a single traversal of the XDOM.
+ * <p>
+ * The resolved transformations are kept as long as the configured transformation names, the context component manager
+ * and the descriptors of the transformations are the same. The time spent in each transformation is logged at debug
+ * level, and as a warning when it's above {@link RenderingConfiguration#getSlowTransformationThreshold()}.
  *
  * @version $Id$
  * @since 1.5M2
@@ -79,6 +87,11 @@ public class DefaultTransformationManager implements TransformationManager
     @Named("context")
     private Provider<ComponentManager> componentManagerProvider;
 
+    /**
+     * The last resolved transformations.
+     */
+    private volatile TransformationPipeline pipeline;
+
     /**
      * {@inheritDoc}
      * 
@@ -96,7 +109,10 @@ public void performTransformations(XDOM dom, Syntax syntax) throws Transformatio
     public void performTransformations(Block block, TransformationContext context) throws TransformationException
     {
         boolean error = false;
-        for (Transformation transformation : getTransformations()) {
+        long threshold = this.configuration.getSlowTransformationThreshold();
+        boolean timed = threshold > 0 || this.logger.isDebugEnabled();
+        for (Transformation transformation : getPipeline().fusedTransformations) {
+            long start = timed ? System.nanoTime() : 0;
             try {
                 ((MutableRenderingContext) this.renderingContext).transformInContext(transformation, context, block);
             } catch (Exception e) {
@@ -104,6 +120,9 @@ public void performTransformations(Block block, TransformationContext context) t
                 this.logger.error("Failed to execute transformation", e);
                 error = true;
             }
+            if (timed) {
+                logDuration(transformation, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), threshold);
+            }
         }
         if (error) {
             throw new TransformationException("One or several transformations failed to execute properly. "
@@ -111,22 +130,184 @@ public void performTransformations(Block block, TransformationContext context) t
         }
     }
 
+    private void logDuration(Transformation transformation, long duration, long threshold)
+    {
+        if (threshold > 0 && duration >= threshold) {
+            this.logger.warn("Transformation [{}] executed in [{}] ms, which is above the [{}] ms threshold",
+                getName(transformation), duration, threshold);
+        } else if (this.logger.isDebugEnabled()) {
+            this.logger.debug("Transformation [{}] executed in [{}] ms", getName(transformation), duration);
+        }
+    }
+
+    private String getName(Transformation transformation)
+    {
+        String name;
+
+        if (transformation instanceof CompositeBlockTransformation) {
+            List<String> names = new ArrayList<>();
+            for (Transformation blockTransformation
+                : ((CompositeBlockTransformation) transformation).getTransformations()) {
+                names.add(blockTransformation.getClass().getName());
+            }
+            name = names.toString();
+        } else {
+            name = transformation.getClass().getName();
+        }
+
+        return name;
+    }
+
+    /**
+     * Replace the consecutive {@link BlockTransformation}s with a {@link CompositeBlockTransformation} so that they are
+     * executed in a single traversal of the tree.
+     *
+     * @param transformations the ordered list of transformations
+     * @return the ordered list of transformations to execute
+     */
+    private List<Transformation> fuseBlockTransformations(List<Transformation> transformations)
+    {
+        List<Transformation> fusedTransformations = new ArrayList<>(transformations.size());
+
+        List<BlockTransformation> blockTransformations = new ArrayList<>();
+        for (Transformation transformation : transformations) {
+            if (transformation instanceof BlockTransformation) {
+                blockTransformations.add((BlockTransformation) transformation);
+            } else {
+                addBlockTransformations(blockTransformations, fusedTransformations);
+                blockTransformations = new ArrayList<>();
+                fusedTransformations.add(transformation);
+            }
+        }
+        addBlockTransformations(blockTransformations, fusedTransformations);
+
+        return fusedTransformations;
+    }
+
+    private void addBlockTransformations(List<BlockTransformation> blockTransformations,
+        List<Transformation> transformations)
+    {
+        if (blockTransformations.size() == 1) {
+            transformations.add(blockTransformations.get(0));
+        } else if (blockTransformations.size() > 1) {
+            transformations.add(new CompositeBlockTransformation(blockTransformations, this.logger,
+                (MutableRenderingContext) this.renderingContext));
+        }
+    }
+
     /**
-     * @return the ordered list of Transformations to execute
+     * @return a copy of the ordered list of Transformations to execute
      */
     public List<Transformation> getTransformations()
     {
-        List<Transformation> transformations = new ArrayList<Transformation>();
-        for (String hint : this.configuration.getTransformationNames()) {
+        return new ArrayList<>(getPipeline().transformations);
+    }
+
+    private TransformationPipeline getPipeline()
+    {
+        ComponentManager componentManager = this.componentManagerProvider.get();
+        List<String> names = this.configuration.getTransformationNames();
+
+        TransformationPipeline currentPipeline = this.pipeline;
+        if (currentPipeline != null && currentPipeline.isValid(componentManager, names)) {
+            return currentPipeline;
+        }
+
+        TransformationPipeline newPipeline = resolvePipeline(componentManager, names);
+        if (newPipeline.reusable) {
+            this.pipeline = newPipeline;
+        }
+
+        return newPipeline;
+    }
+
+    private TransformationPipeline resolvePipeline(ComponentManager componentManager, List<String> names)
+    {
+        // Copy the names since the configuration might modify its list
+        List<String> namesCopy = new ArrayList<>(names);
+
+        List<ComponentDescriptor<Transformation>> descriptors = new ArrayList<>(namesCopy.size());
+        boolean reusable = true;
+        List<Transformation> transformations = new ArrayList<Transformation>(namesCopy.size());
+        for (String hint : namesCopy) {
+            ComponentDescriptor<Transformation> descriptor =
+                componentManager.getComponentDescriptor(Transformation.class, hint);
+            descriptors.add(descriptor);
+            if (descriptor != null
+                && descriptor.getInstantiationStrategy() != ComponentInstantiationStrategy.SINGLETON) {
+                reusable = false;
+            }
+
             try {
-                transformations.add(this.componentManagerProvider.get().<Transformation>getInstance(
-                    Transformation.class, hint));
+                transformations.add(componentManager.<Transformation>getInstance(Transformation.class, hint));
             } catch (ComponentLookupException e) {
                 this.logger.warn("Failed to locate transformation with hint [{}], ignoring it. "
                     + "Root reason [{}]", hint, ExceptionUtils.getRootCauseMessage(e));
+
+                // Try again next time if the transformation exists but failed to be created
+                if (descriptor != null) {
+                    reusable = false;
+                }
             }
         }
         Collections.sort(transformations);
-        return transformations;
+
+        return new TransformationPipeline(componentManager, namesCopy, descriptors, reusable,
+            Collections.unmodifiableList(transformations),
+            Collections.unmodifiableList(fuseBlockTransformations(transformations)));
+    }
+
+    /**
+     * The transformations resolved for a given list of transformation names in a given component manager.
+     */
+    private static final class TransformationPipeline
+    {
+        private final ComponentManager componentManager;
+
+        private final List<String> names;
+
+        /**
+         * The descriptors of the transformations at the time they were resolved, in the order of the names (null for
+         * the transformations which could not be found).
+         */
+        private final List<ComponentDescriptor<Transformation>> descriptors;
+
+        /**
+         * True if all the transformations were found and are singletons, in which case they can be reused.
+         */
+        private final boolean reusable;
+
+        private final List<Transformation> transformations;
+
+        private final List<Transformation> fusedTransformations;
+
+        TransformationPipeline(ComponentManager componentManager, List<String> names,
+            List<ComponentDescriptor<Transformation>> descriptors, boolean reusable,
+            List<Transformation> transformations, List<Transformation> fusedTransformations)
+        {
+            this.componentManager = componentManager;
+            this.names = names;
+            this.descriptors = descriptors;
+            this.reusable = reusable;
+            this.transformations = transformations;
+            this.fusedTransformations = fusedTransformations;
+        }
+
+        boolean isValid(ComponentManager currentComponentManager, List<String> currentNames)
+        {
+            if (currentComponentManager != this.componentManager || !currentNames.equals(this.names)) {
+                return false;
+            }
+
+            // A transformation registered, unregistered or overridden since the resolution gets a new descriptor
+            for (int i = 0; i < this.names.size(); i++) {
+                if (currentComponentManager.getComponentDescriptor(Transformation.class,
+                    this.names.get(i)) != this.descriptors.get(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
     }
 }
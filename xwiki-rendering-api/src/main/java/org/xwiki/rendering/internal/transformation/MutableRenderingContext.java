@@ -80,10 +80,40 @@ void transformInContext(Transformation transformation, TransformationContext con
      */
     void setCurrentBlock(Block block);
 
+    /**
+     * Set the transformation being executed, when a transformation executes other transformations (several block
+     * transformations executed in a single traversal of the tree for example).
+     *
+     * @param transformation the transformation currently being executed
+     * @since 10.9RC1
+     */
+    void setTransformation(Transformation transformation);
+
     /**
      * Set the target syntax.
      * 
      * @param targetSyntax the target syntax
      */
     void setTargetSyntax(Syntax targetSyntax);
+
+    /**
+     * Create a new stack containing a copy of the current rendering context, to be bound to another thread (e.g. a
+     * worker thread executing part of the current transformation) with {@link #bind(RenderingContextStack)}.
+     *
+     * @return the new stack
+     * @since 10.9RC1
+     */
+    RenderingContextStack fork();
+
+    /**
+     * Bind a stack to the current thread: until another stack is bound, the rendering context of the current thread is
+     * read from and pushed to this stack instead of the one stored in the execution context, so that no execution
+     * context is needed.
+     *
+     * @param stack the stack to bind to the current thread, {@code null} to go back to the stack stored in the
+     *            execution context
+     * @return the stack previously bound to the current thread, to be restored once done
+     * @since 10.9RC1
+     */
+    RenderingContextStack bind(RenderingContextStack stack);
 }
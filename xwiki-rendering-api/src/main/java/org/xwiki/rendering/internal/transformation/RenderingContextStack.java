@@ -0,0 +1,53 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A stack of rendering contexts which can be bound to a thread with
+ * {@link MutableRenderingContext#bind(RenderingContextStack)}, independently of the execution context.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public final class RenderingContextStack
+{
+    private final Deque<DefaultRenderingContext.Context> contexts;
+
+    RenderingContextStack()
+    {
+        this(new ArrayDeque<DefaultRenderingContext.Context>());
+    }
+
+    /**
+     * @param contexts the contexts to share (for example the ones stored in the execution context)
+     */
+    RenderingContextStack(Deque<DefaultRenderingContext.Context> contexts)
+    {
+        this.contexts = contexts;
+    }
+
+    Deque<DefaultRenderingContext.Context> getContexts()
+    {
+        return this.contexts;
+    }
+}
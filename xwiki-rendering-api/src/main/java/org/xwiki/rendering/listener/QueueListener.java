@@ -243,6 +243,28 @@ public void beginTableRow(Map<String, String> parameters)
         saveEvent(EventType.BEGIN_TABLE_ROW, parameters);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @since 10.9RC1
+     */
+    @Override
+    public void beginFigure(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_FIGURE, parameters);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 10.9RC1
+     */
+    @Override
+    public void beginFigureCaption(Map<String, String> parameters)
+    {
+        saveEvent(EventType.BEGIN_FIGURE_CAPTION, parameters);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -389,6 +411,28 @@ public void endTableRow(Map<String, String> parameters)
         saveEvent(EventType.END_TABLE_ROW, parameters);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @since 10.9RC1
+     */
+    @Override
+    public void endFigure(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_FIGURE, parameters);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 10.9RC1
+     */
+    @Override
+    public void endFigureCaption(Map<String, String> parameters)
+    {
+        saveEvent(EventType.END_FIGURE_CAPTION, parameters);
+    }
+
     /**
      * {@inheritDoc}
      *
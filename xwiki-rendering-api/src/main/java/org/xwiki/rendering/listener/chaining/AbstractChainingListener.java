@@ -42,6 +42,21 @@ public abstract class AbstractChainingListener implements ChainingListener
      */
     private ListenerChain listenerChain;
 
+    /**
+     * The chain in which {@link #nextListener} was resolved.
+     */
+    private ListenerChain nextListenerChain;
+
+    /**
+     * The modification count of {@link #nextListenerChain} when {@link #nextListener} was resolved.
+     */
+    private int nextListenerModificationCount;
+
+    /**
+     * The cached next listener in the chain.
+     */
+    private ChainingListener nextListener;
+
     /**
      * @param listenerChain see {@link #getListenerChain()}
      * @since 2.0M3
@@ -57,10 +72,27 @@ public ListenerChain getListenerChain()
         return this.listenerChain;
     }
 
+    /**
+     * @return the next listener in the chain, only resolved again when the chain has been modified since the last call
+     * @since 10.9RC1
+     */
+    protected ChainingListener getNextListener()
+    {
+        ListenerChain chain = getListenerChain();
+        int modificationCount = chain.getModificationCount();
+        if (chain != this.nextListenerChain || modificationCount != this.nextListenerModificationCount) {
+            this.nextListener = chain.getNextListener(getClass());
+            this.nextListenerChain = chain;
+            this.nextListenerModificationCount = modificationCount;
+        }
+
+        return this.nextListener;
+    }
+
     @Override
     public void beginDefinitionDescription()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDefinitionDescription();
         }
@@ -69,7 +101,7 @@ public void beginDefinitionDescription()
     @Override
     public void beginDefinitionList(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDefinitionList(parameters);
         }
@@ -78,7 +110,7 @@ public void beginDefinitionList(Map<String, String> parameters)
     @Override
     public void beginDefinitionTerm()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDefinitionTerm();
         }
@@ -87,7 +119,7 @@ public void beginDefinitionTerm()
     @Override
     public void beginDocument(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginDocument(metadata);
         }
@@ -96,7 +128,7 @@ public void beginDocument(MetaData metadata)
     @Override
     public void beginGroup(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginGroup(parameters);
         }
@@ -105,7 +137,7 @@ public void beginGroup(Map<String, String> parameters)
     @Override
     public void beginFormat(Format format, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginFormat(format, parameters);
         }
@@ -114,7 +146,7 @@ public void beginFormat(Format format, Map<String, String> parameters)
     @Override
     public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginHeader(level, id, parameters);
         }
@@ -123,7 +155,7 @@ public void beginHeader(HeaderLevel level, String id, Map<String, String> parame
     @Override
     public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginLink(reference, freestanding, parameters);
         }
@@ -132,7 +164,7 @@ public void beginLink(ResourceReference reference, boolean freestanding, Map<Str
     @Override
     public void beginList(ListType type, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginList(type, parameters);
         }
@@ -141,7 +173,7 @@ public void beginList(ListType type, Map<String, String> parameters)
     @Override
     public void beginListItem()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginListItem();
         }
@@ -150,7 +182,7 @@ public void beginListItem()
     @Override
     public void beginListItem(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginListItem(parameters);
         }
@@ -159,7 +191,7 @@ public void beginListItem(Map<String, String> parameters)
     @Override
     public void beginMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginMacroMarker(name, parameters, content, isInline);
         }
@@ -168,7 +200,7 @@ public void beginMacroMarker(String name, Map<String, String> parameters, String
     @Override
     public void beginParagraph(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginParagraph(parameters);
         }
@@ -177,7 +209,7 @@ public void beginParagraph(Map<String, String> parameters)
     @Override
     public void beginQuotation(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginQuotation(parameters);
         }
@@ -186,7 +218,7 @@ public void beginQuotation(Map<String, String> parameters)
     @Override
     public void beginQuotationLine()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginQuotationLine();
         }
@@ -195,7 +227,7 @@ public void beginQuotationLine()
     @Override
     public void beginSection(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginSection(parameters);
         }
@@ -204,7 +236,7 @@ public void beginSection(Map<String, String> parameters)
     @Override
     public void beginTable(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTable(parameters);
         }
@@ -213,7 +245,7 @@ public void beginTable(Map<String, String> parameters)
     @Override
     public void beginTableCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTableCell(parameters);
         }
@@ -222,7 +254,7 @@ public void beginTableCell(Map<String, String> parameters)
     @Override
     public void beginTableHeadCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTableHeadCell(parameters);
         }
@@ -231,7 +263,7 @@ public void beginTableHeadCell(Map<String, String> parameters)
     @Override
     public void beginTableRow(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginTableRow(parameters);
         }
@@ -240,7 +272,7 @@ public void beginTableRow(Map<String, String> parameters)
     @Override
     public void beginMetaData(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginMetaData(metadata);
         }
@@ -249,7 +281,7 @@ public void beginMetaData(MetaData metadata)
     @Override
     public void beginFigure(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginFigure(parameters);
         }
@@ -258,7 +290,7 @@ public void beginFigure(Map<String, String> parameters)
     @Override
     public void beginFigureCaption(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.beginFigureCaption(parameters);
         }
@@ -267,7 +299,7 @@ public void beginFigureCaption(Map<String, String> parameters)
     @Override
     public void endDefinitionDescription()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDefinitionDescription();
         }
@@ -276,7 +308,7 @@ public void endDefinitionDescription()
     @Override
     public void endDefinitionList(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDefinitionList(parameters);
         }
@@ -285,7 +317,7 @@ public void endDefinitionList(Map<String, String> parameters)
     @Override
     public void endDefinitionTerm()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDefinitionTerm();
         }
@@ -294,7 +326,7 @@ public void endDefinitionTerm()
     @Override
     public void endDocument(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endDocument(metadata);
         }
@@ -303,7 +335,7 @@ public void endDocument(MetaData metadata)
     @Override
     public void endGroup(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endGroup(parameters);
         }
@@ -312,7 +344,7 @@ public void endGroup(Map<String, String> parameters)
     @Override
     public void endFormat(Format format, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endFormat(format, parameters);
         }
@@ -321,7 +353,7 @@ public void endFormat(Format format, Map<String, String> parameters)
     @Override
     public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endHeader(level, id, parameters);
         }
@@ -330,7 +362,7 @@ public void endHeader(HeaderLevel level, String id, Map<String, String> paramete
     @Override
     public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endLink(reference, freestanding, parameters);
         }
@@ -339,7 +371,7 @@ public void endLink(ResourceReference reference, boolean freestanding, Map<Strin
     @Override
     public void endList(ListType type, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endList(type, parameters);
         }
@@ -348,7 +380,7 @@ public void endList(ListType type, Map<String, String> parameters)
     @Override
     public void endListItem()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endListItem();
         }
@@ -357,7 +389,7 @@ public void endListItem()
     @Override
     public void endListItem(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endListItem(parameters);
         }
@@ -366,7 +398,7 @@ public void endListItem(Map<String, String> parameters)
     @Override
     public void endMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endMacroMarker(name, parameters, content, isInline);
         }
@@ -375,7 +407,7 @@ public void endMacroMarker(String name, Map<String, String> parameters, String c
     @Override
     public void endParagraph(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endParagraph(parameters);
         }
@@ -384,7 +416,7 @@ public void endParagraph(Map<String, String> parameters)
     @Override
     public void endQuotation(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endQuotation(parameters);
         }
@@ -393,7 +425,7 @@ public void endQuotation(Map<String, String> parameters)
     @Override
     public void endQuotationLine()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endQuotationLine();
         }
@@ -402,7 +434,7 @@ public void endQuotationLine()
     @Override
     public void endSection(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endSection(parameters);
         }
@@ -411,7 +443,7 @@ public void endSection(Map<String, String> parameters)
     @Override
     public void endTable(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTable(parameters);
         }
@@ -420,7 +452,7 @@ public void endTable(Map<String, String> parameters)
     @Override
     public void endTableCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTableCell(parameters);
         }
@@ -429,7 +461,7 @@ public void endTableCell(Map<String, String> parameters)
     @Override
     public void endTableHeadCell(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTableHeadCell(parameters);
         }
@@ -438,7 +470,7 @@ public void endTableHeadCell(Map<String, String> parameters)
     @Override
     public void endTableRow(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endTableRow(parameters);
         }
@@ -447,7 +479,7 @@ public void endTableRow(Map<String, String> parameters)
     @Override
     public void endMetaData(MetaData metadata)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endMetaData(metadata);
         }
@@ -456,7 +488,7 @@ public void endMetaData(MetaData metadata)
     @Override
     public void endFigure(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endFigure(parameters);
         }
@@ -465,7 +497,7 @@ public void endFigure(Map<String, String> parameters)
     @Override
     public void endFigureCaption(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.endFigureCaption(parameters);
         }
@@ -474,7 +506,7 @@ public void endFigureCaption(Map<String, String> parameters)
     @Override
     public void onEmptyLines(int count)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onEmptyLines(count);
         }
@@ -483,7 +515,7 @@ public void onEmptyLines(int count)
     @Override
     public void onHorizontalLine(Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onHorizontalLine(parameters);
         }
@@ -492,7 +524,7 @@ public void onHorizontalLine(Map<String, String> parameters)
     @Override
     public void onId(String name)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onId(name);
         }
@@ -501,7 +533,7 @@ public void onId(String name)
     @Override
     public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onImage(reference, freestanding, parameters);
         }
@@ -510,7 +542,7 @@ public void onImage(ResourceReference reference, boolean freestanding, Map<Strin
     @Override
     public void onMacro(String id, Map<String, String> parameters, String content, boolean inline)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onMacro(id, parameters, content, inline);
         }
@@ -519,7 +551,7 @@ public void onMacro(String id, Map<String, String> parameters, String content, b
     @Override
     public void onNewLine()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onNewLine();
         }
@@ -528,7 +560,7 @@ public void onNewLine()
     @Override
     public void onSpace()
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onSpace();
         }
@@ -537,7 +569,7 @@ public void onSpace()
     @Override
     public void onSpecialSymbol(char symbol)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onSpecialSymbol(symbol);
         }
@@ -546,7 +578,7 @@ public void onSpecialSymbol(char symbol)
     @Override
     public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onVerbatim(content, inline, parameters);
         }
@@ -555,7 +587,7 @@ public void onVerbatim(String content, boolean inline, Map<String, String> param
     @Override
     public void onWord(String word)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onWord(word);
         }
@@ -564,7 +596,7 @@ public void onWord(String word)
     @Override
     public void onRawText(String text, Syntax syntax)
     {
-        ChainingListener next = getListenerChain().getNextListener(getClass());
+        ChainingListener next = getNextListener();
         if (next != null) {
             next.onRawText(text, syntax);
         }
@@ -50,6 +50,18 @@
      */
     private List<Class<? extends ChainingListener>> nextListeners = new ArrayList<>();
 
+    /**
+     * The resolved next listener of each listener of {@link #nextListeners}, indexed by position in the chain. It's
+     * rebuilt each time the chain is modified so that finding the next listener does not require any map or stack
+     * access.
+     */
+    private ChainingListener[] nextListenerTable = new ChainingListener[0];
+
+    /**
+     * Incremented each time the chain is modified.
+     */
+    private int modificationCount;
+
     /**
      * @param listener the chaining listener to add to the chain. If an instance of that listener is already present
      *            then we stack the new instance instead.
@@ -73,6 +85,8 @@ public void removeListener(Class<? extends ChainingListener> listenerClass)
             this.listeners.remove(listenerClass);
             this.nextListeners.remove(listenerClass);
         }
+
+        updateNextListenerTable();
     }
 
     /**
@@ -98,6 +112,8 @@ public void addListener(ChainingListener listener, int index)
             }
         }
         stack.push(listener);
+
+        updateNextListenerTable();
     }
 
     /**
@@ -106,12 +122,21 @@ public void addListener(ChainingListener listener, int index)
      */
     public ChainingListener getNextListener(Class<? extends ChainingListener> listenerClass)
     {
-        ChainingListener next = null;
         int pos = indexOf(listenerClass);
-        if (pos > -1 && this.nextListeners.size() > pos + 1) {
-            next = this.listeners.get(this.nextListeners.get(pos + 1)).peek();
-        }
-        return next;
+
+        return pos > -1 ? this.nextListenerTable[pos] : null;
+    }
+
+    /**
+     * The returned value changes each time the chain is modified (a listener is added, removed, pushed or popped) so
+     * that listeners can safely cache the result of {@link #getNextListener(Class)} as long as it stays the same.
+     *
+     * @return the number of modifications applied to the chain
+     * @since 10.9RC1
+     */
+    public int getModificationCount()
+    {
+        return this.modificationCount;
     }
 
     /**
@@ -145,6 +170,8 @@ public void pushListener(Class<? extends ChainingListener> listenerClass)
         if (StackableChainingListener.class.isAssignableFrom(listenerClass)) {
             Deque<ChainingListener> stack = this.listeners.get(listenerClass);
             stack.push(((StackableChainingListener) stack.peek()).createChainingListenerInstance());
+
+            updateNextListenerTable();
         }
     }
 
@@ -180,6 +207,21 @@ public void popListener(Class<? extends ChainingListener> listenerClass)
     {
         if (StackableChainingListener.class.isAssignableFrom(listenerClass)) {
             this.listeners.get(listenerClass).pop();
+
+            updateNextListenerTable();
         }
     }
+
+    private void updateNextListenerTable()
+    {
+        int size = this.nextListeners.size();
+
+        ChainingListener[] table = new ChainingListener[size];
+        for (int i = 1; i < size; ++i) {
+            table[i - 1] = this.listeners.get(this.nextListeners.get(i)).peek();
+        }
+
+        this.nextListenerTable = table;
+        ++this.modificationCount;
+    }
 }
@@ -541,7 +541,7 @@ private void flush()
     private void fireEvent()
     {
         Event event = this.previousEvents.remove();
-        event.eventType.fireEvent(getListenerChain().getNextListener(getClass()), event.eventParameters);
+        event.eventType.fireEvent(getNextListener(), event.eventParameters);
     }
 
     /**
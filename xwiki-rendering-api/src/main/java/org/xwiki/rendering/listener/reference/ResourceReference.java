@@ -265,6 +265,13 @@ public ResourceReference clone()
             // Should never happen
             throw new RuntimeException("Failed to clone object", e);
         }
+
+        // Don't share the mutable state with the clone
+        clone.parameters = new LinkedHashMap<>(this.parameters);
+        if (this.baseReferences != null) {
+            clone.baseReferences = new ArrayList<>(this.baseReferences);
+        }
+
         return clone;
     }
 
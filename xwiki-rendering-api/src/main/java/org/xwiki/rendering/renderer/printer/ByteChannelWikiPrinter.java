@@ -0,0 +1,212 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.renderer.printer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Printer encoding the provided {@link String}s as they are printed and writing the resulting bytes to a
+ * {@link WritableByteChannel} (or an {@link OutputStream}) each time the internal byte buffer is full.
+ * <p>
+ * Unlike printers accumulating the whole content in memory, the first bytes reach the target (for example an HTTP
+ * response) before the end of the rendering and no copy of the full content is ever held.
+ * <p>
+ * {@link #flush()} must be called once the rendering is done to write the remaining bytes, or {@link #close()} to also
+ * close the target. This printer is not thread safe.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public class ByteChannelWikiPrinter implements WikiPrinter, Flushable, Closeable
+{
+    /**
+     * The default size of the byte buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * The minimum size of the byte buffer, so that it's always possible to encode a character.
+     */
+    public static final int MINIMUM_BUFFER_SIZE = 16;
+
+    private static final int CHAR_BUFFER_SIZE = 1024;
+
+    private final WritableByteChannel channel;
+
+    private final OutputStream stream;
+
+    private final CharsetEncoder encoder;
+
+    /**
+     * The characters waiting to be encoded, generally only an high surrogate between two calls to print.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    private final ByteBuffer bytes;
+
+    /**
+     * @param stream the stream where to write the UTF-8 encoded content
+     */
+    public ByteChannelWikiPrinter(OutputStream stream)
+    {
+        this(Channels.newChannel(stream), stream, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel the channel where to write the UTF-8 encoded content
+     */
+    public ByteChannelWikiPrinter(WritableByteChannel channel)
+    {
+        this(channel, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel the channel where to write the encoded content
+     * @param charset the charset to use to encode the content
+     * @param bufferSize the number of bytes to buffer before writing them to the channel, at least
+     *            {@link #MINIMUM_BUFFER_SIZE}
+     */
+    public ByteChannelWikiPrinter(WritableByteChannel channel, Charset charset, int bufferSize)
+    {
+        this(channel, null, charset, bufferSize);
+    }
+
+    private ByteChannelWikiPrinter(WritableByteChannel channel, OutputStream stream, Charset charset, int bufferSize)
+    {
+        this.channel = channel;
+        this.stream = stream;
+        // Same behavior as OutputStreamWriter
+        this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(Math.max(bufferSize, MINIMUM_BUFFER_SIZE));
+    }
+
+    /**
+     * This method is protected to allow classes extending this one to override what a new line is.
+     *
+     * @return a new line symbols
+     */
+    protected String getEOL()
+    {
+        return "\n";
+    }
+
+    @Override
+    public void print(String text)
+    {
+        // Print "null" like the printers based on a StringBuffer
+        String value = String.valueOf(text);
+
+        try {
+            int offset = 0;
+            while (offset < value.length()) {
+                int count = Math.min(value.length() - offset, this.chars.remaining());
+                value.getChars(offset, offset + count, this.chars.array(), this.chars.position());
+                this.chars.position(this.chars.position() + count);
+                offset += count;
+
+                encode(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write", e);
+        }
+    }
+
+    @Override
+    public void println(String text)
+    {
+        print(text);
+        print(getEOL());
+    }
+
+    /**
+     * Write all the encoded bytes to the channel (and flush the stream if the printer was created with one).
+     *
+     * @throws IOException when failing to write the bytes
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        writeBytes();
+
+        if (this.stream != null) {
+            this.stream.flush();
+        }
+    }
+
+    /**
+     * Encode the remaining characters, write all the bytes and close the channel.
+     *
+     * @throws IOException when failing to write the bytes or close the channel
+     */
+    @Override
+    public void close() throws IOException
+    {
+        encode(true);
+        while (this.encoder.flush(this.bytes).isOverflow()) {
+            writeBytes();
+        }
+
+        flush();
+
+        this.channel.close();
+    }
+
+    private void encode(boolean endOfInput) throws IOException
+    {
+        this.chars.flip();
+
+        CoderResult result;
+        do {
+            result = this.encoder.encode(this.chars, this.bytes, endOfInput);
+            if (result.isOverflow()) {
+                writeBytes();
+            }
+        } while (result.isOverflow());
+
+        // Keep what could not be encoded yet (an high surrogate waiting for its low surrogate)
+        this.chars.compact();
+    }
+
+    private void writeBytes() throws IOException
+    {
+        this.bytes.flip();
+        while (this.bytes.hasRemaining()) {
+            this.channel.write(this.bytes);
+        }
+        this.bytes.clear();
+    }
+}
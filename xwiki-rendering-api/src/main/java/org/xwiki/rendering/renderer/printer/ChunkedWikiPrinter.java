@@ -0,0 +1,242 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.renderer.printer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.stability.Unstable;
+
+/**
+ * Printer appending the provided {@link String}s to a list of fixed size chunks of characters, meant for large outputs.
+ * <p>
+ * Unlike {@link DefaultWikiPrinter} no lock is taken and the printed content is never copied to a bigger buffer when
+ * it grows. The content can be written to a {@link Writer} or an {@link OutputStream}, or read through the
+ * {@link CharSequence} interface, without first being assembled in a single {@link String}.
+ * <p>
+ * This printer is not thread safe.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public class ChunkedWikiPrinter implements WikiPrinter, CharSequence
+{
+    /**
+     * The default size of the chunks.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final int chunkSize;
+
+    private final List<char[]> chunks = new ArrayList<>();
+
+    /**
+     * The size of the first chunk which can be different from {@link #chunkSize}.
+     */
+    private final int firstChunkSize;
+
+    /**
+     * The chunk currently filled.
+     */
+    private char[] chunk;
+
+    /**
+     * The number of characters written in {@link #chunk}.
+     */
+    private int chunkLength;
+
+    private int length;
+
+    /**
+     * Create a printer with chunks of {@link #DEFAULT_CHUNK_SIZE} characters.
+     */
+    public ChunkedWikiPrinter()
+    {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param initialCapacity the size of the first chunk, the expected size of the content if known
+     */
+    public ChunkedWikiPrinter(int initialCapacity)
+    {
+        this(initialCapacity, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param initialCapacity the size of the first chunk, the expected size of the content if known
+     * @param chunkSize the size of the chunks allocated when the first one is full
+     */
+    public ChunkedWikiPrinter(int initialCapacity, int chunkSize)
+    {
+        if (initialCapacity <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("The initial capacity and the chunk size must be positive");
+        }
+
+        this.firstChunkSize = initialCapacity;
+        this.chunkSize = chunkSize;
+
+        this.chunk = new char[initialCapacity];
+        this.chunks.add(this.chunk);
+    }
+
+    /**
+     * This method is protected to allow classes extending this one to override what a new line is.
+     *
+     * @return a new line symbols
+     */
+    protected String getEOL()
+    {
+        return "\n";
+    }
+
+    @Override
+    public void print(String text)
+    {
+        // Same behavior as StringBuffer
+        String str = String.valueOf((Object) text);
+
+        int offset = 0;
+        int remaining = str.length();
+        while (remaining > 0) {
+            if (this.chunkLength == this.chunk.length) {
+                this.chunk = new char[this.chunkSize];
+                this.chunks.add(this.chunk);
+                this.chunkLength = 0;
+            }
+
+            int count = Math.min(remaining, this.chunk.length - this.chunkLength);
+            str.getChars(offset, offset + count, this.chunk, this.chunkLength);
+
+            this.chunkLength += count;
+            offset += count;
+            remaining -= count;
+        }
+
+        this.length += str.length();
+    }
+
+    @Override
+    public void println(String text)
+    {
+        print(text);
+        print(getEOL());
+    }
+
+    @Override
+    public int length()
+    {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Index [" + index + "] is out of bounds for length " + this.length);
+        }
+
+        if (index < this.firstChunkSize) {
+            return this.chunks.get(0)[index];
+        }
+
+        int offset = index - this.firstChunkSize;
+
+        return this.chunks.get(offset / this.chunkSize + 1)[offset % this.chunkSize];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException(
+                "Invalid range [" + start + ", " + end + "] for length " + this.length);
+        }
+
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; ++i) {
+            builder.append(charAt(i));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Write the printed content to the passed writer, chunk by chunk.
+     *
+     * @param writer the writer where to write the content
+     * @throws IOException when failing to write the content
+     */
+    public void writeTo(Writer writer) throws IOException
+    {
+        int last = this.chunks.size() - 1;
+        for (int i = 0; i < last; ++i) {
+            char[] fullChunk = this.chunks.get(i);
+            writer.write(fullChunk, 0, fullChunk.length);
+        }
+        writer.write(this.chunk, 0, this.chunkLength);
+    }
+
+    /**
+     * Write the printed content to the passed stream, chunk by chunk. The stream is flushed but not closed.
+     *
+     * @param stream the stream where to write the content
+     * @param charset the charset to use to encode the content
+     * @throws IOException when failing to write the content
+     */
+    public void writeTo(OutputStream stream, Charset charset) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(stream, charset);
+        writeTo(writer);
+        writer.flush();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder(this.length);
+
+        int last = this.chunks.size() - 1;
+        for (int i = 0; i < last; ++i) {
+            builder.append(this.chunks.get(i));
+        }
+        builder.append(this.chunk, 0, this.chunkLength);
+
+        return builder.toString();
+    }
+
+    /**
+     * Removes the printed content which allows the printer to be reused. Only the first chunk is kept.
+     */
+    public void clear()
+    {
+        this.chunk = this.chunks.get(0);
+        this.chunks.clear();
+        this.chunks.add(this.chunk);
+        this.chunkLength = 0;
+        this.length = 0;
+    }
+}
@@ -148,6 +148,11 @@ public class Syntax implements Comparable<Syntax>
      */
     public static final Syntax XDOMXML_1_0 = new Syntax(SyntaxType.XDOMXML, "1.0");
 
+    /**
+     * @since 10.9RC1
+     */
+    public static final Syntax XDOMBIN_1_0 = new Syntax(SyntaxType.XDOMBIN, "1.0");
+
     /**
      * @since 3.4M1
      */
@@ -140,6 +140,13 @@ public class SyntaxType implements Comparable<SyntaxType>
      */
     public static final SyntaxType APT = register("apt", "APT");
 
+    /**
+     * Binary XWiki DOM syntax.
+     *
+     * @since 10.9RC1
+     */
+    public static final SyntaxType XDOMBIN = register("xdom+bin", "Binary XDOM");
+
     /**
      * @see #getName()
      */
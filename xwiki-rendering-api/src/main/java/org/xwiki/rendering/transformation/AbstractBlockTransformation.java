@@ -0,0 +1,44 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.transformation;
+
+import java.util.Collections;
+
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.internal.transformation.CompositeBlockTransformation;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Base class for the {@link BlockTransformation}s, which transforms all the matching blocks when the transformation is
+ * executed alone.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Unstable
+public abstract class AbstractBlockTransformation extends AbstractTransformation implements BlockTransformation
+{
+    @Override
+    public void transform(Block block, TransformationContext context) throws TransformationException
+    {
+        new CompositeBlockTransformation(Collections.<BlockTransformation>singletonList(this)).transform(block,
+            context);
+    }
+}
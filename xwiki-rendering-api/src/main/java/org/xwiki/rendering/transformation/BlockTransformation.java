@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.transformation;
+
+import java.util.Collection;
+
+import org.xwiki.rendering.block.Block;
+import org.xwiki.stability.Unstable;
+
+/**
+ * A {@link Transformation} which only needs to look at some types of blocks, one block at a time. This allows to
+ * execute several of them in a single traversal of the tree: each block is passed to all the transformations
+ * interested in its type, by priority order.
+ * <p>
+ * The result is the same as executing the transformations one after the other: the blocks created by a transformation
+ * (the block returned by {@link #transformBlock(Block, TransformationContext)} and its descendants) are passed to the
+ * following transformations only. When executed by the transformation manager,
+ * {@link RenderingContext#getTransformation()} returns the transformation to which the current block is passed.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ * @see AbstractBlockTransformation
+ */
+@Unstable
+public interface BlockTransformation extends Transformation
+{
+    /**
+     * @return the types of blocks to pass to {@link #transformBlock(Block, TransformationContext)}, the blocks extending
+     *         those types are passed too
+     */
+    Collection<Class<? extends Block>> getBlockTypes();
+
+    /**
+     * @return {@code true} if the blocks located in protected blocks (the result of the code macro for example) should
+     *         not be transformed
+     */
+    default boolean isProtectedBlocksSkipped()
+    {
+        return true;
+    }
+
+    /**
+     * Transform a descendant of the transformed block matching one of the {@link #getBlockTypes() block types}. The
+     * passed block can be replaced in its parent, but the other blocks of the tree should not be modified.
+     *
+     * @param block the block to transform
+     * @param context the context of the transformation process (syntax, transformation id, etc)
+     * @return the block which replaced the passed block in the tree, or the passed block if it has not been replaced
+     * @throws TransformationException if the transformation fails for any reason
+     */
+    Block transformBlock(Block block, TransformationContext context) throws TransformationException;
+}
@@ -24,6 +24,7 @@
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
+import org.xwiki.stability.Unstable;
 
 /**
  * Stateful generator of id attributes. It's stateful since it remembers the generated ids. Thus a new instance of it
@@ -137,6 +138,20 @@ public String generateUniqueId(String prefix, String text)
         return id;
     }
 
+    /**
+     * Remember an id which was not generated by this generator (for example an id coming from a previous rendering of
+     * the same content) so that it's never generated.
+     *
+     * @param id the id to remember
+     * @return true if the id was not already known
+     * @since 10.9RC1
+     */
+    @Unstable
+    public boolean addId(String id)
+    {
+        return this.generatedIds.add(id);
+    }
+
     /**
      * Normalize passed string into valid string.
      * <ul>
@@ -204,6 +204,96 @@ public void testRemoveBlock()
         Assert.assertNull(b2.getNextSibling());
     }
 
+    @Test
+    public void testSiblingsAfterDirectModification()
+    {
+        WordBlock b1 = new WordBlock("b1");
+        WordBlock b2 = new WordBlock("b2");
+        WordBlock b3 = new WordBlock("b3");
+        ParagraphBlock p1 = new ParagraphBlock(Arrays.<Block>asList(b1, b2));
+
+        Assert.assertSame(b2, b1.getNextSibling());
+
+        // Modify the list of children without going through the block
+        p1.getChildren().add(0, b3);
+        b3.setParent(p1);
+
+        Assert.assertNull(b3.getPreviousSibling());
+        Assert.assertSame(b1, b3.getNextSibling());
+        Assert.assertSame(b3, b1.getPreviousSibling());
+        Assert.assertSame(b2, b1.getNextSibling());
+
+        // Replace the first child with nothing
+        p1.replaceChild(Collections.<Block>emptyList(), b3);
+
+        Assert.assertNull(b3.getParent());
+        Assert.assertNull(b3.getNextSibling());
+        Assert.assertNull(b1.getPreviousSibling());
+        Assert.assertSame(b2, b1.getNextSibling());
+    }
+
+    @Test
+    public void testModifyWideBlock()
+    {
+        List<Block> words = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            words.add(new WordBlock("word"));
+        }
+        ParagraphBlock paragraph = new ParagraphBlock(words);
+        List<Block> expected = new ArrayList<>(words);
+
+        // Replace each word in document order by two words
+        for (int i = 0; i < words.size(); ++i) {
+            Block word = words.get(i);
+            List<Block> newWords = Arrays.<Block>asList(new WordBlock("word"), new WordBlock("word"));
+            paragraph.replaceChild(newWords, word);
+
+            // Can't use List#indexOf() since all the words are equals
+            int position = 0;
+            while (expected.get(position) != word) {
+                ++position;
+            }
+            expected.remove(position);
+            expected.addAll(position, newWords);
+        }
+        assertSameChildren(expected, paragraph);
+
+        // Insert and remove blocks in reverse order
+        for (int i = expected.size() - 1; i > 0; i -= 3) {
+            Block word = new WordBlock("word");
+            paragraph.insertChildBefore(word, expected.get(i));
+            expected.add(i, word);
+
+            paragraph.removeBlock(expected.get(i - 1));
+            expected.remove(i - 1);
+        }
+        assertSameChildren(expected, paragraph);
+
+        // Modify directly the list of children
+        Block word = new WordBlock("word");
+        paragraph.getChildren().add(0, word);
+        word.setParent(paragraph);
+        expected.add(0, word);
+
+        Block lastWord = expected.get(expected.size() - 1);
+        paragraph.insertChildAfter(new WordBlock("word"), lastWord);
+        Assert.assertSame(lastWord, paragraph.getChildren().get(paragraph.getChildren().size() - 2));
+        paragraph.removeBlock(expected.get(1));
+        Assert.assertSame(expected.get(2), paragraph.getChildren().get(1));
+    }
+
+    private void assertSameChildren(List<Block> expected, Block parent)
+    {
+        List<Block> children = parent.getChildren();
+
+        Assert.assertEquals(expected.size(), children.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertSame(expected.get(i), children.get(i));
+            Assert.assertSame(i > 0 ? expected.get(i - 1) : null, children.get(i).getPreviousSibling());
+            Assert.assertSame(i < expected.size() - 1 ? expected.get(i + 1) : null, children.get(i).getNextSibling());
+        }
+    }
+
     @Test
     public void testGetBlocks()
     {
@@ -284,6 +374,41 @@ public void testGetRoot()
         Assert.assertSame(BlockNavigatorTest.rootBlock, BlockNavigatorTest.contextBlockChild11.getRoot());
     }
 
+    @Test
+    public void testXDOMModificationCount()
+    {
+        WordBlock word = new WordBlock("word");
+        ParagraphBlock paragraph = new ParagraphBlock(Arrays.<Block>asList(word));
+        XDOM xdom = new XDOM(Arrays.<Block>asList(paragraph));
+        long count = xdom.getModificationCount();
+
+        // Modifying blocks outside of the document is not counted
+        ParagraphBlock detached = new ParagraphBlock(Collections.<Block>emptyList());
+        detached.addChild(new WordBlock("other"));
+        Assert.assertEquals(count, xdom.getModificationCount());
+
+        // Reading the document is not counted
+        xdom.getBlocks(AnyBlockMatcher.ANYBLOCKMATCHER, Block.Axes.DESCENDANT);
+        word.getNextSibling();
+        Assert.assertEquals(count, xdom.getModificationCount());
+
+        paragraph.addChild(new SpaceBlock());
+        Assert.assertEquals(++count, xdom.getModificationCount());
+
+        paragraph.insertChildBefore(new WordBlock("before"), word);
+        Assert.assertEquals(++count, xdom.getModificationCount());
+
+        WordBlock replacement = new WordBlock("replacement");
+        paragraph.replaceChild(replacement, word);
+        Assert.assertEquals(++count, xdom.getModificationCount());
+
+        paragraph.removeBlock(replacement);
+        Assert.assertEquals(++count, xdom.getModificationCount());
+
+        paragraph.setChildren(Collections.<Block>emptyList());
+        Assert.assertEquals(++count, xdom.getModificationCount());
+    }
+
     @Test
     public void testAbstractBlockEquals()
     {
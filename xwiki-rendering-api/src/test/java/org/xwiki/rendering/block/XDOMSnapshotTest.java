@@ -0,0 +1,170 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Unit tests for {@link XDOMSnapshot}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class XDOMSnapshotTest
+{
+    private XDOM createXDOM()
+    {
+        Map<String, String> parameters = Collections.singletonMap("class", "value");
+
+        ParagraphBlock paragraph = new ParagraphBlock(Arrays.<Block>asList(new WordBlock("word"), new SpaceBlock(),
+            new FormatBlock(Arrays.<Block>asList(new WordBlock("bold")), Format.BOLD), new SpecialSymbolBlock('!')),
+            parameters);
+        LinkBlock link = new LinkBlock(Arrays.<Block>asList(new WordBlock("label")),
+            new DocumentResourceReference("Space.Page"), false);
+        HeaderBlock header = new HeaderBlock(Arrays.<Block>asList(new WordBlock("word")), HeaderLevel.LEVEL1,
+            parameters, "Hword");
+        MacroMarkerBlock macro = new MacroMarkerBlock("macro", parameters, "content",
+            Arrays.<Block>asList(new RawBlock("<b/>", Syntax.XHTML_1_0)), false);
+        FigureBlock figure = new FigureBlock(Arrays.<Block>asList(
+            new ParagraphBlock(Arrays.<Block>asList(new WordBlock("figure"))),
+            new FigureCaptionBlock(Arrays.<Block>asList(new WordBlock("caption")), parameters)), parameters);
+
+        XDOM xdom = new XDOM(Arrays.<Block>asList(header, paragraph, new ParagraphBlock(Arrays.<Block>asList(link)),
+            new NewLineBlock(), macro, figure), new MetaData(Collections.<String, Object>singletonMap(MetaData.SOURCE, "doc")));
+        xdom.getIdGenerator().generateUniqueId("word");
+
+        return xdom;
+    }
+
+    private List<List<Object>> getEvents(XDOM xdom)
+    {
+        QueueListener queue = new QueueListener();
+        xdom.traverse(queue);
+
+        return getEvents(queue);
+    }
+
+    private List<List<Object>> getEvents(XDOMSnapshot snapshot)
+    {
+        QueueListener queue = new QueueListener();
+        snapshot.traverse(queue);
+
+        return getEvents(queue);
+    }
+
+    private List<List<Object>> getEvents(QueueListener queue)
+    {
+        List<List<Object>> events = new ArrayList<>();
+        for (QueueListener.Event event : queue) {
+            List<Object> eventList = new ArrayList<>();
+            eventList.add(event.eventType);
+            eventList.addAll(Arrays.asList(event.eventParameters));
+            events.add(eventList);
+        }
+
+        return events;
+    }
+
+    @Test
+    public void traverse()
+    {
+        XDOM xdom = createXDOM();
+        XDOMSnapshot snapshot = new XDOMSnapshot(xdom);
+
+        Assert.assertEquals(getEvents(xdom), getEvents(snapshot));
+    }
+
+    @Test
+    public void structure()
+    {
+        XDOMSnapshot snapshot = new XDOMSnapshot(createXDOM());
+
+        // beginDocument, beginHeader
+        Assert.assertEquals(snapshot.size() - 1, snapshot.getEnd(0));
+        int header = 1;
+        Assert.assertEquals(header + 2, snapshot.getEnd(header));
+        Assert.assertEquals(Arrays.asList("word"), Arrays.asList(snapshot.getEventParameters(header + 1)));
+        Assert.assertEquals(header + 1, snapshot.getEnd(header + 1));
+
+        // The next sibling of the header is the first paragraph
+        int paragraph = snapshot.getEnd(header) + 1;
+        Assert.assertEquals("BEGIN_PARAGRAPH", snapshot.getEventType(paragraph).name());
+
+        // Equal parameters are stored only once
+        Assert.assertSame(snapshot.getEventParameters(paragraph)[0], snapshot.getEventParameters(header)[2]);
+        Assert.assertSame(snapshot.getEventParameters(header + 1)[0], snapshot.getEventParameters(paragraph + 1)[0]);
+    }
+
+    @Test
+    public void toXDOM()
+    {
+        XDOM xdom = createXDOM();
+        XDOMSnapshot snapshot = new XDOMSnapshot(xdom);
+
+        XDOM newXDOM = snapshot.toXDOM();
+
+        Assert.assertEquals(getEvents(xdom), getEvents(newXDOM));
+        Assert.assertEquals("Iword-1", newXDOM.getIdGenerator().generateUniqueId("word"));
+
+        // Modifying the new XDOM does not modify the snapshot
+        LinkBlock link = newXDOM.getFirstBlock(new ClassBlockMatcher(LinkBlock.class),
+            Block.Axes.DESCENDANT);
+        ResourceReference reference = link.getReference();
+        reference.setParameter("anchor", "value");
+        newXDOM.getMetaData().addMetaData(MetaData.SYNTAX, Syntax.XWIKI_2_1);
+        newXDOM.addChild(new WordBlock("other"));
+
+        Assert.assertEquals(getEvents(xdom), getEvents(snapshot));
+        Assert.assertEquals(getEvents(xdom), getEvents(snapshot.toXDOM()));
+        Assert.assertEquals(ResourceType.DOCUMENT, reference.getType());
+    }
+
+    @Test
+    public void traverseFigure()
+    {
+        XDOMSnapshot snapshot = new XDOMSnapshot(createXDOM());
+
+        List<Object> eventTypes = new ArrayList<>();
+        for (List<Object> event : getEvents(snapshot)) {
+            eventTypes.add(event.get(0).toString());
+        }
+
+        int figure = eventTypes.indexOf("BEGIN_FIGURE");
+        Assert.assertEquals(Arrays.asList("BEGIN_FIGURE", "BEGIN_PARAGRAPH", "ON_WORD", "END_PARAGRAPH",
+            "BEGIN_FIGURE_CAPTION", "ON_WORD", "END_FIGURE_CAPTION", "END_FIGURE"),
+            eventTypes.subList(figure, figure + 8));
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.rendering.configuration.RenderingConfiguration;
+import org.xwiki.rendering.converter.BatchConversion;
+import org.xwiki.rendering.converter.BatchConverter;
+import org.xwiki.rendering.converter.ConversionException;
+import org.xwiki.rendering.converter.ConversionInput;
+import org.xwiki.rendering.converter.ConversionResult;
+import org.xwiki.rendering.converter.Converter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultBatchConverter}.
+ *
+ * @version $Id$
+ */
+public class DefaultBatchConverterTest
+{
+    private static final int DOCUMENTS = 20;
+
+    /**
+     * The execution contexts of each thread, maintained by the mocked {@link Execution}.
+     */
+    private static final ThreadLocal<Deque<ExecutionContext>> CONTEXTS = new ThreadLocal<Deque<ExecutionContext>>()
+    {
+        @Override
+        protected Deque<ExecutionContext> initialValue()
+        {
+            return new ArrayDeque<>();
+        }
+    };
+
+    @Rule
+    public MockitoComponentMockingRule<BatchConverter> mocker =
+        new MockitoComponentMockingRule<BatchConverter>(DefaultBatchConverter.class);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        RenderingConfiguration configuration = this.mocker.getInstance(RenderingConfiguration.class);
+        when(configuration.getBatchConversionThreads()).thenReturn(2);
+
+        Converter converter = this.mocker.getInstance(Converter.class);
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                String content = read((Reader) invocation.getArgument(0));
+                if (content.startsWith("error")) {
+                    throw new ConversionException(content);
+                }
+                ((WikiPrinter) invocation.getArgument(3)).print("converted " + content);
+                return null;
+            }
+        }).when(converter).convert(any(Reader.class), same(Syntax.XWIKI_2_1), same(Syntax.XHTML_1_0),
+            any(WikiPrinter.class));
+
+        Execution execution = this.mocker.getInstance(Execution.class);
+        when(execution.getContext()).thenAnswer(new Answer<ExecutionContext>()
+        {
+            @Override
+            public ExecutionContext answer(InvocationOnMock invocation)
+            {
+                return CONTEXTS.get().peek();
+            }
+        });
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                CONTEXTS.get().push(invocation.getArgument(0));
+                return null;
+            }
+        }).when(execution).pushContext(any(ExecutionContext.class));
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation)
+            {
+                CONTEXTS.get().pop();
+                return null;
+            }
+        }).when(execution).popContext();
+    }
+
+    private String read(Reader reader) throws IOException
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int c = reader.read(); c != -1; c = reader.read()) {
+            builder.append((char) c);
+        }
+
+        return builder.toString();
+    }
+
+    private List<ConversionInput> getInputs()
+    {
+        List<ConversionInput> inputs = new ArrayList<>();
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            String content = i % 5 == 0 ? "error " + i : "content " + i;
+            inputs.add(new ConversionInput(String.valueOf(i), new StringReader(content)));
+        }
+
+        return inputs;
+    }
+
+    private void assertResult(ConversionResult result)
+    {
+        int i = Integer.parseInt(result.getId());
+        if (i % 5 == 0) {
+            assertFalse(result.isSuccessful());
+            assertNull(result.getContent());
+            assertEquals("error " + i, result.getError().getMessage());
+        } else {
+            assertTrue(result.isSuccessful());
+            assertEquals("converted content " + i, result.getContent());
+        }
+    }
+
+    @Test
+    public void convertOrdered() throws Exception
+    {
+        BatchConversion conversion = this.mocker.getComponentUnderTest().convert(getInputs().iterator(),
+            Syntax.XWIKI_2_1, Syntax.XHTML_1_0, true);
+
+        for (int i = 0; i < DOCUMENTS; ++i) {
+            assertTrue(conversion.hasNext());
+            ConversionResult result = conversion.next();
+            assertEquals(String.valueOf(i), result.getId());
+            assertResult(result);
+        }
+        assertFalse(conversion.hasNext());
+
+        assertEquals(16, conversion.getSucceeded());
+        assertEquals(4, conversion.getFailed());
+    }
+
+    @Test
+    public void convertAsCompleted() throws Exception
+    {
+        BatchConversion conversion = this.mocker.getComponentUnderTest().convert(getInputs().iterator(),
+            Syntax.XWIKI_2_1, Syntax.XHTML_1_0, false);
+
+        Set<String> ids = new HashSet<>();
+        while (conversion.hasNext()) {
+            ConversionResult result = conversion.next();
+            assertResult(result);
+            ids.add(result.getId());
+        }
+
+        assertEquals(DOCUMENTS, ids.size());
+        assertEquals(DOCUMENTS, conversion.getSucceeded() + conversion.getFailed());
+    }
+
+    @Test
+    public void close() throws Exception
+    {
+        BatchConversion conversion = this.mocker.getComponentUnderTest().convert(getInputs().iterator(),
+            Syntax.XWIKI_2_1, Syntax.XHTML_1_0, true);
+
+        assertEquals("0", conversion.next().getId());
+        conversion.close();
+
+        assertFalse(conversion.hasNext());
+    }
+
+    @Test
+    public void convertWithExecutorThreadHavingAContext() throws Exception
+    {
+        final Execution execution = this.mocker.getInstance(Execution.class);
+        final ExecutionContext workerContext = new ExecutionContext();
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            // The thread of the executor is also used for other tasks which set up their own context
+            executorService.submit(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    execution.pushContext(workerContext);
+                    return null;
+                }
+            }).get();
+
+            final List<ExecutionContext> conversionContexts = new ArrayList<>();
+            Converter converter = this.mocker.getInstance(Converter.class);
+            doAnswer(new Answer<Void>()
+            {
+                @Override
+                public Void answer(InvocationOnMock invocation)
+                {
+                    conversionContexts.add(execution.getContext());
+                    return null;
+                }
+            }).when(converter).convert(any(Reader.class), same(Syntax.XWIKI_2_1), same(Syntax.XHTML_1_0),
+                any(WikiPrinter.class));
+
+            BatchConversion conversion = this.mocker.getComponentUnderTest().convert(getInputs().iterator(),
+                Syntax.XWIKI_2_1, Syntax.XHTML_1_0, true, executorService, 2);
+            while (conversion.hasNext()) {
+                assertTrue(conversion.next().isSuccessful());
+            }
+
+            // Each document is converted with its own context
+            assertEquals(DOCUMENTS, conversionContexts.size());
+            for (ExecutionContext conversionContext : conversionContexts) {
+                assertNotSame(workerContext, conversionContext);
+            }
+            verify(execution, never()).removeContext();
+
+            // The context of the executor thread is restored
+            Deque<ExecutionContext> workerContexts = executorService.submit(new Callable<Deque<ExecutionContext>>()
+            {
+                @Override
+                public Deque<ExecutionContext> call()
+                {
+                    return new ArrayDeque<>(CONTEXTS.get());
+                }
+            }).get();
+            assertEquals(1, workerContexts.size());
+            assertSame(workerContext, workerContexts.peek());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
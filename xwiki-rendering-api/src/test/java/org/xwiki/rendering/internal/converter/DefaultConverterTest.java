@@ -0,0 +1,227 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.configuration.RenderingConfiguration;
+import org.xwiki.rendering.converter.Converter;
+import org.xwiki.rendering.internal.configuration.DefaultRenderingConfiguration;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.PrintRendererFactory;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.Transformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultConverter}.
+ *
+ * @version $Id$
+ */
+public class DefaultConverterTest
+{
+    @Rule
+    public MockitoComponentMockingRule<Converter> mocker =
+        new MockitoComponentMockingRule<Converter>(DefaultConverter.class);
+
+    private ComponentManager componentManager;
+
+    private Parser parser;
+
+    private StreamParser streamParser;
+
+    private BlockRenderer blockRenderer;
+
+    private PrintRenderer printRenderer;
+
+    private WikiPrinter printer = new DefaultWikiPrinter();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.componentManager = mock(ComponentManager.class);
+        Provider<ComponentManager> componentManagerProvider =
+            this.mocker.getInstance(new DefaultParameterizedType(null, Provider.class, ComponentManager.class),
+                "context");
+        when(componentManagerProvider.get()).thenReturn(this.componentManager);
+
+        String source = Syntax.XWIKI_2_1.toIdString();
+        this.parser = mock(Parser.class);
+        when(this.componentManager.getInstance(Parser.class, source)).thenReturn(this.parser);
+        this.streamParser = mock(StreamParser.class);
+        when(this.componentManager.hasComponent(StreamParser.class, source)).thenReturn(true);
+        when(this.componentManager.getInstance(StreamParser.class, source)).thenReturn(this.streamParser);
+
+        String target = Syntax.XHTML_1_0.toIdString();
+        this.blockRenderer = mock(BlockRenderer.class);
+        when(this.componentManager.getInstance(BlockRenderer.class, target)).thenReturn(this.blockRenderer);
+        this.printRenderer = mock(PrintRenderer.class);
+        PrintRendererFactory factory = mock(PrintRendererFactory.class);
+        when(factory.createRenderer(any(WikiPrinter.class))).thenReturn(this.printRenderer);
+        when(this.componentManager.hasComponent(PrintRendererFactory.class, target)).thenReturn(true);
+        when(this.componentManager.getInstance(PrintRendererFactory.class, target)).thenReturn(factory);
+    }
+
+    /**
+     * Use the configuration used in standalone mode, with the macro transformation registered.
+     */
+    private void useDefaultConfiguration() throws Exception
+    {
+        DefaultComponentDescriptor<Transformation> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(Transformation.class);
+        descriptor.setRoleHint("macro");
+        when(this.componentManager.<Transformation>getComponentDescriptorList((Type) Transformation.class))
+            .thenReturn(Collections.<ComponentDescriptor<Transformation>>singletonList(descriptor));
+
+        DefaultRenderingConfiguration configuration = new DefaultRenderingConfiguration();
+        ReflectionUtils.setFieldValue(configuration, "componentManager", this.componentManager);
+        configuration.initialize();
+
+        ReflectionUtils.setFieldValue(this.mocker.getComponentUnderTest(), "configuration", configuration);
+    }
+
+    /**
+     * Make the stream parser send a word, then a macro if asked, then another word.
+     */
+    private void mockStreamParser(final boolean withMacro) throws Exception
+    {
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                Listener listener = invocation.getArgument(1);
+                listener.beginDocument(MetaData.EMPTY);
+                listener.onWord("before");
+                if (withMacro) {
+                    listener.onMacro("macro", Collections.<String, String>emptyMap(), null, false);
+                }
+                listener.onWord("after");
+                listener.endDocument(MetaData.EMPTY);
+
+                return null;
+            }
+        }).when(this.streamParser).parse(any(Reader.class), any(Listener.class));
+    }
+
+    @Test
+    public void convertWithoutTransformations() throws Exception
+    {
+        RenderingConfiguration configuration = this.mocker.getInstance(RenderingConfiguration.class);
+        when(configuration.getTransformationNames()).thenReturn(Collections.<String>emptyList());
+
+        Reader source = new StringReader("content");
+        this.mocker.getComponentUnderTest().convert(source, Syntax.XWIKI_2_1, Syntax.XHTML_1_0, this.printer);
+
+        verify(this.streamParser).parse(source, this.printRenderer);
+        verifyZeroInteractions(this.parser, this.blockRenderer,
+            this.mocker.getInstance(TransformationManager.class));
+    }
+
+    @Test
+    public void convertWithTransformations() throws Exception
+    {
+        RenderingConfiguration configuration = this.mocker.getInstance(RenderingConfiguration.class);
+        when(configuration.getTransformationNames()).thenReturn(Arrays.asList("macro", "other"));
+
+        Reader source = new StringReader("content");
+        XDOM xdom = new XDOM(Collections.emptyList());
+        when(this.parser.parse(source)).thenReturn(xdom);
+
+        this.mocker.getComponentUnderTest().convert(source, Syntax.XWIKI_2_1, Syntax.XHTML_1_0, this.printer);
+
+        TransformationManager transformationManager = this.mocker.getInstance(TransformationManager.class);
+        verify(transformationManager).performTransformations(same(xdom), any(TransformationContext.class));
+        verify(this.blockRenderer).render(xdom, this.printer);
+        verifyZeroInteractions(this.streamParser);
+    }
+
+    @Test
+    public void convertWithDefaultConfigurationAndNoMacro() throws Exception
+    {
+        useDefaultConfiguration();
+        mockStreamParser(false);
+
+        this.mocker.getComponentUnderTest().convert(new StringReader("content"), Syntax.XWIKI_2_1,
+            Syntax.XHTML_1_0, this.printer);
+
+        // The macro transformation has nothing to do so the content is streamed
+        verify(this.printRenderer).onWord("before");
+        verify(this.printRenderer).onWord("after");
+        verify(this.printRenderer).endDocument(MetaData.EMPTY);
+        verifyZeroInteractions(this.parser, this.blockRenderer,
+            this.mocker.getInstance(TransformationManager.class));
+    }
+
+    @Test
+    public void convertWithDefaultConfigurationAndMacro() throws Exception
+    {
+        useDefaultConfiguration();
+        mockStreamParser(true);
+
+        XDOM xdom = new XDOM(Collections.emptyList());
+        when(this.parser.parse(any(Reader.class))).thenReturn(xdom);
+
+        this.mocker.getComponentUnderTest().convert(new StringReader("content"), Syntax.XWIKI_2_1,
+            Syntax.XHTML_1_0, this.printer);
+
+        // The streaming stops at the first macro and the content is converted again through a XDOM
+        verify(this.printRenderer).onWord("before");
+        verify(this.printRenderer, never()).onWord("after");
+        TransformationManager transformationManager = this.mocker.getInstance(TransformationManager.class);
+        verify(transformationManager).performTransformations(same(xdom), any(TransformationContext.class));
+        verify(this.blockRenderer).render(xdom, this.printer);
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.converter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.MacroMarkerBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.SectionBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.converter.IncrementalConversionState;
+import org.xwiki.rendering.converter.IncrementalConverter;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultIncrementalConverter}.
+ *
+ * @version $Id$
+ */
+public class DefaultIncrementalConverterTest
+{
+    @Rule
+    public MockitoComponentMockingRule<IncrementalConverter> mocker =
+        new MockitoComponentMockingRule<IncrementalConverter>(DefaultIncrementalConverter.class);
+
+    private TransformationManager transformationManager;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        ComponentManager componentManager = mock(ComponentManager.class);
+        Provider<ComponentManager> componentManagerProvider =
+            this.mocker.getInstance(new DefaultParameterizedType(null, Provider.class, ComponentManager.class),
+                "context");
+        when(componentManagerProvider.get()).thenReturn(componentManager);
+
+        // Parse "intro|title1|title2" as a paragraph followed by two sections (with a macro for the macro titles)
+        Parser parser = mock(Parser.class);
+        when(parser.parse(any(Reader.class))).thenAnswer(new Answer<XDOM>()
+        {
+            @Override
+            public XDOM answer(InvocationOnMock invocation) throws Throwable
+            {
+                return parse((Reader) invocation.getArgument(0));
+            }
+        });
+        when(componentManager.getInstance(Parser.class, Syntax.XWIKI_2_1.toIdString())).thenReturn(parser);
+
+        // Render the words between brackets
+        BlockRenderer renderer = new BlockRenderer()
+        {
+            @Override
+            public void render(Block block, WikiPrinter printer)
+            {
+                render(Arrays.asList(block), printer);
+            }
+
+            @Override
+            public void render(Collection<Block> blocks, WikiPrinter printer)
+            {
+                for (Block block : blocks) {
+                    for (WordBlock word : block.<WordBlock>getBlocks(new ClassBlockMatcher(WordBlock.class),
+                        Block.Axes.DESCENDANT_OR_SELF)) {
+                        printer.print("[" + word.getWord() + "]");
+                    }
+                }
+            }
+        };
+        when(componentManager.getInstance(BlockRenderer.class, Syntax.XHTML_1_0.toIdString())).thenReturn(renderer);
+
+        this.transformationManager = this.mocker.getInstance(TransformationManager.class);
+    }
+
+    private XDOM parse(Reader reader) throws IOException
+    {
+        StringBuilder content = new StringBuilder();
+        for (int c = reader.read(); c != -1; c = reader.read()) {
+            content.append((char) c);
+        }
+
+        String[] parts = content.toString().split("\\|");
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(new ParagraphBlock(Arrays.<Block>asList(new WordBlock(parts[0]))));
+        for (int i = 1; i < parts.length; ++i) {
+            List<Block> sectionBlocks = new ArrayList<>();
+            sectionBlocks.add(new HeaderBlock(Arrays.<Block>asList(new WordBlock(parts[i])), HeaderLevel.LEVEL1));
+            if (IncrementalConverter.DOCUMENT_MACROS.contains(parts[i]) || "counter".equals(parts[i])) {
+                sectionBlocks.add(new MacroBlock(parts[i], Collections.<String, String>emptyMap(), false));
+            }
+            blocks.add(new SectionBlock(sectionBlocks));
+        }
+
+        return new XDOM(blocks);
+    }
+
+    private String convert(String content, IncrementalConversionState state) throws Exception
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        this.mocker.getComponentUnderTest().convert(new StringReader(content), Syntax.XWIKI_2_1, Syntax.XHTML_1_0,
+            state, printer);
+
+        return printer.toString();
+    }
+
+    @Test
+    public void convert() throws Exception
+    {
+        IncrementalConversionState state = this.mocker.getComponentUnderTest().createState();
+
+        assertEquals("[intro][title1][title2]", convert("intro|title1|title2", state));
+        assertEquals(3, state.getSectionCount());
+        assertEquals(0, state.getReusedSectionCount());
+        verify(this.transformationManager, times(3)).performTransformations(any(Block.class),
+            any(TransformationContext.class));
+
+        reset(this.transformationManager);
+        assertEquals("[intro][title1][title2]", convert("intro|title1|title2", state));
+        assertEquals(3, state.getReusedSectionCount());
+        verify(this.transformationManager, times(0)).performTransformations(any(Block.class),
+            any(TransformationContext.class));
+
+        reset(this.transformationManager);
+        assertEquals("[intro][title1][changed]", convert("intro|title1|changed", state));
+        assertEquals(2, state.getReusedSectionCount());
+        verify(this.transformationManager, times(1)).performTransformations(any(Block.class),
+            any(TransformationContext.class));
+    }
+
+    @Test
+    public void convertWithDocumentMacro() throws Exception
+    {
+        IncrementalConversionState state = this.mocker.getComponentUnderTest().createState();
+
+        assertEquals("[intro][toc][title]", convert("intro|toc|title", state));
+
+        reset(this.transformationManager);
+        assertEquals("[intro][toc][title]", convert("intro|toc|title", state));
+        assertEquals(2, state.getReusedSectionCount());
+        verify(this.transformationManager, times(1)).performTransformations(any(Block.class),
+            any(TransformationContext.class));
+    }
+
+    @Test
+    public void convertDoesNotReuseIdsOfReusedSections() throws Exception
+    {
+        // Each transformed block gets a unique id
+        final List<String> generatedIds = new ArrayList<>();
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                Block block = invocation.getArgument(0);
+                TransformationContext context = invocation.getArgument(1);
+                String id = context.getXDOM().getIdGenerator().generateUniqueId("H", "generated");
+                block.setParameter("id", id);
+                generatedIds.add(id);
+
+                return null;
+            }
+        }).when(this.transformationManager).performTransformations(any(Block.class),
+            any(TransformationContext.class));
+
+        IncrementalConversionState state = this.mocker.getComponentUnderTest().createState();
+
+        convert("intro|title1|title2", state);
+        assertEquals(Arrays.asList("Hgenerated", "Hgenerated-1", "Hgenerated-2"), generatedIds);
+
+        generatedIds.clear();
+        convert("intro|title1|changed", state);
+        assertEquals(Arrays.asList("Hgenerated-2"), generatedIds);
+    }
+
+    @Test
+    public void convertWithMacroResultChanging() throws Exception
+    {
+        // The counter macro generates a different word each time it's executed
+        doAnswer(new Answer<Void>()
+        {
+            private int count;
+
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                Block block = invocation.getArgument(0);
+                for (MacroBlock macroBlock : block.<MacroBlock>getBlocks(new ClassBlockMatcher(MacroBlock.class),
+                    Block.Axes.DESCENDANT_OR_SELF)) {
+                    macroBlock.getParent().replaceChild(new MacroMarkerBlock(macroBlock.getId(),
+                        macroBlock.getParameters(), Arrays.<Block>asList(new WordBlock("count" + ++this.count)),
+                        false), macroBlock);
+                }
+
+                return null;
+            }
+        }).when(this.transformationManager).performTransformations(any(Block.class),
+            any(TransformationContext.class));
+
+        IncrementalConversionState state = this.mocker.getComponentUnderTest().createState();
+
+        assertEquals("[intro][counter][count1]", convert("intro|counter", state));
+
+        // The section containing the macro is transformed again even if its content did not change
+        assertEquals("[intro][counter][count2]", convert("intro|counter", state));
+        assertEquals(1, state.getReusedSectionCount());
+
+        // Unless the macro is declared as reusable
+        state = this.mocker.getComponentUnderTest().createState(IncrementalConverter.DOCUMENT_MACROS,
+            Arrays.asList("counter"));
+
+        assertEquals("[intro][counter][count3]", convert("intro|counter", state));
+        assertEquals("[intro][counter][count3]", convert("intro|counter", state));
+        assertEquals(2, state.getReusedSectionCount());
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.MacroMarkerBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.transformation.AbstractBlockTransformation;
+import org.xwiki.rendering.transformation.BlockTransformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+/**
+ * Unit tests for {@link CompositeBlockTransformation}.
+ *
+ * @version $Id$
+ */
+public class CompositeBlockTransformationTest
+{
+    /**
+     * Replaces the "link" words with links.
+     */
+    private static class WordTransformation extends AbstractBlockTransformation
+    {
+        @Override
+        public Collection<Class<? extends Block>> getBlockTypes()
+        {
+            return Collections.<Class<? extends Block>>singletonList(WordBlock.class);
+        }
+
+        @Override
+        public Block transformBlock(Block block, TransformationContext context)
+        {
+            if (((WordBlock) block).getWord().equals("link")) {
+                Block linkBlock = new LinkBlock(Collections.<Block>emptyList(),
+                    new ResourceReference("word", ResourceType.URL), false);
+                block.getParent().replaceChild(linkBlock, block);
+
+                return linkBlock;
+            }
+
+            return block;
+        }
+    }
+
+    /**
+     * Collects the references of the links, including the ones in protected blocks.
+     */
+    private static class LinkTransformation extends AbstractBlockTransformation
+    {
+        private final List<String> references = new ArrayList<>();
+
+        @Override
+        public Collection<Class<? extends Block>> getBlockTypes()
+        {
+            return Collections.<Class<? extends Block>>singletonList(LinkBlock.class);
+        }
+
+        @Override
+        public boolean isProtectedBlocksSkipped()
+        {
+            return false;
+        }
+
+        @Override
+        public Block transformBlock(Block block, TransformationContext context)
+        {
+            this.references.add(((LinkBlock) block).getReference().getReference());
+
+            return block;
+        }
+    }
+
+    /**
+     * Fails on the first word.
+     */
+    private static class FailingTransformation extends AbstractBlockTransformation
+    {
+        private int calls;
+
+        @Override
+        public Collection<Class<? extends Block>> getBlockTypes()
+        {
+            return Collections.<Class<? extends Block>>singletonList(WordBlock.class);
+        }
+
+        @Override
+        public Block transformBlock(Block block, TransformationContext context) throws TransformationException
+        {
+            this.calls++;
+
+            throw new TransformationException("error");
+        }
+    }
+
+    /**
+     * Wraps the "link" words in links labelled with the word.
+     */
+    private static class WrappingTransformation extends AbstractBlockTransformation
+    {
+        private int calls;
+
+        @Override
+        public Collection<Class<? extends Block>> getBlockTypes()
+        {
+            return Collections.<Class<? extends Block>>singletonList(WordBlock.class);
+        }
+
+        @Override
+        public Block transformBlock(Block block, TransformationContext context)
+        {
+            this.calls++;
+
+            if (((WordBlock) block).getWord().equals("link")) {
+                Block linkBlock = new LinkBlock(Collections.<Block>singletonList(new WordBlock("link")),
+                    new ResourceReference("wrapped", ResourceType.URL), false);
+                block.getParent().replaceChild(linkBlock, block);
+
+                return linkBlock;
+            }
+
+            return block;
+        }
+    }
+
+    /**
+     * Collects the words.
+     */
+    private static class WordCollectingTransformation extends AbstractBlockTransformation
+    {
+        private final List<String> words = new ArrayList<>();
+
+        @Override
+        public Collection<Class<? extends Block>> getBlockTypes()
+        {
+            return Collections.<Class<? extends Block>>singletonList(WordBlock.class);
+        }
+
+        @Override
+        public Block transformBlock(Block block, TransformationContext context)
+        {
+            this.words.add(((WordBlock) block).getWord());
+
+            return block;
+        }
+    }
+
+    private XDOM createXDOM()
+    {
+        Block codeBlock = new MacroMarkerBlock("code", Collections.<String, String>emptyMap(),
+            Arrays.<Block>asList(new WordBlock("link"),
+                new LinkBlock(Collections.<Block>emptyList(), new ResourceReference("code", ResourceType.URL), false)),
+            false);
+
+        return new XDOM(Arrays.<Block>asList(new ParagraphBlock(Arrays.<Block>asList(new WordBlock("word"),
+            new WordBlock("link"),
+            new LinkBlock(Collections.<Block>emptyList(), new ResourceReference("link", ResourceType.URL), false))),
+            codeBlock));
+    }
+
+    @Test
+    public void transformInSinglePass() throws Exception
+    {
+        WordTransformation wordTransformation = new WordTransformation();
+        LinkTransformation linkTransformation = new LinkTransformation();
+
+        XDOM xdom = createXDOM();
+        new CompositeBlockTransformation(Arrays.<BlockTransformation>asList(wordTransformation, linkTransformation))
+            .transform(xdom, new TransformationContext());
+
+        // The link created by the first transformation is passed to the second one, the word in the code macro is not
+        // transformed but the link in it is collected
+        assertEquals(Arrays.asList("word", "link", "code"), linkTransformation.references);
+        assertTrue(xdom.getChildren().get(0).getChildren().get(1) instanceof LinkBlock);
+        assertTrue(xdom.getChildren().get(1).getChildren().get(0) instanceof WordBlock);
+    }
+
+    @Test
+    public void transformWhenOneTransformationFails() throws Exception
+    {
+        FailingTransformation failingTransformation = new FailingTransformation();
+        LinkTransformation linkTransformation = new LinkTransformation();
+
+        try {
+            new CompositeBlockTransformation(
+                Arrays.<BlockTransformation>asList(failingTransformation, linkTransformation))
+                .transform(createXDOM(), new TransformationContext());
+            fail("Should have thrown an exception");
+        } catch (TransformationException expected) {
+            assertEquals("error", expected.getMessage());
+        }
+
+        // The failing transformation is called only once, the other one continues
+        assertEquals(1, failingTransformation.calls);
+        assertEquals(Arrays.asList("link", "code"), linkTransformation.references);
+    }
+
+    @Test
+    public void transformAlone() throws Exception
+    {
+        LinkTransformation linkTransformation = new LinkTransformation();
+        XDOM xdom = createXDOM();
+
+        linkTransformation.transform(xdom, new TransformationContext());
+
+        assertEquals(Arrays.asList("link", "code"), linkTransformation.references);
+        assertSame(xdom, xdom.getChildren().get(0).getParent());
+    }
+
+    @Test
+    public void transformBlocksCreatedByATransformationWithTheNextTransformationsOnly() throws Exception
+    {
+        WordCollectingTransformation firstCollectingTransformation = new WordCollectingTransformation();
+        WrappingTransformation wrappingTransformation = new WrappingTransformation();
+        WordCollectingTransformation lastCollectingTransformation = new WordCollectingTransformation();
+
+        XDOM xdom = createXDOM();
+        new CompositeBlockTransformation(Arrays.<BlockTransformation>asList(firstCollectingTransformation,
+            wrappingTransformation, lastCollectingTransformation)).transform(xdom, new TransformationContext());
+
+        // The word in the created link is not passed to the transformation which created it or to the previous ones
+        assertEquals(2, wrappingTransformation.calls);
+        assertEquals(Arrays.asList("word", "link"), firstCollectingTransformation.words);
+        assertEquals(Arrays.asList("word", "link"), lastCollectingTransformation.words);
+        LinkBlock linkBlock = (LinkBlock) xdom.getChildren().get(0).getChildren().get(1);
+        assertEquals("wrapped", linkBlock.getReference().getReference());
+        assertTrue(linkBlock.getChildren().get(0) instanceof WordBlock);
+    }
+
+    @Test
+    public void transformExposesTheExecutedTransformation() throws Exception
+    {
+        WordTransformation wordTransformation = new WordTransformation();
+        LinkTransformation linkTransformation = new LinkTransformation();
+        MutableRenderingContext renderingContext = mock(MutableRenderingContext.class);
+
+        CompositeBlockTransformation compositeTransformation = new CompositeBlockTransformation(
+            Arrays.<BlockTransformation>asList(wordTransformation, linkTransformation), null, renderingContext);
+        compositeTransformation.transform(createXDOM(), new TransformationContext());
+
+        // The rendering context is updated only when the transformation changes, and restored at the end
+        InOrder inOrder = inOrder(renderingContext);
+        inOrder.verify(renderingContext).setTransformation(wordTransformation);
+        inOrder.verify(renderingContext).setTransformation(linkTransformation);
+        inOrder.verify(renderingContext).setTransformation(compositeTransformation);
+        verifyNoMoreInteractions(renderingContext);
+    }
+}
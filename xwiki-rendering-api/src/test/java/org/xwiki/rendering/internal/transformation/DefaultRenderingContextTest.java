@@ -0,0 +1,153 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation;
+
+import java.util.Collections;
+import java.util.Deque;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.RenderingContext;
+import org.xwiki.rendering.transformation.Transformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultRenderingContext}.
+ *
+ * @version $Id$
+ */
+public class DefaultRenderingContextTest
+{
+    @Rule
+    public MockitoComponentMockingRule<RenderingContext> mocker =
+        new MockitoComponentMockingRule<RenderingContext>(DefaultRenderingContext.class);
+
+    private MutableRenderingContext renderingContext;
+
+    private ExecutionContext executionContext = new ExecutionContext();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Execution execution = this.mocker.getInstance(Execution.class);
+        when(execution.getContext()).thenReturn(this.executionContext);
+
+        this.renderingContext = (MutableRenderingContext) this.mocker.getComponentUnderTest();
+    }
+
+    @Test
+    public void bind() throws Exception
+    {
+        this.renderingContext.push(null, XDOM.EMPTY, Syntax.XWIKI_2_1, "id", false, Syntax.XHTML_1_0);
+
+        RenderingContextStack stack = this.renderingContext.fork();
+
+        // The forked stack is independent from the execution context
+        when(this.mocker.getInstance(Execution.class).getContext()).thenReturn(null);
+        assertNull(this.renderingContext.getXDOM());
+
+        assertNull(this.renderingContext.bind(stack));
+        assertSame(XDOM.EMPTY, this.renderingContext.getXDOM());
+        assertSame(Syntax.XHTML_1_0, this.renderingContext.getTargetSyntax());
+
+        this.renderingContext.push(null, null, Syntax.XWIKI_2_0, "other", true, Syntax.PLAIN_1_0);
+        assertSame(Syntax.XWIKI_2_0, this.renderingContext.getDefaultSyntax());
+        this.renderingContext.pop();
+        assertSame(Syntax.XWIKI_2_1, this.renderingContext.getDefaultSyntax());
+
+        assertSame(stack, this.renderingContext.bind(null));
+        assertNull(this.renderingContext.getXDOM());
+
+        // The stack stored in the execution context has not been modified
+        when(this.mocker.getInstance(Execution.class).getContext()).thenReturn(this.executionContext);
+        assertSame(Syntax.XWIKI_2_1, this.renderingContext.getDefaultSyntax());
+        this.renderingContext.pop();
+        assertNull(this.renderingContext.getDefaultSyntax());
+    }
+
+    @Test
+    public void setTransformation() throws Exception
+    {
+        Transformation transformation = mock(Transformation.class);
+        Transformation otherTransformation = mock(Transformation.class);
+
+        // Ignored when there is no context
+        this.renderingContext.setTransformation(otherTransformation);
+        assertNull(this.renderingContext.getTransformation());
+
+        this.renderingContext.push(transformation, XDOM.EMPTY, Syntax.XWIKI_2_1, "id", false, Syntax.XHTML_1_0);
+        this.renderingContext.setTransformation(otherTransformation);
+        assertSame(otherTransformation, this.renderingContext.getTransformation());
+        this.renderingContext.pop();
+
+        assertNull(this.renderingContext.getTransformation());
+    }
+
+    @Test
+    public void transformInContextResolvesStackOnce() throws Exception
+    {
+        Transformation transformation = mock(Transformation.class);
+        final XDOM xdom = new XDOM(Collections.<Block>emptyList());
+        TransformationContext context = new TransformationContext(xdom, Syntax.XWIKI_2_1);
+
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                assertSame(xdom, renderingContext.getXDOM());
+                assertSame(Syntax.XWIKI_2_1, renderingContext.getDefaultSyntax());
+
+                renderingContext.push(null, null, Syntax.XWIKI_2_0, "nested", false, null);
+                assertSame(Syntax.XWIKI_2_0, renderingContext.getDefaultSyntax());
+                renderingContext.pop();
+
+                return null;
+            }
+        }).when(transformation).transform(xdom, context);
+
+        this.renderingContext.transformInContext(transformation, context, xdom);
+
+        // The execution context is accessed only once for the whole transformation
+        verify(this.mocker.getInstance(Execution.class), times(1)).getContext();
+
+        // The stack stored in the execution context has been used and is not bound anymore
+        assertTrue(((Deque<?>) this.executionContext.getProperty("rendering.context")).isEmpty());
+        assertNull(this.renderingContext.bind(null));
+    }
+}
@@ -19,13 +19,25 @@
  */
 package org.xwiki.rendering.internal.transformation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 import org.junit.Test;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.configuration.RenderingConfiguration;
+import org.xwiki.rendering.internal.configuration.DefaultRenderingConfiguration;
 import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.AbstractTransformation;
+import org.xwiki.rendering.transformation.Transformation;
 import org.xwiki.rendering.transformation.TransformationContext;
 import org.xwiki.rendering.transformation.TransformationManager;
 import org.xwiki.test.jmock.AbstractComponentTestCase;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Unit tests for {@link DefaultTransformationManager}.
  *
@@ -33,10 +45,87 @@
  */
 public class DefaultTransformationManagerTest extends AbstractComponentTestCase
 {
+    private static class TestTransformation extends AbstractTransformation
+    {
+        private final int priority;
+
+        TestTransformation(int priority)
+        {
+            this.priority = priority;
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return this.priority;
+        }
+
+        @Override
+        public void transform(Block block, TransformationContext context)
+        {
+            // Do nothing
+        }
+    }
+
+    private void registerTransformation(String hint, Transformation transformation) throws Exception
+    {
+        DefaultComponentDescriptor<Transformation> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRole(Transformation.class);
+        descriptor.setRoleHint(hint);
+        getComponentManager().registerComponent(descriptor, transformation);
+    }
+
     @Test
     public void testTransformations() throws Exception
     {
         TransformationManager manager = getComponentManager().getInstance(TransformationManager.class);
         manager.performTransformations(XDOM.EMPTY, new TransformationContext(XDOM.EMPTY, Syntax.XWIKI_2_0));
     }
+
+    @Test
+    public void getTransformationsIsKeptUntilTheTransformationsChange() throws Exception
+    {
+        Transformation transformation1 = new TestTransformation(200);
+        Transformation transformation2 = new TestTransformation(100);
+        registerTransformation("test1", transformation1);
+        registerTransformation("test2", transformation2);
+
+        DefaultRenderingConfiguration configuration =
+            (DefaultRenderingConfiguration) getComponentManager().getInstance(RenderingConfiguration.class);
+        configuration.setTransformationNames(Arrays.asList("test1", "test2", "missing"));
+
+        DefaultTransformationManager manager = getComponentManager().getInstance(TransformationManager.class);
+
+        assertEquals(Arrays.asList(transformation2, transformation1), manager.getTransformations());
+
+        // Modifying the returned list doesn't affect the kept transformations
+        manager.getTransformations().clear();
+        assertEquals(Arrays.asList(transformation2, transformation1), manager.getTransformations());
+
+        // Override a transformation
+        Transformation transformation3 = new TestTransformation(300);
+        registerTransformation("test2", transformation3);
+
+        assertEquals(Arrays.asList(transformation1, transformation3), manager.getTransformations());
+
+        // Register a missing transformation
+        Transformation transformation4 = new TestTransformation(50);
+        registerTransformation("missing", transformation4);
+
+        assertEquals(Arrays.asList(transformation4, transformation1, transformation3), manager.getTransformations());
+
+        // Unregister a transformation
+        getComponentManager().unregisterComponent(Transformation.class, "test1");
+
+        assertEquals(Arrays.asList(transformation4, transformation3), manager.getTransformations());
+
+        // Change the configuration
+        configuration.setTransformationNames(new ArrayList<>(Arrays.asList("test2")));
+
+        assertEquals(Arrays.asList(transformation3), manager.getTransformations());
+
+        configuration.getTransformationNames().clear();
+
+        assertTrue(manager.getTransformations().isEmpty());
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.listener.chaining;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ListenerChain}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class ListenerChainTest
+{
+    private ListenerChain chain;
+
+    private ConsecutiveNewLineStateChainingListener first;
+
+    private BlockStateChainingListener second;
+
+    private CountingChainingListener last;
+
+    private static class CountingChainingListener extends AbstractChainingListener
+    {
+        private int newLineCount;
+
+        CountingChainingListener(ListenerChain listenerChain)
+        {
+            setListenerChain(listenerChain);
+        }
+
+        @Override
+        public void onNewLine()
+        {
+            ++this.newLineCount;
+        }
+    }
+
+    @Before
+    public void setUp()
+    {
+        this.chain = new ListenerChain();
+        this.first = new ConsecutiveNewLineStateChainingListener(this.chain);
+        this.chain.addListener(this.first);
+        this.second = new BlockStateChainingListener(this.chain);
+        this.chain.addListener(this.second);
+        this.last = new CountingChainingListener(this.chain);
+        this.chain.addListener(this.last);
+    }
+
+    @Test
+    public void testGetNextListener()
+    {
+        Assert.assertSame(this.second, this.chain.getNextListener(ConsecutiveNewLineStateChainingListener.class));
+        Assert.assertSame(this.last, this.chain.getNextListener(BlockStateChainingListener.class));
+        Assert.assertNull(this.chain.getNextListener(CountingChainingListener.class));
+        Assert.assertNull(this.chain.getNextListener(EmptyBlockChainingListener.class));
+    }
+
+    @Test
+    public void testGetNextListenerAfterPushAndPop()
+    {
+        this.first.onNewLine();
+        Assert.assertEquals(BlockStateChainingListener.Event.NEW_LINE, this.second.getPreviousEvent());
+
+        this.chain.pushListener(BlockStateChainingListener.class);
+
+        BlockStateChainingListener pushed =
+            (BlockStateChainingListener) this.chain.getListener(BlockStateChainingListener.class);
+        Assert.assertNotSame(this.second, pushed);
+        Assert.assertEquals(BlockStateChainingListener.Event.NONE, pushed.getPreviousEvent());
+        Assert.assertSame(pushed, this.chain.getNextListener(ConsecutiveNewLineStateChainingListener.class));
+
+        // The events must be forwarded to the pushed instance
+        this.first.onNewLine();
+        Assert.assertEquals(BlockStateChainingListener.Event.NEW_LINE, pushed.getPreviousEvent());
+        Assert.assertEquals(2, this.last.newLineCount);
+
+        this.chain.popListener(BlockStateChainingListener.class);
+
+        Assert.assertSame(this.second, this.chain.getNextListener(ConsecutiveNewLineStateChainingListener.class));
+    }
+
+    @Test
+    public void testAddAndRemoveListener()
+    {
+        this.first.onNewLine();
+        Assert.assertEquals(1, this.last.newLineCount);
+
+        this.chain.removeListener(BlockStateChainingListener.class);
+        Assert.assertSame(this.last, this.chain.getNextListener(ConsecutiveNewLineStateChainingListener.class));
+
+        this.first.onNewLine();
+        Assert.assertEquals(2, this.last.newLineCount);
+
+        EmptyBlockChainingListener inserted = new EmptyBlockChainingListener(this.chain);
+        this.chain.addListener(inserted, 1);
+        Assert.assertSame(inserted, this.chain.getNextListener(ConsecutiveNewLineStateChainingListener.class));
+        Assert.assertSame(this.last, this.chain.getNextListener(EmptyBlockChainingListener.class));
+
+        this.first.onNewLine();
+        Assert.assertEquals(3, this.last.newLineCount);
+    }
+}
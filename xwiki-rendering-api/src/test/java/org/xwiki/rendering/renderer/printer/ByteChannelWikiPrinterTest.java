@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.renderer.printer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ByteChannelWikiPrinter}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class ByteChannelWikiPrinterTest
+{
+    @Test
+    public void testPrint() throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteChannelWikiPrinter printer = new ByteChannelWikiPrinter(stream);
+
+        printer.print("some ");
+        printer.println("wörds €");
+        printer.flush();
+
+        Assert.assertEquals("some wörds €\n", new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPrintNull() throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteChannelWikiPrinter printer = new ByteChannelWikiPrinter(stream);
+        DefaultWikiPrinter defaultPrinter = new DefaultWikiPrinter();
+
+        printer.print(null);
+        printer.println(null);
+        printer.flush();
+        defaultPrinter.print(null);
+        defaultPrinter.println(null);
+
+        Assert.assertEquals(defaultPrinter.toString(), new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteWhenBufferIsFull() throws IOException
+    {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteChannelWikiPrinter printer =
+            new ByteChannelWikiPrinter(Channels.newChannel(stream), StandardCharsets.UTF_8, 16);
+
+        printer.print("0123456789");
+        Assert.assertEquals(0, stream.size());
+
+        printer.print("0123456789");
+
+        // The bytes are written as soon as the buffer is full
+        Assert.assertEquals("0123456789012345", new String(stream.toByteArray(), StandardCharsets.UTF_8));
+
+        printer.flush();
+
+        Assert.assertEquals("01234567890123456789", new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSurrogatePairSplitBetweenPrints() throws IOException
+    {
+        String text = "abcdefghijklmn😀o";
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ByteChannelWikiPrinter printer =
+            new ByteChannelWikiPrinter(Channels.newChannel(stream), StandardCharsets.UTF_8, 16);
+
+        // Split the pair and make it overflow the buffer
+        printer.print(text.substring(0, 15));
+        printer.print(text.substring(15));
+        printer.close();
+
+        Assert.assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), stream.toByteArray());
+    }
+
+    @Test
+    public void testPrintWhenWriteFails()
+    {
+        final IOException failure = new IOException("failure");
+        OutputStream stream = new OutputStream()
+        {
+            @Override
+            public void write(int b) throws IOException
+            {
+                throw failure;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                throw failure;
+            }
+        };
+        ByteChannelWikiPrinter printer =
+            new ByteChannelWikiPrinter(Channels.newChannel(stream), StandardCharsets.UTF_8, 16);
+
+        try {
+            printer.print("more than sixteen characters");
+            Assert.fail("Should have thrown an UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            Assert.assertSame(failure, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.renderer.printer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ChunkedWikiPrinter}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class ChunkedWikiPrinterTest
+{
+    @Test
+    public void testPrintAcrossChunks() throws IOException
+    {
+        ChunkedWikiPrinter printer = new ChunkedWikiPrinter(5, 3);
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 20; ++i) {
+            String text = "text" + i + "é";
+            printer.print(text);
+            printer.println("");
+            expected.append(text).append('\n');
+        }
+        printer.print(null);
+        expected.append("null");
+
+        Assert.assertEquals(expected.toString(), printer.toString());
+        Assert.assertEquals(expected.length(), printer.length());
+        for (int i = 0; i < expected.length(); ++i) {
+            Assert.assertEquals(expected.charAt(i), printer.charAt(i));
+        }
+        Assert.assertEquals(expected.substring(3, 17), printer.subSequence(3, 17).toString());
+
+        StringWriter writer = new StringWriter();
+        printer.writeTo(writer);
+        Assert.assertEquals(expected.toString(), writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        printer.writeTo(stream, StandardCharsets.UTF_8);
+        Assert.assertEquals(expected.toString(), new String(stream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testClear()
+    {
+        ChunkedWikiPrinter printer = new ChunkedWikiPrinter(4, 4);
+        printer.print("some long content");
+        printer.clear();
+
+        Assert.assertEquals(0, printer.length());
+        Assert.assertEquals("", printer.toString());
+
+        printer.print("new content");
+        Assert.assertEquals("new content", printer.toString());
+        Assert.assertEquals('c', printer.charAt(4));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testCharAtOutOfBounds()
+    {
+        ChunkedWikiPrinter printer = new ChunkedWikiPrinter();
+        printer.print("text");
+        printer.charAt(4);
+    }
+}
@@ -69,7 +69,7 @@ public void toStringValidation()
     @Test
     public void getSyntaxTypes()
     {
-        assertEquals(18, SyntaxType.getSyntaxTypes().size());
+        assertEquals(19, SyntaxType.getSyntaxTypes().size());
         assertEquals(new SyntaxType("xwiki", "XWiki"), SyntaxType.getSyntaxTypes().get("xwiki"));
     }
 
@@ -57,6 +57,14 @@ public void testGenerateUniqueIdWithPrefix()
         Assert.assertEquals("prefixtext-1", this.idGenerator.generateUniqueId("prefix", "te xt"));
     }
 
+    @Test
+    public void testAddId()
+    {
+        Assert.assertTrue(this.idGenerator.addId("Itext"));
+        Assert.assertFalse(this.idGenerator.addId("Itext"));
+        Assert.assertEquals("Itext-1", this.idGenerator.generateUniqueId("text"));
+    }
+
     @Test
     public void testGenerateUniqueIdFromNonAlphaNum()
     {
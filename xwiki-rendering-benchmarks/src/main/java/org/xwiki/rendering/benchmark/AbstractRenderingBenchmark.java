@@ -0,0 +1,160 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.benchmark;
+
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.syntax.SyntaxType;
+
+/**
+ * Base class of the Rendering benchmarks: initialize the Rendering components and provide the common settings.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = AbstractRenderingBenchmark.ITERATIONS)
+@Measurement(iterations = AbstractRenderingBenchmark.ITERATIONS)
+public abstract class AbstractRenderingBenchmark
+{
+    /**
+     * The number of warmup and measurement iterations.
+     */
+    protected static final int ITERATIONS = 5;
+
+    private EmbeddableComponentManager componentManager;
+
+    /**
+     * Initialize the components and the benchmark.
+     *
+     * @throws Exception when failing to initialize the benchmark
+     */
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception
+    {
+        this.componentManager = new EmbeddableComponentManager();
+        this.componentManager.initialize(getClass().getClassLoader());
+
+        setUp();
+    }
+
+    /**
+     * Dispose the components.
+     */
+    @TearDown(Level.Trial)
+    public void tearDownTrial()
+    {
+        this.componentManager.dispose();
+    }
+
+    /**
+     * Prepare the benchmark, called once the components are initialized.
+     *
+     * @throws Exception when failing to prepare the benchmark
+     */
+    protected abstract void setUp() throws Exception;
+
+    /**
+     * @param <T> the type of the component
+     * @param role the role of the component
+     * @param hint the hint of the component
+     * @return the component
+     * @throws Exception when failing to lookup the component
+     */
+    protected <T> T getInstance(Type role, String hint) throws Exception
+    {
+        return this.componentManager.getInstance(role, hint);
+    }
+
+    /**
+     * @param content the content to parse
+     * @param syntax the syntax of the content
+     * @return the parsed content
+     * @throws Exception when failing to parse the content
+     */
+    protected XDOM parse(String content, Syntax syntax) throws Exception
+    {
+        Parser parser = getInstance(Parser.class, syntax.toIdString());
+
+        return parser.parse(new StringReader(content));
+    }
+
+    /**
+     * @param block the block to render
+     * @param syntax the syntax in which to render the block
+     * @return the rendered block
+     * @throws Exception when failing to render the block
+     */
+    protected String render(Block block, Syntax syntax) throws Exception
+    {
+        BlockRenderer renderer = getInstance(BlockRenderer.class, syntax.toIdString());
+
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        renderer.render(block, printer);
+
+        return printer.toString();
+    }
+
+    /**
+     * @param syntax the syntax of the content
+     * @param sections the number of sections of the content
+     * @return content generated by {@link Corpus} or the rendering of the XWiki 2.1 corpus for the syntaxes which are
+     *         not supported by the corpus
+     * @throws Exception when failing to generate the content
+     */
+    protected String generate(Syntax syntax, int sections) throws Exception
+    {
+        if (Corpus.supports(syntax)) {
+            return Corpus.generate(syntax, sections);
+        }
+
+        String content = render(parse(Corpus.generate(Syntax.XWIKI_2_1, sections), Syntax.XWIKI_2_1), syntax);
+
+        // The XHTML parser expects a well formed document with a single root element
+        if (syntax.getType() == SyntaxType.XHTML) {
+            content = "<html><body>" + content + "</body></html>";
+        }
+
+        return content;
+    }
+}
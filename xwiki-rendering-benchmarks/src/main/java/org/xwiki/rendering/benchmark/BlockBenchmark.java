@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.benchmark;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Measure the manipulation of a parsed document.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class BlockBenchmark extends AbstractRenderingBenchmark
+{
+    @Param({ "10", "100", "1000" })
+    private int sections;
+
+    private XDOM xdom;
+
+    private Block lastChild;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        this.xdom = parse(Corpus.generate(Syntax.XWIKI_2_1, this.sections), Syntax.XWIKI_2_1);
+
+        List<Block> children = this.xdom.getChildren();
+        this.lastChild = children.get(children.size() - 1);
+    }
+
+    /**
+     * @return the cloned document
+     */
+    @Benchmark
+    public XDOM cloneXDOM()
+    {
+        return this.xdom.clone();
+    }
+
+    /**
+     * @return all the words of the document
+     */
+    @Benchmark
+    public List<WordBlock> getDescendantWords()
+    {
+        return this.xdom.getBlocks(new ClassBlockMatcher(WordBlock.class), Block.Axes.DESCENDANT);
+    }
+
+    /**
+     * @return the first link of the document
+     */
+    @Benchmark
+    public LinkBlock getFirstDescendantLink()
+    {
+        return this.xdom.getFirstBlock(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT);
+    }
+
+    /**
+     * @return the first link found in the blocks preceding the last child of the document
+     */
+    @Benchmark
+    public LinkBlock getPrecedingLink()
+    {
+        return this.lastChild.getFirstBlock(new ClassBlockMatcher(LinkBlock.class), Block.Axes.PRECEDING);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.benchmark;
+
+import java.io.StringReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.xwiki.rendering.converter.ConversionException;
+import org.xwiki.rendering.converter.Converter;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Measure the conversion (parsing, transformations and rendering) of XWiki 2.1 content.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class ConverterBenchmark extends AbstractRenderingBenchmark
+{
+    @Param({ "xhtml/1.0", "xwiki/2.1" })
+    private String syntax;
+
+    @Param({ "10", "100", "1000" })
+    private int sections;
+
+    private Converter converter;
+
+    private Syntax targetSyntax;
+
+    private String content;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        this.converter = getInstance(Converter.class, "default");
+        this.targetSyntax = Syntax.valueOf(this.syntax);
+        this.content = Corpus.generate(Syntax.XWIKI_2_1, this.sections) + Corpus.generateMacros(this.sections);
+    }
+
+    /**
+     * @return the converted content
+     * @throws ConversionException when failing to convert the content
+     */
+    @Benchmark
+    public String convert() throws ConversionException
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        this.converter.convert(new StringReader(this.content), Syntax.XWIKI_2_1, this.targetSyntax, printer);
+
+        return printer.toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Generate wiki content of configurable size, made of sections with the usual wiki constructs (headings, styles,
+ * links, images, lists, tables, verbatim). Each generated section is about 600 characters long.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public final class Corpus
+{
+    private static final String XWIKI_SECTION = "= Section %1$d =\n\n"
+        + "This is a **bold** paragraph with some //italic// text, a [[link>>Space.Page%1$d]] and an image "
+        + "[[image:image%1$d.png]].\nAnother line with ##monospace##, --strike-- and __underline__ content, numbers 1, "
+        + "2, 3 and symbols: a+b=c!\n\n"
+        + "* first item\n* second item with **bold**\n** nested item [[https://www.xwiki.org]]\n1. numbered item\n\n"
+        + "|=Header 1|=Header 2\n|cell %1$d|cell with [[link>>Space.Other%1$d]]\n\n"
+        + "{{{verbatim content %1$d}}}\n\n";
+
+    private static final String CREOLE_SECTION = "= Section %1$d\n\n"
+        + "This is a **bold** paragraph with some //italic// text, a [[Page%1$d|link]] and an image "
+        + "{{image%1$d.png}}.\\\\Another line with ##monospace## content, numbers 1, 2, 3 and symbols: a+b=c!\n\n"
+        + "* first item\n* second item with **bold**\n** nested item [[https://www.xwiki.org]]\n# numbered item\n\n"
+        + "|=Header 1|=Header 2|\n|cell %1$d|cell with [[Other%1$d|link]]|\n\n"
+        + "{{{\nverbatim content %1$d\n}}}\n\n";
+
+    private static final String JSPWIKI_SECTION = "!!! Section %1$d\n\n"
+        + "This is a __bold__ paragraph with some ''italic'' text, a [link|Page%1$d] and an image "
+        + "[image%1$d.png].\nAnother line with {{monospace}} content, numbers 1, 2, 3 and symbols: a+b=c!\n\n"
+        + "* first item\n* second item with __bold__\n** nested item [https://www.xwiki.org]\n# numbered item\n\n"
+        + "|| Header 1 || Header 2\n| cell %1$d | cell with [link|Other%1$d]\n\n"
+        + "{{{\nverbatim content %1$d\n}}}\n\n";
+
+    private static final String PLAIN_SECTION = "Section %1$d\n\n"
+        + "This is a bold paragraph with some italic text, a link to Space.Page%1$d and an image image%1$d.png.\n"
+        + "Another line with monospace, strike and underline content, numbers 1, 2, 3 and symbols: a+b=c!\n\n"
+        + "first item\nsecond item with bold\nnested item https://www.xwiki.org\nnumbered item\n\n"
+        + "Header 1 Header 2\ncell %1$d cell with link to Space.Other%1$d\n\n"
+        + "verbatim content %1$d\n\n";
+
+    private static final String MACROS = "{{id name=\"anchor%1$d\"/}}Paragraph %1$d with a **bold** word.\n\n"
+        + "{{box title=\"Box %1$d\"}}\nContent of the box with a [[link>>Space.Page%1$d]].\n{{/box}}\n\n"
+        + "{{comment}}\nHidden comment %1$d\n{{/comment}}\n\n";
+
+    /**
+     * The number of macros in the content generated by {@link #generateMacros(int)} for each index.
+     */
+    private static final int MACROS_PER_INDEX = 3;
+
+    private static final Map<Syntax, String> SECTIONS = new HashMap<>();
+
+    static {
+        SECTIONS.put(Syntax.XWIKI_2_0, XWIKI_SECTION);
+        SECTIONS.put(Syntax.XWIKI_2_1, XWIKI_SECTION);
+        SECTIONS.put(Syntax.CREOLE_1_0, CREOLE_SECTION);
+        SECTIONS.put(Syntax.JSPWIKI_1_0, JSPWIKI_SECTION);
+        SECTIONS.put(Syntax.PLAIN_1_0, PLAIN_SECTION);
+    }
+
+    private Corpus()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param syntax the syntax of the content to generate
+     * @return true if content can be generated in the passed syntax
+     */
+    public static boolean supports(Syntax syntax)
+    {
+        return SECTIONS.containsKey(syntax);
+    }
+
+    /**
+     * @param syntax the syntax of the content to generate
+     * @param sections the number of sections to generate
+     * @return the generated content
+     */
+    public static String generate(Syntax syntax, int sections)
+    {
+        String section = SECTIONS.get(syntax);
+        if (section == null) {
+            throw new IllegalArgumentException(String.format("No corpus for syntax [%s]", syntax));
+        }
+
+        return repeat(section, sections);
+    }
+
+    /**
+     * @param macros the number of macros to generate
+     * @return XWiki 2.1 content containing the passed number of macros (rounded up to a multiple of 3)
+     */
+    public static String generateMacros(int macros)
+    {
+        return repeat(MACROS, (macros + MACROS_PER_INDEX - 1) / MACROS_PER_INDEX);
+    }
+
+    private static String repeat(String template, int count)
+    {
+        StringBuilder builder = new StringBuilder(template.length() * count);
+        for (int i = 0; i < count; ++i) {
+            builder.append(String.format(template, i));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.internal.transformation.macro.DefaultMacroTransformationConfiguration;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.Transformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.TransformationException;
+import org.xwiki.rendering.transformation.macro.MacroTransformationConfiguration;
+
+/**
+ * Measure the execution of the macro transformation on a document containing a varying number of macros, with and
+ * without the macro result cache (the corpus contains cacheable macros so with the cache enabled this mostly measures
+ * cache hits).
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class MacroTransformationBenchmark extends AbstractRenderingBenchmark
+{
+    @Param({ "10", "100", "1000" })
+    private int macros;
+
+    @Param({ "false", "true" })
+    private boolean resultCache;
+
+    private Transformation transformation;
+
+    private XDOM parsedXDOM;
+
+    private XDOM xdom;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        // The result cache is created when the transformation is initialized
+        if (!this.resultCache) {
+            DefaultMacroTransformationConfiguration configuration =
+                getInstance(MacroTransformationConfiguration.class, "default");
+            configuration.setResultCacheSize(0);
+        }
+
+        this.transformation = getInstance(Transformation.class, "macro");
+        this.parsedXDOM = parse(Corpus.generateMacros(this.macros), Syntax.XWIKI_2_1);
+    }
+
+    /**
+     * The transformation modifies the document so each invocation works on a fresh copy.
+     */
+    @Setup(Level.Invocation)
+    public void setUpInvocation()
+    {
+        this.xdom = this.parsedXDOM.clone();
+    }
+
+    /**
+     * @return the transformed document
+     * @throws TransformationException when failing to execute the macros
+     */
+    @Benchmark
+    public XDOM transform() throws TransformationException
+    {
+        this.transformation.transform(this.xdom, new TransformationContext(this.xdom, Syntax.XWIKI_2_1));
+
+        return this.xdom;
+    }
+}
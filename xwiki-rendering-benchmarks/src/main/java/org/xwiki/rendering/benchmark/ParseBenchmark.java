@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.benchmark;
+
+import java.io.StringReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Measure the parsing of content in the various supported syntaxes.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class ParseBenchmark extends AbstractRenderingBenchmark
+{
+    @Param({ "xwiki/2.0", "xwiki/2.1", "xhtml/1.0", "creole/1.0", "jspwiki/1.0", "plain/1.0", "xdom+bin/1.0" })
+    private String syntax;
+
+    @Param({ "10", "100", "1000" })
+    private int sections;
+
+    private Parser parser;
+
+    private String content;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        Syntax parsedSyntax = Syntax.valueOf(this.syntax);
+
+        this.parser = getInstance(Parser.class, parsedSyntax.toIdString());
+        this.content = generate(parsedSyntax, this.sections);
+    }
+
+    /**
+     * @return the parsed content
+     * @throws ParseException when failing to parse the content
+     */
+    @Benchmark
+    public XDOM parse() throws ParseException
+    {
+        return this.parser.parse(new StringReader(this.content));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Measure the rendering of a parsed document in the various supported target syntaxes.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class RenderBenchmark extends AbstractRenderingBenchmark
+{
+    @Param({ "xhtml/1.0", "html/5.0", "xwiki/2.1", "plain/1.0", "event/1.0", "xdom+xml/current", "xdom+bin/1.0" })
+    private String syntax;
+
+    @Param({ "10", "100", "1000" })
+    private int sections;
+
+    private BlockRenderer renderer;
+
+    private XDOM xdom;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        this.renderer = getInstance(BlockRenderer.class, Syntax.valueOf(this.syntax).toIdString());
+        this.xdom = parse(Corpus.generate(Syntax.XWIKI_2_1, this.sections), Syntax.XWIKI_2_1);
+    }
+
+    /**
+     * @return the rendered document
+     */
+    @Benchmark
+    public String render()
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        this.renderer.render(this.xdom, printer);
+
+        return printer.toString();
+    }
+}
@@ -61,6 +61,9 @@ public DefaultBoxMacro()
     {
         super("Box", DESCRIPTION, new DefaultContentDescriptor(CONTENT_DESCRIPTION), BoxMacroParameters.class);
         setDefaultCategory(DEFAULT_CATEGORY_FORMATTING);
+        // The content is parsed without executing its macros
+        setSideEffectFree(true);
+        setCacheable(true);
     }
 
     @Override
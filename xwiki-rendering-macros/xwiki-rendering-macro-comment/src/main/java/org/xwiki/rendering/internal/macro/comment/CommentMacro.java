@@ -61,6 +61,8 @@ public CommentMacro()
     {
         super("Comment", DESCRIPTION, new DefaultContentDescriptor(CONTENT_DESCRIPTION));
         setDefaultCategory(DEFAULT_CATEGORY_DEVELOPMENT);
+        setSideEffectFree(true);
+        setCacheable(true);
     }
 
     @Override
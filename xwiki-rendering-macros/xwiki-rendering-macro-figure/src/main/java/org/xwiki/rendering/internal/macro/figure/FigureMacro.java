@@ -67,6 +67,9 @@ public FigureMacro()
     {
         super("Figure", DESCRIPTION, new DefaultContentDescriptor(CONTENT_DESCRIPTION));
         setDefaultCategory(DEFAULT_CATEGORY_DEVELOPMENT);
+        // The content is parsed without executing its macros
+        setSideEffectFree(true);
+        setCacheable(true);
     }
 
     @Override
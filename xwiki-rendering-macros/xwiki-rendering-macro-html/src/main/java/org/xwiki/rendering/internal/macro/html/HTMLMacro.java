@@ -129,6 +129,7 @@ public HTMLMacro()
     {
         super("HTML", DESCRIPTION, new DefaultContentDescriptor(CONTENT_DESCRIPTION), HTMLMacroParameters.class);
         setDefaultCategory(DEFAULT_CATEGORY_DEVELOPMENT);
+        setCacheable(true);
     }
 
     @Override
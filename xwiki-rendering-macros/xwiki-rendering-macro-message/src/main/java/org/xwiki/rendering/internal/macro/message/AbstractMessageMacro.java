@@ -62,6 +62,10 @@ public abstract class AbstractMessageMacro extends AbstractMacro<Object>
     public AbstractMessageMacro(String macroName, String macroDescription)
     {
         super(macroName, macroDescription, new DefaultContentDescriptor(true));
+
+        // The content is parsed by the box macro without executing its macros
+        setSideEffectFree(true);
+        setCacheable(true);
     }
 
     @Override
@@ -48,4 +48,28 @@ public void testMacroContentDescriptorIsNotNull() throws Exception
         messageMacro = getComponentManager().getInstance(Macro.class, "success");
         Assert.assertNotNull(messageMacro.getDescriptor().getContentDescriptor());
     }
+
+    /**
+     * Tests that message macros can be executed in parallel since they don't execute the macros of their content.
+     */
+    @Test
+    public void testMacroIsSideEffectFree() throws Exception
+    {
+        for (String hint : new String[] {"info", "warning", "error", "success"}) {
+            Macro messageMacro = getComponentManager().getInstance(Macro.class, hint);
+            Assert.assertTrue(messageMacro.getDescriptor().isSideEffectFree());
+        }
+    }
+
+    /**
+     * Tests that the result of message macros can be cached since their content is only parsed.
+     */
+    @Test
+    public void testMacroIsCacheable() throws Exception
+    {
+        for (String hint : new String[] {"info", "warning", "error", "success"}) {
+            Macro messageMacro = getComponentManager().getInstance(Macro.class, hint);
+            Assert.assertTrue(messageMacro.getDescriptor().isCacheable());
+        }
+    }
 }
@@ -79,6 +79,8 @@ public QuoteMacro()
     {
         super("Quote", DESCRIPTION, new DefaultContentDescriptor(CONTENT_DESCRIPTION));
         setDefaultCategory(DEFAULT_CATEGORY_FORMATTING);
+        setSideEffectFree(true);
+        setCacheable(true);
     }
 
     @Override
@@ -0,0 +1,247 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdombin10.internal;
+
+import org.xwiki.rendering.listener.chaining.EventType;
+
+/**
+ * Constants describing the binary XDOM format.
+ * <p>
+ * The content starts with the version of the format and then lists the events. Each event is made of its code, the
+ * number of parameters and the parameters. Numbers are written as unsigned variable length integers (7 bits per byte,
+ * the highest bit indicating that another byte follows) and each parameter value starts with a tag indicating its
+ * type. Strings are encoded in UTF-8 the first time they are written and then referenced by their index in the
+ * strings already written.
+ * <p>
+ * Since renderers and parsers work with characters, the binary content is printed as a sequence of Base64 chunks (each
+ * one padded), which only uses ASCII characters and can thus be stored with any encoding.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public final class XDOMBinConstants
+{
+    /**
+     * The version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Tag of a {@code null} value.
+     */
+    public static final int TAG_NULL = 0;
+
+    /**
+     * Tag of a string written for the first time: length of the UTF-8 bytes followed by the bytes.
+     */
+    public static final int TAG_STRING = 1;
+
+    /**
+     * Tag of a string already written: index of the string.
+     */
+    public static final int TAG_STRING_REFERENCE = 2;
+
+    /**
+     * Tag of {@link Boolean#TRUE}.
+     */
+    public static final int TAG_TRUE = 3;
+
+    /**
+     * Tag of {@link Boolean#FALSE}.
+     */
+    public static final int TAG_FALSE = 4;
+
+    /**
+     * Tag of a {@link Character}: the character code.
+     */
+    public static final int TAG_CHARACTER = 5;
+
+    /**
+     * Tag of an {@link Integer}: the integer.
+     */
+    public static final int TAG_INTEGER = 6;
+
+    /**
+     * Tag of a {@link java.util.Map}: the size followed by the keys and values.
+     */
+    public static final int TAG_MAP = 7;
+
+    /**
+     * Tag of a {@link org.xwiki.rendering.listener.Format}: the name of the format.
+     */
+    public static final int TAG_FORMAT = 8;
+
+    /**
+     * Tag of a {@link org.xwiki.rendering.listener.HeaderLevel}: the level as an integer.
+     */
+    public static final int TAG_HEADER_LEVEL = 9;
+
+    /**
+     * Tag of a {@link org.xwiki.rendering.listener.ListType}: the name of the list type.
+     */
+    public static final int TAG_LIST_TYPE = 10;
+
+    /**
+     * Tag of a {@link org.xwiki.rendering.syntax.Syntax}: the syntax id.
+     */
+    public static final int TAG_SYNTAX = 11;
+
+    /**
+     * Tag of a {@link org.xwiki.rendering.listener.MetaData}: the size followed by the keys and values.
+     */
+    public static final int TAG_METADATA = 12;
+
+    /**
+     * Tag of a {@link org.xwiki.rendering.listener.reference.ResourceReference}: the kind of reference (one of the
+     * {@code REFERENCE_} constants), the type scheme, the reference, the typed flag, the number of base references
+     * followed by the base references and the parameters map.
+     */
+    public static final int TAG_RESOURCE_REFERENCE = 13;
+
+    /**
+     * Kind of a {@link org.xwiki.rendering.listener.reference.ResourceReference} which is not a subclass.
+     */
+    public static final int REFERENCE_GENERIC = 0;
+
+    /**
+     * Kind of a {@link org.xwiki.rendering.listener.reference.DocumentResourceReference}.
+     */
+    public static final int REFERENCE_DOCUMENT = 1;
+
+    /**
+     * Kind of a {@link org.xwiki.rendering.listener.reference.PageResourceReference}.
+     */
+    public static final int REFERENCE_PAGE = 2;
+
+    /**
+     * Kind of a {@link org.xwiki.rendering.listener.reference.SpaceResourceReference}.
+     */
+    public static final int REFERENCE_SPACE = 3;
+
+    /**
+     * Kind of a {@link org.xwiki.rendering.listener.reference.AttachmentResourceReference}.
+     */
+    public static final int REFERENCE_ATTACHMENT = 4;
+
+    /**
+     * Kind of a {@link org.xwiki.rendering.listener.reference.UserResourceReference}.
+     */
+    public static final int REFERENCE_USER = 5;
+
+    /**
+     * Kind of a {@link org.xwiki.rendering.listener.reference.InterWikiResourceReference}.
+     */
+    public static final int REFERENCE_INTERWIKI = 6;
+
+    /**
+     * The events indexed by their code. New events must be added at the end to keep the format compatible.
+     */
+    private static final EventType[] EVENT_TYPES = {
+        EventType.BEGIN_DOCUMENT,
+        EventType.END_DOCUMENT,
+        EventType.BEGIN_GROUP,
+        EventType.END_GROUP,
+        EventType.BEGIN_PARAGRAPH,
+        EventType.END_PARAGRAPH,
+        EventType.BEGIN_DEFINITION_LIST,
+        EventType.END_DEFINITION_LIST,
+        EventType.BEGIN_DEFINITION_TERM,
+        EventType.END_DEFINITION_TERM,
+        EventType.BEGIN_DEFINITION_DESCRIPTION,
+        EventType.END_DEFINITION_DESCRIPTION,
+        EventType.BEGIN_FORMAT,
+        EventType.END_FORMAT,
+        EventType.BEGIN_HEADER,
+        EventType.END_HEADER,
+        EventType.BEGIN_LINK,
+        EventType.END_LINK,
+        EventType.BEGIN_LIST,
+        EventType.END_LIST,
+        EventType.BEGIN_LIST_ITEM,
+        EventType.END_LIST_ITEM,
+        EventType.BEGIN_MACRO_MARKER,
+        EventType.END_MACRO_MARKER,
+        EventType.BEGIN_QUOTATION,
+        EventType.END_QUOTATION,
+        EventType.BEGIN_QUOTATION_LINE,
+        EventType.END_QUOTATION_LINE,
+        EventType.BEGIN_SECTION,
+        EventType.END_SECTION,
+        EventType.BEGIN_TABLE,
+        EventType.END_TABLE,
+        EventType.BEGIN_TABLE_CELL,
+        EventType.END_TABLE_CELL,
+        EventType.BEGIN_TABLE_HEAD_CELL,
+        EventType.END_TABLE_HEAD_CELL,
+        EventType.BEGIN_TABLE_ROW,
+        EventType.END_TABLE_ROW,
+        EventType.BEGIN_METADATA,
+        EventType.END_METADATA,
+        EventType.ON_RAW_TEXT,
+        EventType.ON_EMPTY_LINES,
+        EventType.ON_HORIZONTAL_LINE,
+        EventType.ON_ID,
+        EventType.ON_IMAGE,
+        EventType.ON_MACRO,
+        EventType.ON_NEW_LINE,
+        EventType.ON_SPACE,
+        EventType.ON_SPECIAL_SYMBOL,
+        EventType.ON_VERBATIM,
+        EventType.ON_WORD,
+        EventType.BEGIN_FIGURE,
+        EventType.BEGIN_FIGURE_CAPTION,
+        EventType.END_FIGURE,
+        EventType.END_FIGURE_CAPTION
+    };
+
+    /**
+     * The codes indexed by {@link EventType#ordinal()}.
+     */
+    private static final int[] CODES = new int[EventType.values().length];
+
+    static {
+        for (int code = 0; code < EVENT_TYPES.length; ++code) {
+            CODES[EVENT_TYPES[code].ordinal()] = code;
+        }
+    }
+
+    private XDOMBinConstants()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param eventType the event
+     * @return the code of the event
+     */
+    public static int getCode(EventType eventType)
+    {
+        return CODES[eventType.ordinal()];
+    }
+
+    /**
+     * @param code the code of the event
+     * @return the event, {@code null} if the code is unknown
+     */
+    public static EventType getEventType(int code)
+    {
+        return code >= 0 && code < EVENT_TYPES.length ? EVENT_TYPES[code] : null;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdombin10.internal.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Decode the Base64 characters of a {@link Reader} (the opposite of what is done by
+ * {@link org.xwiki.rendering.xdombin10.internal.renderer.XDOMBinRenderer}). Unlike {@link java.util.Base64.Decoder},
+ * the content can be made of several concatenated Base64 chunks, each one padded.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class Base64InputStream extends InputStream
+{
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+    private static final char PADDING = '=';
+
+    /**
+     * The number of characters encoding a group of bytes.
+     */
+    private static final int GROUP_CHARACTERS = 4;
+
+    /**
+     * The number of bytes encoded by a group of characters.
+     */
+    private static final int GROUP_BYTES = 3;
+
+    /**
+     * The number of bits encoded by a character.
+     */
+    private static final int CHARACTER_BITS = 6;
+
+    private static final int BYTE_BITS = 8;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int BUFFER_GROUPS = 2048;
+
+    /**
+     * The values of the characters of the alphabet, indexed by character code.
+     */
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length(); ++i) {
+            VALUES[ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private final Reader reader;
+
+    private final char[] characters = new char[BUFFER_GROUPS * GROUP_CHARACTERS];
+
+    private final byte[] buffer = new byte[BUFFER_GROUPS * GROUP_BYTES];
+
+    private int position;
+
+    private int size;
+
+    /**
+     * @param reader the reader to read the Base64 characters from
+     */
+    public Base64InputStream(Reader reader)
+    {
+        this.reader = reader;
+    }
+
+    private boolean fill() throws IOException
+    {
+        while (this.position == this.size) {
+            int count = readCharacters();
+            if (count == 0) {
+                return false;
+            }
+
+            decode(count);
+        }
+
+        return true;
+    }
+
+    private int readCharacters() throws IOException
+    {
+        int count = 0;
+        while (count < this.characters.length) {
+            int read = this.reader.read(this.characters, count, this.characters.length - count);
+            if (read == -1) {
+                break;
+            }
+            count += read;
+        }
+
+        if (count % GROUP_CHARACTERS != 0) {
+            throw new IOException("Truncated Base64 content");
+        }
+
+        return count;
+    }
+
+    private void decode(int count) throws IOException
+    {
+        this.position = 0;
+        this.size = 0;
+
+        for (int i = 0; i < count; i += GROUP_CHARACTERS) {
+            int bits = getValue(this.characters[i]) << CHARACTER_BITS | getValue(this.characters[i + 1]);
+            int length = 1;
+            if (this.characters[i + 2] != PADDING) {
+                bits = bits << CHARACTER_BITS | getValue(this.characters[i + 2]);
+                ++length;
+                if (this.characters[i + 3] != PADDING) {
+                    bits = bits << CHARACTER_BITS | getValue(this.characters[i + 3]);
+                    ++length;
+                }
+            } else if (this.characters[i + 3] != PADDING) {
+                throw new IOException("Invalid Base64 padding");
+            }
+
+            // Drop the bits which don't make a complete byte
+            bits >>= (length + 1) * CHARACTER_BITS - length * BYTE_BITS;
+            for (int j = length - 1; j >= 0; --j) {
+                this.buffer[this.size + j] = (byte) (bits & BYTE_MASK);
+                bits >>= BYTE_BITS;
+            }
+            this.size += length;
+        }
+    }
+
+    private int getValue(char c) throws IOException
+    {
+        int value = c < VALUES.length ? VALUES[c] : -1;
+
+        if (value == -1) {
+            throw new IOException(String.format("Invalid Base64 character [%s]", (int) c));
+        }
+
+        return value;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return fill() ? this.buffer[this.position++] & BYTE_MASK : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException
+    {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int count = Math.min(length, this.size - this.position);
+        System.arraycopy(this.buffer, this.position, bytes, offset, count);
+        this.position += count;
+
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.reader.close();
+    }
+}
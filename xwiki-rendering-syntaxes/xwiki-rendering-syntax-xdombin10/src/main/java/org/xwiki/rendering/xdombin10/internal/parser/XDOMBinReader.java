@@ -0,0 +1,359 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdombin10.internal.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.ListType;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.AttachmentResourceReference;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.listener.reference.InterWikiResourceReference;
+import org.xwiki.rendering.listener.reference.PageResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.listener.reference.SpaceResourceReference;
+import org.xwiki.rendering.listener.reference.UserResourceReference;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.xdombin10.internal.XDOMBinConstants;
+
+/**
+ * Read events written in the binary XDOM format.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ * @see XDOMBinConstants
+ */
+public class XDOMBinReader
+{
+    private static final int VARINT_BITS = 7;
+
+    private static final int VARINT_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUATION = 0x80;
+
+    /**
+     * The maximum number of bits of an integer.
+     */
+    private static final int INT_BITS = 32;
+
+    private static final String EOF_MESSAGE = "Unexpected end of binary XDOM content";
+
+    private final InputStream input;
+
+    /**
+     * The strings already read, indexed by their position in the content.
+     */
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * @param input the stream from where to read the events
+     */
+    public XDOMBinReader(InputStream input)
+    {
+        this.input = input;
+    }
+
+    /**
+     * Read all the events and send them to the passed listener.
+     *
+     * @param listener the listener to send the events to
+     * @throws IOException when failing to read the events or when the content is invalid
+     */
+    public void read(Listener listener) throws IOException
+    {
+        int version = this.input.read();
+        if (version == -1) {
+            // Empty content
+            return;
+        }
+        if (version != XDOMBinConstants.VERSION) {
+            throw new IOException(String.format("Unsupported binary XDOM version [%s]", version));
+        }
+
+        for (int first = this.input.read(); first != -1; first = this.input.read()) {
+            int code = readInt(first);
+            EventType eventType = XDOMBinConstants.getEventType(code);
+            if (eventType == null) {
+                throw new IOException(String.format("Unknown event code [%s]", code));
+            }
+
+            Object[] parameters = new Object[readInt()];
+            for (int i = 0; i < parameters.length; ++i) {
+                parameters[i] = readValue();
+            }
+
+            eventType.fireEvent(listener, parameters);
+        }
+    }
+
+    private int readByte() throws IOException
+    {
+        int value = this.input.read();
+
+        if (value == -1) {
+            throw new EOFException(EOF_MESSAGE);
+        }
+
+        return value;
+    }
+
+    private int readInt() throws IOException
+    {
+        return readInt(readByte());
+    }
+
+    private int readInt(int first) throws IOException
+    {
+        int value = first & VARINT_MASK;
+
+        int current = first;
+        for (int shift = VARINT_BITS; (current & VARINT_CONTINUATION) != 0; shift += VARINT_BITS) {
+            if (shift >= INT_BITS) {
+                throw new IOException("Invalid variable length integer");
+            }
+
+            current = readByte();
+            value |= (current & VARINT_MASK) << shift;
+        }
+
+        return value;
+    }
+
+    private Object readValue() throws IOException
+    {
+        int tag = readByte();
+
+        Object value;
+        switch (tag) {
+            case XDOMBinConstants.TAG_NULL:
+                value = null;
+                break;
+            case XDOMBinConstants.TAG_STRING:
+                value = readNewString();
+                break;
+            case XDOMBinConstants.TAG_STRING_REFERENCE:
+                value = readStringReference();
+                break;
+            case XDOMBinConstants.TAG_TRUE:
+                value = Boolean.TRUE;
+                break;
+            case XDOMBinConstants.TAG_FALSE:
+                value = Boolean.FALSE;
+                break;
+            case XDOMBinConstants.TAG_CHARACTER:
+                value = (char) readInt();
+                break;
+            case XDOMBinConstants.TAG_INTEGER:
+                value = readInt();
+                break;
+            default:
+                value = readObject(tag);
+                break;
+        }
+
+        return value;
+    }
+
+    private Object readObject(int tag) throws IOException
+    {
+        Object value;
+        try {
+            switch (tag) {
+                case XDOMBinConstants.TAG_MAP:
+                    value = readParametersEntries();
+                    break;
+                case XDOMBinConstants.TAG_FORMAT:
+                    value = Format.valueOf(readString());
+                    break;
+                case XDOMBinConstants.TAG_HEADER_LEVEL:
+                    value = HeaderLevel.parseInt(readInt());
+                    break;
+                case XDOMBinConstants.TAG_LIST_TYPE:
+                    value = ListType.valueOf(readString());
+                    break;
+                case XDOMBinConstants.TAG_SYNTAX:
+                    value = Syntax.valueOf(readString());
+                    break;
+                case XDOMBinConstants.TAG_METADATA:
+                    value = new MetaData(readEntries());
+                    break;
+                case XDOMBinConstants.TAG_RESOURCE_REFERENCE:
+                    value = readResourceReference();
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown value tag [%s]", tag));
+            }
+        } catch (IllegalArgumentException | ParseException e) {
+            throw new IOException(String.format("Invalid value with tag [%s]", tag), e);
+        }
+
+        return value;
+    }
+
+    private String readNewString() throws IOException
+    {
+        byte[] bytes = new byte[readInt()];
+
+        int offset = 0;
+        while (offset < bytes.length) {
+            int count = this.input.read(bytes, offset, bytes.length - offset);
+            if (count == -1) {
+                throw new EOFException(EOF_MESSAGE);
+            }
+            offset += count;
+        }
+
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        this.strings.add(value);
+
+        return value;
+    }
+
+    private String readStringReference() throws IOException
+    {
+        int index = readInt();
+
+        if (index < 0 || index >= this.strings.size()) {
+            throw new IOException(String.format("Unknown string reference [%s]", index));
+        }
+
+        return this.strings.get(index);
+    }
+
+    private String readString() throws IOException
+    {
+        Object value = readValue();
+
+        if (value != null && !(value instanceof String)) {
+            throw new IOException(String.format("Expected a string but got [%s]", value));
+        }
+
+        return (String) value;
+    }
+
+    private boolean readBoolean() throws IOException
+    {
+        Object value = readValue();
+
+        if (!(value instanceof Boolean)) {
+            throw new IOException(String.format("Expected a boolean but got [%s]", value));
+        }
+
+        return (Boolean) value;
+    }
+
+    private Map<String, Object> readEntries() throws IOException
+    {
+        int size = readInt();
+
+        Map<String, Object> map = new LinkedHashMap<>(size);
+        for (int i = 0; i < size; ++i) {
+            map.put(readString(), readValue());
+        }
+
+        return map;
+    }
+
+    private Map<String, String> readParametersEntries() throws IOException
+    {
+        int size = readInt();
+
+        Map<String, String> map = new LinkedHashMap<>(size);
+        for (int i = 0; i < size; ++i) {
+            map.put(readString(), readString());
+        }
+
+        return map;
+    }
+
+    private Map<String, String> readParameters() throws IOException
+    {
+        if (readByte() != XDOMBinConstants.TAG_MAP) {
+            throw new IOException("Expected a parameters map");
+        }
+
+        return readParametersEntries();
+    }
+
+    private ResourceReference readResourceReference() throws IOException
+    {
+        int kind = readInt();
+        String scheme = readString();
+        String reference = readString();
+
+        ResourceReference resourceReference = createResourceReference(kind, reference);
+        resourceReference.setType(new ResourceType(scheme));
+        resourceReference.setTyped(readBoolean());
+
+        int baseReferencesSize = readInt();
+        for (int i = 0; i < baseReferencesSize; ++i) {
+            resourceReference.addBaseReference(readString());
+        }
+
+        resourceReference.setParameters(readParameters());
+
+        return resourceReference;
+    }
+
+    private ResourceReference createResourceReference(int kind, String reference) throws IOException
+    {
+        ResourceReference resourceReference;
+        switch (kind) {
+            case XDOMBinConstants.REFERENCE_GENERIC:
+                resourceReference = new ResourceReference(reference, null);
+                break;
+            case XDOMBinConstants.REFERENCE_DOCUMENT:
+                resourceReference = new DocumentResourceReference(reference);
+                break;
+            case XDOMBinConstants.REFERENCE_PAGE:
+                resourceReference = new PageResourceReference(reference);
+                break;
+            case XDOMBinConstants.REFERENCE_SPACE:
+                resourceReference = new SpaceResourceReference(reference);
+                break;
+            case XDOMBinConstants.REFERENCE_ATTACHMENT:
+                resourceReference = new AttachmentResourceReference(reference);
+                break;
+            case XDOMBinConstants.REFERENCE_USER:
+                resourceReference = new UserResourceReference(reference);
+                break;
+            case XDOMBinConstants.REFERENCE_INTERWIKI:
+                resourceReference = new InterWikiResourceReference(reference);
+                break;
+            default:
+                throw new IOException(String.format("Unknown resource reference kind [%s]", kind));
+        }
+
+        return resourceReference;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdombin10.internal.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rendering.listener.Listener;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.StreamParser;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Parse content in the binary XDOM format into events.
+ * <p>
+ * The source is the Base64 encoding of the binary content (see
+ * {@link org.xwiki.rendering.xdombin10.internal.renderer.XDOMBinRenderer}).
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Component
+@Named("xdom+bin/1.0")
+@Singleton
+public class XDOMBinStreamParser implements StreamParser
+{
+    @Override
+    public Syntax getSyntax()
+    {
+        return Syntax.XDOMBIN_1_0;
+    }
+
+    @Override
+    public void parse(Reader source, Listener listener) throws ParseException
+    {
+        try {
+            new XDOMBinReader(new Base64InputStream(source)).read(listener);
+        } catch (IOException e) {
+            throw new ParseException("Failed to parse binary XDOM content", e);
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdombin10.internal.renderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.annotation.InstantiationStrategy;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.ListType;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.renderer.PrintRenderer;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Serialize events in the binary XDOM format.
+ * <p>
+ * Since a {@link WikiPrinter} only accept characters, the binary content is printed encoded in Base64 (so that it
+ * does not depend on the encoding used by the printer). The content is sent to the printer by blocks, at the end of
+ * the document or when calling {@link #flush()}, each block being a complete Base64 chunk.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Component
+@Named("xdom+bin/1.0")
+@InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
+public class XDOMBinRenderer implements PrintRenderer, Flushable, Initializable
+{
+    /**
+     * The size of the buffered content above which it's sent to the printer.
+     */
+    private static final int FLUSH_SIZE = 8192;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    @Inject
+    private Logger logger;
+
+    private XDOMBinWriter writer;
+
+    private WikiPrinter printer;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.writer = new XDOMBinWriter(this.buffer, this.logger);
+    }
+
+    @Override
+    public WikiPrinter getPrinter()
+    {
+        return this.printer;
+    }
+
+    @Override
+    public void setPrinter(WikiPrinter printer)
+    {
+        this.printer = printer;
+    }
+
+    private void write(EventType eventType, Object... parameters)
+    {
+        try {
+            this.writer.writeEvent(eventType, parameters);
+        } catch (IOException e) {
+            // Should never happen since we write in memory
+            throw new RuntimeException("Failed to serialize event [" + eventType + "]", e);
+        }
+
+        if (eventType == EventType.END_DOCUMENT || this.buffer.size() >= FLUSH_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        if (this.buffer.size() > 0) {
+            this.printer.print(Base64.getEncoder().encodeToString(this.buffer.toByteArray()));
+            this.buffer.reset();
+        }
+    }
+
+    @Override
+    public void beginDefinitionDescription()
+    {
+        write(EventType.BEGIN_DEFINITION_DESCRIPTION);
+    }
+
+    @Override
+    public void beginDefinitionList(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_DEFINITION_LIST, parameters);
+    }
+
+    @Override
+    public void beginDefinitionTerm()
+    {
+        write(EventType.BEGIN_DEFINITION_TERM);
+    }
+
+    @Override
+    public void beginDocument(MetaData metadata)
+    {
+        write(EventType.BEGIN_DOCUMENT, metadata);
+    }
+
+    @Override
+    public void beginGroup(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_GROUP, parameters);
+    }
+
+    @Override
+    public void beginFormat(Format format, Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_FORMAT, format, parameters);
+    }
+
+    @Override
+    public void beginHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_HEADER, level, id, parameters);
+    }
+
+    @Override
+    public void beginLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_LINK, reference, freestanding, parameters);
+    }
+
+    @Override
+    public void beginList(ListType type, Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_LIST, type, parameters);
+    }
+
+    @Override
+    public void beginListItem()
+    {
+        write(EventType.BEGIN_LIST_ITEM);
+    }
+
+    @Override
+    public void beginListItem(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_LIST_ITEM, parameters);
+    }
+
+    @Override
+    public void beginMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
+    {
+        write(EventType.BEGIN_MACRO_MARKER, name, parameters, content, isInline);
+    }
+
+    @Override
+    public void beginParagraph(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_PARAGRAPH, parameters);
+    }
+
+    @Override
+    public void beginQuotation(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_QUOTATION, parameters);
+    }
+
+    @Override
+    public void beginQuotationLine()
+    {
+        write(EventType.BEGIN_QUOTATION_LINE);
+    }
+
+    @Override
+    public void beginSection(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_SECTION, parameters);
+    }
+
+    @Override
+    public void beginTable(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_TABLE, parameters);
+    }
+
+    @Override
+    public void beginTableCell(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_TABLE_CELL, parameters);
+    }
+
+    @Override
+    public void beginTableHeadCell(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_TABLE_HEAD_CELL, parameters);
+    }
+
+    @Override
+    public void beginTableRow(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_TABLE_ROW, parameters);
+    }
+
+    @Override
+    public void beginMetaData(MetaData metadata)
+    {
+        write(EventType.BEGIN_METADATA, metadata);
+    }
+
+    @Override
+    public void endDefinitionDescription()
+    {
+        write(EventType.END_DEFINITION_DESCRIPTION);
+    }
+
+    @Override
+    public void endDefinitionList(Map<String, String> parameters)
+    {
+        write(EventType.END_DEFINITION_LIST, parameters);
+    }
+
+    @Override
+    public void endDefinitionTerm()
+    {
+        write(EventType.END_DEFINITION_TERM);
+    }
+
+    @Override
+    public void endDocument(MetaData metadata)
+    {
+        write(EventType.END_DOCUMENT, metadata);
+    }
+
+    @Override
+    public void endGroup(Map<String, String> parameters)
+    {
+        write(EventType.END_GROUP, parameters);
+    }
+
+    @Override
+    public void endFormat(Format format, Map<String, String> parameters)
+    {
+        write(EventType.END_FORMAT, format, parameters);
+    }
+
+    @Override
+    public void endHeader(HeaderLevel level, String id, Map<String, String> parameters)
+    {
+        write(EventType.END_HEADER, level, id, parameters);
+    }
+
+    @Override
+    public void endLink(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        write(EventType.END_LINK, reference, freestanding, parameters);
+    }
+
+    @Override
+    public void endList(ListType type, Map<String, String> parameters)
+    {
+        write(EventType.END_LIST, type, parameters);
+    }
+
+    @Override
+    public void endListItem()
+    {
+        write(EventType.END_LIST_ITEM);
+    }
+
+    @Override
+    public void endListItem(Map<String, String> parameters)
+    {
+        write(EventType.END_LIST_ITEM);
+    }
+
+    @Override
+    public void endMacroMarker(String name, Map<String, String> parameters, String content, boolean isInline)
+    {
+        write(EventType.END_MACRO_MARKER, name, parameters, content, isInline);
+    }
+
+    @Override
+    public void endParagraph(Map<String, String> parameters)
+    {
+        write(EventType.END_PARAGRAPH, parameters);
+    }
+
+    @Override
+    public void endQuotation(Map<String, String> parameters)
+    {
+        write(EventType.END_QUOTATION, parameters);
+    }
+
+    @Override
+    public void endQuotationLine()
+    {
+        write(EventType.END_QUOTATION_LINE);
+    }
+
+    @Override
+    public void endSection(Map<String, String> parameters)
+    {
+        write(EventType.END_SECTION, parameters);
+    }
+
+    @Override
+    public void endTable(Map<String, String> parameters)
+    {
+        write(EventType.END_TABLE, parameters);
+    }
+
+    @Override
+    public void endTableCell(Map<String, String> parameters)
+    {
+        write(EventType.END_TABLE_CELL, parameters);
+    }
+
+    @Override
+    public void endTableHeadCell(Map<String, String> parameters)
+    {
+        write(EventType.END_TABLE_HEAD_CELL, parameters);
+    }
+
+    @Override
+    public void endTableRow(Map<String, String> parameters)
+    {
+        write(EventType.END_TABLE_ROW, parameters);
+    }
+
+    @Override
+    public void endMetaData(MetaData metadata)
+    {
+        write(EventType.END_METADATA, metadata);
+    }
+
+    @Override
+    public void onRawText(String text, Syntax syntax)
+    {
+        write(EventType.ON_RAW_TEXT, text, syntax);
+    }
+
+    @Override
+    public void onEmptyLines(int count)
+    {
+        write(EventType.ON_EMPTY_LINES, count);
+    }
+
+    @Override
+    public void onHorizontalLine(Map<String, String> parameters)
+    {
+        write(EventType.ON_HORIZONTAL_LINE, parameters);
+    }
+
+    @Override
+    public void onId(String name)
+    {
+        write(EventType.ON_ID, name);
+    }
+
+    @Override
+    public void onImage(ResourceReference reference, boolean freestanding, Map<String, String> parameters)
+    {
+        write(EventType.ON_IMAGE, reference, freestanding, parameters);
+    }
+
+    @Override
+    public void onMacro(String id, Map<String, String> parameters, String content, boolean inline)
+    {
+        write(EventType.ON_MACRO, id, parameters, content, inline);
+    }
+
+    @Override
+    public void onNewLine()
+    {
+        write(EventType.ON_NEW_LINE);
+    }
+
+    @Override
+    public void onSpace()
+    {
+        write(EventType.ON_SPACE);
+    }
+
+    @Override
+    public void onSpecialSymbol(char symbol)
+    {
+        write(EventType.ON_SPECIAL_SYMBOL, symbol);
+    }
+
+    @Override
+    public void onVerbatim(String content, boolean inline, Map<String, String> parameters)
+    {
+        write(EventType.ON_VERBATIM, content, inline, parameters);
+    }
+
+    @Override
+    public void onWord(String word)
+    {
+        write(EventType.ON_WORD, word);
+    }
+
+    @Override
+    public void beginFigure(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_FIGURE, parameters);
+    }
+
+    @Override
+    public void endFigure(Map<String, String> parameters)
+    {
+        write(EventType.END_FIGURE, parameters);
+    }
+
+    @Override
+    public void beginFigureCaption(Map<String, String> parameters)
+    {
+        write(EventType.BEGIN_FIGURE_CAPTION, parameters);
+    }
+
+    @Override
+    public void endFigureCaption(Map<String, String> parameters)
+    {
+        write(EventType.END_FIGURE_CAPTION, parameters);
+    }
+}
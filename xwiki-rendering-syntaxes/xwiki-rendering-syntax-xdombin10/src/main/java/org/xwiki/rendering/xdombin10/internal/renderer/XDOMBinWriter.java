@@ -0,0 +1,274 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdombin10.internal.renderer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.ListType;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.AttachmentResourceReference;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.listener.reference.InterWikiResourceReference;
+import org.xwiki.rendering.listener.reference.PageResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.SpaceResourceReference;
+import org.xwiki.rendering.listener.reference.UserResourceReference;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.xdombin10.internal.XDOMBinConstants;
+
+/**
+ * Write events in the binary XDOM format.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ * @see XDOMBinConstants
+ */
+public class XDOMBinWriter
+{
+    private static final int VARINT_BITS = 7;
+
+    private static final int VARINT_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUATION = 0x80;
+
+    /**
+     * The kinds of the supported resource references, indexed by class.
+     */
+    private static final Map<Class<?>, Integer> REFERENCE_KINDS = new HashMap<>();
+
+    static {
+        REFERENCE_KINDS.put(ResourceReference.class, XDOMBinConstants.REFERENCE_GENERIC);
+        REFERENCE_KINDS.put(DocumentResourceReference.class, XDOMBinConstants.REFERENCE_DOCUMENT);
+        REFERENCE_KINDS.put(PageResourceReference.class, XDOMBinConstants.REFERENCE_PAGE);
+        REFERENCE_KINDS.put(SpaceResourceReference.class, XDOMBinConstants.REFERENCE_SPACE);
+        REFERENCE_KINDS.put(AttachmentResourceReference.class, XDOMBinConstants.REFERENCE_ATTACHMENT);
+        REFERENCE_KINDS.put(UserResourceReference.class, XDOMBinConstants.REFERENCE_USER);
+        REFERENCE_KINDS.put(InterWikiResourceReference.class, XDOMBinConstants.REFERENCE_INTERWIKI);
+    }
+
+    private final OutputStream output;
+
+    private final Logger logger;
+
+    /**
+     * The index of the strings already written.
+     */
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    private boolean versionWritten;
+
+    /**
+     * @param output the stream where to write the events
+     * @param logger the logger used to report the metadata which cannot be written
+     */
+    public XDOMBinWriter(OutputStream output, Logger logger)
+    {
+        this.output = output;
+        this.logger = logger;
+    }
+
+    /**
+     * @param eventType the type of the event
+     * @param parameters the parameters of the event
+     * @throws IOException when failing to write the event
+     * @throws IllegalArgumentException when one of the parameters has a type which is not supported by the format
+     *             (the metadata entries with an unsupported value are skipped instead)
+     */
+    public void writeEvent(EventType eventType, Object... parameters) throws IOException
+    {
+        if (!this.versionWritten) {
+            this.output.write(XDOMBinConstants.VERSION);
+            this.versionWritten = true;
+        }
+
+        writeInt(XDOMBinConstants.getCode(eventType));
+        writeInt(parameters.length);
+        for (Object parameter : parameters) {
+            writeValue(parameter);
+        }
+    }
+
+    private void writeInt(int value) throws IOException
+    {
+        int remaining = value;
+        while ((remaining & ~VARINT_MASK) != 0) {
+            this.output.write((remaining & VARINT_MASK) | VARINT_CONTINUATION);
+            remaining >>>= VARINT_BITS;
+        }
+        this.output.write(remaining);
+    }
+
+    private void writeValue(Object value) throws IOException
+    {
+        if (value == null) {
+            this.output.write(XDOMBinConstants.TAG_NULL);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            this.output.write((Boolean) value ? XDOMBinConstants.TAG_TRUE : XDOMBinConstants.TAG_FALSE);
+        } else if (value instanceof Character) {
+            this.output.write(XDOMBinConstants.TAG_CHARACTER);
+            writeInt((Character) value);
+        } else if (value instanceof Integer) {
+            this.output.write(XDOMBinConstants.TAG_INTEGER);
+            writeInt((Integer) value);
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value);
+        } else {
+            writeObject(value);
+        }
+    }
+
+    private void writeObject(Object value) throws IOException
+    {
+        if (value instanceof Format) {
+            this.output.write(XDOMBinConstants.TAG_FORMAT);
+            writeString(((Format) value).name());
+        } else if (value instanceof HeaderLevel) {
+            this.output.write(XDOMBinConstants.TAG_HEADER_LEVEL);
+            writeInt(((HeaderLevel) value).getAsInt());
+        } else if (value instanceof ListType) {
+            this.output.write(XDOMBinConstants.TAG_LIST_TYPE);
+            writeString(((ListType) value).name());
+        } else if (value instanceof Syntax) {
+            this.output.write(XDOMBinConstants.TAG_SYNTAX);
+            writeString(((Syntax) value).toIdString());
+        } else if (value instanceof MetaData) {
+            writeMetaData((MetaData) value);
+        } else if (value instanceof ResourceReference) {
+            writeResourceReference((ResourceReference) value);
+        } else {
+            throw new IllegalArgumentException(
+                String.format("Unsupported value [%s] of type [%s]", value, value.getClass().getName()));
+        }
+    }
+
+    private void writeString(String value) throws IOException
+    {
+        Integer index = this.strings.get(value);
+
+        if (index != null) {
+            this.output.write(XDOMBinConstants.TAG_STRING_REFERENCE);
+            writeInt(index);
+        } else {
+            this.strings.put(value, this.strings.size());
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.output.write(XDOMBinConstants.TAG_STRING);
+            writeInt(bytes.length);
+            this.output.write(bytes);
+        }
+    }
+
+    private void writeMap(Map<?, ?> map) throws IOException
+    {
+        this.output.write(XDOMBinConstants.TAG_MAP);
+        writeEntries(map);
+    }
+
+    private void writeEntries(Map<?, ?> map) throws IOException
+    {
+        writeInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeValue(entry.getKey());
+            writeValue(entry.getValue());
+        }
+    }
+
+    private void writeMetaData(MetaData metaData) throws IOException
+    {
+        Map<String, Object> entries = metaData.getMetaData();
+
+        // Skip the values which cannot be read back instead of failing in the middle of the content
+        Map<String, Object> supportedEntries = null;
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            if (!isSupported(entry.getValue())) {
+                if (supportedEntries == null) {
+                    supportedEntries = new LinkedHashMap<>(entries);
+                }
+                supportedEntries.remove(entry.getKey());
+
+                this.logger.warn("Skipping metadata [{}] with unsupported value of type [{}]", entry.getKey(),
+                    entry.getValue().getClass().getName());
+            }
+        }
+
+        this.output.write(XDOMBinConstants.TAG_METADATA);
+        writeEntries(supportedEntries != null ? supportedEntries : entries);
+    }
+
+    private boolean isSupported(Object value)
+    {
+        boolean supported;
+
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+            || value instanceof Integer || value instanceof Format || value instanceof HeaderLevel
+            || value instanceof ListType || value instanceof Syntax || value instanceof MetaData) {
+            supported = true;
+        } else if (value instanceof ResourceReference) {
+            supported = REFERENCE_KINDS.containsKey(value.getClass());
+        } else if (value instanceof Map) {
+            // Only parameters maps can be read back
+            supported = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                supported &= entry.getKey() instanceof String
+                    && (entry.getValue() == null || entry.getValue() instanceof String);
+            }
+        } else {
+            supported = false;
+        }
+
+        return supported;
+    }
+
+    private void writeResourceReference(ResourceReference reference) throws IOException
+    {
+        Integer kind = REFERENCE_KINDS.get(reference.getClass());
+        if (kind == null) {
+            throw new IllegalArgumentException(
+                String.format("Unsupported resource reference type [%s]", reference.getClass().getName()));
+        }
+
+        this.output.write(XDOMBinConstants.TAG_RESOURCE_REFERENCE);
+        writeInt(kind);
+
+        writeValue(reference.getType().getScheme());
+        writeValue(reference.getReference());
+        writeValue(reference.isTyped());
+
+        List<String> baseReferences = reference.getBaseReferences();
+        writeInt(baseReferences.size());
+        for (String baseReference : baseReferences) {
+            writeValue(baseReference);
+        }
+
+        writeMap(reference.getParameters());
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xdombin10.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.BulletedListBlock;
+import org.xwiki.rendering.block.EmptyLinesBlock;
+import org.xwiki.rendering.block.FigureBlock;
+import org.xwiki.rendering.block.FigureCaptionBlock;
+import org.xwiki.rendering.block.FormatBlock;
+import org.xwiki.rendering.block.HeaderBlock;
+import org.xwiki.rendering.block.ImageBlock;
+import org.xwiki.rendering.block.LinkBlock;
+import org.xwiki.rendering.block.ListItemBlock;
+import org.xwiki.rendering.block.MacroMarkerBlock;
+import org.xwiki.rendering.block.NewLineBlock;
+import org.xwiki.rendering.block.ParagraphBlock;
+import org.xwiki.rendering.block.RawBlock;
+import org.xwiki.rendering.block.SpaceBlock;
+import org.xwiki.rendering.block.SpecialSymbolBlock;
+import org.xwiki.rendering.block.VerbatimBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.listener.Format;
+import org.xwiki.rendering.listener.HeaderLevel;
+import org.xwiki.rendering.listener.MetaData;
+import org.xwiki.rendering.listener.QueueListener;
+import org.xwiki.rendering.listener.chaining.EventType;
+import org.xwiki.rendering.listener.reference.DocumentResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceReference;
+import org.xwiki.rendering.listener.reference.ResourceType;
+import org.xwiki.rendering.parser.ParseException;
+import org.xwiki.rendering.parser.Parser;
+import org.xwiki.rendering.renderer.BlockRenderer;
+import org.xwiki.rendering.renderer.printer.ByteChannelWikiPrinter;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Validate the serialization and parsing of the binary XDOM format.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+@AllComponents
+public class XDOMBinTest
+{
+    private BlockRenderer renderer;
+
+    private Parser parser;
+
+    @BeforeEach
+    public void before(ComponentManager componentManager) throws Exception
+    {
+        this.renderer = componentManager.getInstance(BlockRenderer.class, Syntax.XDOMBIN_1_0.toIdString());
+        this.parser = componentManager.getInstance(Parser.class, Syntax.XDOMBIN_1_0.toIdString());
+    }
+
+    private XDOM createXDOM()
+    {
+        Map<String, String> parameters = Collections.singletonMap("class", "value");
+
+        ResourceReference reference = new DocumentResourceReference("Space.Page");
+        reference.setParameter("anchor", "section");
+        reference.addBaseReference("Other.Page");
+        ResourceReference imageReference = new ResourceReference("image.png", ResourceType.URL);
+        imageReference.setTyped(false);
+
+        List<Block> blocks = Arrays.<Block>asList(
+            new HeaderBlock(Arrays.<Block>asList(new WordBlock("word")), HeaderLevel.LEVEL2, parameters, "Hword"),
+            new ParagraphBlock(Arrays.<Block>asList(new WordBlock("word"), new SpaceBlock(),
+                new FormatBlock(Arrays.<Block>asList(new WordBlock("bøld €")), Format.BOLD),
+                new SpecialSymbolBlock('!'), new NewLineBlock(),
+                new LinkBlock(Arrays.<Block>asList(new WordBlock("label")), reference, false),
+                new ImageBlock(imageReference, true, parameters)), parameters),
+            new BulletedListBlock(Arrays.<Block>asList(new ListItemBlock(Arrays.<Block>asList(new WordBlock("item"))))),
+            new EmptyLinesBlock(2),
+            new FigureBlock(Arrays.<Block>asList(new VerbatimBlock("verbatim", false),
+                new FigureCaptionBlock(Arrays.<Block>asList(new WordBlock("caption"))))),
+            new MacroMarkerBlock("macro", parameters, null,
+                Arrays.<Block>asList(new RawBlock("<b/>", Syntax.XHTML_1_0)), false));
+
+        MetaData metaData = new MetaData();
+        metaData.addMetaData(MetaData.SYNTAX, Syntax.XWIKI_2_1);
+        metaData.addMetaData(MetaData.SOURCE, "Space.Page");
+
+        return new XDOM(blocks, metaData);
+    }
+
+    private String render(Block block)
+    {
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        this.renderer.render(block, printer);
+
+        return printer.toString();
+    }
+
+    private List<List<Object>> getEvents(Block block)
+    {
+        QueueListener queue = new QueueListener();
+        block.traverse(queue);
+
+        List<List<Object>> events = new ArrayList<>();
+        for (QueueListener.Event event : queue) {
+            List<Object> eventList = new ArrayList<>();
+            eventList.add(event.eventType);
+            eventList.addAll(Arrays.asList(event.eventParameters));
+            events.add(eventList);
+        }
+
+        return events;
+    }
+
+    @Test
+    public void renderAndParse() throws Exception
+    {
+        XDOM xdom = createXDOM();
+
+        String content = render(xdom);
+
+        assertTrue(content.matches("[A-Za-z0-9+/=]*"));
+        XDOM parsedXDOM = this.parser.parse(new StringReader(content));
+        assertEquals(getEvents(xdom), getEvents(parsedXDOM));
+
+        LinkBlock linkBlock = parsedXDOM.getFirstBlock(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT);
+        assertEquals(DocumentResourceReference.class, linkBlock.getReference().getClass());
+        assertEquals("section", ((DocumentResourceReference) linkBlock.getReference()).getAnchor());
+    }
+
+    @Test
+    public void renderAndParseWithSeveralChunksAndByteChannelPrinter() throws Exception
+    {
+        List<Block> words = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            words.add(new WordBlock("wörd" + i));
+        }
+        XDOM xdom = new XDOM(Arrays.<Block>asList(new ParagraphBlock(words)));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (ByteChannelWikiPrinter printer = new ByteChannelWikiPrinter(stream)) {
+            this.renderer.render(xdom, printer);
+        }
+
+        String content = new String(stream.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(getEvents(xdom), getEvents(this.parser.parse(new StringReader(content))));
+    }
+
+    @Test
+    public void renderUnsupportedMetaData() throws Exception
+    {
+        MetaData metaData = new MetaData();
+        metaData.addMetaData(MetaData.SOURCE, "Space.Page");
+        metaData.addMetaData("unsupported", new Object());
+        XDOM xdom = new XDOM(Arrays.<Block>asList(new WordBlock("word")), metaData);
+
+        XDOM parsedXDOM = this.parser.parse(new StringReader(render(xdom)));
+
+        // The unsupported metadata is skipped
+        assertEquals(Collections.singletonMap(MetaData.SOURCE, "Space.Page"),
+            parsedXDOM.getMetaData().getMetaData());
+    }
+
+    @Test
+    public void renderAndParseBlock() throws Exception
+    {
+        Block block = new ParagraphBlock(Arrays.<Block>asList(new WordBlock("word"), new SpaceBlock(),
+            new WordBlock("word")));
+
+        XDOM xdom = this.parser.parse(new StringReader(render(block)));
+
+        assertEquals(getEvents(block), getEvents(xdom.getChildren().get(0)));
+    }
+
+    @Test
+    public void reuseStrings()
+    {
+        String word = render(new XDOM(Arrays.<Block>asList(new WordBlock("word"))));
+        String words = render(new XDOM(Arrays.<Block>asList(new WordBlock("word"), new WordBlock("word"))));
+
+        // The second word only costs an event code, a parameter count, a tag and a string index
+        assertEquals(Base64.getDecoder().decode(word).length + 4, Base64.getDecoder().decode(words).length);
+    }
+
+    @Test
+    public void parseEmpty() throws Exception
+    {
+        assertEquals(Collections.emptyList(), this.parser.parse(new StringReader("")).getChildren());
+    }
+
+    @Test
+    public void parseInvalid()
+    {
+        assertThrows(ParseException.class, () -> this.parser.parse(new StringReader("xdom")));
+        assertThrows(ParseException.class, () -> this.parser.parse(new StringReader("AQ")));
+        assertThrows(ParseException.class, () -> this.parser.parse(new StringReader("AQ\u00FF=")));
+        assertThrows(ParseException.class, () -> parse(1, 0));
+        assertThrows(ParseException.class, () -> parse(1, 0xFF));
+    }
+
+    @Test
+    public void parseInvalidResourceReference()
+    {
+        int link = XDOMBinConstants.getCode(EventType.BEGIN_LINK);
+        int reference = XDOMBinConstants.TAG_RESOURCE_REFERENCE;
+        int string = XDOMBinConstants.TAG_STRING;
+
+        // Unknown kind of reference
+        assertThrows(ParseException.class, () -> parse(1, link, 3, reference, 42));
+        // String instead of the typed flag
+        assertThrows(ParseException.class, () -> parse(1, link, 3, reference, 0, string, 0, string, 0, string, 0));
+        // Missing parameters map
+        assertThrows(ParseException.class,
+            () -> parse(1, link, 3, reference, 0, string, 0, string, 0, XDOMBinConstants.TAG_TRUE, 0,
+                XDOMBinConstants.TAG_NULL, XDOMBinConstants.TAG_FALSE, XDOMBinConstants.TAG_MAP, 0));
+    }
+
+    private XDOM parse(int... bytes) throws ParseException
+    {
+        byte[] content = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; ++i) {
+            content[i] = (byte) bytes[i];
+        }
+
+        return this.parser.parse(new StringReader(Base64.getEncoder().encodeToString(content)));
+    }
+}
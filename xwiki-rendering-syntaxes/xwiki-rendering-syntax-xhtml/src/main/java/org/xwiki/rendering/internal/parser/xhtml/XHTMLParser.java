@@ -32,6 +32,8 @@
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
 import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.internal.parser.wikimodel.AbstractWikiModelParser;
 import org.xwiki.rendering.internal.parser.wikimodel.XWikiGeneratorListener;
@@ -50,6 +52,7 @@
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.util.IdGenerator;
 import org.xwiki.rendering.wikimodel.IWikiParser;
+import org.xwiki.rendering.wikimodel.xhtml.XMLReaderPool;
 import org.xwiki.rendering.wikimodel.xhtml.XhtmlParser;
 import org.xwiki.rendering.wikimodel.xhtml.handler.DivisionTagHandler;
 import org.xwiki.rendering.wikimodel.xhtml.handler.TagHandler;
@@ -64,7 +67,7 @@
 @Component
 @Named("xhtml/1.0")
 @Singleton
-public class XHTMLParser extends AbstractWikiModelParser
+public class XHTMLParser extends AbstractWikiModelParser implements Initializable
 {
     /**
      * The parser used for the link label parsing. For (x)html parsing, this will be an xwiki 2.0 parser, since it's
@@ -116,6 +119,28 @@ public class XHTMLParser extends AbstractWikiModelParser
     @Named("xwiki")
     private XMLReaderFactory xmlReaderFactory;
 
+    /**
+     * The XML filter chains reused between parses, since creating a new SAX parser and its filters for each parse is
+     * costly.
+     */
+    private XMLReaderPool xmlReaderPool;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // Construct our own XML filter chain since we want to use our own Comment filter.
+        this.xmlReaderPool = new XMLReaderPool(this.xmlReaderFactory, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @return the pool of XML readers used by this parser, mostly useful to monitor its usage
+     * @since 10.9RC1
+     */
+    public XMLReaderPool getXMLReaderPool()
+    {
+        return this.xmlReaderPool;
+    }
+
     @Override
     public Syntax getSyntax()
     {
@@ -153,13 +178,7 @@ public IWikiParser createWikiModelParser() throws ParseException
         parser.setExtraHandlers(handlers);
         parser.setCommentHandler(new XWikiCommentHandler(this.componentManager, this,
             this.xmlRenderer, this.xhtmlMarkerResourceReferenceParser));
-
-        // Construct our own XML filter chain since we want to use our own Comment filter.
-        try {
-            parser.setXmlReader(this.xmlReaderFactory.createXMLReader());
-        } catch (Exception e) {
-            throw new ParseException("Failed to create XML reader", e);
-        }
+        parser.setXmlReaderPool(this.xmlReaderPool);
 
         return parser;
     }
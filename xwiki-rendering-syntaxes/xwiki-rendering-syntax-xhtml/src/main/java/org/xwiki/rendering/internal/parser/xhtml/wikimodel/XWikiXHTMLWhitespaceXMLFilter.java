@@ -63,6 +63,14 @@ public XWikiXHTMLWhitespaceXMLFilter(XMLReader reader)
         super(reader);
     }
 
+    @Override
+    public void reset()
+    {
+        this.containsWikiSyntax = false;
+
+        super.reset();
+    }
+
     @Override
     public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException
     {
@@ -19,14 +19,37 @@
  */
 package org.xwiki.rendering.internal.renderer.xwiki20;
 
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.lang3.StringUtils;
 import org.xwiki.rendering.listener.chaining.BlockStateChainingListener;
 
 /**
  * Escape characters that would be confused for XWiki wiki syntax if they were not escaped.
+ * <p>
+ * All the escaping rules only ever insert escape characters in front of characters of the content so instead of
+ * applying them one after the other on the buffer, the number of escape characters to insert before each character is
+ * computed in a single scan of the content (by sequences of identical characters since most rules are about repeated
+ * characters) and the escaped content is written at once. The rules are evaluated as if they were applied in the
+ * following order, since some of them depend on the escape characters inserted by the previous ones:
+ * <ol>
+ * <li>the escape character itself</li>
+ * <li>the start of custom parameters ({@code (%})</li>
+ * <li>the first character of what looks like a list item, a header, a table cell or a quotation at the beginning of
+ * a line in a paragraph</li>
+ * <li>table characters ({@code |} and {@code !!}) in a table</li>
+ * <li>the first character if it matches the passed pattern</li>
+ * <li>{@code =} in a header</li>
+ * <li>verbatim and macro starts (<code>{{{</code> and <code>{{</code>) and groups ({@code (((} and {@code )))})</li>
+ * <li>formatting characters ({@code //}, {@code **}, etc.) which are not already preceded by an escape
+ * character</li>
+ * <li>the ":" of the first "image:", "attach:" and "mailto:"</li>
+ * <li>the last character if asked to</li>
+ * <li>link starts ({@code [[})</li>
+ * <li>when in a link label, all the escape characters and link specific syntax ({@code ]]}, {@code >>} and
+ * {@code ||}) are escaped again for each link level</li>
+ * </ol>
  *
  * @version $Id$
  * @since 2.0M3
@@ -45,17 +68,60 @@
     private static final Pattern TABLE_PATTERN = Pattern.compile("\\p{Blank}*(\\||!!)");
 
     /**
-     * Note that we take care to not match if the first character is preceded by an escape (i.e. '~).
+     * Patterns escaped at the beginning of a line in a paragraph. Note that at most one of them can match.
      */
-    private static final Pattern DOUBLE_CHARS_PATTERN = Pattern.compile(
-        "(?<!~)\\/\\/|(?<!~)\\*\\*|(?<!~)__|(?<!~)--|(?<!~)\\^\\^|(?<!~),,|(?<!~)##|(?<!~)\\\\\\\\");
+    private static final Pattern[] LINE_START_PATTERNS =
+        new Pattern[] { LIST_PATTERN, HEADER_PATTERN, TABLE_PATTERN, QUOTE_PATTERN };
+
+    /**
+     * The characters which have a meaning in XWiki syntax when doubled (bold, italic, etc.).
+     */
+    private static final String DOUBLE_CHARS = "/*_-^,#\\";
+
+    /**
+     * The schemes of the URIs for which the ":" needs to be escaped.
+     */
+    private static final String[] URI_SCHEMES = new String[] { "image", "attach", "mailto" };
+
+    private static final int TRIPLE = 3;
 
     public static final String ESCAPE_CHAR = "~";
 
+    private static final char ESCAPE = '~';
+
     private boolean beforeLink;
 
     private boolean onNewLine = true;
 
+    // State of the current escaping, reused from one call to another
+
+    private char[] chars = new char[0];
+
+    /**
+     * The number of escape characters to insert before each character.
+     */
+    private int[] escapes = new int[0];
+
+    /**
+     * The number of link level escapes to insert before each character (in addition to the escaping of the escape
+     * characters already inserted).
+     */
+    private int[] linkEscapes = new int[0];
+
+    private final boolean[] escapedURIs = new boolean[URI_SCHEMES.length];
+
+    private final StringBuilder result = new StringBuilder();
+
+    private int length;
+
+    private boolean inTable;
+
+    private boolean inHeader;
+
+    private boolean escapeLastChar;
+
+    private int linkLevel;
+
     public void setOnNewLine(boolean onNewLine)
     {
         this.onNewLine = onNewLine;
@@ -71,135 +137,320 @@ public void escape(StringBuffer accumulatedBuffer, XWikiSyntaxListenerChain list
     {
         BlockStateChainingListener blockStateListener = listenerChain.getBlockStateChainingListener();
 
-        // Escape tilde symbol (i.e. the escape character).
-        // Note: This needs to be the first replacement since other replacements below also use the tilde symbol
-        replaceAll(accumulatedBuffer, ESCAPE_CHAR, ESCAPE_CHAR + ESCAPE_CHAR);
+        init(accumulatedBuffer, blockStateListener, escapeLastChar, getLinkLevel(listenerChain));
 
-        // Escape anything that looks like starting of custom parameters
-        replaceAll(accumulatedBuffer, "(%", ESCAPE_CHAR + "(%");
+        if (this.length == 0) {
+            return;
+        }
 
         // When in a paragraph we need to escape symbols that are at beginning of lines and that could be confused
         // with list items, headers or tables.
         if (blockStateListener.isInLine() && isOnNewLine()) {
+            escapeLineStart(accumulatedBuffer);
+        }
 
-            // Look for list pattern at beginning of line and escape the first character only (it's enough)
-            escapeFirstMatchedCharacter(LIST_PATTERN, accumulatedBuffer);
-
-            // Look for header pattern at beginning of line and escape the first character only (it's enough)
-            escapeFirstMatchedCharacter(HEADER_PATTERN, accumulatedBuffer);
+        if (escapeFirstIfMatching != null && !isFirstCharacterEscaped()
+            && escapeFirstIfMatching.matcher(accumulatedBuffer).lookingAt()) {
+            ++this.escapes[0];
+        }
 
-            // Look for table character patterns at beginning of line and escape the first character only (it's enough)
-            escapeFirstMatchedCharacter(TABLE_PATTERN, accumulatedBuffer);
+        for (int start = 0; start < this.length;) {
+            start = escapeSequence(start);
+        }
 
-            // Look for quote pattern at beginning of line and escape the first character only (it's enough)
-            escapeFirstMatchedCharacter(QUOTE_PATTERN, accumulatedBuffer);
+        // Escape last character if we're told to do so. This is to handle cases such as:
+        // - onWord("hello:") followed by onFormat(ITALIC) which would lead to "hello://" if the ":" wasn't escaped
+        // - onWord("{") followed by onMacro() which would lead to "{{{" if the "{" wasn't escaped
+        if (escapeLastChar) {
+            ++this.escapes[this.length - 1];
         }
 
-        // Escape table characters
-        if (blockStateListener.isInTable()) {
-            replaceAll(accumulatedBuffer, "|", ESCAPE_CHAR + "|");
-            replaceAll(accumulatedBuffer, "!!", ESCAPE_CHAR + "!!");
+        write(accumulatedBuffer);
+    }
+
+    private int getLinkLevel(XWikiSyntaxListenerChain listenerChain)
+    {
+        int linkDepth = listenerChain.getBlockStateChainingListener().getLinkDepth();
+
+        if (this.beforeLink) {
+            --linkDepth;
         }
 
-        if (escapeFirstIfMatching != null) {
-            escapeFirstMatchedCharacter(escapeFirstIfMatching, accumulatedBuffer);
+        return linkDepth;
+    }
+
+    public void setBeforeLink(boolean beforeLink)
+    {
+        this.beforeLink = beforeLink;
+    }
+
+    private void init(StringBuffer accumulatedBuffer, BlockStateChainingListener blockStateListener,
+        boolean escapeLastChar, int linkLevel)
+    {
+        this.length = accumulatedBuffer.length();
+        this.inTable = blockStateListener.isInTable();
+        this.inHeader = blockStateListener.isInHeader();
+        this.escapeLastChar = escapeLastChar;
+        this.linkLevel = linkLevel;
+
+        if (this.chars.length < this.length) {
+            this.chars = new char[this.length];
+            this.escapes = new int[this.length];
+            this.linkEscapes = new int[this.length];
+        } else {
+            Arrays.fill(this.escapes, 0, this.length, 0);
+            Arrays.fill(this.linkEscapes, 0, this.length, 0);
         }
+        accumulatedBuffer.getChars(0, this.length, this.chars, 0);
+
+        Arrays.fill(this.escapedURIs, false);
+    }
 
-        // When in a header we need to escape "=" symbols since otherwise they would be confused for end of section
-        // characters.
-        if (blockStateListener.isInHeader()) {
-            replaceAll(accumulatedBuffer, "=", ESCAPE_CHAR + "=");
+    private void escapeLineStart(StringBuffer accumulatedBuffer)
+    {
+        for (Pattern pattern : LINE_START_PATTERNS) {
+            Matcher matcher = pattern.matcher(accumulatedBuffer);
+            if (matcher.lookingAt()) {
+                // Escape the first character only (it's enough)
+                ++this.escapes[matcher.start(1)];
+                break;
+            }
         }
+    }
+
+    /**
+     * @return true if the first character is escaped by a rule evaluated before the escaping of the first character
+     *         matching a pattern
+     */
+    private boolean isFirstCharacterEscaped()
+    {
+        char first = this.chars[0];
+        char second = this.length > 1 ? this.chars[1] : 0;
 
-        // Escape verbatim "{{{"
-        replaceAll(accumulatedBuffer, "{{{", ESCAPE_CHAR + "{" + ESCAPE_CHAR + "{" + ESCAPE_CHAR + "{");
+        return this.escapes[0] > 0 || first == ESCAPE || (first == '(' && second == '%')
+            || (this.inTable && (first == '|' || (first == '!' && second == '!')));
+    }
 
-        // Escape "{{"
-        replaceAll(accumulatedBuffer, "{{", ESCAPE_CHAR + "{" + ESCAPE_CHAR + "{");
+    /**
+     * Compute the escaping of a sequence of identical characters.
+     *
+     * @param start the index of the first character of the sequence
+     * @return the index following the end of the sequence
+     */
+    private int escapeSequence(int start)
+    {
+        char c = this.chars[start];
 
-        // Escape groups
-        replaceAll(accumulatedBuffer, "(((", ESCAPE_CHAR + "(" + ESCAPE_CHAR + "(" + ESCAPE_CHAR + "(");
-        replaceAll(accumulatedBuffer, ")))", ESCAPE_CHAR + ")" + ESCAPE_CHAR + ")" + ESCAPE_CHAR + ")");
+        int end = start + 1;
+        while (end < this.length && this.chars[end] == c) {
+            ++end;
+        }
 
-        // Escape reserved keywords
-        Matcher matcher = DOUBLE_CHARS_PATTERN.matcher(accumulatedBuffer.toString());
-        for (int i = 0; matcher.find(); i = i + 2) {
-            accumulatedBuffer.replace(matcher.start() + i, matcher.end() + i, ESCAPE_CHAR + matcher.group().charAt(0)
-                + ESCAPE_CHAR + matcher.group().charAt(1));
+        switch (c) {
+            case ESCAPE:
+                escapeAll(start, end);
+                break;
+            case '=':
+                // When in a header we need to escape "=" symbols since otherwise they would be confused for end of
+                // section characters.
+                if (this.inHeader) {
+                    escapeAll(start, end);
+                }
+                break;
+            case '|':
+                if (this.inTable) {
+                    escapeAll(start, end);
+                }
+                escapeLinkGroups(start, end);
+                break;
+            case ':':
+                escapeURI(start);
+                break;
+            default:
+                escapeGroupSequence(c, start, end);
+                break;
         }
 
-        // Escape ":" in "image:something", "attach:something" and "mailto:something"
-        // Note: even though there are some restriction in the URI specification as to what character is valid after
-        // the ":" character following the scheme we only check for characters greater than the space symbol for
-        // simplicity.
-        escapeURI(accumulatedBuffer, "image:");
-        escapeURI(accumulatedBuffer, "attach:");
-        escapeURI(accumulatedBuffer, "mailto:");
+        return end;
+    }
 
-        // Escape last character if we're told to do so. This is to handle cases such as:
-        // - onWord("hello:") followed by onFormat(ITALIC) which would lead to "hello://" if the ":" wasn't escaped
-        // - onWord("{") followed by onMacro() which would lead to "{{{" if the "{" wasn't escaped
-        if (escapeLastChar) {
-            accumulatedBuffer.insert(accumulatedBuffer.length() - 1, '~');
+    private void escapeGroupSequence(char c, int start, int end)
+    {
+        switch (c) {
+            case '{':
+                // Escape verbatim "{{{" and then "{{"
+                escapeGroups(this.escapes, start, end, TRIPLE, false);
+                escapeGroups(this.escapes, start, end, 2, false);
+                break;
+            case '(':
+                // Escape anything that looks like starting of custom parameters and then groups
+                if (end < this.length && this.chars[end] == '%') {
+                    ++this.escapes[end - 1];
+                }
+                escapeGroups(this.escapes, start, end, TRIPLE, false);
+                break;
+            case ')':
+                escapeGroups(this.escapes, start, end, TRIPLE, false);
+                break;
+            case '!':
+                // Only the first character of "!!" is escaped
+                if (this.inTable) {
+                    escapeGroups(this.escapes, start, end, 2, false, true);
+                }
+                break;
+            case '[':
+                // Escape begin link
+                escapeGroups(this.escapes, start, end, 2, true);
+                break;
+            case ']':
+            case '>':
+                escapeLinkGroups(start, end);
+                break;
+            default:
+                if (DOUBLE_CHARS.indexOf(c) >= 0) {
+                    escapeDoubleCharacters(start, end);
+                }
+                break;
         }
+    }
 
-        // Escape begin link
-        replaceAll(accumulatedBuffer, "[[", ESCAPE_CHAR + "[" + ESCAPE_CHAR + "[");
+    private void escapeAll(int start, int end)
+    {
+        for (int i = start; i < end; ++i) {
+            ++this.escapes[i];
+        }
+    }
 
-        // Escape link label
-        int linkLevel = getLinkLevel(listenerChain);
+    /**
+     * Escape the groups of characters, from left to right, in a sequence of identical characters. Characters already
+     * escaped can only start a group.
+     *
+     * @param target where to count the escapes
+     * @param start the index of the first character of the sequence
+     * @param end the index following the end of the sequence
+     * @param size the size of the groups
+     * @param afterLastCharEscape true if the escaping of the last character needs to be taken into account
+     */
+    private void escapeGroups(int[] target, int start, int end, int size, boolean afterLastCharEscape)
+    {
+        escapeGroups(target, start, end, size, afterLastCharEscape, false);
+    }
 
-        if (linkLevel > 0) {
-            // This need to be done after anything else because link label add another level of escaping (escaped as
-            // link label and then escaped as wiki content).
-            String escape = StringUtils.repeat(ESCAPE_CHAR, linkLevel);
-            replaceAll(accumulatedBuffer, ESCAPE_CHAR, escape + ESCAPE_CHAR);
-            replaceAll(accumulatedBuffer, "]]", escape + "]" + escape + "]");
-            replaceAll(accumulatedBuffer, ">>", escape + ">" + escape + ">");
-            replaceAll(accumulatedBuffer, "||", escape + "|" + escape + "|");
+    /**
+     * Escape the groups of characters, from left to right, in a sequence of identical characters. Characters already
+     * escaped can only start a group.
+     *
+     * @param target where to count the escapes
+     * @param start the index of the first character of the sequence
+     * @param end the index following the end of the sequence
+     * @param size the size of the groups
+     * @param afterLastCharEscape true if the escaping of the last character needs to be taken into account
+     * @param firstOnly true if only the first character of each group should be escaped
+     */
+    private void escapeGroups(int[] target, int start, int end, int size, boolean afterLastCharEscape,
+        boolean firstOnly)
+    {
+        int groupsStart = start;
+        for (int i = start + 1; i <= end; ++i) {
+            if (i == end || isEscaped(i, afterLastCharEscape)) {
+                int groupsEnd = groupsStart + (i - groupsStart) / size * size;
+                for (int j = groupsStart; j < groupsEnd; j += firstOnly ? size : 1) {
+                    ++target[j];
+                }
+                groupsStart = i;
+            }
         }
     }
 
-    private int getLinkLevel(XWikiSyntaxListenerChain listenerChain)
+    private boolean isEscaped(int index, boolean afterLastCharEscape)
     {
-        int linkDepth = listenerChain.getBlockStateChainingListener().getLinkDepth();
+        return this.escapes[index] > 0 || (afterLastCharEscape && this.escapeLastChar && index == this.length - 1);
+    }
 
-        if (this.beforeLink) {
-            --linkDepth;
+    private void escapeLinkGroups(int start, int end)
+    {
+        // Link label specific syntax
+        if (this.linkLevel > 0) {
+            escapeGroups(this.linkEscapes, start, end, 2, true);
         }
+    }
 
-        return linkDepth;
+    private void escapeDoubleCharacters(int start, int end)
+    {
+        // Escape reserved keywords, unless the first character is preceded by an escape
+        for (int i = start; i + 1 < end; ++i) {
+            if (this.escapes[i] == 0 && this.escapes[i + 1] == 0 && (i == 0 || this.chars[i - 1] != ESCAPE)) {
+                ++this.escapes[i];
+                ++this.escapes[i + 1];
+                ++i;
+            }
+        }
     }
 
-    public void setBeforeLink(boolean beforeLink)
+    private void escapeURI(int index)
     {
-        this.beforeLink = beforeLink;
+        // Escape ":" in "image:something", "attach:something" and "mailto:something"
+        // Note: even though there are some restriction in the URI specification as to what character is valid after
+        // the ":" character following the scheme we only check for characters greater than the space symbol for
+        // simplicity.
+        for (int i = 0; i < URI_SCHEMES.length; ++i) {
+            if (!this.escapedURIs[i] && endsWith(index, URI_SCHEMES[i])) {
+                ++this.escapes[index];
+                this.escapedURIs[i] = true;
+            }
+        }
     }
 
-    private void escapeURI(StringBuffer accumulatedBuffer, String match)
+    private boolean endsWith(int end, String str)
     {
-        int pos = accumulatedBuffer.indexOf(match);
-        if (pos > -1) {
-            // Escape the ":" symbol
-            accumulatedBuffer.insert(pos + match.length() - 1, '~');
+        int start = end - str.length();
+        if (start < 0) {
+            return false;
+        }
+
+        for (int i = 0; i < str.length(); ++i) {
+            if (this.chars[start + i] != str.charAt(i)) {
+                return false;
+            }
         }
+
+        return true;
     }
 
-    private void replaceAll(StringBuffer accumulatedBuffer, String match, String replacement)
+    private void write(StringBuffer accumulatedBuffer)
     {
-        int pos = -replacement.length();
-        while ((pos + replacement.length() < accumulatedBuffer.length())
-            && ((pos = accumulatedBuffer.indexOf(match, pos + replacement.length())) != -1)) {
-            accumulatedBuffer.replace(pos, pos + match.length(), replacement);
+        this.result.setLength(0);
+
+        boolean escaped = false;
+        for (int i = 0; i < this.length; ++i) {
+            int count = getEscapeCount(i);
+            for (int j = 0; j < count; ++j) {
+                this.result.append(ESCAPE);
+            }
+            this.result.append(this.chars[i]);
+
+            escaped |= count > 0;
+        }
+
+        if (escaped) {
+            accumulatedBuffer.setLength(0);
+            accumulatedBuffer.append(this.result);
         }
     }
 
-    private void escapeFirstMatchedCharacter(Pattern pattern, StringBuffer accumulatedBuffer)
+    private int getEscapeCount(int index)
     {
-        Matcher matcher = pattern.matcher(accumulatedBuffer);
-        if (matcher.lookingAt()) {
-            // Escape the first character
-            accumulatedBuffer.replace(matcher.start(1), matcher.start(1) + 1, ESCAPE_CHAR + matcher.group(1).charAt(0));
+        int count = this.escapes[index];
+
+        if (this.linkLevel > 0) {
+            // Link labels add another level of escaping (escaped as link label and then escaped as wiki content) for
+            // each escape character, including the ones which have been inserted
+            count = count * (this.linkLevel + 1) + this.linkEscapes[index] * this.linkLevel;
+            if (this.chars[index] == ESCAPE) {
+                count += this.linkLevel;
+            }
         }
+
+        return count;
     }
 }
@@ -19,23 +19,37 @@
  */
 package org.xwiki.rendering.internal.transformation.linkchecker;
 
+import java.io.IOException;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.rendering.transformation.linkchecker.LinkCheckerTransformationConfiguration;
 
 /**
  * Default implementation using Apache Http Client.
+ * <p>
+ * In order to avoid downloading the content of the links a {@code HEAD} request is sent first. Since some servers
+ * don't support (or badly support) {@code HEAD} requests, a {@code GET} request asking only for the first byte of the
+ * content is sent when the {@code HEAD} request fails. If the server sends the whole content anyway the connection is
+ * closed without reading it.
  *
  * @version $Id$
  * @since 3.3M1
@@ -44,17 +58,32 @@
 @Singleton
 public class DefaultHTTPChecker implements HTTPChecker, Initializable
 {
+    /**
+     * The range asked in the {@code GET} requests, we only need to know that the content exists.
+     */
+    private static final String FIRST_BYTE_RANGE = "bytes=0-0";
+
+    /**
+     * The maximum size of a response content which is read in order to reuse the connection instead of closing it.
+     */
+    private static final long MAX_CONSUMED_CONTENT_LENGTH = 8192L;
+
+    /**
+     * The minimum number of connections in the pool.
+     */
+    private static final int MIN_CONNECTIONS = 20;
+
     /**
      * The logger to log.
      */
     @Inject
     private Logger logger;
 
+    @Inject
+    private LinkCheckerTransformationConfiguration configuration;
+
     /**
      * The client to connect to the remote site using HTTP.
-     * <p>
-     * Note: If one day we wish to configure timeouts, here's some good documentation about it:
-     * http://brian.olore.net/wp/2009/08/apache-httpclient-timeout/
      */
     private CloseableHttpClient httpClient;
 
@@ -63,8 +92,11 @@ public void initialize() throws InitializationException
     {
         HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
 
-        // Make the Http Client reusable by several threads
+        // Make the Http Client reusable by several threads, with enough connections for all the link checker threads
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(Math.max(MIN_CONNECTIONS, this.configuration.getCheckThreads()));
+        connectionManager.setDefaultMaxPerRoute(
+            Math.max(connectionManager.getDefaultMaxPerRoute(), this.configuration.getMaxChecksPerHost()));
         httpClientBuilder.setConnectionManager(connectionManager);
 
         // Pre-configure with everything configured at JVM level (e.g. proxy setup).
@@ -74,8 +106,15 @@ public void initialize() throws InitializationException
         httpClientBuilder.setUserAgent("XWikiLinkChecker");
 
         // Ignore cookies since this can cause errors in logs and we don't need cookies when checking sites.
+        // Don't wait forever for slow sites and don't follow endless redirects.
+        int maxRedirects = this.configuration.getMaxRedirects();
         RequestConfig config = RequestConfig.custom()
             .setCookieSpec(CookieSpecs.IGNORE_COOKIES)
+            .setConnectTimeout(this.configuration.getConnectionTimeout())
+            .setConnectionRequestTimeout(this.configuration.getConnectionTimeout())
+            .setSocketTimeout(this.configuration.getReadTimeout())
+            .setRedirectsEnabled(maxRedirects > 0)
+            .setMaxRedirects(maxRedirects)
             .build();
         httpClientBuilder.setDefaultRequestConfig(config);
 
@@ -87,28 +126,54 @@ public int check(String url)
     {
         int responseCode;
 
-        CloseableHttpResponse httpResponse = null;
         try {
-            HttpGet httpGet = new HttpGet(url);
-            httpResponse = this.httpClient.execute(httpGet);
-            responseCode = httpResponse.getStatusLine().getStatusCode();
+            responseCode = execute(new HttpHead(url), url);
+
+            // The server might not support HEAD requests (or lie about the resource), ask for the content.
+            if (responseCode >= HttpStatus.SC_BAD_REQUEST) {
+                HttpGet httpGet = new HttpGet(url);
+                httpGet.setHeader(HttpHeaders.RANGE, FIRST_BYTE_RANGE);
+                responseCode = execute(httpGet, url);
+
+                // The content is empty, it still exists though
+                if (responseCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    responseCode = execute(new HttpGet(url), url);
+                }
+            }
+
             this.logger.debug("Result of pinging [{}]: code = [{}]", url, responseCode);
         } catch (Exception e) {
             // Some error in the transport or in the passed URL, use a special response code (0) which isn't in the
             // list of allowed response codes, see http://en.wikipedia.org/wiki/List_of_HTTP_status_codes
             responseCode = 0;
             this.logger.debug("Error while checking [{}]", url, e);
-        } finally {
-            if (httpResponse != null) {
-                try {
-                    httpResponse.close();
-                } catch (Exception ee) {
-                    // Failed to close, ignore but log the error.
-                    this.logger.error("Failed to close HTTP connection for [{}]", url, ee);
-                }
-            }
         }
 
         return responseCode;
     }
+
+    private int execute(HttpRequestBase request, String url) throws IOException
+    {
+        CloseableHttpResponse httpResponse = this.httpClient.execute(request);
+
+        try {
+            // Only read small contents (e.g. the requested range), so that the connection can be reused. Big contents
+            // are not read and closing the response closes the connection.
+            HttpEntity entity = httpResponse.getEntity();
+            if (entity != null && entity.getContentLength() >= 0
+                && entity.getContentLength() <= MAX_CONSUMED_CONTENT_LENGTH)
+            {
+                EntityUtils.consumeQuietly(entity);
+            }
+
+            return httpResponse.getStatusLine().getStatusCode();
+        } finally {
+            try {
+                httpResponse.close();
+            } catch (Exception e) {
+                // Failed to close, ignore but log the error.
+                this.logger.error("Failed to close HTTP connection for [{}]", url, e);
+            }
+        }
+    }
 }
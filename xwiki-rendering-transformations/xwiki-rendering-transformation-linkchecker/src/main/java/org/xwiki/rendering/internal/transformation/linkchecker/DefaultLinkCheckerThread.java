@@ -19,17 +19,30 @@
  */
 package org.xwiki.rendering.internal.transformation.linkchecker;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
@@ -45,6 +58,10 @@
  * Thread that regularly check for Links to be checked on a Queue, and for each link tries to connect to it and save the
  * result in the {@link LinkStateManager}. In order to have good performance we only recheck a link if it's not been
  * checked for a certain time.
+ * <p>
+ * The links are checked in parallel by a pool of worker threads, while limiting the number of concurrent checks and
+ * the check rate for each host (see {@link LinkCheckerTransformationConfiguration}). Links which cannot be checked yet
+ * because of those limits wait in this thread until their host is available.
  *
  * @version $Id$
  * @since 5.3RC1
@@ -59,6 +76,16 @@ public class DefaultLinkCheckerThread extends java.lang.Thread implements LinkCh
     private static final String EVENT_DATA_STATE = "state";
     private static final String EVENT_DATA_CONTEXTDATA = "contextData";
 
+    /**
+     * The time to wait (in ms) when there's no link which can be checked right now.
+     */
+    private static final long WAIT_TIME = 100L;
+
+    /**
+     * The maximum number of host last check times to keep before removing the outdated ones.
+     */
+    private static final int MAX_HOST_CHECK_TIMES = 1000;
+
     @Inject
     private Logger logger;
 
@@ -93,6 +120,37 @@ public class DefaultLinkCheckerThread extends java.lang.Thread implements LinkCh
      */
     private volatile boolean shouldStop;
 
+    /**
+     * The threads checking the links, {@code null} when the links are checked directly by this thread.
+     */
+    private ExecutorService checkers;
+
+    /**
+     * The number of worker threads currently available to check a link.
+     */
+    private Semaphore availableCheckers;
+
+    /**
+     * The links taken from the queue which had to wait for their host to be available. Only accessed by this thread.
+     */
+    private final Deque<LinkQueueItem> waitingItems = new ArrayDeque<>();
+
+    /**
+     * The time at which the last check of a link of each host started. Only accessed by this thread.
+     */
+    private final Map<String, Long> hostCheckTimes = new HashMap<>();
+
+    /**
+     * The number of links currently being checked for each host.
+     */
+    private final Map<String, Integer> hostChecks = new HashMap<>();
+
+    /**
+     * The links currently being checked, to avoid checking the same link several times in parallel. Guarded by
+     * {@link #hostChecks}.
+     */
+    private final Set<String> checkedLinks = new HashSet<>();
+
     @Override
     public void startProcessing(Queue<LinkQueueItem> linkQueue)
     {
@@ -112,20 +170,62 @@ public void run()
     {
         // Allow external code to perform initialization of this thread.
         // This is useful for example if external code needs to initialize the Execution Context.
+        initializeThread();
+
+        int threads = Math.max(1, this.configuration.getCheckThreads());
+        this.availableCheckers = new Semaphore(threads);
+        this.checkers = Executors.newFixedThreadPool(threads, createThreadFactory());
+
+        try {
+            while (!this.shouldStop) {
+                try {
+                    if (!processLinkQueue()) {
+                        Thread.sleep(WAIT_TIME);
+                    }
+                } catch (InterruptedException e) {
+                    // We've been asked to stop
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    // There was an unexpected problem, we stop this checker thread and log the problem.
+                    this.logger.error("Link checker Thread was stopped due to some problem", e);
+                    break;
+                }
+            }
+        } finally {
+            this.checkers.shutdownNow();
+        }
+    }
+
+    private void initializeThread()
+    {
         for (LinkCheckerThreadInitializer initializer : this.linkCheckerThreadInitializersProvider.get()) {
             initializer.initialize();
         }
+    }
 
-        while (!this.shouldStop) {
-            try {
-                processLinkQueue();
-                Thread.sleep(300L);
-            } catch (Exception e) {
-                // There was an unexpected problem, we stop this checker thread and log the problem.
-                this.logger.error("Link checker Thread was stopped due to some problem", e);
-                break;
+    private ThreadFactory createThreadFactory()
+    {
+        // The worker threads need to be initialized the same way as this thread
+        ThreadFactory initializingFactory = new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                return new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        initializeThread();
+                        runnable.run();
+                    }
+                });
             }
-        }
+        };
+
+        return new BasicThreadFactory.Builder().wrappedFactory(initializingFactory)
+            .namingPattern(getName() + " Worker %d").daemon(true).build();
     }
 
     /**
@@ -140,40 +240,195 @@ public void stopProcessing()
     }
 
     /**
-     * Read the queue and find links to process, removing links that have already been checked out recently.
+     * Read the queue and find links to process, removing links that have already been checked out recently. The links
+     * are checked by the worker threads when they are started and directly otherwise.
+     *
+     * @return {@code true} if at least one link has been checked or scheduled to be checked
+     * @throws InterruptedException if interrupted while waiting for a worker thread to be available
      */
-    protected void processLinkQueue()
+    protected boolean processLinkQueue() throws InterruptedException
     {
         long timeout = this.configuration.getCheckTimeout();
         List<Pattern> excludedReferencePatterns = this.configuration.getExcludedReferencePatterns();
+        int maxChecksPerHost = Math.max(1, this.configuration.getMaxChecksPerHost());
+        long hostCheckInterval = this.configuration.getHostCheckInterval();
 
-        // Unqueue till we find an item that needs to be processed. We process an item if:
-        // - it isn't present in the state map
-        // - it is present but not enough time has elapsed since its last check time
-        LinkQueueItem queueItem = null;
-        boolean shouldBeChecked = false;
+        boolean processed = false;
 
-        while (!this.linkQueue.isEmpty() && !shouldBeChecked) {
-            queueItem = this.linkQueue.poll();
+        // Start with the links which were waiting for their host to be available.
+        int waitingCount = this.waitingItems.size();
+        for (int i = 0; i < waitingCount; i++) {
+            if (!acquireChecker()) {
+                return processed;
+            }
+            LinkQueueItem queueItem = this.waitingItems.poll();
+            // The link might have been checked while the item was waiting (for another content for example)
+            if (!shouldBeChecked(queueItem, excludedReferencePatterns, timeout)) {
+                releaseChecker();
+            } else if (startCheck(queueItem, maxChecksPerHost, hostCheckInterval)) {
+                processed = true;
+            } else {
+                releaseChecker();
+                this.waitingItems.add(queueItem);
+            }
+        }
 
-            // Don't check excluded references
-            shouldBeChecked = isExcluded(queueItem.getContentReference(), excludedReferencePatterns);
-            if (!shouldBeChecked) {
+        // Unqueue the items that need to be processed. We process an item if:
+        // - it isn't excluded
+        // - it isn't present in the state map
+        // - it is present but enough time has elapsed since its last check time
+        // Don't take more items than the queue can hold when they have to wait for their hosts.
+        int maxWaitingItems = Math.max(1, this.configuration.getMaxLinksInQueue());
+        while (this.waitingItems.size() < maxWaitingItems && !this.linkQueue.isEmpty()) {
+            if (!acquireChecker()) {
                 break;
             }
+            LinkQueueItem queueItem = this.linkQueue.poll();
+            if (queueItem != null && shouldBeChecked(queueItem, excludedReferencePatterns, timeout)) {
+                if (startCheck(queueItem, maxChecksPerHost, hostCheckInterval)) {
+                    processed = true;
+                } else {
+                    releaseChecker();
+                    this.waitingItems.add(queueItem);
+                }
+            } else {
+                releaseChecker();
+            }
+        }
+
+        return processed;
+    }
+
+    private boolean acquireChecker() throws InterruptedException
+    {
+        return this.checkers == null || this.availableCheckers.tryAcquire(WAIT_TIME, TimeUnit.MILLISECONDS);
+    }
+
+    private void releaseChecker()
+    {
+        if (this.checkers != null) {
+            this.availableCheckers.release();
+        }
+    }
+
+    private boolean shouldBeChecked(LinkQueueItem queueItem, List<Pattern> excludedReferencePatterns, long timeout)
+    {
+        // Don't check excluded references
+        if (!isExcluded(queueItem.getContentReference(), excludedReferencePatterns)) {
+            return false;
+        }
+
+        Map<String, LinkState> contentReferences =
+            this.linkStateManager.getLinkStates().get(queueItem.getLinkReference());
+        if (contentReferences != null) {
+            long now = System.currentTimeMillis();
+            LinkState state = contentReferences.get(queueItem.getContentReference());
+            if (state != null && (now - state.getLastCheckedTime() <= timeout)) {
+                return false;
+            }
 
-            Map<String, LinkState> contentReferences =
-                this.linkStateManager.getLinkStates().get(queueItem.getLinkReference());
-            if (contentReferences != null) {
-                LinkState state = contentReferences.get(queueItem.getContentReference());
-                if (state != null && (System.currentTimeMillis() - state.getLastCheckedTime() <= timeout)) {
-                    shouldBeChecked = false;
+            // The link has been checked recently for another content, reuse the result
+            for (LinkState otherState : contentReferences.values()) {
+                if (now - otherState.getLastCheckedTime() <= timeout) {
+                    saveLinkState(queueItem, otherState.getResponseCode(), otherState.getLastCheckedTime());
+                    return false;
                 }
             }
         }
 
-        if (shouldBeChecked && queueItem != null) {
-            checkLink(queueItem);
+        return true;
+    }
+
+    /**
+     * Check the passed link if its host limits allow it.
+     *
+     * @return {@code false} if the link has to wait for its host to be available
+     */
+    private boolean startCheck(final LinkQueueItem queueItem, int maxChecksPerHost, long hostCheckInterval)
+    {
+        final String host = getHost(queueItem.getLinkReference());
+
+        long now = System.currentTimeMillis();
+        Long lastCheckTime = this.hostCheckTimes.get(host);
+        if (lastCheckTime != null && now - lastCheckTime < hostCheckInterval) {
+            return false;
+        }
+
+        synchronized (this.hostChecks) {
+            Integer count = this.hostChecks.get(host);
+            if (count != null && count >= maxChecksPerHost) {
+                return false;
+            }
+            // Check the same link only once at a time since the content references of a link are stored together
+            if (!this.checkedLinks.add(queueItem.getLinkReference())) {
+                return false;
+            }
+            this.hostChecks.put(host, count != null ? count + 1 : 1);
+        }
+
+        updateHostCheckTime(host, now, hostCheckInterval);
+
+        if (this.checkers != null) {
+            this.checkers.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        checkLink(queueItem);
+                    } catch (Exception e) {
+                        logger.error("Failed to check link [{}]", queueItem.getLinkReference(), e);
+                    } finally {
+                        endCheck(queueItem, host);
+                        availableCheckers.release();
+                    }
+                }
+            });
+        } else {
+            try {
+                checkLink(queueItem);
+            } finally {
+                endCheck(queueItem, host);
+            }
+        }
+
+        return true;
+    }
+
+    private void endCheck(LinkQueueItem queueItem, String host)
+    {
+        synchronized (this.hostChecks) {
+            int count = this.hostChecks.get(host) - 1;
+            if (count > 0) {
+                this.hostChecks.put(host, count);
+            } else {
+                this.hostChecks.remove(host);
+            }
+            this.checkedLinks.remove(queueItem.getLinkReference());
+        }
+    }
+
+    private void updateHostCheckTime(String host, long now, long hostCheckInterval)
+    {
+        this.hostCheckTimes.put(host, now);
+
+        // Forget about the hosts which are not rate limited anymore
+        if (this.hostCheckTimes.size() > MAX_HOST_CHECK_TIMES) {
+            for (Iterator<Long> it = this.hostCheckTimes.values().iterator(); it.hasNext();) {
+                if (now - it.next() >= hostCheckInterval) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private String getHost(String linkReference)
+    {
+        try {
+            return new URL(linkReference).getHost();
+        } catch (MalformedURLException e) {
+            // The check will fail quickly anyway
+            return "";
         }
     }
 
@@ -198,12 +453,24 @@ private void checkLink(LinkQueueItem queueItem)
     {
         int responseCode = this.httpChecker.check(queueItem.getLinkReference());
 
+        saveLinkState(queueItem, responseCode, System.currentTimeMillis());
+    }
+
+    /**
+     * Save the result of a link check in the {@link LinkStateManager}.
+     *
+     * @param queueItem the checked link
+     * @param responseCode the HTTP response code of the link
+     * @param checkedTime the time when the link was checked
+     */
+    private void saveLinkState(LinkQueueItem queueItem, int responseCode, long checkedTime)
+    {
         Map<String, LinkState> contentReferences =
             this.linkStateManager.getLinkStates().get(queueItem.getLinkReference());
         if (contentReferences == null) {
             contentReferences = new ConcurrentHashMap<>();
         }
-        LinkState state = new LinkState(responseCode, System.currentTimeMillis(), queueItem.getContextData());
+        LinkState state = new LinkState(responseCode, checkedTime, queueItem.getContextData());
         contentReferences.put(queueItem.getContentReference(), state);
         this.linkStateManager.getLinkStates().put(queueItem.getLinkReference(), contentReferences);
 
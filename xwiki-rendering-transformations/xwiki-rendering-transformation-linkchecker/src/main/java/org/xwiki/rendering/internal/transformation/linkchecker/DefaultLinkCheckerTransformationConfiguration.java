@@ -19,6 +19,7 @@
  */
 package org.xwiki.rendering.internal.transformation.linkchecker;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -104,6 +105,78 @@ public void setCheckTimeout(long checkTimeout)
         this.checkTimeout = checkTimeout;
     }
 
+    @Override
+    public int getCheckThreads()
+    {
+        return this.configurationSource.getProperty(PREFIX + "threads",
+            LinkCheckerTransformationConfiguration.super.getCheckThreads());
+    }
+
+    @Override
+    public int getMaxChecksPerHost()
+    {
+        return this.configurationSource.getProperty(PREFIX + "maxChecksPerHost",
+            LinkCheckerTransformationConfiguration.super.getMaxChecksPerHost());
+    }
+
+    @Override
+    public long getHostCheckInterval()
+    {
+        return this.configurationSource.getProperty(PREFIX + "hostCheckInterval",
+            LinkCheckerTransformationConfiguration.super.getHostCheckInterval());
+    }
+
+    @Override
+    public int getMaxLinksInQueue()
+    {
+        return this.configurationSource.getProperty(PREFIX + "maxLinksInQueue",
+            LinkCheckerTransformationConfiguration.super.getMaxLinksInQueue());
+    }
+
+    @Override
+    public int getConnectionTimeout()
+    {
+        return this.configurationSource.getProperty(PREFIX + "connectionTimeout",
+            LinkCheckerTransformationConfiguration.super.getConnectionTimeout());
+    }
+
+    @Override
+    public int getReadTimeout()
+    {
+        return this.configurationSource.getProperty(PREFIX + "readTimeout",
+            LinkCheckerTransformationConfiguration.super.getReadTimeout());
+    }
+
+    @Override
+    public int getMaxRedirects()
+    {
+        return this.configurationSource.getProperty(PREFIX + "maxRedirects",
+            LinkCheckerTransformationConfiguration.super.getMaxRedirects());
+    }
+
+    @Override
+    public int getMaxLinkStates()
+    {
+        return this.configurationSource.getProperty(PREFIX + "maxLinkStates",
+            LinkCheckerTransformationConfiguration.super.getMaxLinkStates());
+    }
+
+    @Override
+    public long getLinkStateTimeToLive()
+    {
+        Long timeToLive = this.configurationSource.getProperty(PREFIX + "linkStateTimeToLive", Long.class);
+
+        return timeToLive != null ? timeToLive : LinkCheckerTransformationConfiguration.super.getLinkStateTimeToLive();
+    }
+
+    @Override
+    public File getLinkStateFile()
+    {
+        String path = this.configurationSource.getProperty(PREFIX + "linkStateFile", String.class);
+
+        return path != null ? new File(path) : null;
+    }
+
     /**
      * Allows extending classes to override it.
      *
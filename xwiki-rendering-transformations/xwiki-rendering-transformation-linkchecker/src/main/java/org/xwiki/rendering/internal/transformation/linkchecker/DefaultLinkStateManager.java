@@ -19,29 +19,96 @@
  */
 package org.xwiki.rendering.internal.transformation.linkchecker;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.rendering.transformation.linkchecker.LinkCheckerTransformationConfiguration;
 import org.xwiki.rendering.transformation.linkchecker.LinkState;
 import org.xwiki.rendering.transformation.linkchecker.LinkStateManager;
 
 /**
  * Default implementation of {@link LinkStateManager} which supports multithreaded access to the link states.
+ * <p>
+ * The number of kept states is limited and the states of the links which are not checked anymore are forgotten, see
+ * {@link LinkStateMap}. The states are also saved in the {@link LinkCheckerTransformationConfiguration#getLinkStateFile()
+ * link state file} when there's one, so that the links don't all need to be checked again after a restart.
  *
  * @version $Id$
  * @since 3.3M1
  */
 @Component
 @Singleton
-public class DefaultLinkStateManager implements LinkStateManager
+public class DefaultLinkStateManager implements LinkStateManager, Initializable, Disposable
 {
+    @Inject
+    private LinkCheckerTransformationConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Where the states are saved, {@code null} if they're only kept in memory.
+     */
+    private LinkStateLog log;
+
     /**
      * @see #getLinkStates() to understand the map structure
      */
-    private Map<String, Map<String, LinkState>> linkStates = new ConcurrentHashMap<String, Map<String, LinkState>>();
+    private LinkStateMap linkStates;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        Map<String, Map<String, LinkState>> savedStates = new HashMap<>();
+
+        File file = this.configuration.getLinkStateFile();
+        if (file != null) {
+            this.log = new LinkStateLog(file);
+            try {
+                this.log.load(savedStates, System.currentTimeMillis() - this.configuration.getLinkStateTimeToLive());
+            } catch (IOException e) {
+                this.logger.warn("Failed to read the saved link states from [{}]. Root cause is [{}]", file,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        this.linkStates = new LinkStateMap(this.configuration, this.log, this.logger);
+        this.linkStates.restore(savedStates);
+
+        // Remove the outdated states from the file
+        if (this.log != null) {
+            try {
+                this.log.compact(this.linkStates);
+            } catch (IOException e) {
+                this.logger.warn("Failed to rewrite the link states file [{}]. Root cause is [{}]", file,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.log != null) {
+            try {
+                this.log.close();
+            } catch (IOException e) {
+                throw new ComponentLifecycleException("Failed to close the link states file", e);
+            }
+        }
+    }
 
     @Override
     public Map<String, Map<String, LinkState>> getLinkStates()
@@ -19,11 +19,12 @@
  */
 package org.xwiki.rendering.internal.transformation.linkchecker;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -36,13 +37,13 @@
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.LinkBlock;
 import org.xwiki.rendering.block.MetaDataBlock;
-import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.rendering.block.match.MetadataBlockMatcher;
 import org.xwiki.rendering.listener.MetaData;
 import org.xwiki.rendering.listener.reference.ResourceType;
-import org.xwiki.rendering.transformation.AbstractTransformation;
+import org.xwiki.rendering.transformation.AbstractBlockTransformation;
 import org.xwiki.rendering.transformation.TransformationContext;
 import org.xwiki.rendering.transformation.TransformationException;
+import org.xwiki.rendering.transformation.linkchecker.LinkCheckerTransformationConfiguration;
 import org.xwiki.rendering.transformation.linkchecker.LinkContextDataProvider;
 
 /**
@@ -55,30 +56,29 @@
 @Component
 @Named("linkchecker")
 @Singleton
-public class LinkCheckerTransformation extends AbstractTransformation implements Initializable
+public class LinkCheckerTransformation extends AbstractBlockTransformation implements Initializable
 {
-    /**
-     * Anti-flood mechanism. We only allow adding links to check in the queue if it currently has less than
-     * MAX_LINKS_IN_QUEUE already. This is a safeguard for the following:
-     * - if the checker thread has some issues and thus the queue isn't getting unpiled then this ensures that it won't
-     *   grow more which would slowly use up all the memory...
-     * - we don't swamp the system with links to check (for ex if lots of users go to pages with links the queue can
-     *   quickly grow large)
-     * In any case, the links will be checked again later when the pages are rendered again.
-     */
-    static final int MAX_LINKS_IN_QUEUE = 10;
-
     @Inject
     private LinkCheckerThread checkerThread;
 
     @Inject
     private Provider<List<LinkContextDataProvider>> linkContextDataProvidersProvider;
 
+    @Inject
+    private LinkCheckerTransformationConfiguration configuration;
+
     /**
      * The link queue that the checker thread will use to check links. We use a separate checker thread and a queue
      * in order to have good performance so that this transformation doesn't slow down the rendering of content.
+     * <p>
+     * Anti-flood mechanism: the queue is bounded. This is a safeguard for the following:
+     * - if the checker thread has some issues and thus the queue isn't getting unpiled then this ensures that it won't
+     *   grow more which would slowly use up all the memory...
+     * - we don't swamp the system with links to check (for ex if lots of users go to pages with links the queue can
+     *   quickly grow large)
+     * In any case, the links will be checked again later when the pages are rendered again.
      */
-    private Queue<LinkQueueItem> linkQueue = new ConcurrentLinkedQueue<>();
+    private LinkQueue linkQueue;
 
     /**
      * Start a Thread in charge of reading links to check from the Checking queue and checking them.
@@ -88,10 +88,24 @@ public class LinkCheckerTransformation extends AbstractTransformation implements
     @Override
     public void initialize() throws InitializationException
     {
+        this.linkQueue = new LinkQueue(this.configuration.getMaxLinksInQueue());
+
         this.checkerThread.setName("Link Checker Thread");
         this.checkerThread.startProcessing(getLinkQueue());
     }
 
+    @Override
+    public Collection<Class<? extends Block>> getBlockTypes()
+    {
+        return Collections.<Class<? extends Block>>singletonList(LinkBlock.class);
+    }
+
+    @Override
+    public boolean isProtectedBlocksSkipped()
+    {
+        return false;
+    }
+
     @Override
     public void transform(Block source, TransformationContext context) throws TransformationException
     {
@@ -99,27 +113,38 @@ public void transform(Block source, TransformationContext context) throws Transf
         // thread and is executed for each page view and thus needs to be as fast as possible. The exclusion handling
         // is thus done in the Link Checker Thread.
 
-        // Anti-flood mechanism, only add items in the queue if there are less than MAX_LINKS_IN_QUEUE. This means that
-        // if the queue has MAX_LINKS_IN_QUEUE or more elements already the links from the current page being rendered
-        // will not be verified. They'll get their chance the next time the page is visited again...
-        if (getLinkQueue().size() < MAX_LINKS_IN_QUEUE) {
-            for (LinkBlock linkBlock : source.<LinkBlock>getBlocks(
-                new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT))
-            {
-                if (linkBlock.getReference().getType().equals(ResourceType.URL)) {
-                    // This is a link pointing to an external URL, add it to the queue for processing (i.e. checking).
-                    String linkReference = linkBlock.getReference().getReference();
-                    String contentReference = extractSourceContentReference(linkBlock);
-                    // If there's no content reference then use a default name of "default"
-                    if (contentReference == null) {
-                        contentReference = "default";
-                    }
-                    // Add Link Context Data
-                    Map<String, Object> linkContextData = createLinkContextData(linkReference, contentReference);
-                    this.linkQueue.add(new LinkQueueItem(linkReference, contentReference, linkContextData));
-                }
+        // Anti-flood mechanism, only add items in the queue if it's not full. This means that if the queue is full
+        // the links from the current page being rendered will not be verified. They'll get their chance the next time
+        // the page is visited again...
+        if (!isQueueFull()) {
+            super.transform(source, context);
+        }
+    }
+
+    @Override
+    public Block transformBlock(Block block, TransformationContext context) throws TransformationException
+    {
+        LinkBlock linkBlock = (LinkBlock) block;
+        if (!isQueueFull() && linkBlock.getReference().getType().equals(ResourceType.URL)) {
+            // This is a link pointing to an external URL, add it to the queue for processing (i.e. checking).
+            String linkReference = linkBlock.getReference().getReference();
+            String contentReference = extractSourceContentReference(linkBlock);
+            // If there's no content reference then use a default name of "default"
+            if (contentReference == null) {
+                contentReference = "default";
             }
+            // Add Link Context Data
+            Map<String, Object> linkContextData = createLinkContextData(linkReference, contentReference);
+            // Note that the link is ignored if it's already in the queue or if the queue is full
+            this.linkQueue.offer(new LinkQueueItem(linkReference, contentReference, linkContextData));
         }
+
+        return linkBlock;
+    }
+
+    private boolean isQueueFull()
+    {
+        return this.linkQueue.size() >= this.linkQueue.getCapacity();
     }
 
     /**
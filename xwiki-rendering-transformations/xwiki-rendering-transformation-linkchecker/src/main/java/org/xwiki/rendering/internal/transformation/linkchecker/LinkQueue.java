@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.linkchecker;
+
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded queue of links to check, which ignores the links already waiting to be checked for the same content.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class LinkQueue extends AbstractQueue<LinkQueueItem>
+{
+    private final Queue<LinkQueueItem> items = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The keys of the queued items, used to quickly find duplicates.
+     */
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Counted separately since {@link ConcurrentLinkedQueue#size()} needs to traverse the whole queue.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final int capacity;
+
+    /**
+     * @param capacity the maximum number of items in the queue
+     */
+    public LinkQueue(int capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the maximum number of items in the queue
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    @Override
+    public boolean offer(LinkQueueItem item)
+    {
+        String key = getKey(item);
+        if (!this.keys.add(key)) {
+            // The same link is already waiting to be checked for the same content
+            return false;
+        }
+
+        if (this.size.incrementAndGet() > this.capacity) {
+            this.size.decrementAndGet();
+            this.keys.remove(key);
+
+            return false;
+        }
+
+        this.items.offer(item);
+
+        return true;
+    }
+
+    @Override
+    public LinkQueueItem poll()
+    {
+        LinkQueueItem item = this.items.poll();
+
+        if (item != null) {
+            this.size.decrementAndGet();
+            this.keys.remove(getKey(item));
+        }
+
+        return item;
+    }
+
+    @Override
+    public LinkQueueItem peek()
+    {
+        return this.items.peek();
+    }
+
+    @Override
+    public int size()
+    {
+        return this.size.get();
+    }
+
+    @Override
+    public Iterator<LinkQueueItem> iterator()
+    {
+        // Removing items through the iterator would desynchronize the keys and the size
+        return Collections.unmodifiableCollection(this.items).iterator();
+    }
+
+    private String getKey(LinkQueueItem item)
+    {
+        return item.getLinkReference() + '\n' + item.getContentReference();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.linkchecker;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xwiki.rendering.transformation.linkchecker.LinkState;
+
+/**
+ * Append-only file in which the link states are saved, one line per state. The file is rewritten with only the current
+ * states when it becomes too big.
+ * <p>
+ * Only the response code and the last checked time of the states are saved, the context data are lost.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class LinkStateLog implements Closeable
+{
+    private static final String SEPARATOR = "\t";
+
+    private static final String ENCODING = StandardCharsets.UTF_8.name();
+
+    /**
+     * The number of lines which can always be written before rewriting the file.
+     */
+    private static final int MIN_COMPACTION_LINES = 1000;
+
+    private final File file;
+
+    private Writer writer;
+
+    private int lineCount;
+
+    private int compactedLineCount;
+
+    /**
+     * @param file the file in which to save the link states
+     */
+    public LinkStateLog(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Read the saved link states.
+     *
+     * @param states the map in which to put the read states, the outer map key is the link reference and the inner map
+     *            key is the content reference
+     * @param minCheckedTime the states checked before this time are ignored
+     * @throws IOException when failing to read the file
+     */
+    public synchronized void load(Map<String, Map<String, LinkState>> states, long minCheckedTime) throws IOException
+    {
+        if (!this.file.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                this.lineCount++;
+                String[] fields = line.split(SEPARATOR);
+                // Ignore the lines which were not completely written
+                if (fields.length == 4) {
+                    try {
+                        long lastCheckedTime = Long.parseLong(fields[0]);
+                        if (lastCheckedTime >= minCheckedTime) {
+                            LinkState state = new LinkState(Integer.parseInt(fields[1]), lastCheckedTime);
+                            String linkReference = URLDecoder.decode(fields[2], ENCODING);
+                            String contentReference = URLDecoder.decode(fields[3], ENCODING);
+                            load(states, linkReference, contentReference, state);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // Corrupted line, ignore it
+                    }
+                }
+            }
+        }
+
+        this.compactedLineCount = this.lineCount;
+    }
+
+    private void load(Map<String, Map<String, LinkState>> states, String linkReference, String contentReference,
+        LinkState state)
+    {
+        Map<String, LinkState> contentReferences = states.get(linkReference);
+        if (contentReferences == null) {
+            contentReferences = new HashMap<>();
+            states.put(linkReference, contentReferences);
+        }
+
+        LinkState previousState = contentReferences.get(contentReference);
+        if (previousState == null || previousState.getLastCheckedTime() <= state.getLastCheckedTime()) {
+            contentReferences.put(contentReference, state);
+        }
+    }
+
+    /**
+     * Save a link state at the end of the file.
+     *
+     * @param linkReference the reference of the checked link
+     * @param contentReference the reference of the content containing the link
+     * @param state the state of the link
+     * @throws IOException when failing to write the state
+     */
+    public synchronized void append(String linkReference, String contentReference, LinkState state) throws IOException
+    {
+        if (this.writer == null) {
+            File parent = this.file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            this.writer = Files.newBufferedWriter(this.file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        write(this.writer, linkReference, contentReference, state);
+        this.writer.flush();
+        this.lineCount++;
+    }
+
+    /**
+     * @return {@code true} if the file contains a lot more lines than after it was last rewritten
+     */
+    public synchronized boolean needsCompaction()
+    {
+        return this.lineCount > this.compactedLineCount * 2 + MIN_COMPACTION_LINES;
+    }
+
+    /**
+     * Replace the content of the file with the passed states.
+     *
+     * @param states the current link states, the outer map key is the link reference and the inner map key is the
+     *            content reference
+     * @throws IOException when failing to write the file
+     */
+    public synchronized void compact(Map<String, Map<String, LinkState>> states) throws IOException
+    {
+        close();
+
+        File temporaryFile = new File(this.file.getPath() + ".tmp");
+        int count = 0;
+        try (Writer temporaryWriter = Files.newBufferedWriter(temporaryFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Map<String, LinkState>> linkEntry : states.entrySet()) {
+                for (Map.Entry<String, LinkState> contentEntry : linkEntry.getValue().entrySet()) {
+                    write(temporaryWriter, linkEntry.getKey(), contentEntry.getKey(), contentEntry.getValue());
+                    count++;
+                }
+            }
+        }
+        Files.move(temporaryFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        this.lineCount = count;
+        this.compactedLineCount = count;
+    }
+
+    private void write(Writer output, String linkReference, String contentReference, LinkState state)
+        throws IOException
+    {
+        output.write(String.valueOf(state.getLastCheckedTime()));
+        output.write(SEPARATOR);
+        output.write(String.valueOf(state.getResponseCode()));
+        output.write(SEPARATOR);
+        output.write(encode(linkReference));
+        output.write(SEPARATOR);
+        output.write(encode(contentReference));
+        output.write('\n');
+    }
+
+    private String encode(String value) throws UnsupportedEncodingException
+    {
+        // Make sure the value doesn't contain any separator or new line
+        return URLEncoder.encode(value, ENCODING);
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (this.writer != null) {
+            this.writer.close();
+            this.writer = null;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.linkchecker;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.rendering.transformation.linkchecker.LinkCheckerTransformationConfiguration;
+import org.xwiki.rendering.transformation.linkchecker.LinkState;
+
+/**
+ * Thread safe map of the link states which:
+ * <ul>
+ * <li>forgets the links which have not been checked for longer than
+ * {@link LinkCheckerTransformationConfiguration#getLinkStateTimeToLive()}</li>
+ * <li>forgets the links which have not been checked for the longest time when there's more than
+ * {@link LinkCheckerTransformationConfiguration#getMaxLinkStates()} states (counting the states of a link in each
+ * content)</li>
+ * <li>saves the new states in a {@link LinkStateLog} if there's one</li>
+ * </ul>
+ * The outer map key is the link reference and the inner map key is the content reference. Inner maps put in this map
+ * are copied so that the states put in them later are saved too.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class LinkStateMap extends AbstractMap<String, Map<String, LinkState>>
+{
+    /**
+     * The minimum time (in ms) between two removals of the expired states when the map is not full.
+     */
+    private static final long PURGE_INTERVAL = 60000L;
+
+    /**
+     * When full, the map is reduced to this ratio of its maximum size so that it doesn't have to be done for each new
+     * link.
+     */
+    private static final double EVICTION_RATIO = 0.9;
+
+    private final Map<String, Map<String, LinkState>> states = new ConcurrentHashMap<>();
+
+    private final LinkCheckerTransformationConfiguration configuration;
+
+    private final LinkStateLog log;
+
+    private final Logger logger;
+
+    private volatile long lastPurgeTime = System.currentTimeMillis();
+
+    /**
+     * The number of states in all the inner maps (approximate when they are modified concurrently).
+     */
+    private final AtomicInteger stateCount = new AtomicInteger();
+
+    /**
+     * The states of a link for each content reference.
+     */
+    private final class ContentLinkStates extends AbstractMap<String, LinkState>
+    {
+        private final String linkReference;
+
+        private final Map<String, LinkState> contentStates = new ConcurrentHashMap<>();
+
+        ContentLinkStates(String linkReference)
+        {
+            this.linkReference = linkReference;
+        }
+
+        @Override
+        public LinkState put(String contentReference, LinkState state)
+        {
+            LinkState previousState = this.contentStates.put(contentReference, state);
+
+            save(this.linkReference, contentReference, state);
+
+            if (previousState == null && isAttached()) {
+                stateCount.incrementAndGet();
+                evict(false);
+            }
+
+            return previousState;
+        }
+
+        @Override
+        public LinkState get(Object contentReference)
+        {
+            return this.contentStates.get(contentReference);
+        }
+
+        @Override
+        public boolean containsKey(Object contentReference)
+        {
+            return this.contentStates.containsKey(contentReference);
+        }
+
+        @Override
+        public LinkState remove(Object contentReference)
+        {
+            LinkState previousState = this.contentStates.remove(contentReference);
+
+            if (previousState != null && isAttached()) {
+                stateCount.decrementAndGet();
+            }
+
+            return previousState;
+        }
+
+        @Override
+        public int size()
+        {
+            return this.contentStates.size();
+        }
+
+        @Override
+        public Set<Entry<String, LinkState>> entrySet()
+        {
+            return this.contentStates.entrySet();
+        }
+
+        long getLastCheckedTime()
+        {
+            long lastCheckedTime = 0;
+            for (LinkState state : this.contentStates.values()) {
+                lastCheckedTime = Math.max(lastCheckedTime, state.getLastCheckedTime());
+            }
+
+            return lastCheckedTime;
+        }
+
+        LinkStateMap getOwner()
+        {
+            return LinkStateMap.this;
+        }
+
+        /**
+         * @return true if this map is still part of the link states (its states are not counted otherwise)
+         */
+        private boolean isAttached()
+        {
+            return states.get(this.linkReference) == this;
+        }
+    }
+
+    /**
+     * @param configuration the configuration of the link checker
+     * @param log where to save the new states, {@code null} if they should not be saved
+     * @param logger the logger to use to log problems when saving the states
+     */
+    public LinkStateMap(LinkCheckerTransformationConfiguration configuration, LinkStateLog log, Logger logger)
+    {
+        this.configuration = configuration;
+        this.log = log;
+        this.logger = logger;
+    }
+
+    /**
+     * Add previously saved states, without saving them again.
+     *
+     * @param savedStates the states to add
+     */
+    public void restore(Map<String, Map<String, LinkState>> savedStates)
+    {
+        for (Map.Entry<String, Map<String, LinkState>> entry : savedStates.entrySet()) {
+            ContentLinkStates contentLinkStates = new ContentLinkStates(entry.getKey());
+            contentLinkStates.contentStates.putAll(entry.getValue());
+            updateStateCount(this.states.put(entry.getKey(), contentLinkStates), contentLinkStates);
+        }
+
+        evict(true);
+    }
+
+    @Override
+    public Map<String, LinkState> put(String linkReference, Map<String, LinkState> contentReferences)
+    {
+        Map<String, LinkState> contentLinkStates;
+        if (contentReferences instanceof ContentLinkStates
+            && ((ContentLinkStates) contentReferences).getOwner() == this)
+        {
+            // The states it contains have already been saved
+            contentLinkStates = contentReferences;
+        } else {
+            contentLinkStates = new ContentLinkStates(linkReference);
+            contentLinkStates.putAll(contentReferences);
+        }
+
+        Map<String, LinkState> previousContentReferences = this.states.put(linkReference, contentLinkStates);
+        updateStateCount(previousContentReferences, contentLinkStates);
+
+        evict(false);
+
+        return previousContentReferences;
+    }
+
+    @Override
+    public Map<String, LinkState> get(Object linkReference)
+    {
+        return this.states.get(linkReference);
+    }
+
+    @Override
+    public boolean containsKey(Object linkReference)
+    {
+        return this.states.containsKey(linkReference);
+    }
+
+    @Override
+    public Map<String, LinkState> remove(Object linkReference)
+    {
+        Map<String, LinkState> previousContentReferences = this.states.remove(linkReference);
+        updateStateCount(previousContentReferences, null);
+
+        return previousContentReferences;
+    }
+
+    @Override
+    public int size()
+    {
+        return this.states.size();
+    }
+
+    @Override
+    public void clear()
+    {
+        this.states.clear();
+        this.stateCount.set(0);
+    }
+
+    /**
+     * @return the number of states in all the inner maps
+     */
+    public int getStateCount()
+    {
+        return this.stateCount.get();
+    }
+
+    private void updateStateCount(Map<String, LinkState> removedStates, Map<String, LinkState> addedStates)
+    {
+        int delta = (addedStates != null ? addedStates.size() : 0) - (removedStates != null ? removedStates.size() : 0);
+        if (delta != 0) {
+            this.stateCount.addAndGet(delta);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Map<String, LinkState>>> entrySet()
+    {
+        // Don't allow to replace the inner maps through the entries
+        return Collections.unmodifiableMap(this.states).entrySet();
+    }
+
+    private void save(String linkReference, String contentReference, LinkState state)
+    {
+        if (this.log != null) {
+            try {
+                this.log.append(linkReference, contentReference, state);
+                if (this.log.needsCompaction()) {
+                    this.log.compact(this);
+                }
+            } catch (IOException e) {
+                this.logger.warn("Failed to save the state of link [{}]. Root cause is [{}]", linkReference,
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+    }
+
+    private void evict(boolean force)
+    {
+        long now = System.currentTimeMillis();
+        int maxSize = Math.max(1, this.configuration.getMaxLinkStates());
+
+        if (force || this.stateCount.get() > maxSize || now - this.lastPurgeTime > PURGE_INTERVAL) {
+            synchronized (this) {
+                this.lastPurgeTime = now;
+
+                // Forget the links which are not used anymore
+                long minCheckedTime = now - this.configuration.getLinkStateTimeToLive();
+                for (Iterator<Map<String, LinkState>> it = this.states.values().iterator(); it.hasNext();) {
+                    Map<String, LinkState> contentLinkStates = it.next();
+                    if (((ContentLinkStates) contentLinkStates).getLastCheckedTime() < minCheckedTime) {
+                        it.remove();
+                        updateStateCount(contentLinkStates, null);
+                    }
+                }
+
+                // Forget the links which have not been checked for the longest time
+                if (this.stateCount.get() > maxSize) {
+                    evictOldest((int) (maxSize * EVICTION_RATIO));
+                }
+            }
+        }
+    }
+
+    private void evictOldest(int maxCount)
+    {
+        List<Map.Entry<String, Long>> lastCheckedTimes = new ArrayList<>(this.states.size());
+        for (Map.Entry<String, Map<String, LinkState>> entry : this.states.entrySet()) {
+            lastCheckedTimes.add(new SimpleImmutableEntry<>(entry.getKey(),
+                ((ContentLinkStates) entry.getValue()).getLastCheckedTime()));
+        }
+        Collections.sort(lastCheckedTimes, new Comparator<Map.Entry<String, Long>>()
+        {
+            @Override
+            public int compare(Map.Entry<String, Long> entry1, Map.Entry<String, Long> entry2)
+            {
+                return entry1.getValue().compareTo(entry2.getValue());
+            }
+        });
+
+        for (int i = 0; i < lastCheckedTimes.size() && this.stateCount.get() > maxCount; i++) {
+            remove(lastCheckedTimes.get(i).getKey());
+        }
+    }
+}
@@ -19,10 +19,12 @@
  */
 package org.xwiki.rendering.transformation.linkchecker;
 
+import java.io.File;
 import java.util.List;
 import java.util.regex.Pattern;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.stability.Unstable;
 
 /**
  * Configuration options for the Link Checker Transformation.
@@ -48,4 +50,111 @@
      *         ensure that the page listing all link statuses is itself excluded ;))
      */
     List<Pattern> getExcludedReferencePatterns();
+
+    /**
+     * @return the number of links which can be checked at the same time
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getCheckThreads()
+    {
+        return 4;
+    }
+
+    /**
+     * @return the maximum number of links pointing to the same host which can be checked at the same time
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getMaxChecksPerHost()
+    {
+        return 2;
+    }
+
+    /**
+     * @return the minimum amount of time (in ms) to wait between the start of two checks of links pointing to the same
+     *         host, so that we don't flood remote sites
+     * @since 10.9RC1
+     */
+    @Unstable
+    default long getHostCheckInterval()
+    {
+        return 100L;
+    }
+
+    /**
+     * @return the maximum number of links waiting to be checked, links found while the queue is full are not checked
+     *         (they'll get their chance the next time the content containing them is rendered)
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getMaxLinksInQueue()
+    {
+        return 5000;
+    }
+
+    /**
+     * @return the maximum amount of time (in ms) to wait for the connection to a link's host to be established
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getConnectionTimeout()
+    {
+        return 10000;
+    }
+
+    /**
+     * @return the maximum amount of time (in ms) to wait for data when reading the response of a link's host
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getReadTimeout()
+    {
+        return 10000;
+    }
+
+    /**
+     * @return the maximum number of redirects to follow when checking a link, the link is considered invalid if there
+     *         are more
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getMaxRedirects()
+    {
+        return 5;
+    }
+
+    /**
+     * @return the maximum number of check results which are kept (one for each link in each content containing it),
+     *         the results of the links checked the longest time ago are forgotten first
+     * @since 10.9RC1
+     */
+    @Unstable
+    default int getMaxLinkStates()
+    {
+        return 10000;
+    }
+
+    /**
+     * @return the amount of time (in ms) after which the check result of a link is forgotten if the link hasn't been
+     *         checked again (which means it's not used anymore in the rendered content), a multiple of
+     *         {@link #getCheckTimeout()} by default
+     * @since 10.9RC1
+     */
+    @Unstable
+    default long getLinkStateTimeToLive()
+    {
+        return getCheckTimeout() * 24;
+    }
+
+    /**
+     * @return the file in which the check results are saved so that they are not lost on restart, {@code null} if
+     *         they should only be kept in memory
+     * @since 10.9RC1
+     */
+    @Unstable
+    default File getLinkStateFile()
+    {
+        return null;
+    }
 }
@@ -21,13 +21,22 @@
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.rendering.transformation.linkchecker.LinkCheckerTransformationConfiguration;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
+import com.github.tomakehurst.wiremock.client.MappingBuilder;
+import com.github.tomakehurst.wiremock.client.RequestPatternBuilder;
+import com.github.tomakehurst.wiremock.http.RequestMethod;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 
 import static com.github.tomakehurst.wiremock.client.RequestPatternBuilder.allRequests;
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
 
 /**
  * Integration tests for {@link org.xwiki.rendering.internal.transformation.linkchecker.DefaultHTTPChecker}.
@@ -59,4 +68,46 @@ public void testProxy() throws Exception
         assertEquals(404, this.mocker.getComponentUnderTest().check("http://unknownhostforxwikitest"));
         assertFalse("The HTTP server was called by the link checker", findAll(allRequests()).isEmpty());
     }
+
+    @Test
+    public void checkWithHead() throws Exception
+    {
+        stubFor(new MappingBuilder(RequestMethod.HEAD, urlEqualTo("/head"))
+            .willReturn(aResponse().withStatus(200)));
+
+        assertEquals(200, this.mocker.getComponentUnderTest().check("http://localhost:8888/head"));
+
+        // The content was not requested
+        assertTrue(findAll(new RequestPatternBuilder(RequestMethod.GET, urlEqualTo("/head"))).isEmpty());
+    }
+
+    @Test
+    public void checkWhenHeadNotAllowed() throws Exception
+    {
+        stubFor(new MappingBuilder(RequestMethod.HEAD, urlEqualTo("/nohead"))
+            .willReturn(aResponse().withStatus(405)));
+        stubFor(new MappingBuilder(RequestMethod.GET, urlEqualTo("/nohead"))
+            .withHeader("Range", equalTo("bytes=0-0"))
+            .willReturn(aResponse().withStatus(206).withBody("c")));
+
+        assertEquals(206, this.mocker.getComponentUnderTest().check("http://localhost:8888/nohead"));
+    }
+
+    @Test
+    public void checkWhenTooManyRedirects() throws Exception
+    {
+        LinkCheckerTransformationConfiguration configuration =
+            this.mocker.getInstance(LinkCheckerTransformationConfiguration.class);
+        when(configuration.getMaxRedirects()).thenReturn(1);
+
+        stubFor(new MappingBuilder(RequestMethod.HEAD, urlEqualTo("/redirect1"))
+            .willReturn(aResponse().withStatus(301).withHeader("Location", "http://localhost:8888/redirect2")));
+        stubFor(new MappingBuilder(RequestMethod.HEAD, urlEqualTo("/redirect2"))
+            .willReturn(aResponse().withStatus(301).withHeader("Location", "http://localhost:8888/target")));
+        stubFor(new MappingBuilder(RequestMethod.HEAD, urlEqualTo("/target"))
+            .willReturn(aResponse().withStatus(200)));
+
+        assertEquals(200, this.mocker.getComponentUnderTest().check("http://localhost:8888/redirect2"));
+        assertEquals(0, this.mocker.getComponentUnderTest().check("http://localhost:8888/redirect1"));
+    }
 }
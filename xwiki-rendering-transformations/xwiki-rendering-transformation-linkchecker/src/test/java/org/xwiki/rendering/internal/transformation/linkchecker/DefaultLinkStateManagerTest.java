@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.linkchecker;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.rendering.transformation.linkchecker.LinkCheckerTransformationConfiguration;
+import org.xwiki.rendering.transformation.linkchecker.LinkState;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link DefaultLinkStateManager}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class DefaultLinkStateManagerTest
+{
+    @Rule
+    public MockitoComponentMockingRule<DefaultLinkStateManager> mocker =
+        new MockitoComponentMockingRule<>(DefaultLinkStateManager.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LinkCheckerTransformationConfiguration configuration;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.configuration = this.mocker.getInstance(LinkCheckerTransformationConfiguration.class);
+        when(this.configuration.getMaxLinkStates()).thenReturn(10);
+        when(this.configuration.getLinkStateTimeToLive()).thenReturn(3600000L);
+    }
+
+    @Test
+    public void evictOldestLinks() throws Exception
+    {
+        Map<String, Map<String, LinkState>> states = this.mocker.getComponentUnderTest().getLinkStates();
+
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < 11; i++) {
+            putState(states, "http://link" + i, "content", new LinkState(200, time + i));
+        }
+
+        assertEquals(9, states.size());
+        assertNull(states.get("http://link0"));
+        assertNull(states.get("http://link1"));
+        assertNotNull(states.get("http://link10"));
+    }
+
+    @Test
+    public void evictOldestLinksWhenTooManyContents() throws Exception
+    {
+        Map<String, Map<String, LinkState>> states = this.mocker.getComponentUnderTest().getLinkStates();
+
+        long time = System.currentTimeMillis();
+        putState(states, "http://link0", "content", new LinkState(200, time));
+        putState(states, "http://link1", "content", new LinkState(200, time + 1));
+        for (int i = 0; i < 9; i++) {
+            putState(states, "http://link", "content" + i, new LinkState(200, time + 2));
+        }
+
+        // The states of the link in each content are counted
+        assertEquals(1, states.size());
+        assertEquals(9, states.get("http://link").size());
+        assertEquals(9, ((LinkStateMap) states).getStateCount());
+    }
+
+    @Test
+    public void forgetExpiredStates() throws Exception
+    {
+        Map<String, Map<String, LinkState>> states = this.mocker.getComponentUnderTest().getLinkStates();
+
+        long time = System.currentTimeMillis();
+        putState(states, "http://expired", "content", new LinkState(200, time - 3600001L));
+        for (int i = 0; i < 10; i++) {
+            putState(states, "http://link" + i, "content", new LinkState(200, time));
+        }
+
+        assertEquals(10, states.size());
+        assertNull(states.get("http://expired"));
+    }
+
+    @Test
+    public void saveAndRestoreStates() throws Exception
+    {
+        File file = new File(this.folder.getRoot(), "linkstates.log");
+        when(this.configuration.getLinkStateFile()).thenReturn(file);
+
+        DefaultLinkStateManager manager = this.mocker.getComponentUnderTest();
+        long time = System.currentTimeMillis();
+        putState(manager.getLinkStates(), "http://link", "content1", new LinkState(200, time));
+        putState(manager.getLinkStates(), "http://link", "content\t2", new LinkState(404, time));
+        putState(manager.getLinkStates(), "http://expired", "content", new LinkState(200, time - 3600001L));
+        manager.dispose();
+
+        // Simulate a restart
+        manager.initialize();
+
+        Map<String, LinkState> contentReferences = manager.getLinkStates().get("http://link");
+        assertEquals(new LinkState(200, time), contentReferences.get("content1"));
+        assertEquals(new LinkState(404, time), contentReferences.get("content\t2"));
+        assertNull(manager.getLinkStates().get("http://expired"));
+    }
+
+    private void putState(Map<String, Map<String, LinkState>> states, String linkReference, String contentReference,
+        LinkState state)
+    {
+        Map<String, LinkState> contentReferences = states.get(linkReference);
+        if (contentReferences == null) {
+            contentReferences = new HashMap<>();
+        }
+        contentReferences.put(contentReference, state);
+        states.put(linkReference, contentReferences);
+    }
+}
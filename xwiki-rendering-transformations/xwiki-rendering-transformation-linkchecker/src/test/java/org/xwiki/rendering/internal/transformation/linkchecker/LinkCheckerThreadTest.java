@@ -22,6 +22,7 @@
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.mock;
@@ -129,6 +130,41 @@ public void runWithExclusion() throws Exception
         assertNotNull(states.get("linkreference2"));
     }
 
+    @Test
+    public void reuseStateOfLinkCheckedWhileWaiting() throws Exception
+    {
+        LinkCheckerTransformationConfiguration configuration =
+            this.componentManager.getInstance(LinkCheckerTransformationConfiguration.class);
+        when(configuration.getCheckTimeout()).thenReturn(3600000L);
+        when(configuration.getMaxLinksInQueue()).thenReturn(10);
+        when(configuration.getHostCheckInterval()).thenReturn(3600000L);
+
+        HTTPChecker httpChecker = this.componentManager.getInstance(HTTPChecker.class);
+        when(httpChecker.check("http://host/link")).thenReturn(200);
+
+        LinkStateManager linkStateManager = this.componentManager.getInstance(LinkStateManager.class);
+        Map<String, Map<String, LinkState>> states = new HashMap<>();
+        when(linkStateManager.getLinkStates()).thenReturn(states);
+
+        Queue<LinkQueueItem> queue = new ConcurrentLinkedQueue<>();
+        queue.add(new LinkQueueItem("http://host/link", "content1", Collections.<String, Object>emptyMap()));
+        queue.add(new LinkQueueItem("http://host/link", "content2", Collections.<String, Object>emptyMap()));
+
+        DefaultLinkCheckerThread thread = this.componentManager.getComponentUnderTest();
+        ReflectionUtils.setFieldValue(thread, "linkQueue", queue);
+
+        // The second item has to wait for the host to be available
+        thread.processLinkQueue();
+        assertNull(states.get("http://host/link").get("content2"));
+
+        // The host is available but the link has been checked in the meantime
+        when(configuration.getHostCheckInterval()).thenReturn(0L);
+        thread.processLinkQueue();
+
+        verify(httpChecker, times(1)).check("http://host/link");
+        assertEquals(states.get("http://host/link").get("content1"), states.get("http://host/link").get("content2"));
+    }
+
     @Test
     public void sendEventWhenNoObservationManager() throws Exception
     {
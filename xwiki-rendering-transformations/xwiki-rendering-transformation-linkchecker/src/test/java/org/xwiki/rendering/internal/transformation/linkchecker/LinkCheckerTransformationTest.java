@@ -284,22 +284,47 @@ public void transformWithAntiFloodKickingIn() throws Exception
 
         LinkCheckerTransformation transformation =
             this.componentManager.getInstance(Transformation.class, "linkchecker");
+        int maxLinksInQueue =
+            this.componentManager.<LinkCheckerTransformationConfiguration>getInstance(
+                LinkCheckerTransformationConfiguration.class).getMaxLinksInQueue();
 
         StringBuilder input = new StringBuilder();
-        for (int i = 0; i < LinkCheckerTransformation.MAX_LINKS_IN_QUEUE + 1; i++) {
+        for (int i = 0; i < maxLinksInQueue + 1; i++) {
             String url = "url" + i;
             input.append("[[url:").append(url).append("]]");
         }
 
-        // Render a first page with MAX_LINKS_IN_QUEUE + 1 links in it so that they're all added to the Check Queue
+        // Render a first page with more links than the queue can hold and verify that the extra link is not added
         Parser xwiki20Parser = this.componentManager.getInstance(Parser.class, "xwiki/2.0");
         XDOM xdom = xwiki20Parser.parse(new StringReader(input.toString()));
         transformation.transform(xdom, new TransformationContext());
-        assertEquals(LinkCheckerTransformation.MAX_LINKS_IN_QUEUE + 1, transformation.getLinkQueue().size());
+        assertEquals(maxLinksInQueue, transformation.getLinkQueue().size());
+        assertEquals("url0", transformation.getLinkQueue().peek().getLinkReference());
 
-        // Now render a second page and verify no new links are added to the queue since it's already full!
+        // Now render another page and verify no new links are added to the queue since it's already full!
+        XDOM otherXDOM = xwiki20Parser.parse(new StringReader("[[url:otherurl]]"));
+        transformation.transform(otherXDOM, new TransformationContext());
+        assertEquals(maxLinksInQueue, transformation.getLinkQueue().size());
+    }
+
+    /**
+     * Verify that a link already waiting to be checked for the same content is not queued again.
+     */
+    @Test
+    public void transformWhenLinkAlreadyInQueue() throws Exception
+    {
+        // Replace the Link checker Thread with a mock so that it doesn't remove any link item from the queue
+        this.componentManager.registerMockComponent(LinkCheckerThread.class);
+
+        LinkCheckerTransformation transformation =
+            this.componentManager.getInstance(Transformation.class, "linkchecker");
+
+        Parser xwiki20Parser = this.componentManager.getInstance(Parser.class, "xwiki/2.0");
+        XDOM xdom = xwiki20Parser.parse(new StringReader("[[url:url1]] [[url:url1]] [[url:url2]]"));
+        transformation.transform(xdom, new TransformationContext());
         transformation.transform(xdom, new TransformationContext());
-        assertEquals(LinkCheckerTransformation.MAX_LINKS_IN_QUEUE + 1, transformation.getLinkQueue().size());
+
+        assertEquals(2, transformation.getLinkQueue().size());
     }
 
     private void transformAndWait(String input, LinkStateManager linkStateManager, int numberOfItemsToWaitFor)
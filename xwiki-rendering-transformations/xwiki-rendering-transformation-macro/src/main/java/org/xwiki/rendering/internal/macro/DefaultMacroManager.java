@@ -19,9 +19,13 @@
  */
 package org.xwiki.rendering.internal.macro;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -30,6 +34,8 @@
 
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.rendering.macro.Macro;
@@ -44,6 +50,11 @@
 /**
  * Default {@link MacroManager} implementation, retrieves all {@link Macro} implementations that are registered against
  * XWiki's component manager.
+ * <p>
+ * Resolved macros and macro ids are kept in a registry so that looking up a macro does not require to go through the
+ * component manager each time. The registry is cleared by {@link MacroComponentListener} whenever a macro component
+ * is registered or unregistered, and is only used when such events are actually received and when all the macros are
+ * registered in the root component manager (macros registered for a specific wiki or user depend on the context).
  *
  * @version $Id$
  * @since 1.9M1
@@ -66,12 +77,55 @@ public class DefaultMacroManager implements MacroManager
     @Named("context")
     private Provider<ComponentManager> componentManager;
 
+    /**
+     * Used to know if the macros can depend on the context.
+     */
+    @Inject
+    private ComponentManager rootComponentManager;
+
     /**
      * The logger to log.
      */
     @Inject
     private Logger logger;
 
+    /**
+     * The macro ids corresponding to the macro component hints. Parsing a hint does not depend on the registered
+     * components so this cache is never cleared.
+     */
+    private final ConcurrentMap<String, MacroId> parsedMacroIds = new ConcurrentHashMap<>();
+
+    /**
+     * The macros already resolved for a given macro id.
+     */
+    private final ConcurrentMap<MacroId, Macro<?>> resolvedMacros = new ConcurrentHashMap<>();
+
+    /**
+     * The macro ids of the macros available for a given syntax.
+     */
+    private final ConcurrentMap<Syntax, Set<MacroId>> syntaxMacroIds = new ConcurrentHashMap<>();
+
+    /**
+     * The macro ids of all the available macros.
+     */
+    private volatile Set<MacroId> allMacroIds;
+
+    /**
+     * Incremented each time a macro is registered or unregistered, used to not keep a result computed while the
+     * registered macros were changing.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * True if the registry is notified of the registration of macros.
+     */
+    private volatile boolean observed;
+
+    /**
+     * True if a macro has been registered in a component manager other than the root one.
+     */
+    private volatile boolean contextDependent;
+
     @Override
     public Set<MacroId> getMacroIds() throws MacroLookupException
     {
@@ -80,11 +134,47 @@ public Set<MacroId> getMacroIds() throws MacroLookupException
 
     @Override
     public Set<MacroId> getMacroIds(Syntax syntax) throws MacroLookupException
+    {
+        ComponentManager cm = this.componentManager.get();
+        boolean registryEnabled = isRegistryEnabled(cm);
+
+        if (registryEnabled) {
+            Set<MacroId> macroIds = syntax != null ? this.syntaxMacroIds.get(syntax) : this.allMacroIds;
+            if (macroIds != null) {
+                return new HashSet<>(macroIds);
+            }
+        }
+
+        long lookupGeneration = this.generation.get();
+
+        Set<MacroId> result = lookupMacroIds(cm, syntax);
+
+        if (registryEnabled) {
+            Set<MacroId> macroIds = Collections.unmodifiableSet(new HashSet<>(result));
+            if (syntax != null) {
+                this.syntaxMacroIds.put(syntax, macroIds);
+                // Forget the result if a macro has been registered or unregistered during the lookup (the registry
+                // might have been cleared before the result was stored)
+                if (this.generation.get() != lookupGeneration) {
+                    this.syntaxMacroIds.remove(syntax, macroIds);
+                }
+            } else {
+                this.allMacroIds = macroIds;
+                if (this.generation.get() != lookupGeneration) {
+                    this.allMacroIds = null;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private Set<MacroId> lookupMacroIds(ComponentManager cm, Syntax syntax) throws MacroLookupException
     {
         // Lookup all registered macros
         Map<String, Macro> allMacros;
         try {
-            allMacros = this.componentManager.get().getInstanceMap(Macro.class);
+            allMacros = cm.getInstanceMap(Macro.class);
         } catch (ComponentLookupException e) {
             throw new MacroLookupException("Failed to lookup Macros", e);
         }
@@ -93,20 +183,24 @@ public Set<MacroId> getMacroIds(Syntax syntax) throws MacroLookupException
 
         // Loop through all the macros and filter those macros that will work with the given syntax.
         for (Map.Entry<String, Macro> entry : allMacros.entrySet()) {
-            MacroId macroId;
-            try {
-                macroId = this.macroIdFactory.createMacroId(entry.getKey());
-            } catch (ParseException e) {
-                // One of the macros is registered against the component manager with an invalid macro id, ignore it
-                // but log a warning.
-                this.logger.warn(
-                    "Invalid Macro descriptor format for hint [{}]. "
-                        + "The hint should contain either the macro name only or the macro name followed by "
-                        + "the syntax for which it is valid. In that case the macro name should be followed by a "
-                        + "\"/\" followed by the syntax name followed by another \"/\" followed by the syntax version. "
-                        + "For example \"html/xwiki/2.0\". This macro will not be available in the system.",
-                    entry.getKey());
-                continue;
+            MacroId macroId = this.parsedMacroIds.get(entry.getKey());
+            if (macroId == null) {
+                try {
+                    macroId = this.macroIdFactory.createMacroId(entry.getKey());
+                } catch (ParseException e) {
+                    // One of the macros is registered against the component manager with an invalid macro id, ignore
+                    // it but log a warning.
+                    this.logger.warn(
+                        "Invalid Macro descriptor format for hint [{}]. "
+                            + "The hint should contain either the macro name only or the macro name followed by "
+                            + "the syntax for which it is valid. In that case the macro name should be followed by a "
+                            + "\"/\" followed by the syntax name followed by another \"/\" followed by the syntax "
+                            + "version. For example \"html/xwiki/2.0\". This macro will not be available in the "
+                            + "system.",
+                        entry.getKey());
+                    continue;
+                }
+                this.parsedMacroIds.put(entry.getKey(), macroId);
             }
             if (syntax == null || macroId.getSyntax() == null || syntax.equals(macroId.getSyntax())) {
                 result.add(macroId);
@@ -119,20 +213,43 @@ public Set<MacroId> getMacroIds(Syntax syntax) throws MacroLookupException
     @Override
     public Macro<?> getMacro(MacroId macroId) throws MacroLookupException
     {
+        ComponentManager cm = this.componentManager.get();
+        boolean registryEnabled = isRegistryEnabled(cm);
+
+        if (registryEnabled) {
+            Macro<?> macro = this.resolvedMacros.get(macroId);
+            if (macro != null) {
+                return macro;
+            }
+        }
+
+        long lookupGeneration = this.generation.get();
+
         // First search for a macro registered for the passed macro id.
         String macroHint = macroId.toString();
-        ComponentManager cm = this.componentManager.get();
         try {
-            if (cm.hasComponent(Macro.class, macroHint)) {
-                return cm.getInstance(Macro.class, macroHint);
-            } else {
+            if (!cm.hasComponent(Macro.class, macroHint)) {
                 // Now search explicitly for a macro registered for all syntaxes.
-                if (cm.hasComponent(Macro.class, macroId.getId())) {
-                    return cm.getInstance(Macro.class, macroId.getId());
+                macroHint = macroId.getId();
+                if (!cm.hasComponent(Macro.class, macroHint)) {
+                    throw new MacroNotFoundException(
+                        String.format("No macro [%s] could be found.", macroId.toString()));
                 }
+            }
+
+            Macro<?> macro = cm.getInstance(Macro.class, macroHint);
 
-                throw new MacroNotFoundException(String.format("No macro [%s] could be found.", macroId.toString()));
+            // Only keep macros which are the same for each lookup
+            if (registryEnabled && isSingleton(cm, macroHint)) {
+                this.resolvedMacros.put(macroId, macro);
+                // Forget the macro if a macro has been registered or unregistered during the lookup (the registry
+                // might have been cleared before the macro was stored)
+                if (this.generation.get() != lookupGeneration) {
+                    this.resolvedMacros.remove(macroId, macro);
+                }
             }
+
+            return macro;
         } catch (ComponentLookupException e) {
             throw new MacroLookupException(String.format("Macro [%s] failed to be instantiated.", macroId.toString()),
                 e);
@@ -142,13 +259,68 @@ public Macro<?> getMacro(MacroId macroId) throws MacroLookupException
     @Override
     public boolean exists(MacroId macroId)
     {
+        ComponentManager cm = this.componentManager.get();
+
+        if (isRegistryEnabled(cm)) {
+            Set<MacroId> macroIds = this.allMacroIds;
+            if (macroIds != null) {
+                return macroIds.contains(macroId);
+            }
+        }
+
         String macroHint = macroId.toString();
         boolean hasMacro = true;
         try {
-            this.componentManager.get().getInstance(Macro.class, macroHint);
+            cm.getInstance(Macro.class, macroHint);
         } catch (ComponentLookupException ex) {
             hasMacro = false;
         }
         return hasMacro;
     }
+
+    /**
+     * Clear the resolved macros, called when a macro is registered or unregistered.
+     *
+     * @param source the component manager in which the macro was registered or unregistered
+     * @since 10.9RC1
+     */
+    public void onMacroComponentEvent(ComponentManager source)
+    {
+        if (source != null && source != this.rootComponentManager) {
+            this.contextDependent = true;
+        }
+
+        // Increment the generation before clearing the registry so that the lookups in progress don't keep their
+        // result
+        this.generation.incrementAndGet();
+
+        this.resolvedMacros.clear();
+        this.syntaxMacroIds.clear();
+        this.allMacroIds = null;
+    }
+
+    /**
+     * Indicate that the registration of macros is observed and that the resolved macros can be kept.
+     *
+     * @since 10.9RC1
+     */
+    public void setObserved()
+    {
+        this.observed = true;
+    }
+
+    private boolean isRegistryEnabled(ComponentManager cm)
+    {
+        // Component events are only sent when the component manager has an event manager
+        return this.observed && this.rootComponentManager.getComponentEventManager() != null
+            && (cm == this.rootComponentManager || !this.contextDependent);
+    }
+
+    private boolean isSingleton(ComponentManager cm, String macroHint)
+    {
+        ComponentDescriptor<Macro> descriptor = cm.getComponentDescriptor(Macro.class, macroHint);
+
+        return descriptor != null
+            && descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON;
+    }
 }
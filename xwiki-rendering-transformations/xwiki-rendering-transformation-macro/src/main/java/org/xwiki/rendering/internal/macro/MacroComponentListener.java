@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.rendering.internal.transformation.macro.MacroTransformation;
+import org.xwiki.rendering.macro.Macro;
+import org.xwiki.rendering.macro.MacroManager;
+import org.xwiki.rendering.transformation.Transformation;
+
+/**
+ * Clear the macros resolved by {@link DefaultMacroManager} and the macro results cached by
+ * {@link MacroTransformation} when a macro is registered or unregistered.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+@Component
+@Named(MacroComponentListener.NAME)
+@Singleton
+public class MacroComponentListener extends AbstractEventListener implements Initializable
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "org.xwiki.rendering.internal.macro.MacroComponentListener";
+
+    /**
+     * Accessed through a provider to avoid dependency cycles when the observation manager initializes its listeners.
+     */
+    @Inject
+    private Provider<MacroManager> macroManagerProvider;
+
+    /**
+     * Accessed through a provider for the same reason as the macro manager.
+     */
+    @Inject
+    @Named("macro")
+    private Provider<Transformation> macroTransformationProvider;
+
+    /**
+     * Default constructor.
+     */
+    public MacroComponentListener()
+    {
+        super(NAME, Arrays.<Event>asList(new ComponentDescriptorAddedEvent(Macro.class),
+            new ComponentDescriptorRemovedEvent(Macro.class)));
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // The listener is initialized by the observation manager which means that the macro registration events are
+        // from now on going to be received
+        DefaultMacroManager macroManager = getDefaultMacroManager();
+        if (macroManager != null) {
+            macroManager.setObserved();
+        }
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        DefaultMacroManager macroManager = getDefaultMacroManager();
+        if (macroManager != null) {
+            macroManager.onMacroComponentEvent(source instanceof ComponentManager ? (ComponentManager) source : null);
+        }
+
+        // The cached results might have been produced by the macro which has just been replaced or removed
+        Transformation macroTransformation = this.macroTransformationProvider.get();
+        if (macroTransformation instanceof MacroTransformation) {
+            ((MacroTransformation) macroTransformation).getResultCache().clear();
+        }
+    }
+
+    private DefaultMacroManager getDefaultMacroManager()
+    {
+        MacroManager macroManager = this.macroManagerProvider.get();
+
+        return macroManager instanceof DefaultMacroManager ? (DefaultMacroManager) macroManager : null;
+    }
+}
@@ -42,6 +42,21 @@ public class DefaultMacroTransformationConfiguration implements MacroTransformat
      */
     private Properties macroCategories = new Properties();
 
+    /**
+     * @see #getParallelExecutionThreads()
+     */
+    private int parallelExecutionThreads;
+
+    /**
+     * @see #getResultCacheSize()
+     */
+    private int resultCacheSize = MacroTransformationConfiguration.super.getResultCacheSize();
+
+    /**
+     * @see #getResultCacheMaxBlocks()
+     */
+    private int resultCacheMaxBlocks = MacroTransformationConfiguration.super.getResultCacheMaxBlocks();
+
     @Override
     public Properties getCategories()
     {
@@ -58,4 +73,50 @@ public void addCategory(MacroId macroId, String category)
         // to work even without a configuration store.
         this.macroCategories.setProperty(macroId.toString(), category);
     }
+
+    @Override
+    public int getParallelExecutionThreads()
+    {
+        return this.parallelExecutionThreads;
+    }
+
+    /**
+     * @param parallelExecutionThreads the maximum number of threads used to execute macros in parallel, 0 to disable
+     *            parallel execution
+     * @since 10.9RC1
+     */
+    public void setParallelExecutionThreads(int parallelExecutionThreads)
+    {
+        this.parallelExecutionThreads = parallelExecutionThreads;
+    }
+
+    @Override
+    public int getResultCacheSize()
+    {
+        return this.resultCacheSize;
+    }
+
+    /**
+     * @param resultCacheSize the maximum number of macro results to keep in memory, 0 to disable the cache
+     * @since 10.9RC1
+     */
+    public void setResultCacheSize(int resultCacheSize)
+    {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    @Override
+    public int getResultCacheMaxBlocks()
+    {
+        return this.resultCacheMaxBlocks;
+    }
+
+    /**
+     * @param resultCacheMaxBlocks the maximum number of blocks to keep in memory for all the cached macro results
+     * @since 10.9RC1
+     */
+    public void setResultCacheMaxBlocks(int resultCacheMaxBlocks)
+    {
+        this.resultCacheMaxBlocks = resultCacheMaxBlocks;
+    }
 }
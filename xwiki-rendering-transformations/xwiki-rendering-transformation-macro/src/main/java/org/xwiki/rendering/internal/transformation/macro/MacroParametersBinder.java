@@ -0,0 +1,256 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.macro;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+
+import org.xwiki.properties.BeanDescriptor;
+import org.xwiki.properties.ConverterManager;
+import org.xwiki.properties.PropertyDescriptor;
+import org.xwiki.properties.PropertyException;
+import org.xwiki.properties.PropertyMandatoryException;
+import org.xwiki.properties.RawProperties;
+
+/**
+ * Create and populate the parameters bean of a macro without any reflective lookup. All the setters and fields of the
+ * bean are resolved once as {@link MethodHandle}s when the binder is created and are then directly invoked for each
+ * macro execution.
+ * <p>
+ * The behavior (case insensitive parameter names, conversion, mandatory parameters, {@link RawProperties} support and
+ * JSR 303 validation) and the error messages are the same as the ones of
+ * {@link org.xwiki.properties.BeanManager#populate(Object, Map)}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class MacroParametersBinder
+{
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final class PropertyBinder
+    {
+        private final String id;
+
+        private final String lowerCaseId;
+
+        private final Type type;
+
+        private final Class<?> propertyClass;
+
+        private final boolean mandatory;
+
+        private final MethodHandle setter;
+
+        PropertyBinder(PropertyDescriptor descriptor, MethodHandle setter)
+        {
+            this.id = descriptor.getId();
+            this.lowerCaseId = this.id.toLowerCase();
+            this.type = descriptor.getPropertyType();
+            this.propertyClass = descriptor.getPropertyClass();
+            this.mandatory = descriptor.isMandatory();
+            this.setter = setter;
+        }
+    }
+
+    private final MethodHandle constructor;
+
+    private final List<PropertyBinder> properties;
+
+    private final boolean rawProperties;
+
+    private final ConverterManager converterManager;
+
+    private final Validator validator;
+
+    /**
+     * @param beanDescriptor the descriptor of the parameters bean
+     * @param converterManager used to convert the parameters values to the type of the bean properties
+     * @param validatorFactory used to validate the populated bean, {@code null} if there is no JSR 303 provider
+     * @throws NoSuchMethodException when the bean does not have a default constructor
+     * @throws IllegalAccessException when the bean constructor or one of its setters or fields is not accessible
+     */
+    public MacroParametersBinder(BeanDescriptor beanDescriptor, ConverterManager converterManager,
+        ValidatorFactory validatorFactory) throws NoSuchMethodException, IllegalAccessException
+    {
+        Class<?> beanClass = beanDescriptor.getBeanClass();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        this.constructor = lookup.unreflectConstructor(beanClass.getConstructor()).asType(CONSTRUCTOR_TYPE);
+
+        this.properties = new ArrayList<>(beanDescriptor.getProperties().size());
+        for (PropertyDescriptor propertyDescriptor : beanDescriptor.getProperties()) {
+            MethodHandle setter;
+            if (propertyDescriptor.getWriteMethod() != null) {
+                setAccessibleSafely(propertyDescriptor.getWriteMethod());
+                setter = lookup.unreflect(propertyDescriptor.getWriteMethod());
+            } else if (propertyDescriptor.getField() != null) {
+                setAccessibleSafely(propertyDescriptor.getField());
+                setter = lookup.unreflectSetter(propertyDescriptor.getField());
+            } else {
+                setter = null;
+            }
+
+            this.properties.add(new PropertyBinder(propertyDescriptor, setter != null ? setter.asType(SETTER_TYPE)
+                : null));
+        }
+
+        this.rawProperties = RawProperties.class.isAssignableFrom(beanClass);
+        this.converterManager = converterManager;
+
+        // Don't bother calling the validator for each execution when the bean does not have any constraint
+        Validator beanValidator = validatorFactory != null ? validatorFactory.getValidator() : null;
+        if (beanValidator != null && beanValidator.getConstraintsForClass(beanClass).isBeanConstrained()) {
+            this.validator = beanValidator;
+        } else {
+            this.validator = null;
+        }
+    }
+
+    private void setAccessibleSafely(AccessibleObject accessible)
+    {
+        try {
+            accessible.setAccessible(true);
+        } catch (SecurityException e) {
+            // The member is public, otherwise the lookup will fail and the bean manager will be used instead
+        }
+    }
+
+    /**
+     * @return a new instance of the parameters bean
+     * @throws InstantiationException when the bean cannot be created
+     */
+    public Object createBean() throws InstantiationException
+    {
+        try {
+            return this.constructor.invoke();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            InstantiationException exception = new InstantiationException("Failed to create the parameters bean");
+            exception.initCause(e);
+
+            throw exception;
+        }
+    }
+
+    /**
+     * @param bean the parameters bean to populate
+     * @param parameters the parameters of the macro
+     * @throws PropertyException when a parameter is invalid or a mandatory parameter is missing
+     */
+    public void populate(Object bean, Map<String, String> parameters) throws PropertyException
+    {
+        // Only keep track of the unused parameters when they have to be passed to the bean
+        Map<String, String> remainingParameters = this.rawProperties ? new HashMap<>(parameters) : null;
+        Map<String, String> lowerCaseNames = null;
+
+        for (PropertyBinder property : this.properties) {
+            String name = property.id;
+            String value = parameters.get(name);
+            if (value == null && !parameters.isEmpty()) {
+                if (lowerCaseNames == null) {
+                    lowerCaseNames = getLowerCaseNames(parameters);
+                }
+                name = lowerCaseNames.get(property.lowerCaseId);
+                value = parameters.get(name);
+            }
+
+            if (value != null) {
+                set(bean, property, value);
+
+                remove(remainingParameters, name);
+            } else if (property.mandatory) {
+                throw new PropertyMandatoryException(property.id);
+            }
+        }
+
+        if (remainingParameters != null) {
+            setRawProperties((RawProperties) bean, remainingParameters);
+        }
+
+        if (this.validator != null) {
+            validate(bean);
+        }
+    }
+
+    private void remove(Map<String, String> remainingParameters, String name)
+    {
+        if (remainingParameters != null) {
+            remainingParameters.remove(name);
+        }
+    }
+
+    private void setRawProperties(RawProperties bean, Map<String, String> parameters)
+    {
+        for (Map.Entry<String, String> entry : parameters.entrySet()) {
+            bean.set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private Map<String, String> getLowerCaseNames(Map<String, String> parameters)
+    {
+        Map<String, String> lowerCaseNames = new HashMap<>(parameters.size());
+        for (String name : parameters.keySet()) {
+            lowerCaseNames.put(name.toLowerCase(), name);
+        }
+
+        return lowerCaseNames;
+    }
+
+    private void set(Object bean, PropertyBinder property, String value) throws PropertyException
+    {
+        try {
+            Object convertedValue = property.propertyClass.isInstance(value) ? value
+                : this.converterManager.convert(property.type, value);
+
+            if (property.setter != null) {
+                property.setter.invoke(bean, convertedValue);
+            }
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new PropertyException("Failed to populate property [" + property.id + "]", e);
+        }
+    }
+
+    private void validate(Object bean) throws PropertyException
+    {
+        Set<ConstraintViolation<Object>> violations = this.validator.validate(bean);
+        if (!violations.isEmpty()) {
+            throw new PropertyException("Failed to validate bean: [" + violations.iterator().next().getMessage()
+                + "]");
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.macro;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.syntax.Syntax;
+
+/**
+ * Keeps the blocks generated by the execution of macros so that executing again the same macro with the same
+ * parameters and content does not require to call the macro again. The least recently used results are evicted when
+ * the maximum number of entries or the maximum number of cached blocks is reached.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class MacroResultCache
+{
+    /**
+     * Identify a macro execution.
+     */
+    public static final class Key
+    {
+        private final String id;
+
+        private final String transformationId;
+
+        private final Map<String, String> parameters;
+
+        private final String content;
+
+        private final Syntax syntax;
+
+        private final boolean inline;
+
+        private final boolean restricted;
+
+        private final int hashCode;
+
+        private Key(MacroBlock macroBlock, String transformationId, Syntax syntax, boolean inline, boolean restricted)
+        {
+            this.id = macroBlock.getId();
+            this.transformationId = transformationId;
+            // Copy the parameters since the macro block might be modified later
+            this.parameters = new HashMap<>(macroBlock.getParameters());
+            this.content = macroBlock.getContent();
+            this.syntax = syntax;
+            this.inline = inline;
+            this.restricted = restricted;
+
+            this.hashCode = new HashCodeBuilder().append(this.id).append(this.transformationId).append(this.parameters)
+                .append(this.content).append(this.syntax).append(this.inline).append(this.restricted).toHashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (object == this) {
+                return true;
+            }
+
+            if (object instanceof Key) {
+                Key key = (Key) object;
+
+                return new EqualsBuilder().append(this.id, key.id).append(this.transformationId, key.transformationId)
+                    .append(this.parameters, key.parameters)
+                    .append(this.content, key.content).append(this.syntax, key.syntax).append(this.inline, key.inline)
+                    .append(this.restricted, key.restricted).isEquals();
+            }
+
+            return false;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final List<Block> blocks;
+
+        private final int weight;
+
+        Entry(List<Block> blocks, int weight)
+        {
+            this.blocks = blocks;
+            this.weight = weight;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75F;
+
+    private final int maxEntries;
+
+    private final int maxWeight;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private int weight;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param maxEntries the maximum number of macro results to keep, 0 to disable the cache
+     * @param maxWeight the maximum number of blocks to keep for all the macro results
+     */
+    public MacroResultCache(int maxEntries, int maxWeight)
+    {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @return true if the cache can contain anything
+     */
+    public boolean isEnabled()
+    {
+        return this.maxEntries > 0 && this.maxWeight > 0;
+    }
+
+    /**
+     * @param macroBlock the macro to execute
+     * @param transformationId the id of the transformation executing the macro (usually the current document)
+     * @param syntax the syntax of the macro content
+     * @param inline true if the macro is executed in inline mode
+     * @param restricted true if the macro is executed in restricted mode
+     * @return the key identifying the execution of the macro
+     */
+    public Key createKey(MacroBlock macroBlock, String transformationId, Syntax syntax, boolean inline,
+        boolean restricted)
+    {
+        return new Key(macroBlock, transformationId, syntax, inline, restricted);
+    }
+
+    /**
+     * @param key the key identifying the execution of the macro
+     * @return a copy of the blocks generated by the previous execution of the macro or {@code null} if there is none
+     */
+    public List<Block> get(Key key)
+    {
+        Entry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+        }
+
+        if (entry == null) {
+            this.missCount.incrementAndGet();
+
+            return null;
+        }
+
+        this.hitCount.incrementAndGet();
+
+        return cloneBlocks(entry.blocks);
+    }
+
+    /**
+     * @param key the key identifying the execution of the macro
+     * @param blocks the blocks generated by the execution of the macro, a copy is kept
+     */
+    public void put(Key key, List<Block> blocks)
+    {
+        List<Block> clonedBlocks = cloneBlocks(blocks);
+        int blocksWeight = 0;
+        for (Block block : clonedBlocks) {
+            // Make sure to not keep a reference to the XDOM in which the blocks have been inserted
+            block.setParent(null);
+            block.setPreviousSiblingBlock(null);
+            block.setNextSiblingBlock(null);
+
+            blocksWeight += getWeight(block);
+        }
+
+        // Don't bother keeping results bigger than the whole cache
+        if (blocksWeight > this.maxWeight) {
+            return;
+        }
+
+        synchronized (this.entries) {
+            Entry previousEntry = this.entries.put(key, new Entry(clonedBlocks, blocksWeight));
+            if (previousEntry != null) {
+                this.weight -= previousEntry.weight;
+            }
+            this.weight += blocksWeight;
+
+            // Evict the least recently used results
+            Iterator<Entry> iterator = this.entries.values().iterator();
+            while (this.entries.size() > this.maxEntries || this.weight > this.maxWeight) {
+                this.weight -= iterator.next().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all the cached macro results.
+     */
+    public void clear()
+    {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.weight = 0;
+        }
+    }
+
+    /**
+     * @return the number of cached macro results
+     */
+    public int size()
+    {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return the number of times a macro result was found in the cache
+     */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of times a macro result was not found in the cache
+     */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    private List<Block> cloneBlocks(List<Block> blocks)
+    {
+        List<Block> clonedBlocks = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            clonedBlocks.add(block.clone());
+        }
+
+        return clonedBlocks;
+    }
+
+    private int getWeight(Block block)
+    {
+        int blockWeight = 1;
+        for (Block child : block.getChildren()) {
+            blockWeight += getWeight(child);
+        }
+
+        return blockWeight;
+    }
+}
@@ -19,36 +19,64 @@
  */
 package org.xwiki.rendering.internal.transformation.macro;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import javax.validation.Validation;
+import javax.validation.ValidationException;
+import javax.validation.ValidatorFactory;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.mutable.MutableLong;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.properties.BeanManager;
+import org.xwiki.properties.ConverterManager;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.MacroBlock;
 import org.xwiki.rendering.block.MacroMarkerBlock;
-import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.rendering.internal.transformation.MutableRenderingContext;
+import org.xwiki.rendering.internal.transformation.RenderingContextStack;
 import org.xwiki.rendering.macro.Macro;
+import org.xwiki.rendering.macro.MacroContentParser;
 import org.xwiki.rendering.macro.MacroId;
 import org.xwiki.rendering.macro.MacroLookupException;
 import org.xwiki.rendering.macro.MacroManager;
 import org.xwiki.rendering.macro.MacroNotFoundException;
+import org.xwiki.rendering.macro.descriptor.MacroDescriptor;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.transformation.AbstractTransformation;
 import org.xwiki.rendering.transformation.MacroTransformationContext;
 import org.xwiki.rendering.transformation.RenderingContext;
 import org.xwiki.rendering.transformation.TransformationContext;
 import org.xwiki.rendering.transformation.TransformationException;
+import org.xwiki.rendering.transformation.macro.MacroTransformationConfiguration;
 import org.xwiki.rendering.util.ErrorBlockGenerator;
 
 /**
@@ -58,6 +86,8 @@
  * <li>provide a hint specifying when they should run (priority)</li>
  * <li>generate other Macros</li>
  * </ul>
+ * The macros are indexed once and the index is then updated with the blocks generated by each executed macro, instead
+ * of searching the whole XDOM for the next macro to execute after each execution.
  *
  * @version $Id$
  * @since 1.5M2
@@ -65,8 +95,10 @@
 @Component
 @Named("macro")
 @Singleton
-public class MacroTransformation extends AbstractTransformation implements Initializable
+public class MacroTransformation extends AbstractTransformation implements Initializable, Disposable
 {
+    private static final ClassBlockMatcher MACROBLOCK_MATCHER = new ClassBlockMatcher(MacroBlock.class);
+
     private static class MacroLookupExceptionElement
     {
         private MacroBlock macroBlock;
@@ -90,44 +122,207 @@ public MacroLookupException getException()
         }
     }
 
-    private class PriorityMacroBlockMatcher implements BlockMatcher
+    /**
+     * A {@link MacroBlock} waiting to be executed, along with its resolved {@link Macro} and its position in the
+     * document.
+     */
+    private static class PendingMacro
     {
-        private final Syntax syntax;
+        private final MacroBlock block;
 
-        private MacroBlock block;
+        private final Macro<?> macro;
 
-        private Macro<?> blockMacro;
+        /**
+         * The position of the block in the document, as a path of indexes. Blocks found in the result of an executed
+         * macro get the position of that macro as prefix, which keeps the lexicographic order of the paths equal to
+         * the document order since the result replaces the macro block.
+         */
+        private final int[] position;
 
-        private List<MacroLookupExceptionElement> errors;
+        PendingMacro(MacroBlock block, Macro<?> macro, int[] position)
+        {
+            this.block = block;
+            this.macro = macro;
+            this.position = position;
+        }
+    }
+
+    /**
+     * The outcome of the execution of a macro: either the generated blocks or the error to display instead.
+     */
+    private static class MacroExecution
+    {
+        private List<Block> blocks;
+
+        private String errorMessage;
+
+        private String errorDescription;
+
+        private Throwable errorException;
+
+        /**
+         * True if the execution involved a macro whose result cannot be cached.
+         */
+        private boolean uncacheable;
+
+        MacroExecution(List<Block> blocks)
+        {
+            this.blocks = blocks;
+        }
+
+        MacroExecution(String errorMessage, String errorDescription)
+        {
+            this.errorMessage = errorMessage;
+            this.errorDescription = errorDescription;
+        }
+
+        MacroExecution(String errorMessage, Throwable errorException)
+        {
+            this.errorMessage = errorMessage;
+            this.errorException = errorException;
+        }
+    }
+
+    /**
+     * Order pending macros by priority and then by document order, which is the order in which a full scan of the
+     * XDOM would have selected them.
+     */
+    private static final Comparator<PendingMacro> PENDING_MACRO_COMPARATOR = new Comparator<PendingMacro>()
+    {
+        @Override
+        public int compare(PendingMacro pending1, PendingMacro pending2)
+        {
+            int result = pending1.macro.compareTo(pending2.macro);
+
+            if (result == 0) {
+                int[] position1 = pending1.position;
+                int[] position2 = pending2.position;
+                int length = Math.min(position1.length, position2.length);
+                for (int i = 0; i < length && result == 0; ++i) {
+                    result = Integer.compare(position1[i], position2[i]);
+                }
+                if (result == 0) {
+                    result = Integer.compare(position1.length, position2.length);
+                }
+            }
+
+            return result;
+        }
+    };
+
+    /**
+     * Index of the {@link MacroBlock}s left to execute in a given XDOM. The index is filled once by a full scan of the
+     * XDOM and then incrementally with the blocks generated by each executed macro so that selecting the next macro to
+     * execute does not require to walk the whole XDOM again. The whole XDOM is indexed again only when the execution of
+     * a macro modified the XDOM outside of its result, which is detected with the modification count of the XDOM.
+     */
+    private class PendingMacroQueue
+    {
+        private final Block rootBlock;
+
+        /**
+         * The document containing the root block, used to know if the executed macros modified it, {@code null} if the
+         * root block is not part of a document.
+         */
+        private final XDOM xdom;
+
+        private final Syntax syntax;
+
+        private final PriorityQueue<PendingMacro> queue = new PriorityQueue<>(PENDING_MACRO_COMPARATOR);
+
+        private final Set<MacroBlock> queuedBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
 
         // Cache known macros since getting them again and again from the ComponentManager might be expensive
         private final Map<String, Macro<?>> knownMacros = new HashMap<>();
 
-        PriorityMacroBlockMatcher(Syntax syntax)
+        PendingMacroQueue(Block rootBlock, Syntax syntax)
         {
+            this.rootBlock = rootBlock;
+            Block root = rootBlock.getRoot();
+            this.xdom = root instanceof XDOM ? (XDOM) root : null;
             this.syntax = syntax;
         }
 
-        public MacroBlock getBlock()
+        /**
+         * @return the current modification count of the XDOM, to pass to {@link #isModified(long, List)} after the
+         *         execution of some macros
+         */
+        public long getModificationCount()
+        {
+            return this.xdom != null ? this.xdom.getModificationCount() : 0;
+        }
+
+        /**
+         * @param modificationCount the modification count of the XDOM before the execution of the macros
+         * @param executedMacros the executed macros
+         * @return true if the execution of the macros might have modified the XDOM, in which case it should be indexed
+         *         again
+         */
+        public boolean isModified(long modificationCount, List<PendingMacro> executedMacros)
+        {
+            if (this.xdom != null) {
+                return this.xdom.getModificationCount() != modificationCount;
+            }
+
+            // Without document to watch, trust the macros
+            for (PendingMacro executedMacro : executedMacros) {
+                if (!executedMacro.macro.getDescriptor().isSideEffectFree()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Index all the macro blocks found in the whole XDOM.
+         *
+         * @return the lookup errors for the macros which could not be indexed
+         */
+        public List<MacroLookupExceptionElement> addAll()
         {
-            return block;
+            return add(this.rootBlock, new int[0]);
         }
 
-        public Macro<?> getBlockMacro()
+        /**
+         * Index again all the macro blocks found in the whole XDOM, after a macro modified the XDOM outside of the
+         * blocks it returned. The positions of the blocks already indexed are recomputed too, since they are not
+         * comparable with the ones of the new blocks otherwise.
+         *
+         * @return the lookup errors for the macros which could not be indexed
+         */
+        public List<MacroLookupExceptionElement> reindex()
         {
-            return blockMacro;
+            this.queue.clear();
+            this.queuedBlocks.clear();
+
+            return addAll();
         }
 
-        public List<MacroLookupExceptionElement> getErrors()
+        /**
+         * Index the macro blocks generated by the execution of a macro.
+         *
+         * @param resultBlock the block which replaced the executed macro block
+         * @param executed the executed macro
+         * @return the lookup errors for the macros which could not be indexed
+         */
+        public List<MacroLookupExceptionElement> add(Block resultBlock, PendingMacro executed)
         {
-            return errors;
+            return add(resultBlock, executed.position);
         }
 
-        @Override
-        public boolean match(Block block)
+        private List<MacroLookupExceptionElement> add(Block block, int[] prefix)
         {
-            if (block instanceof MacroBlock) {
-                MacroBlock macroBlock = (MacroBlock) block;
+            List<MacroLookupExceptionElement> errors = null;
+
+            List<MacroBlock> macroBlocks = block.getBlocks(MACROBLOCK_MATCHER, Block.Axes.DESCENDANT);
+            for (int i = 0; i < macroBlocks.size(); ++i) {
+                MacroBlock macroBlock = macroBlocks.get(i);
+
+                if (this.queuedBlocks.contains(macroBlock)) {
+                    // Already indexed (the block has been moved by a macro)
+                    continue;
+                }
 
                 try {
                     // Try to find a known macros
@@ -135,25 +330,71 @@ public boolean match(Block block)
 
                     // If not found use the macro manager
                     if (macro == null) {
-                        macro =
-                            MacroTransformation.this.macroManager
-                                .getMacro(new MacroId(macroBlock.getId(), this.syntax));
+                        macro = MacroTransformation.this.macroManager
+                            .getMacro(new MacroId(macroBlock.getId(), this.syntax));
 
                         // Cache the found macro for later
                         this.knownMacros.put(macroBlock.getId(), macro);
                     }
 
-                    // Find higher priority macro
-                    if (this.block == null || this.blockMacro.compareTo(macro) > 0) {
-                        this.block = macroBlock;
-                        this.blockMacro = macro;
-                    }
+                    int[] position = Arrays.copyOf(prefix, prefix.length + 1);
+                    position[prefix.length] = i;
+
+                    this.queue.add(new PendingMacro(macroBlock, macro, position));
+                    this.queuedBlocks.add(macroBlock);
                 } catch (MacroLookupException e) {
-                    if (this.errors == null) {
-                        this.errors = new LinkedList<MacroLookupExceptionElement>();
+                    if (errors == null) {
+                        errors = new LinkedList<MacroLookupExceptionElement>();
                     }
 
-                    this.errors.add(new MacroLookupExceptionElement(macroBlock, e));
+                    errors.add(new MacroLookupExceptionElement(macroBlock, e));
+                }
+            }
+
+            return errors;
+        }
+
+        /**
+         * @return the highest priority macro still part of the XDOM or {@code null} if there is none left
+         */
+        public PendingMacro poll()
+        {
+            for (PendingMacro pending = this.queue.poll(); pending != null; pending = this.queue.poll()) {
+                this.queuedBlocks.remove(pending.block);
+
+                // Skip macro blocks which have been removed from the XDOM by another macro
+                if (isAttached(pending.block)) {
+                    return pending;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * @return the highest priority macro still part of the XDOM without removing it from the index or {@code null}
+         *         if there is none left
+         */
+        public PendingMacro peek()
+        {
+            for (PendingMacro pending = this.queue.peek(); pending != null; pending = this.queue.peek()) {
+                if (isAttached(pending.block)) {
+                    return pending;
+                }
+
+                // Forget macro blocks which have been removed from the XDOM by another macro
+                this.queue.poll();
+                this.queuedBlocks.remove(pending.block);
+            }
+
+            return null;
+        }
+
+        private boolean isAttached(Block block)
+        {
+            for (Block parent = block.getParent(); parent != null; parent = parent.getParent()) {
+                if (parent == this.rootBlock) {
+                    return true;
                 }
             }
 
@@ -161,6 +402,24 @@ public boolean match(Block block)
         }
     }
 
+    /**
+     * Indicate if the current thread is executing macros in parallel with other threads.
+     */
+    private static final ThreadLocal<Boolean> PARALLEL_EXECUTION = new ThreadLocal<>();
+
+    /**
+     * Count the executions of macros whose result cannot be cached in the current thread. A macro result is cached
+     * only if this count did not change during its execution (i.e. the macros it executed can be cached too).
+     */
+    private static final ThreadLocal<MutableLong> UNCACHEABLE_EXECUTIONS = new ThreadLocal<MutableLong>()
+    {
+        @Override
+        protected MutableLong initialValue()
+        {
+            return new MutableLong();
+        }
+    };
+
     /**
      * Number of times a macro can generate another macro before considering that we are in a loop. Such a loop can
      * happen if a macro generates itself for example.
@@ -179,18 +438,42 @@ public boolean match(Block block)
     @Inject
     private BeanManager beanManager;
 
+    /**
+     * Used by the compiled parameters binders to convert the macros parameters.
+     */
+    @Inject
+    private ConverterManager converterManager;
+
     /**
      * Used to updated the rendering context.
      */
     @Inject
     private RenderingContext renderingContext;
 
+    /**
+     * Used to give each macro executed in parallel its own rendering context.
+     */
+    @Inject
+    private Execution execution;
+
+    /**
+     * Used to know if macros should be executed in parallel.
+     */
+    @Inject
+    private MacroTransformationConfiguration configuration;
+
     /**
      * The logger to log.
      */
     @Inject
     private Logger logger;
 
+    /**
+     * Used to find the syntax of the content of the macros for the result cache.
+     */
+    @Inject
+    private MacroContentParser macroContentParser;
+
     @Inject
     private ErrorBlockGenerator errorBlockGenerator;
 
@@ -199,10 +482,51 @@ public boolean match(Block block)
      */
     private MacroErrorManager macroErrorManager;
 
+    /**
+     * Keeps the result of the macros which can be cached.
+     */
+    private MacroResultCache resultCache;
+
+    /**
+     * The compiled parameters binders, per parameters bean class. A {@link ClassValue} is used so that looking up the
+     * binder does not require any lock and does not prevent the classes of uninstalled extensions to be garbage
+     * collected.
+     */
+    private final ClassValue<MacroParametersBinder> parametersBinders = new ClassValue<MacroParametersBinder>()
+    {
+        @Override
+        protected MacroParametersBinder computeValue(Class<?> parametersBeanClass)
+        {
+            return createParametersBinder(parametersBeanClass);
+        }
+    };
+
+    /**
+     * Used to validate the macros parameters, {@code null} if there is no JSR 303 provider.
+     */
+    private ValidatorFactory validatorFactory;
+
+    private boolean validatorFactoryInitialized;
+
+    /**
+     * The threads used to execute macros in parallel, created the first time it's needed.
+     */
+    private volatile ExecutorService executor;
+
     @Override
     public void initialize() throws InitializationException
     {
         this.macroErrorManager = new MacroErrorManager(this.errorBlockGenerator);
+        this.resultCache = new MacroResultCache(this.configuration.getResultCacheSize(),
+            this.configuration.getResultCacheMaxBlocks());
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
     }
 
     @Override
@@ -220,105 +544,394 @@ public void transform(Block rootBlock, TransformationContext context) throws Tra
         MacroTransformationContext macroContext = new MacroTransformationContext(context);
         macroContext.setTransformation(this);
 
+        PendingMacroQueue pendingMacros = new PendingMacroQueue(rootBlock, context.getSyntax());
+
+        // 1) Index all the macros of the XDOM
+        applyLookupErrors(pendingMacros.addAll());
+
         // Counter to prevent infinite recursion if a macro generates the same macro for example.
         for (int recursions = 0; recursions < this.maxRecursions;) {
-            // 1) Get highest priority macro
-            PriorityMacroBlockMatcher priorityMacroBlockMatcher = new PriorityMacroBlockMatcher(context.getSyntax());
-            rootBlock.getFirstBlock(priorityMacroBlockMatcher, Block.Axes.DESCENDANT);
-
-            // 2) Apply macros lookup errors
-            if (priorityMacroBlockMatcher.getErrors() != null) {
-                for (MacroLookupExceptionElement error : priorityMacroBlockMatcher.getErrors()) {
-                    if (error.getException() instanceof MacroNotFoundException) {
-                        // Macro cannot be found. Generate an error message instead of the macro execution result.
-                        // TODO: make it internationalized
-                        this.macroErrorManager.generateError(error.getMacroBlock(),
-                            String.format("Unknown macro: %s.", error.getMacroBlock().getId()), String.format(
-                                "The \"%s\" macro is not in the list of registered macros. Verify the spelling or "
-                                    + "contact your administrator.", error.getMacroBlock().getId()));
-                    } else {
-                        // TODO: make it internationalized
-                        this.macroErrorManager.generateError(error.getMacroBlock(),
-                            String.format("Invalid macro: %s", error.getMacroBlock().getId()), error.getException());
-                    }
+            // 2) Get highest priority macro
+            PendingMacro pendingMacro = pendingMacros.poll();
+
+            if (pendingMacro == null) {
+                // Make sure there's really nothing left before leaving, in case a macro modified the XDOM without
+                // going through the Block API (directly in the list of children of a block for example).
+                applyLookupErrors(pendingMacros.addAll());
+                pendingMacro = pendingMacros.poll();
+
+                if (pendingMacro == null) {
+                    // Nothing left to do
+                    return;
                 }
             }
 
-            MacroBlock macroBlock = priorityMacroBlockMatcher.getBlock();
+            // 3) Execute the macro, along with the following macros having the same priority when they can be
+            // executed in parallel
+            List<PendingMacro> executedMacros =
+                pollParallelMacros(pendingMacro, pendingMacros, this.maxRecursions - recursions);
+            long modificationCount = pendingMacros.getModificationCount();
+            List<MacroExecution> executions;
+            if (executedMacros != null) {
+                executions = executeInParallel(executedMacros, macroContext);
+            } else {
+                executedMacros = Collections.singletonList(pendingMacro);
+                executions = Collections.singletonList(execute(pendingMacro, macroContext));
+            }
 
-            if (macroBlock == null) {
-                // Nothing left to do
-                return;
+            // Macros are allowed to modify the XDOM outside of the blocks they return (for example to add a macro at
+            // the end of the document) in which case the whole XDOM is indexed again to execute the new macros in the
+            // same order as a full scan
+            boolean modified = pendingMacros.isModified(modificationCount, executedMacros);
+
+            // 4) Replace the MacroBlocks by the Blocks generated by the execution of the Macros, in document order
+            for (int i = 0; i < executedMacros.size(); ++i) {
+                if (apply(executedMacros.get(i), executions.get(i), modified ? null : pendingMacros)) {
+                    ++recursions;
+                }
             }
 
-            Macro<?> macro = priorityMacroBlockMatcher.getBlockMacro();
+            if (modified) {
+                applyLookupErrors(pendingMacros.reindex());
+            }
+        }
+    }
 
-            boolean incrementRecursions = macroBlock.getParent() instanceof MacroMarkerBlock;
+    /**
+     * Execute a macro without modifying the XDOM.
+     *
+     * @param pendingMacro the macro to execute
+     * @param macroContext the macro execution context
+     * @return the blocks generated by the macro or the error to display instead
+     */
+    private MacroExecution execute(PendingMacro pendingMacro, MacroTransformationContext macroContext)
+    {
+        MutableLong uncacheableExecutions = UNCACHEABLE_EXECUTIONS.get();
+        long previousUncacheableExecutions = uncacheableExecutions.longValue();
 
-            List<Block> newBlocks;
-            try {
-                // 3) Verify if we're in macro inline mode and if the macro supports it. If not, send an error.
-                if (macroBlock.isInline()) {
-                    macroContext.setInline(true);
-                    if (!macro.supportsInlineMode()) {
-                        // The macro doesn't support inline mode, raise a warning but continue.
-                        // The macro will not be executed and we generate an error message instead of the macro
-                        // execution result.
-                        this.macroErrorManager.generateError(macroBlock, String.format(
-                            "The [%s] macro is a standalone macro and it cannot be used inline",
-                            macroBlock.getId()),
-                            "This macro generates standalone content. As a consequence you need to make sure to use a "
+        MacroExecution macroExecution = executeMacro(pendingMacro, macroContext);
+
+        if (macroExecution.blocks == null || !pendingMacro.macro.getDescriptor().isCacheable()) {
+            uncacheableExecutions.increment();
+        }
+        macroExecution.uncacheable = uncacheableExecutions.longValue() != previousUncacheableExecutions;
+
+        return macroExecution;
+    }
+
+    private MacroExecution executeMacro(PendingMacro pendingMacro, MacroTransformationContext macroContext)
+    {
+        MacroBlock macroBlock = pendingMacro.block;
+        Macro<?> macro = pendingMacro.macro;
+
+        try {
+            // Verify if we're in macro inline mode and if the macro supports it. If not, send an error.
+            if (macroBlock.isInline()) {
+                macroContext.setInline(true);
+                if (!macro.supportsInlineMode()) {
+                    // The macro doesn't support inline mode, raise a warning but continue.
+                    // The macro will not be executed and we generate an error message instead of the macro
+                    // execution result.
+                    return new MacroExecution(String.format(
+                        "The [%s] macro is a standalone macro and it cannot be used inline", macroBlock.getId()),
+                        "This macro generates standalone content. As a consequence you need to make sure to use a "
                             + "syntax that separates your macro from the content before and after it so that it's on a "
                             + "line by itself. For example in XWiki Syntax 2.0+ this means having 2 newline characters "
                             + "(a.k.a line breaks) separating your macro from the content before and after it.");
-                        continue;
-                    }
-                } else {
-                    macroContext.setInline(false);
                 }
+            } else {
+                macroContext.setInline(false);
+            }
 
-                // 4) Execute the highest priority macro
-                macroContext.setCurrentMacroBlock(macroBlock);
-                ((MutableRenderingContext) this.renderingContext).setCurrentBlock(macroBlock);
+            // Execute the macro
+            macroContext.setCurrentMacroBlock(macroBlock);
+            ((MutableRenderingContext) this.renderingContext).setCurrentBlock(macroBlock);
 
-                // Populate and validate macro parameters.
-                Object macroParameters = macro.getDescriptor().getParametersBeanClass().newInstance();
-                try {
+            // Populate and validate macro parameters.
+            MacroParametersBinder parametersBinder = getParametersBinder(macro.getDescriptor());
+            Object macroParameters = parametersBinder != null ? parametersBinder.createBean()
+                : macro.getDescriptor().getParametersBeanClass().newInstance();
+            try {
+                if (parametersBinder != null) {
+                    parametersBinder.populate(macroParameters, macroBlock.getParameters());
+                } else {
                     this.beanManager.populate(macroParameters, macroBlock.getParameters());
-                } catch (Throwable e) {
-                    // One macro parameter was invalid.
-                    // The macro will not be executed and we generate an error message instead of the macro
-                    // execution result.
-                    this.macroErrorManager.generateError(macroBlock,
-                        String.format("Invalid macro parameters used for the \"%s\" macro", macroBlock.getId()), e);
-                    continue;
                 }
-
-                newBlocks = ((Macro) macro).execute(macroParameters, macroBlock.getContent(), macroContext);
             } catch (Throwable e) {
-                // The Macro failed to execute.
+                // One macro parameter was invalid.
                 // The macro will not be executed and we generate an error message instead of the macro
                 // execution result.
-                // Note: We catch any Exception because we want to never break the whole rendering.
-                this.macroErrorManager.generateError(macroBlock,
-                    String.format("Failed to execute the [%s] macro", macroBlock.getId()), e);
-                continue;
-            } finally {
-                ((MutableRenderingContext) this.renderingContext).setCurrentBlock(null);
+                return new MacroExecution(
+                    String.format("Invalid macro parameters used for the \"%s\" macro", macroBlock.getId()), e);
+            }
+
+            // Reuse the result of a previous execution of the same macro if possible
+            MacroResultCache.Key cacheKey = null;
+            if (macro.getDescriptor().isCacheable() && this.resultCache.isEnabled()) {
+                cacheKey = this.resultCache.createKey(macroBlock, macroContext.getId(),
+                    this.macroContentParser.getCurrentSyntax(macroContext), macroContext.isInline(),
+                    macroContext.getTransformationContext().isRestricted());
+
+                List<Block> cachedBlocks = this.resultCache.get(cacheKey);
+                if (cachedBlocks != null) {
+                    return new MacroExecution(cachedBlocks);
+                }
             }
 
-            // We wrap the blocks generated by the macro execution with MacroMarker blocks so that listeners/renderers
-            // who wish to know the group of blocks that makes up the executed macro can. For example this is useful for
-            // the XWiki Syntax renderer so that it can reconstruct the macros from the transformed XDOM.
-            Block resultBlock = wrapInMacroMarker(macroBlock, newBlocks);
+            MutableLong uncacheableExecutions = UNCACHEABLE_EXECUTIONS.get();
+            long previousUncacheableExecutions = uncacheableExecutions.longValue();
+
+            List<Block> blocks = ((Macro) macro).execute(macroParameters, macroBlock.getContent(), macroContext);
+
+            // Don't cache the result if it depends on macros whose result cannot be cached
+            if (cacheKey != null && uncacheableExecutions.longValue() == previousUncacheableExecutions) {
+                this.resultCache.put(cacheKey, blocks);
+            }
+
+            return new MacroExecution(blocks);
+        } catch (Throwable e) {
+            // The Macro failed to execute.
+            // The macro will not be executed and we generate an error message instead of the macro
+            // execution result.
+            // Note: We catch any Exception because we want to never break the whole rendering.
+            return new MacroExecution(String.format("Failed to execute the [%s] macro", macroBlock.getId()), e);
+        } finally {
+            ((MutableRenderingContext) this.renderingContext).setCurrentBlock(null);
+        }
+    }
+
+    /**
+     * @param descriptor the descriptor of the macro
+     * @return the compiled binder used to populate the macro parameters bean or {@code null} if it could not be
+     *         created, in which case the bean manager should be used
+     */
+    private MacroParametersBinder getParametersBinder(MacroDescriptor descriptor)
+    {
+        Class<?> parametersBeanClass = descriptor.getParametersBeanClass();
+
+        return parametersBeanClass != null ? this.parametersBinders.get(parametersBeanClass) : null;
+    }
+
+    private MacroParametersBinder createParametersBinder(Class<?> parametersBeanClass)
+    {
+        try {
+            return new MacroParametersBinder(this.beanManager.getBeanDescriptor(parametersBeanClass),
+                this.converterManager, getValidatorFactory());
+        } catch (Exception e) {
+            this.logger.debug("Failed to compile the parameters binder of [{}], falling back on the bean manager: {}",
+                parametersBeanClass.getName(), ExceptionUtils.getRootCauseMessage(e));
+
+            return null;
+        }
+    }
+
+    private synchronized ValidatorFactory getValidatorFactory()
+    {
+        if (!this.validatorFactoryInitialized) {
+            try {
+                this.validatorFactory = Validation.buildDefaultValidatorFactory();
+            } catch (ValidationException e) {
+                this.logger.debug("Unable to find default JSR 303 provider. There will be no macro parameters"
+                    + " validation.");
+            }
+            this.validatorFactoryInitialized = true;
+        }
 
-            // 5) Replace the MacroBlock by the Blocks generated by the execution of the Macro
-            macroBlock.getParent().replaceChild(resultBlock, macroBlock);
+        return this.validatorFactory;
+    }
 
-            if (incrementRecursions) {
+    /**
+     * Replace a macro block by the result of its execution and index the macros it generated.
+     *
+     * @param pendingMacro the executed macro
+     * @param execution the result of the execution
+     * @param pendingMacros the index of the macros left to execute, {@code null} if the generated macros should not be
+     *            indexed (because the whole XDOM is going to be indexed again)
+     * @return true if the macro was executed inside the result of another macro
+     */
+    private boolean apply(PendingMacro pendingMacro, MacroExecution execution, PendingMacroQueue pendingMacros)
+    {
+        MacroBlock macroBlock = pendingMacro.block;
+
+        if (execution.blocks == null) {
+            if (execution.errorException != null) {
+                this.macroErrorManager.generateError(macroBlock, execution.errorMessage, execution.errorException);
+            } else {
+                this.macroErrorManager.generateError(macroBlock, execution.errorMessage, execution.errorDescription);
+            }
+
+            return false;
+        }
+
+        boolean incrementRecursions = macroBlock.getParent() instanceof MacroMarkerBlock;
+
+        // We wrap the blocks generated by the macro execution with MacroMarker blocks so that listeners/renderers
+        // who wish to know the group of blocks that makes up the executed macro can. For example this is useful for
+        // the XWiki Syntax renderer so that it can reconstruct the macros from the transformed XDOM.
+        Block resultBlock = wrapInMacroMarker(macroBlock, execution.blocks);
+
+        // Replace the MacroBlock by the Blocks generated by the execution of the Macro
+        macroBlock.getParent().replaceChild(resultBlock, macroBlock);
+
+        // Index the macros generated by the Macro
+        if (pendingMacros != null) {
+            applyLookupErrors(pendingMacros.add(resultBlock, pendingMacro));
+        }
+
+        return incrementRecursions;
+    }
+
+    /**
+     * Remove from the index the macros which can be executed in parallel with the passed macro.
+     *
+     * @param pendingMacro the next macro to execute
+     * @param pendingMacros the index of the macros left to execute
+     * @param maxRecursions the number of macros generated by other macros which can still be executed
+     * @return the macros to execute in parallel, in document order, or {@code null} if the passed macro should be
+     *         executed alone
+     */
+    private List<PendingMacro> pollParallelMacros(PendingMacro pendingMacro, PendingMacroQueue pendingMacros,
+        int maxRecursions)
+    {
+        // Macros executed by a macro which is itself executed in parallel are executed sequentially
+        if (this.configuration.getParallelExecutionThreads() <= 0 || PARALLEL_EXECUTION.get() != null
+            || !pendingMacro.macro.getDescriptor().isSideEffectFree()) {
+            return null;
+        }
+
+        List<PendingMacro> parallelMacros = null;
+
+        int recursions = pendingMacro.block.getParent() instanceof MacroMarkerBlock ? 1 : 0;
+        for (PendingMacro next = pendingMacros.peek(); next != null && recursions < maxRecursions
+            && next.macro.compareTo(pendingMacro.macro) == 0 && next.macro.getDescriptor().isSideEffectFree();
+            next = pendingMacros.peek()) {
+            if (parallelMacros == null) {
+                parallelMacros = new ArrayList<>();
+                parallelMacros.add(pendingMacro);
+            }
+            parallelMacros.add(pendingMacros.poll());
+
+            if (next.block.getParent() instanceof MacroMarkerBlock) {
                 ++recursions;
             }
         }
+
+        return parallelMacros;
+    }
+
+    /**
+     * Execute macros in parallel, each with its own macro execution context and rendering context.
+     *
+     * @param parallelMacros the macros to execute
+     * @param macroContext the macro execution context
+     * @return the results of the executions, in the same order as the passed macros
+     */
+    private List<MacroExecution> executeInParallel(List<PendingMacro> parallelMacros,
+        MacroTransformationContext macroContext)
+    {
+        ExecutorService executorService = getExecutor();
+
+        // Each macro is executed with a copy of the current rendering context
+        ExecutionContext parentExecutionContext = this.execution.getContext();
+        MutableRenderingContext mutableRenderingContext = (MutableRenderingContext) this.renderingContext;
+
+        List<Future<MacroExecution>> futures = new ArrayList<>(parallelMacros.size());
+        for (final PendingMacro pendingMacro : parallelMacros) {
+            final MacroTransformationContext pendingMacroContext = macroContext.clone();
+            final RenderingContextStack renderingContextStack = mutableRenderingContext.fork();
+            futures.add(executorService.submit(new Callable<MacroExecution>()
+            {
+                @Override
+                public MacroExecution call()
+                {
+                    ExecutionContext executionContext = new ExecutionContext();
+                    if (parentExecutionContext != null) {
+                        executionContext.inheritFrom(parentExecutionContext);
+                    }
+                    execution.setContext(executionContext);
+                    PARALLEL_EXECUTION.set(Boolean.TRUE);
+
+                    RenderingContextStack previousRenderingContextStack =
+                        mutableRenderingContext.bind(renderingContextStack);
+                    try {
+                        return execute(pendingMacro, pendingMacroContext);
+                    } finally {
+                        mutableRenderingContext.bind(previousRenderingContextStack);
+                        PARALLEL_EXECUTION.remove();
+                        execution.removeContext();
+                    }
+                }
+            }));
+        }
+
+        List<MacroExecution> executions = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); ++i) {
+            MacroExecution macroExecution;
+            try {
+                macroExecution = futures.get(i).get();
+            } catch (ExecutionException e) {
+                macroExecution = new MacroExecution(
+                    String.format("Failed to execute the [%s] macro", parallelMacros.get(i).block.getId()),
+                    e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                macroExecution = new MacroExecution(
+                    String.format("Failed to execute the [%s] macro", parallelMacros.get(i).block.getId()), e);
+            }
+            executions.add(macroExecution);
+
+            // Make sure the macro being executed in the current thread (if any) knows that macros whose result cannot
+            // be cached have been executed in other threads
+            if (macroExecution.uncacheable || macroExecution.blocks == null) {
+                UNCACHEABLE_EXECUTIONS.get().increment();
+            }
+        }
+
+        return executions;
+    }
+
+    private ExecutorService getExecutor()
+    {
+        if (this.executor == null) {
+            synchronized (this) {
+                if (this.executor == null) {
+                    BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                        .namingPattern("XWiki Rendering Macro Execution Thread %d").daemon(true).build();
+                    this.executor = Executors.newFixedThreadPool(this.configuration.getParallelExecutionThreads(),
+                        threadFactory);
+                }
+            }
+        }
+
+        return this.executor;
+    }
+
+    /**
+     * Replace the macros which could not be found by error blocks.
+     *
+     * @param errors the lookup errors to apply, can be {@code null}
+     */
+    private void applyLookupErrors(List<MacroLookupExceptionElement> errors)
+    {
+        if (errors != null) {
+            // An error could be temporary (the macro might be registered later)
+            UNCACHEABLE_EXECUTIONS.get().increment();
+
+            for (MacroLookupExceptionElement error : errors) {
+                if (error.getException() instanceof MacroNotFoundException) {
+                    // Macro cannot be found. Generate an error message instead of the macro execution result.
+                    // TODO: make it internationalized
+                    this.macroErrorManager.generateError(error.getMacroBlock(),
+                        String.format("Unknown macro: %s.", error.getMacroBlock().getId()), String.format(
+                            "The \"%s\" macro is not in the list of registered macros. Verify the spelling or "
+                                + "contact your administrator.", error.getMacroBlock().getId()));
+                } else {
+                    // TODO: make it internationalized
+                    this.macroErrorManager.generateError(error.getMacroBlock(),
+                        String.format("Invalid macro: %s", error.getMacroBlock().getId()), error.getException());
+                }
+            }
+        }
     }
 
     /**
@@ -334,6 +947,15 @@ private Block wrapInMacroMarker(MacroBlock macroBlockToWrap, List<Block> newBloc
             macroBlockToWrap.getContent(), newBlocks, macroBlockToWrap.isInline());
     }
 
+    /**
+     * @return the cache holding the result of the macros which can be cached
+     * @since 10.9RC1
+     */
+    public MacroResultCache getResultCache()
+    {
+        return this.resultCache;
+    }
+
     /**
      * @param maxRecursions the max numnber of recursion allowed before we stop transformations
      */
@@ -113,6 +113,16 @@
      */
     private String defaultCategory;
 
+    /**
+     * Indicate if the execution of this macro has no side effect.
+     */
+    private boolean sideEffectFree;
+
+    /**
+     * Indicate if the result of this macro can be cached.
+     */
+    private boolean cacheable;
+
     /**
      * Creates a new {@link Macro} instance.
      *
@@ -188,6 +198,8 @@ public void initialize() throws InitializationException
         DefaultMacroDescriptor descriptor = new DefaultMacroDescriptor(macroId, this.name, this.description,
             this.contentDescriptor, this.beanManager.getBeanDescriptor(this.parametersBeanClass));
         descriptor.setDefaultCategory(this.defaultCategory);
+        descriptor.setSideEffectFree(this.sideEffectFree);
+        descriptor.setCacheable(this.cacheable);
         setDescriptor(descriptor);
     }
 
@@ -245,4 +257,40 @@ protected void setDefaultCategory(String defaultCategory)
             ((AbstractMacroDescriptor) getDescriptor()).setDefaultCategory(defaultCategory);
         }
     }
+
+    /**
+     * Allows sub classes to indicate that the execution of the macro has no side effect and can thus be done in
+     * parallel with other macros. This method only has an effect if the internal {@link MacroDescriptor} is of type
+     * {@link AbstractMacroDescriptor}.
+     *
+     * @param sideEffectFree true if the execution of the macro has no side effect
+     * @see MacroDescriptor#isSideEffectFree()
+     * @since 10.9RC1
+     */
+    protected void setSideEffectFree(boolean sideEffectFree)
+    {
+        this.sideEffectFree = sideEffectFree;
+
+        if (getDescriptor() instanceof AbstractMacroDescriptor) {
+            ((AbstractMacroDescriptor) getDescriptor()).setSideEffectFree(sideEffectFree);
+        }
+    }
+
+    /**
+     * Allows sub classes to indicate that the result of the macro can be reused for another execution of the macro
+     * with the same parameters and content. This method only has an effect if the internal {@link MacroDescriptor} is
+     * of type {@link AbstractMacroDescriptor}.
+     *
+     * @param cacheable true if the result of the macro can be cached
+     * @see MacroDescriptor#isCacheable()
+     * @since 10.9RC1
+     */
+    protected void setCacheable(boolean cacheable)
+    {
+        this.cacheable = cacheable;
+
+        if (getDescriptor() instanceof AbstractMacroDescriptor) {
+            ((AbstractMacroDescriptor) getDescriptor()).setCacheable(cacheable);
+        }
+    }
 }
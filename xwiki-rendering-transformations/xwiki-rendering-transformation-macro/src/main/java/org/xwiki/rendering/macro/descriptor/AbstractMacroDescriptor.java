@@ -65,6 +65,16 @@ public abstract class AbstractMacroDescriptor implements MacroDescriptor
      */
     private String defaultCategory;
 
+    /**
+     * @see #isSideEffectFree()
+     */
+    private boolean sideEffectFree;
+
+    /**
+     * @see #isCacheable()
+     */
+    private boolean cacheable;
+
     /**
      * A map containing the {@link ParameterDescriptor} for each parameters supported for this macro.
      * <p>
@@ -187,4 +197,36 @@ public void setDefaultCategory(String defaultCategory)
     {
         this.defaultCategory = defaultCategory;
     }
+
+    @Override
+    public boolean isSideEffectFree()
+    {
+        return this.sideEffectFree;
+    }
+
+    /**
+     * @param sideEffectFree true if the execution of the macro has no side effect
+     * @see MacroDescriptor#isSideEffectFree()
+     * @since 10.9RC1
+     */
+    public void setSideEffectFree(boolean sideEffectFree)
+    {
+        this.sideEffectFree = sideEffectFree;
+    }
+
+    @Override
+    public boolean isCacheable()
+    {
+        return this.cacheable;
+    }
+
+    /**
+     * @param cacheable true if the result of the macro can be cached
+     * @see MacroDescriptor#isCacheable()
+     * @since 10.9RC1
+     */
+    public void setCacheable(boolean cacheable)
+    {
+        this.cacheable = cacheable;
+    }
 }
@@ -81,4 +81,41 @@
      * @since 2.0M3
      */
     String getDefaultCategory();
+
+    /**
+     * Indicate if the macro can be executed in parallel with other macros. The execution of such a macro does not
+     * modify anything else than the returned blocks (the rest of the XDOM in particular) and its result does not depend
+     * on the result of other macros.
+     * <p>
+     * Macros parsing their content without executing the macros it contains (which are then executed by the macro
+     * transformation as part of the result, in the calling thread) can be marked as side effect free. Each macro
+     * executed in parallel gets its own macro transformation context and its own copy of the rendering context. Macros
+     * executing the macros found in their content (by transforming it or by executing the macro transformation on the
+     * XDOM) should not be marked as side effect free since the nested macros would be executed in the same thread and
+     * might have side effects.
+     *
+     * @return true if the execution of the macro has no side effect
+     * @since 10.9RC1
+     */
+    default boolean isSideEffectFree()
+    {
+        return false;
+    }
+
+    /**
+     * Indicate if the result of the macro can be reused for another execution of the macro with the same parameters
+     * and content. The result of such a macro only depends on its parameters, its content, the syntax, the inline
+     * mode and the transformation id (usually the current document), and its execution has no side effect.
+     * <p>
+     * Macros parsing their content as wiki markup can be marked as cacheable: the result of a macro is not cached when
+     * it executed (directly or not) a macro which is not cacheable, and the macros left in the result are executed
+     * again each time. The cached results are discarded when a macro is registered or unregistered.
+     *
+     * @return true if the result of the macro can be cached
+     * @since 10.9RC1
+     */
+    default boolean isCacheable()
+    {
+        return false;
+    }
 }
@@ -42,4 +42,34 @@
      *         descriptor (ie defined by the macro author) will be used
      */
     Properties getCategories();
+
+    /**
+     * @return the maximum number of threads used to execute in parallel the macros with the same priority which have
+     *         no side effect (see {@link org.xwiki.rendering.macro.descriptor.MacroDescriptor#isSideEffectFree()}).
+     *         0 (the default) means that all macros are executed sequentially
+     * @since 10.9RC1
+     */
+    default int getParallelExecutionThreads()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the maximum number of macro results to keep in memory for the macros whose result can be cached (see
+     *         {@link org.xwiki.rendering.macro.descriptor.MacroDescriptor#isCacheable()}), 0 to disable the cache
+     * @since 10.9RC1
+     */
+    default int getResultCacheSize()
+    {
+        return 1000;
+    }
+
+    /**
+     * @return the maximum number of blocks to keep in memory for all the cached macro results
+     * @since 10.9RC1
+     */
+    default int getResultCacheMaxBlocks()
+    {
+        return 100000;
+    }
 }
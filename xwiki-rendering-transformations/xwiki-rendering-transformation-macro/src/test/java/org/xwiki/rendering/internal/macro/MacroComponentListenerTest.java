@@ -0,0 +1,213 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.internal.StackingComponentEventManager;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.internal.transformation.macro.MacroTransformation;
+import org.xwiki.rendering.internal.transformation.macro.TestSimpleMacro;
+import org.xwiki.rendering.macro.Macro;
+import org.xwiki.rendering.macro.MacroId;
+import org.xwiki.rendering.macro.MacroManager;
+import org.xwiki.rendering.macro.MacroNotFoundException;
+import org.xwiki.rendering.syntax.Syntax;
+import org.xwiki.rendering.transformation.Transformation;
+import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.test.ComponentManagerRule;
+import org.xwiki.test.annotation.AllComponents;
+
+/**
+ * Validate that the macros resolved by {@link DefaultMacroManager} and the macro results cached by
+ * {@link MacroTransformation} are cleared by {@link MacroComponentListener}.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public class MacroComponentListenerTest
+{
+    /**
+     * Macro running some code when created, to simulate a macro registered while another one is being looked up.
+     */
+    public static class CreationHookMacro extends TestSimpleMacro
+    {
+        private static Runnable hook;
+
+        public CreationHookMacro()
+        {
+            if (hook != null) {
+                Runnable currentHook = hook;
+                hook = null;
+                currentHook.run();
+            }
+        }
+    }
+
+    @Rule
+    public final ComponentManagerRule componentManager = new ComponentManagerRule();
+
+    private MacroManager macroManager;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        // Send the component events right away
+        StackingComponentEventManager eventManager = new StackingComponentEventManager();
+        eventManager.setObservationManager(this.componentManager.<ObservationManager>getInstance(
+            ObservationManager.class));
+        eventManager.shouldStack(false);
+        this.componentManager.setComponentEventManager(eventManager);
+
+        this.macroManager = this.componentManager.getInstance(MacroManager.class);
+    }
+
+    private void registerMacro(String hint, Macro<?> macro) throws Exception
+    {
+        DefaultComponentDescriptor<Macro> descriptor = new DefaultComponentDescriptor<Macro>();
+        descriptor.setRoleType(Macro.class);
+        descriptor.setRoleHint(hint);
+        this.componentManager.registerComponent(descriptor, macro);
+    }
+
+    private void registerMacro(String hint, Class<? extends Macro> macroClass) throws Exception
+    {
+        DefaultComponentDescriptor<Macro> descriptor = new DefaultComponentDescriptor<Macro>();
+        descriptor.setRoleType(Macro.class);
+        descriptor.setRoleHint(hint);
+        descriptor.setImplementation(macroClass);
+        this.componentManager.registerComponent(descriptor);
+    }
+
+    @Test
+    public void registerMacroWhileGettingMacro() throws Exception
+    {
+        final Macro<?> newMacro = new TestSimpleMacro();
+        registerMacro("hookmacro", CreationHookMacro.class);
+
+        // Replace the macro while it's being looked up
+        CreationHookMacro.hook = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    registerMacro("hookmacro", newMacro);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        MacroId macroId = new MacroId("hookmacro");
+        Assert.assertTrue(this.macroManager.getMacro(macroId) instanceof CreationHookMacro);
+
+        // The macro found during the registration should not have been kept
+        Assert.assertSame(newMacro, this.macroManager.getMacro(macroId));
+        Assert.assertSame(newMacro, this.macroManager.getMacro(macroId));
+    }
+
+    @Test
+    public void registerMacroWhileGettingMacroIds() throws Exception
+    {
+        registerMacro("hookmacro", CreationHookMacro.class);
+
+        // Register a macro while the macros are being looked up
+        CreationHookMacro.hook = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    registerMacro("newmacro", new TestSimpleMacro());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        this.macroManager.getMacroIds();
+
+        // The macros found during the registration should not have been kept
+        Assert.assertTrue(this.macroManager.getMacroIds().contains(new MacroId("newmacro")));
+        Assert.assertTrue(this.macroManager.exists(new MacroId("newmacro")));
+    }
+
+    @Test
+    public void registerAndUnregisterMacro() throws Exception
+    {
+        MacroId macroId = new MacroId("testsimplemacro", Syntax.XWIKI_2_0);
+
+        // Register a macro specific to the syntax
+        Macro<?> syntaxMacro = new TestSimpleMacro();
+        DefaultComponentDescriptor<Macro> descriptor = new DefaultComponentDescriptor<Macro>();
+        descriptor.setRoleType(Macro.class);
+        descriptor.setRoleHint(macroId.toString());
+        this.componentManager.registerComponent(descriptor, syntaxMacro);
+
+        Assert.assertSame(syntaxMacro, this.macroManager.getMacro(macroId));
+        Assert.assertSame(syntaxMacro, this.macroManager.getMacro(macroId));
+        Assert.assertTrue(this.macroManager.getMacroIds().contains(macroId));
+        Assert.assertTrue(this.macroManager.exists(macroId));
+
+        // Unregister the syntax specific macro
+        this.componentManager.unregisterComponent(Macro.class, macroId.toString());
+
+        Assert.assertNotSame(syntaxMacro, this.macroManager.getMacro(macroId));
+        Assert.assertFalse(this.macroManager.getMacroIds().contains(macroId));
+        Assert.assertFalse(this.macroManager.exists(macroId));
+
+        // Unregister the macro registered for all syntaxes
+        this.componentManager.unregisterComponent(Macro.class, macroId.getId());
+
+        try {
+            this.macroManager.getMacro(macroId);
+            Assert.fail("Should have thrown an exception");
+        } catch (MacroNotFoundException expected) {
+            Assert.assertEquals("No macro [testsimplemacro/xwiki/2.0] could be found.", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void registerMacroClearsResultCache() throws Exception
+    {
+        MacroTransformation transformation = this.componentManager.getInstance(Transformation.class, "macro");
+
+        XDOM dom = new XDOM(Arrays.<Block>asList(
+            new MacroBlock("testcacheablemacro", Collections.<String, String>emptyMap(), "content", false)));
+        transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        Assert.assertEquals(1, transformation.getResultCache().size());
+
+        // The cached result might have been produced by the replaced macro
+        registerMacro("testcacheablemacro", new TestSimpleMacro());
+
+        Assert.assertEquals(0, transformation.getResultCache().size());
+    }
+}
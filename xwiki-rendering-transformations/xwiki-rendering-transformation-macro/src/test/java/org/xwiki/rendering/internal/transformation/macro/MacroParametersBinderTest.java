@@ -0,0 +1,143 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.macro;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.properties.BeanManager;
+import org.xwiki.properties.ConverterManager;
+import org.xwiki.properties.PropertyException;
+import org.xwiki.properties.PropertyMandatoryException;
+import org.xwiki.properties.RawProperties;
+import org.xwiki.properties.annotation.PropertyMandatory;
+import org.xwiki.test.ComponentManagerRule;
+import org.xwiki.test.annotation.AllComponents;
+
+/**
+ * Unit tests for {@link MacroParametersBinder}.
+ *
+ * @version $Id$
+ */
+@AllComponents
+public class MacroParametersBinderTest
+{
+    public static class TestParameters implements RawProperties
+    {
+        private String name;
+
+        private int count;
+
+        public boolean flag;
+
+        private Map<String, Object> raw = new HashMap<>();
+
+        @PropertyMandatory
+        public void setName(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public void setCount(int count)
+        {
+            this.count = count;
+        }
+
+        public int getCount()
+        {
+            return this.count;
+        }
+
+        @Override
+        public void set(String propertyName, Object value)
+        {
+            this.raw.put(propertyName, value);
+        }
+    }
+
+    @Rule
+    public final ComponentManagerRule componentManager = new ComponentManagerRule();
+
+    private MacroParametersBinder binder;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        BeanManager beanManager = this.componentManager.getInstance(BeanManager.class);
+        ConverterManager converterManager = this.componentManager.getInstance(ConverterManager.class);
+
+        this.binder =
+            new MacroParametersBinder(beanManager.getBeanDescriptor(TestParameters.class), converterManager, null);
+    }
+
+    @Test
+    public void populate() throws Exception
+    {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("NAME", "value");
+        parameters.put("count", "42");
+        parameters.put("flag", "true");
+        parameters.put("other", "othervalue");
+
+        TestParameters bean = (TestParameters) this.binder.createBean();
+        this.binder.populate(bean, parameters);
+
+        Assert.assertEquals("value", bean.getName());
+        Assert.assertEquals(42, bean.getCount());
+        Assert.assertTrue(bean.flag);
+        Assert.assertEquals(Collections.singletonMap("other", "othervalue"), bean.raw);
+    }
+
+    @Test
+    public void populateWithMissingMandatoryParameter() throws Exception
+    {
+        try {
+            this.binder.populate(this.binder.createBean(), Collections.singletonMap("count", "42"));
+            Assert.fail("Should have thrown an exception");
+        } catch (PropertyMandatoryException expected) {
+            Assert.assertEquals("Property [name] mandatory", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void populateWithInvalidParameter() throws Exception
+    {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("name", "value");
+        parameters.put("count", "notanumber");
+
+        try {
+            this.binder.populate(this.binder.createBean(), parameters);
+            Assert.fail("Should have thrown an exception");
+        } catch (PropertyException expected) {
+            Assert.assertEquals("Failed to populate property [count]", expected.getMessage());
+        }
+    }
+}
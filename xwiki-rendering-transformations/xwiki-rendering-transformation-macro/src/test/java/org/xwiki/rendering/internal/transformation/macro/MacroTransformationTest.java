@@ -23,6 +23,7 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
@@ -32,12 +33,16 @@
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.MacroBlock;
 import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.BlockMatcher;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
+import org.xwiki.rendering.macro.Macro;
 import org.xwiki.rendering.renderer.BlockRenderer;
 import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
 import org.xwiki.rendering.renderer.printer.WikiPrinter;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.transformation.Transformation;
 import org.xwiki.rendering.transformation.TransformationContext;
+import org.xwiki.rendering.transformation.macro.MacroTransformationConfiguration;
 import org.xwiki.test.ComponentManagerRule;
 import org.xwiki.test.annotation.AllComponents;
 
@@ -296,4 +301,276 @@ public void transformNotExistingMacro() throws Exception
         eventBlockRenderer.render(dom, printer);
         Assert.assertEquals(expected, printer.toString());
     }
+
+    /**
+     * Test that macros generated by another macro are executed in document order with the other macros.
+     */
+    @Test
+    public void transformNestedMacroExecuteOnPageOrder() throws Exception
+    {
+        String expected = "beginDocument\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro0]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginMacroMarkerStandalone [testnestedmacro] []\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro1]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "endMacroMarkerStandalone [testnestedmacro] []\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro2]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "endDocument";
+
+        XDOM dom = new XDOM(Arrays.<Block>asList(
+            new MacroBlock("testsimplemacro", Collections.<String, String>emptyMap(), false),
+            new MacroBlock("testnestedmacro", Collections.<String, String>emptyMap(), false),
+            new MacroBlock("testsimplemacro", Collections.<String, String>emptyMap(), false)));
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer eventBlockRenderer =
+            this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+        eventBlockRenderer.render(dom, printer);
+        Assert.assertEquals(expected, printer.toString());
+    }
+
+    /**
+     * Test that a macro added by another macro outside of its result is executed.
+     */
+    @Test
+    public void transformMacroAddedOutsideOfMacroResult() throws Exception
+    {
+        String expected = "beginDocument\n"
+            + "beginMacroMarkerStandalone [testappendmacro] []\n"
+            + "endMacroMarkerStandalone [testappendmacro] []\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro0]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "endDocument";
+
+        XDOM dom = new XDOM(Arrays.asList((Block) new MacroBlock("testappendmacro",
+            Collections.<String, String>emptyMap(), false)));
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer eventBlockRenderer =
+            this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+        eventBlockRenderer.render(dom, printer);
+        Assert.assertEquals(expected, printer.toString());
+    }
+
+    /**
+     * Test that a macro added by another macro outside of its result is executed before the lower priority macros.
+     */
+    @Test
+    public void transformMacroAddedOutsideOfMacroResultByPriority() throws Exception
+    {
+        String expected = "beginDocument\n"
+            + "beginMacroMarkerStandalone [testappendmacro] [] [testprioritymacro]\n"
+            + "endMacroMarkerStandalone [testappendmacro] [] [testprioritymacro]\n"
+            + "beginMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [simplemacro1]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testsimplemacro] []\n"
+            + "beginMacroMarkerStandalone [testprioritymacro] []\n"
+            + "beginParagraph\n"
+            + "onWord [word]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [testprioritymacro] []\n"
+            + "endDocument";
+
+        // The appended priority macro must be executed before the simple macro which was already there
+        XDOM dom = new XDOM(Arrays.<Block>asList(
+            new MacroBlock("testappendmacro", Collections.<String, String>emptyMap(), "testprioritymacro", false),
+            new MacroBlock("testsimplemacro", Collections.<String, String>emptyMap(), false)));
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer eventBlockRenderer =
+            this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+        eventBlockRenderer.render(dom, printer);
+        Assert.assertEquals(expected, printer.toString());
+    }
+
+    /**
+     * Test that the XDOM is scanned again only when a macro modified it outside of its result.
+     */
+    @Test
+    public void transformScansXDOMAgainOnlyWhenModifiedOutsideOfMacroResult() throws Exception
+    {
+        List<Block> macroBlocks = new ArrayList<Block>();
+        for (int i = 0; i < 10; i++) {
+            macroBlocks.add(new MacroBlock("testprioritymacro", Collections.<String, String>emptyMap(), false));
+        }
+        final AtomicInteger scans = new AtomicInteger();
+        XDOM dom = new XDOM(macroBlocks)
+        {
+            @Override
+            public <T extends Block> List<T> getBlocks(BlockMatcher matcher, Block.Axes axes)
+            {
+                scans.incrementAndGet();
+
+                return super.getBlocks(matcher, axes);
+            }
+        };
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        // Once to index the macros and once to make sure nothing is left at the end
+        Assert.assertEquals(2, scans.get());
+
+        // Adding a macro at the end of the document requires to index it again
+        scans.set(0);
+        dom.addChild(new MacroBlock("testappendmacro", Collections.<String, String>emptyMap(), "testprioritymacro",
+            false));
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        Assert.assertEquals(3, scans.get());
+        Assert.assertTrue(dom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT).isEmpty());
+    }
+
+    /**
+     * Test that executing macros in parallel produces the same result as executing them sequentially.
+     */
+    @Test
+    public void transformSideEffectFreeMacrosInParallel() throws Exception
+    {
+        DefaultMacroTransformationConfiguration configuration =
+            this.componentManager.getInstance(MacroTransformationConfiguration.class);
+        configuration.setParallelExecutionThreads(4);
+
+        String expected = "beginDocument\n";
+        List<Block> macroBlocks = new ArrayList<Block>();
+        for (int i = 0; i < 20; i++) {
+            macroBlocks.add(new MacroBlock("testsideeffectfreemacro", Collections.<String, String>emptyMap(),
+                "content" + i, false));
+            expected += "beginMacroMarkerStandalone [testsideeffectfreemacro] [] [content" + i + "]\n"
+                + "onWord [content" + i + "]\n"
+                + "endMacroMarkerStandalone [testsideeffectfreemacro] [] [content" + i + "]\n";
+
+            // "testsimplemacro" is not side effect free and must see the result of the macros located before it
+            if (i == 9) {
+                macroBlocks.add(new MacroBlock("testsimplemacro", Collections.<String, String>emptyMap(), false));
+                expected += "beginMacroMarkerStandalone [testsimplemacro] []\n"
+                    + "beginParagraph\n"
+                    + "onWord [simplemacro10]\n"
+                    + "endParagraph\n"
+                    + "endMacroMarkerStandalone [testsimplemacro] []\n";
+            }
+        }
+        expected += "endDocument";
+
+        XDOM dom = new XDOM(macroBlocks);
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer eventBlockRenderer =
+            this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+        eventBlockRenderer.render(dom, printer);
+        Assert.assertEquals(expected, printer.toString());
+    }
+
+    /**
+     * Test that side effect free macros are really executed at the same time.
+     */
+    @Test
+    public void transformSideEffectFreeMacrosExecutesThemConcurrently() throws Exception
+    {
+        DefaultMacroTransformationConfiguration configuration =
+            this.componentManager.getInstance(MacroTransformationConfiguration.class);
+        configuration.setParallelExecutionThreads(4);
+
+        List<Block> macroBlocks = new ArrayList<Block>();
+        for (int i = 0; i < 8; i++) {
+            macroBlocks.add(new MacroBlock("testsideeffectfreemacro", Collections.<String, String>emptyMap(),
+                "content" + i, false));
+        }
+        XDOM dom = new XDOM(macroBlocks);
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        TestSideEffectFreeMacro macro = this.componentManager.getInstance(Macro.class, "testsideeffectfreemacro");
+        Assert.assertTrue(macro.getMaxConcurrentExecutions() > 1);
+    }
+
+    /**
+     * Test that macros with side effects are always executed by the calling thread, including the ones generated by
+     * side effect free macros executed in parallel.
+     */
+    @Test
+    public void transformMacrosWithSideEffectsSequentially() throws Exception
+    {
+        DefaultMacroTransformationConfiguration configuration =
+            this.componentManager.getInstance(MacroTransformationConfiguration.class);
+        configuration.setParallelExecutionThreads(4);
+
+        List<Block> macroBlocks = new ArrayList<Block>();
+        for (int i = 0; i < 8; i++) {
+            macroBlocks.add(new MacroBlock("testsideeffectfreemacro", Collections.<String, String>emptyMap(),
+                "macro:testthreadmacro", false));
+            macroBlocks.add(new MacroBlock("testthreadmacro", Collections.<String, String>emptyMap(), false));
+        }
+        XDOM dom = new XDOM(macroBlocks);
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        TestThreadMacro macro = this.componentManager.getInstance(Macro.class, "testthreadmacro");
+        Assert.assertEquals(Collections.singleton(Thread.currentThread()), macro.getThreads());
+        Assert.assertTrue(dom.getBlocks(new ClassBlockMatcher(MacroBlock.class), Block.Axes.DESCENDANT).isEmpty());
+    }
+
+    @Test
+    public void transformCacheableMacroOnlyOnce() throws Exception
+    {
+        TestCacheableMacro macro = this.componentManager.getInstance(Macro.class, "testcacheablemacro");
+
+        XDOM dom = new XDOM(Arrays.<Block>asList(
+            new MacroBlock("testcacheablemacro", Collections.<String, String>emptyMap(), "content", false),
+            new MacroBlock("testcacheablemacro", Collections.<String, String>emptyMap(), "content", false),
+            new MacroBlock("testcacheablemacro", Collections.<String, String>emptyMap(), "other", false)));
+
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        Assert.assertEquals(2, macro.getExecutions());
+        Assert.assertEquals(1, this.transformation.getResultCache().getHitCount());
+        Assert.assertEquals(2, this.transformation.getResultCache().getMissCount());
+
+        WikiPrinter printer = new DefaultWikiPrinter();
+        BlockRenderer eventBlockRenderer =
+            this.componentManager.getInstance(BlockRenderer.class, Syntax.EVENT_1_0.toIdString());
+        eventBlockRenderer.render(dom, printer);
+        Assert.assertEquals("beginDocument\n"
+            + "beginMacroMarkerStandalone [testcacheablemacro] [] [content]\n"
+            + "onWord [content]\n"
+            + "endMacroMarkerStandalone [testcacheablemacro] [] [content]\n"
+            + "beginMacroMarkerStandalone [testcacheablemacro] [] [content]\n"
+            + "onWord [content]\n"
+            + "endMacroMarkerStandalone [testcacheablemacro] [] [content]\n"
+            + "beginMacroMarkerStandalone [testcacheablemacro] [] [other]\n"
+            + "onWord [other]\n"
+            + "endMacroMarkerStandalone [testcacheablemacro] [] [other]\n"
+            + "endDocument", printer.toString());
+
+        // The cache is shared between transformations
+        dom = new XDOM(Arrays.<Block>asList(
+            new MacroBlock("testcacheablemacro", Collections.<String, String>emptyMap(), "other", false)));
+        this.transformation.transform(dom, new TransformationContext(dom, Syntax.XWIKI_2_0));
+
+        Assert.assertEquals(2, macro.getExecutions());
+    }
 }
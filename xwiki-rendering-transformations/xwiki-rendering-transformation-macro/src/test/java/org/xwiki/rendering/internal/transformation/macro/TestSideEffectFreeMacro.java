@@ -0,0 +1,98 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.transformation.macro;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.MacroBlock;
+import org.xwiki.rendering.block.WordBlock;
+import org.xwiki.rendering.macro.AbstractNoParameterMacro;
+import org.xwiki.rendering.macro.MacroExecutionException;
+import org.xwiki.rendering.transformation.MacroTransformationContext;
+
+/**
+ * Macro outputting its content and which can be executed in parallel with other macros. A content starting with
+ * {@code macro:} generates the macro with the following id instead.
+ *
+ * @version $Id$
+ */
+@Component
+@Named("testsideeffectfreemacro")
+@Singleton
+public class TestSideEffectFreeMacro extends AbstractNoParameterMacro
+{
+    private static final String MACRO_PREFIX = "macro:";
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final AtomicInteger maxConcurrentExecutions = new AtomicInteger();
+
+    public TestSideEffectFreeMacro()
+    {
+        super("Side Effect Free Macro");
+        setDefaultCategory("Test");
+        setSideEffectFree(true);
+    }
+
+    @Override
+    public boolean supportsInlineMode()
+    {
+        return true;
+    }
+
+    @Override
+    public List<Block> execute(Object parameters, String content, MacroTransformationContext context)
+        throws MacroExecutionException
+    {
+        int concurrentExecutions = this.executions.incrementAndGet();
+        this.maxConcurrentExecutions.accumulateAndGet(concurrentExecutions, Math::max);
+        try {
+            // Give the other threads a chance to execute at the same time
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.executions.decrementAndGet();
+        }
+
+        if (content.startsWith(MACRO_PREFIX)) {
+            return Arrays.<Block>asList(new MacroBlock(content.substring(MACRO_PREFIX.length()),
+                Collections.<String, String>emptyMap(), false));
+        }
+
+        return Arrays.<Block>asList(new WordBlock(content));
+    }
+
+    /**
+     * @return the maximum number of executions of this macro which happened at the same time
+     */
+    public int getMaxConcurrentExecutions()
+    {
+        return this.maxConcurrentExecutions.get();
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.rendering.internal.transformation.wikiword;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,10 +31,9 @@
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.block.LinkBlock;
 import org.xwiki.rendering.block.WordBlock;
-import org.xwiki.rendering.internal.block.ProtectedBlockFilter;
 import org.xwiki.rendering.listener.reference.DocumentResourceReference;
 import org.xwiki.rendering.listener.reference.ResourceReference;
-import org.xwiki.rendering.transformation.AbstractTransformation;
+import org.xwiki.rendering.transformation.AbstractBlockTransformation;
 import org.xwiki.rendering.transformation.TransformationContext;
 import org.xwiki.rendering.transformation.TransformationException;
 
@@ -45,7 +46,7 @@
 @Component
 @Named("wikiword")
 @Singleton
-public class WikiWordTransformation extends AbstractTransformation
+public class WikiWordTransformation extends AbstractBlockTransformation
 {
     /**
      * Regex Pattern to recognize a WikiWord.
@@ -53,22 +54,27 @@ public class WikiWordTransformation extends AbstractTransformation
     private static final Pattern WIKIWORD_PATTERN = Pattern.compile(
         "\\p{javaUpperCase}+\\p{javaLowerCase}+(\\p{javaUpperCase}\\p{javaLowerCase}*)+");
 
-    /**
-     * Used to filter protected blocks (code macro marker block, etc).
-     */
-    private ProtectedBlockFilter filter = new ProtectedBlockFilter();
+    @Override
+    public Collection<Class<? extends Block>> getBlockTypes()
+    {
+        return Collections.<Class<? extends Block>>singletonList(WordBlock.class);
+    }
 
     @Override
-    public void transform(Block block, TransformationContext transformationContext) throws TransformationException
+    public Block transformBlock(Block block, TransformationContext transformationContext)
+        throws TransformationException
     {
-        // Find all Word blocks and for each of them check if they're a wiki word or not
-        for (WordBlock wordBlock : this.filter.getChildrenByType(block, WordBlock.class, true)) {
-            Matcher matcher = WIKIWORD_PATTERN.matcher(wordBlock.getWord());
-            if (matcher.matches()) {
-                ResourceReference linkReference = new DocumentResourceReference(wordBlock.getWord());
-                wordBlock.getParent().replaceChild(new LinkBlock(wordBlock.getChildren(), linkReference, false),
-                    wordBlock);
-            }
+        // Check if the Word block is a wiki word or not
+        WordBlock wordBlock = (WordBlock) block;
+        Matcher matcher = WIKIWORD_PATTERN.matcher(wordBlock.getWord());
+        if (matcher.matches()) {
+            ResourceReference linkReference = new DocumentResourceReference(wordBlock.getWord());
+            Block linkBlock = new LinkBlock(wordBlock.getChildren(), linkReference, false);
+            wordBlock.getParent().replaceChild(linkBlock, wordBlock);
+
+            return linkBlock;
         }
+
+        return wordBlock;
     }
 }
@@ -0,0 +1,133 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.wikimodel.xhtml;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xwiki.rendering.wikimodel.xhtml.filter.DefaultXMLFilter;
+import org.xwiki.xml.XMLReaderFactory;
+
+/**
+ * A pool of configured XML readers (usually a chain of XML filters), to avoid creating a new SAX parser and its filters
+ * for each parse.
+ * <p>
+ * Only readers which are {@link DefaultXMLFilter}s are pooled since their state can be reset with
+ * {@link DefaultXMLFilter#reset()}, the other ones are discarded when released.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class XMLReaderPool
+{
+    private final XMLReaderFactory factory;
+
+    private final BlockingQueue<XMLReader> idleReaders;
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    /**
+     * @param factory the factory used to create new readers
+     * @param maxIdle the maximum number of readers kept between two parses
+     */
+    public XMLReaderPool(XMLReaderFactory factory, int maxIdle)
+    {
+        this.factory = factory;
+        this.idleReaders = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * @return an idle reader, or a new one if there is none
+     * @throws SAXException when failing to create a new reader
+     * @throws ParserConfigurationException when failing to create a new reader
+     */
+    public XMLReader acquire() throws SAXException, ParserConfigurationException
+    {
+        XMLReader reader = this.idleReaders.poll();
+
+        if (reader != null) {
+            this.reusedCount.incrementAndGet();
+        } else {
+            reader = this.factory.createXMLReader();
+            this.createdCount.incrementAndGet();
+        }
+
+        return reader;
+    }
+
+    /**
+     * Reset a reader and make it available for another parse.
+     *
+     * @param reader a reader returned by {@link #acquire()} which is not used anymore
+     */
+    public void release(XMLReader reader)
+    {
+        if (reader instanceof DefaultXMLFilter) {
+            ((DefaultXMLFilter) reader).reset();
+
+            if (this.idleReaders.offer(reader)) {
+                return;
+            }
+        }
+
+        this.discardedCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of readers created by this pool
+     */
+    public long getCreatedCount()
+    {
+        return this.createdCount.get();
+    }
+
+    /**
+     * @return the number of times an idle reader has been reused
+     */
+    public long getReusedCount()
+    {
+        return this.reusedCount.get();
+    }
+
+    /**
+     * @return the number of released readers which have not been kept
+     */
+    public long getDiscardedCount()
+    {
+        return this.discardedCount.get();
+    }
+
+    /**
+     * @return the number of readers currently waiting to be reused
+     */
+    public int getIdleCount()
+    {
+        return this.idleReaders.size();
+    }
+}
@@ -57,6 +57,12 @@ public class XhtmlParser implements IWikiParser
      */
     private XMLReader fXmlReader;
 
+    /**
+     * Optional pool of XML readers that can be specified, used instead of
+     * {@link #fXmlReader}.
+     */
+    private XMLReaderPool fXmlReaderPool;
+
     private boolean namespacesEnabled = true;
 
     public XhtmlParser()
@@ -90,6 +96,16 @@ public void setXmlReader(XMLReader xmlReader)
         fXmlReader = xmlReader;
     }
 
+    /**
+     * @param xmlReaderPool the pool in which to take the XML reader for each
+     * parse
+     * @since 10.9RC1
+     */
+    public void setXmlReaderPool(XMLReaderPool xmlReaderPool)
+    {
+        fXmlReaderPool = xmlReaderPool;
+    }
+
     /**
      * @param listener the listener object wich will be used to report about all
      * structural elements on the wiki page.
@@ -114,8 +130,9 @@ public DefaultHandler getHandler(IWemListener listener)
     public void parse(Reader reader, IWemListener listener)
         throws WikiParserException
     {
+        XMLReader xmlReader = null;
         try {
-            XMLReader xmlReader = getXMLReader();
+            xmlReader = getXMLReader();
 
             // The WikiModel-specific handler
             DefaultHandler handler = getHandler(listener);
@@ -132,6 +149,10 @@ public void parse(Reader reader, IWemListener listener)
             xmlReader.parse(source);
         } catch (Exception e) {
             throw new WikiParserException(e);
+        } finally {
+            if (fXmlReaderPool != null && xmlReader != null) {
+                fXmlReaderPool.release(xmlReader);
+            }
         }
     }
 
@@ -139,7 +160,9 @@ private XMLReader getXMLReader() throws Exception
     {
         XMLReader reader;
 
-        if (fXmlReader != null) {
+        if (fXmlReaderPool != null) {
+            reader = fXmlReaderPool.acquire();
+        } else if (fXmlReader != null) {
             reader = fXmlReader;
         } else {
             SAXParserFactory parserFactory = SAXParserFactory.newInstance();
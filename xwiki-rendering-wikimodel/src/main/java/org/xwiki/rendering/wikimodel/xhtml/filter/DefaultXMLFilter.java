@@ -49,6 +49,22 @@ public DefaultXMLFilter(XMLReader reader)
         super(reader);
     }
 
+    /**
+     * Clear the state of this filter and of the filters it's reading from, so that it can be reused for another parse,
+     * even if the previous one failed. The handlers are removed too.
+     *
+     * @since 10.9RC1
+     */
+    public void reset()
+    {
+        this.lexicalHandler = null;
+        setContentHandler(null);
+
+        if (getParent() instanceof DefaultXMLFilter) {
+            ((DefaultXMLFilter) getParent()).reset();
+        }
+    }
+
     @Override
     public void parse(InputSource input) throws SAXException, IOException
     {
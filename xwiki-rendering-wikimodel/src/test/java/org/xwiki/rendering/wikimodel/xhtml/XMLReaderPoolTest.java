@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.wikimodel.xhtml;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xwiki.rendering.wikimodel.xhtml.filter.AccumulationXMLFilter;
+import org.xwiki.rendering.wikimodel.xhtml.filter.DTDXMLFilter;
+import org.xwiki.rendering.wikimodel.xhtml.filter.XHTMLWhitespaceXMLFilter;
+import org.xwiki.xml.XMLReaderFactory;
+
+/**
+ * Validate {@link XMLReaderPool}.
+ *
+ * @version $Id$
+ */
+public class XMLReaderPoolTest
+{
+    /**
+     * Record the received SAX events.
+     */
+    private static class EventRecorder extends DefaultHandler
+    {
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes)
+        {
+            this.events.append('<').append(qName).append('>');
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        {
+            this.events.append("</").append(qName).append('>');
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            this.events.append(ch, start, length);
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.events.toString();
+        }
+    }
+
+    private final XMLReaderFactory factory = new XMLReaderFactory()
+    {
+        @Override
+        public XMLReader createXMLReader() throws SAXException, ParserConfigurationException
+        {
+            XMLReader reader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+
+            return new XHTMLWhitespaceXMLFilter(new AccumulationXMLFilter(new DTDXMLFilter(reader)));
+        }
+    };
+
+    private String parse(XMLReader reader, String content) throws Exception
+    {
+        EventRecorder recorder = new EventRecorder();
+        reader.setContentHandler(recorder);
+        reader.parse(new InputSource(new StringReader(content)));
+
+        return recorder.toString();
+    }
+
+    @Test
+    public void reuseReader() throws Exception
+    {
+        XMLReaderPool pool = new XMLReaderPool(this.factory, 1);
+
+        XMLReader reader = pool.acquire();
+        Assert.assertEquals("<html><p>first</p></html>", parse(reader, "<html><p>first</p></html>"));
+        pool.release(reader);
+
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertSame(reader, pool.acquire());
+        Assert.assertEquals("<html><p>second</p></html>", parse(reader, "<html><p>second</p></html>"));
+
+        Assert.assertEquals(1, pool.getCreatedCount());
+        Assert.assertEquals(1, pool.getReusedCount());
+    }
+
+    @Test
+    public void reuseReaderAfterFailedParse() throws Exception
+    {
+        XMLReaderPool pool = new XMLReaderPool(this.factory, 1);
+
+        XMLReader reader = pool.acquire();
+        try {
+            // The text accumulated before the error is never sent
+            parse(reader, "<html><p>unfinished <b>paragraph");
+            Assert.fail("The content should not be valid");
+        } catch (SAXException expected) {
+            // Expected
+        }
+        pool.release(reader);
+
+        XMLReader reusedReader = pool.acquire();
+        Assert.assertSame(reader, reusedReader);
+
+        // Nothing from the previous document should be sent
+        Assert.assertEquals("<html><p>second</p></html>", parse(reusedReader, "<html><p>second</p></html>"));
+    }
+
+    @Test
+    public void releaseWhenFull() throws Exception
+    {
+        XMLReaderPool pool = new XMLReaderPool(this.factory, 1);
+
+        XMLReader reader1 = pool.acquire();
+        XMLReader reader2 = pool.acquire();
+        pool.release(reader1);
+        pool.release(reader2);
+
+        Assert.assertEquals(2, pool.getCreatedCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getDiscardedCount());
+    }
+}
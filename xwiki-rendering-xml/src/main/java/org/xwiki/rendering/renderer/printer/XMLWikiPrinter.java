@@ -19,18 +19,12 @@
  */
 package org.xwiki.rendering.renderer.printer;
 
-import java.io.IOException;
 import java.util.Map;
 
-import org.dom4j.Element;
 import org.dom4j.io.XMLWriter;
-import org.dom4j.tree.DefaultComment;
-import org.dom4j.tree.DefaultElement;
-import org.dom4j.tree.DefaultEntity;
 import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.AttributesImpl;
 import org.xwiki.rendering.internal.renderer.printer.WikiWriter;
+import org.xwiki.rendering.xml.internal.renderer.printer.XHTMLStreamWriter;
 import org.xwiki.rendering.xml.internal.renderer.printer.XHTMLWriter;
 import org.xwiki.xml.XMLUtils;
 
@@ -42,28 +36,52 @@
  */
 public class XMLWikiPrinter
 {
+    /**
+     * @deprecated since 10.9RC1, only initialized by {@link #getXMLWriter()}
+     */
+    @Deprecated
     protected WikiWriter wikiWriter;
 
+    /**
+     * @deprecated since 10.9RC1, only initialized by {@link #getXMLWriter()}
+     */
+    @Deprecated
     protected XMLWriter xmlWriter;
 
+    /**
+     * Write the XML directly to the printer, without building any intermediate DOM object.
+     */
+    private XHTMLStreamWriter streamWriter;
+
     /**
      * @param printer the object to which to write the XHTML output to
      */
     public XMLWikiPrinter(WikiPrinter printer)
     {
-        this.wikiWriter = new WikiWriter(printer);
-
-        this.xmlWriter = new XHTMLWriter(this.wikiWriter);
+        this.streamWriter = new XHTMLStreamWriter(printer);
     }
 
+    /**
+     * @return a dom4j writer printing to the same printer
+     * @deprecated since 10.9RC1, use the various print methods instead
+     */
+    @Deprecated
     public XMLWriter getXMLWriter()
     {
+        if (this.xmlWriter == null) {
+            this.wikiWriter = new WikiWriter(this.streamWriter.getWikiPrinter());
+            this.xmlWriter = new XHTMLWriter(this.wikiWriter);
+        }
+
         return this.xmlWriter;
     }
 
     public void setWikiPrinter(WikiPrinter printer)
     {
-        this.wikiWriter.setWikiPrinter(printer);
+        this.streamWriter.setWikiPrinter(printer);
+        if (this.wikiWriter != null) {
+            this.wikiWriter.setWikiPrinter(printer);
+        }
     }
 
     /**
@@ -73,11 +91,7 @@ public void setWikiPrinter(WikiPrinter printer)
      */
     public void printXML(String str)
     {
-        try {
-            this.xmlWriter.write(str);
-        } catch (IOException e) {
-            // TODO: add error log here
-        }
+        this.streamWriter.writeText(str);
     }
 
     /**
@@ -98,19 +112,7 @@ public void printXMLElement(String name)
      */
     public void printXMLElement(String name, String[][] attributes)
     {
-        Element element = new DefaultElement(name);
-
-        if (attributes != null && attributes.length > 0) {
-            for (String[] entry : attributes) {
-                element.addAttribute(entry[0], entry[1]);
-            }
-        }
-
-        try {
-            this.xmlWriter.write(element);
-        } catch (IOException e) {
-            // TODO: add error log here
-        }
+        this.streamWriter.writeElement(name, attributes);
     }
 
     /**
@@ -121,19 +123,7 @@ public void printXMLElement(String name, String[][] attributes)
      */
     public void printXMLElement(String name, Map<String, String> attributes)
     {
-        Element element = new DefaultElement(name);
-
-        if (attributes != null && !attributes.isEmpty()) {
-            for (Map.Entry<String, String> entry : attributes.entrySet()) {
-                element.addAttribute(entry.getKey(), entry.getValue());
-            }
-        }
-
-        try {
-            this.xmlWriter.write(element);
-        } catch (IOException e) {
-            // TODO: add error log here
-        }
+        this.streamWriter.writeElement(name, attributes);
     }
 
     /**
@@ -143,7 +133,7 @@ public void printXMLElement(String name, Map<String, String> attributes)
      */
     public void printXMLStartElement(String name)
     {
-        printXMLStartElement(name, new AttributesImpl());
+        printXMLStartElement(name, (String[][]) null);
     }
 
     /**
@@ -154,7 +144,7 @@ public void printXMLStartElement(String name)
      */
     public void printXMLStartElement(String name, String[][] attributes)
     {
-        printXMLStartElement(name, createAttributes(attributes));
+        this.streamWriter.writeStartElement(name, attributes);
     }
 
     /**
@@ -165,7 +155,7 @@ public void printXMLStartElement(String name, String[][] attributes)
      */
     public void printXMLStartElement(String name, Map<String, String> attributes)
     {
-        printXMLStartElement(name, createAttributes(attributes));
+        this.streamWriter.writeStartElement(name, attributes);
     }
 
     /**
@@ -176,11 +166,7 @@ public void printXMLStartElement(String name, Map<String, String> attributes)
      */
     public void printXMLStartElement(String name, Attributes attributes)
     {
-        try {
-            this.xmlWriter.startElement("", name, name, attributes);
-        } catch (SAXException e) {
-            // TODO: add error log here
-        }
+        this.streamWriter.writeStartElement(name, attributes);
     }
 
     /**
@@ -190,11 +176,7 @@ public void printXMLStartElement(String name, Attributes attributes)
      */
     public void printXMLEndElement(String name)
     {
-        try {
-            this.xmlWriter.endElement("", name, name);
-        } catch (SAXException e) {
-            // TODO: add error log here
-        }
+        this.streamWriter.writeEndElement(name);
     }
 
     /**
@@ -218,11 +200,7 @@ public void printXMLComment(String content)
      */
     public void printXMLComment(String content, boolean escape)
     {
-        try {
-            this.xmlWriter.write(new DefaultComment(escape ? XMLUtils.escapeXMLComment(content) : content));
-        } catch (IOException e) {
-            // TODO: add error log here
-        }
+        this.streamWriter.writeComment(escape ? XMLUtils.escapeXMLComment(content) : content);
     }
 
     /**
@@ -230,13 +208,8 @@ public void printXMLComment(String content, boolean escape)
      */
     public void printXMLStartCData()
     {
-        try {
-            this.xmlWriter.startCDATA();
-            // Ensure that characters inside CDATA sections are not escaped
-            this.xmlWriter.setEscapeText(false);
-        } catch (Exception e) {
-            // TODO: handle exception
-        }
+        // Characters inside CDATA sections are not escaped
+        this.streamWriter.startCData();
     }
 
     /**
@@ -244,21 +217,12 @@ public void printXMLStartCData()
      */
     public void printXMLEndCData()
     {
-        try {
-            this.xmlWriter.setEscapeText(true);
-            this.xmlWriter.endCDATA();
-        } catch (Exception e) {
-            // TODO: handle exception
-        }
+        this.streamWriter.endCData();
     }
 
     public void printEntity(String entity)
     {
-        try {
-            this.xmlWriter.write(new DefaultEntity(entity, entity));
-        } catch (Exception e) {
-            // TODO: handle exception
-        }
+        this.streamWriter.writeRaw(entity);
     }
 
     /**
@@ -269,47 +233,6 @@ public void printEntity(String entity)
      */
     public void printRaw(String row)
     {
-        try {
-            this.wikiWriter.write(row);
-        } catch (Exception e) {
-            // TODO: handle exception
-        }
-    }
-
-    /**
-     * Convert provided table into {@link Attributes} to use in xml writer.
-     */
-    private Attributes createAttributes(String[][] parameters)
-    {
-        AttributesImpl attributes = new AttributesImpl();
-
-        if (parameters != null && parameters.length > 0) {
-            for (String[] entry : parameters) {
-                attributes.addAttribute(null, null, entry[0], null, entry[1]);
-            }
-        }
-
-        return attributes;
-    }
-
-    /**
-     * Convert provided map into {@link Attributes} to use in xml writer.
-     */
-    private Attributes createAttributes(Map<String, String> parameters)
-    {
-        AttributesImpl attributes = new AttributesImpl();
-
-        if (parameters != null && !parameters.isEmpty()) {
-            for (Map.Entry<String, String> entry : parameters.entrySet()) {
-                String value = entry.getValue();
-                String key = entry.getKey();
-
-                if (key != null && value != null) {
-                    attributes.addAttribute(null, null, key, null, value);
-                }
-            }
-        }
-
-        return attributes;
+        this.streamWriter.writeRaw(row);
     }
 }
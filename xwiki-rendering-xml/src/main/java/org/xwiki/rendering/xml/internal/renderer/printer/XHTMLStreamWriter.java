@@ -0,0 +1,311 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xml.internal.renderer.printer;
+
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xwiki.rendering.renderer.printer.WikiPrinter;
+
+/**
+ * Write XHTML directly to a {@link WikiPrinter} without building any intermediate DOM object. Each tag is assembled in
+ * a reused buffer and printed at once, and text which does not contain any character to escape is printed as is.
+ * <p>
+ * The produced output is the same as the one of {@link XHTMLWriter}: the {@code <}, {@code >}, {@code &} and
+ * <code>{</code> characters (and {@code "} in attribute values) are escaped along with the control characters other
+ * than tabulations and new lines.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class XHTMLStreamWriter
+{
+    private static final String[] TEXT_ENTITIES = new String['{' + 1];
+
+    private static final String[] ATTRIBUTE_ENTITIES;
+
+    static {
+        for (char c = 0; c < ' '; ++c) {
+            if (c != '\t' && c != '\n' && c != '\r') {
+                TEXT_ENTITIES[c] = "&#" + (int) c + ';';
+            }
+        }
+        TEXT_ENTITIES['<'] = "&lt;";
+        TEXT_ENTITIES['>'] = "&gt;";
+        TEXT_ENTITIES['&'] = "&amp;";
+        // Make sure "{{/html}}" can't appear in the generated XHTML so that it can be used in a XWiki 2.x html macro
+        TEXT_ENTITIES['{'] = "&#123;";
+
+        ATTRIBUTE_ENTITIES = TEXT_ENTITIES.clone();
+        ATTRIBUTE_ENTITIES['"'] = "&quot;";
+    }
+
+    private WikiPrinter printer;
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    private boolean escapeText = true;
+
+    /**
+     * @param printer the printer to write to
+     */
+    public XHTMLStreamWriter(WikiPrinter printer)
+    {
+        this.printer = printer;
+    }
+
+    /**
+     * @return the printer to write to
+     */
+    public WikiPrinter getWikiPrinter()
+    {
+        return this.printer;
+    }
+
+    /**
+     * @param printer the printer to write to
+     */
+    public void setWikiPrinter(WikiPrinter printer)
+    {
+        this.printer = printer;
+    }
+
+    /**
+     * Write text, escaped unless inside a CDATA section.
+     *
+     * @param text the text to write
+     */
+    public void writeText(String text)
+    {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+
+        int index = this.escapeText ? indexOfEscaped(text, TEXT_ENTITIES) : -1;
+        if (index < 0) {
+            this.printer.print(text);
+        } else {
+            this.buffer.setLength(0);
+            appendEscaped(text, index, TEXT_ENTITIES);
+            print();
+        }
+    }
+
+    /**
+     * Write content without escaping anything.
+     *
+     * @param raw the content to write
+     */
+    public void writeRaw(String raw)
+    {
+        this.printer.print(raw);
+    }
+
+    /**
+     * Write an empty element, in the form {@code <name att1="value1" att2="value2"/>}. Attributes with a {@code null}
+     * value are ignored.
+     *
+     * @param name the name of the element
+     * @param attributes the attributes of the element, each entry being a name and a value
+     */
+    public void writeElement(String name, String[][] attributes)
+    {
+        startTag(name);
+        if (attributes != null) {
+            for (String[] entry : attributes) {
+                if (entry[1] != null) {
+                    appendAttribute(entry[0], entry[1]);
+                }
+            }
+        }
+        endTag(true);
+    }
+
+    /**
+     * Write an empty element, in the form {@code <name att1="value1" att2="value2"/>}. Attributes with a {@code null}
+     * name or value are ignored.
+     *
+     * @param name the name of the element
+     * @param attributes the attributes of the element
+     */
+    public void writeElement(String name, Map<String, String> attributes)
+    {
+        startTag(name);
+        appendAttributes(attributes);
+        endTag(true);
+    }
+
+    /**
+     * Write the start tag of an element, in the form {@code <name att1="value1" att2="value2">}.
+     *
+     * @param name the name of the element
+     * @param attributes the attributes of the element, each entry being a name and a value
+     */
+    public void writeStartElement(String name, String[][] attributes)
+    {
+        startTag(name);
+        if (attributes != null) {
+            for (String[] entry : attributes) {
+                appendAttribute(entry[0], entry[1]);
+            }
+        }
+        endTag(false);
+    }
+
+    /**
+     * Write the start tag of an element, in the form {@code <name att1="value1" att2="value2">}. Attributes with a
+     * {@code null} name or value are ignored.
+     *
+     * @param name the name of the element
+     * @param attributes the attributes of the element
+     */
+    public void writeStartElement(String name, Map<String, String> attributes)
+    {
+        startTag(name);
+        appendAttributes(attributes);
+        endTag(false);
+    }
+
+    /**
+     * Write the start tag of an element, in the form {@code <name att1="value1" att2="value2">}.
+     *
+     * @param name the name of the element
+     * @param attributes the attributes of the element
+     */
+    public void writeStartElement(String name, Attributes attributes)
+    {
+        startTag(name);
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); ++i) {
+                appendAttribute(attributes.getQName(i), attributes.getValue(i));
+            }
+        }
+        endTag(false);
+    }
+
+    /**
+     * Write the end tag of an element, in the form <code>&lt;/name&gt;</code>.
+     *
+     * @param name the name of the element
+     */
+    public void writeEndElement(String name)
+    {
+        this.buffer.setLength(0);
+        this.buffer.append("</").append(name).append('>');
+        print();
+    }
+
+    /**
+     * Write a comment, in the form {@code <!--content-->}.
+     *
+     * @param content the content of the comment, which is expected to be valid
+     */
+    public void writeComment(String content)
+    {
+        this.buffer.setLength(0);
+        this.buffer.append("<!--").append(content).append("-->");
+        print();
+    }
+
+    /**
+     * Start a CDATA section: the text written until {@link #endCData()} is not escaped.
+     */
+    public void startCData()
+    {
+        this.printer.print("<![CDATA[");
+        this.escapeText = false;
+    }
+
+    /**
+     * End a CDATA section.
+     */
+    public void endCData()
+    {
+        this.escapeText = true;
+        this.printer.print("]]>");
+    }
+
+    private void startTag(String name)
+    {
+        this.buffer.setLength(0);
+        this.buffer.append('<').append(name);
+    }
+
+    private void appendAttributes(Map<String, String> attributes)
+    {
+        if (attributes != null) {
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    appendAttribute(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private void appendAttribute(String name, String value)
+    {
+        this.buffer.append(' ').append(name).append("=\"");
+        if (value != null) {
+            int index = indexOfEscaped(value, ATTRIBUTE_ENTITIES);
+            if (index < 0) {
+                this.buffer.append(value);
+            } else {
+                appendEscaped(value, index, ATTRIBUTE_ENTITIES);
+            }
+        }
+        this.buffer.append('"');
+    }
+
+    private void endTag(boolean empty)
+    {
+        this.buffer.append(empty ? "/>" : ">");
+        print();
+    }
+
+    private void print()
+    {
+        this.printer.print(this.buffer.toString());
+    }
+
+    private static int indexOfEscaped(String text, String[] entities)
+    {
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (c < entities.length && entities[c] != null) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void appendEscaped(String text, int firstIndex, String[] entities)
+    {
+        int start = 0;
+        for (int i = firstIndex; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            if (c < entities.length && entities[c] != null) {
+                this.buffer.append(text, start, i).append(entities[c]);
+                start = i + 1;
+            }
+        }
+        this.buffer.append(text, start, text.length());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.xml.internal.renderer.printer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xwiki.rendering.renderer.printer.DefaultWikiPrinter;
+
+/**
+ * Unit tests for {@link XHTMLStreamWriter}.
+ *
+ * @version $Id$
+ * @since 10.9RC1
+ */
+public class XHTMLStreamWriterTest
+{
+    private DefaultWikiPrinter printer;
+
+    private XHTMLStreamWriter writer;
+
+    @Before
+    public void setUp()
+    {
+        this.printer = new DefaultWikiPrinter();
+        this.writer = new XHTMLStreamWriter(this.printer);
+    }
+
+    @Test
+    public void testEscapeText()
+    {
+        this.writer.writeText("a < b > c & {{/html}} \"quoted\"\t\n\r\u0001");
+
+        Assert.assertEquals("a &lt; b &gt; c &amp; &#123;&#123;/html}} \"quoted\"\t\n\r&#1;", this.printer.toString());
+    }
+
+    @Test
+    public void testTextWithoutEscaping()
+    {
+        String text = "nothing to escape é";
+        this.writer.writeText(text);
+        this.writer.writeText(null);
+        this.writer.writeText("");
+
+        Assert.assertEquals(text, this.printer.toString());
+    }
+
+    @Test
+    public void testCDataAndRaw()
+    {
+        this.writer.startCData();
+        this.writer.writeText("<b>&{</b>");
+        this.writer.endCData();
+        this.writer.writeText("<");
+        this.writer.writeRaw("<raw&>");
+
+        Assert.assertEquals("<![CDATA[<b>&{</b>]]>&lt;<raw&>", this.printer.toString());
+    }
+
+    @Test
+    public void testEscapeAttributes()
+    {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("title", "a \"b\" <c> & {d}\t\u0002");
+        attributes.put("class", "plain");
+
+        this.writer.writeStartElement("span", attributes);
+
+        Assert.assertEquals("<span title=\"a &quot;b&quot; &lt;c&gt; &amp; &#123;d}\t&#2;\" class=\"plain\">",
+            this.printer.toString());
+    }
+
+    @Test
+    public void testStartAndEndElements()
+    {
+        this.writer.writeStartElement("div", new String[][] { { "id", "i" }, { "class", null } });
+        this.writer.writeStartElement("p", (Map<String, String>) null);
+
+        AttributesImpl attributes = new AttributesImpl();
+        attributes.addAttribute("", "href", "href", "CDATA", "/a?b=1&c=2");
+        this.writer.writeStartElement("a", attributes);
+
+        this.writer.writeEndElement("a");
+        this.writer.writeEndElement("p");
+        this.writer.writeEndElement("div");
+
+        Assert.assertEquals("<div id=\"i\" class=\"\"><p><a href=\"/a?b=1&amp;c=2\"></a></p></div>",
+            this.printer.toString());
+    }
+
+    @Test
+    public void testEmptyElements()
+    {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("src", "image.png");
+        attributes.put("alt", null);
+        attributes.put(null, "value");
+
+        this.writer.writeElement("br", (String[][]) null);
+        this.writer.writeElement("img", attributes);
+        this.writer.writeElement("hr", new String[][] { { "class", "sep" }, { "id", null } });
+
+        Assert.assertEquals("<br/><img src=\"image.png\"/><hr class=\"sep\"/>", this.printer.toString());
+    }
+
+    @Test
+    public void testComment()
+    {
+        this.writer.writeComment("startmacro:html");
+
+        Assert.assertEquals("<!--startmacro:html-->", this.printer.toString());
+    }
+
+    @Test
+    public void testFlushEachWrite()
+    {
+        this.writer.writeStartElement("p", new String[][] { { "class", "a<b" } });
+        Assert.assertEquals("<p class=\"a&lt;b\">", this.printer.toString());
+
+        this.writer.writeText("x&y");
+        Assert.assertEquals("<p class=\"a&lt;b\">x&amp;y", this.printer.toString());
+
+        // Nothing written to the previous printer must end up in the new one
+        DefaultWikiPrinter otherPrinter = new DefaultWikiPrinter();
+        this.writer.setWikiPrinter(otherPrinter);
+        Assert.assertSame(otherPrinter, this.writer.getWikiPrinter());
+
+        this.writer.writeEndElement("p");
+        this.writer.writeElement("br", (String[][]) null);
+
+        Assert.assertEquals("<p class=\"a&lt;b\">x&amp;y", this.printer.toString());
+        Assert.assertEquals("</p><br/>", otherPrinter.toString());
+    }
+}